@@ -64,6 +64,11 @@ public class Const {
 
     public static final String TOKEN_HEADER_PREFIX = "Bearer ";
 
+    /**
+     * 查询 id，客户端生成，用于取消正在执行的查询
+     */
+    public static final String QUERY_ID = "Query-Id";
+
     /**
      * 权限等级定义
      */
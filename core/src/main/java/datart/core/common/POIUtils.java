@@ -21,7 +21,10 @@ import datart.core.base.consts.FileFormat;
 import datart.core.base.exception.BaseException;
 import datart.core.base.exception.Exceptions;
 import datart.core.data.provider.Column;
+import datart.core.data.provider.ColumnarDataframe;
 import datart.core.data.provider.Dataframe;
+import datart.core.data.provider.vector.ColumnVector;
+import datart.core.data.provider.vector.DoubleVector;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.ss.usermodel.*;
@@ -29,6 +32,7 @@ import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
 import java.io.*;
+import java.math.BigDecimal;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -72,6 +76,10 @@ public class POIUtils {
 
     private static void fillSheet(Sheet sheet, Dataframe data) {
         writeHeader(data.getColumns(), sheet);
+        if (data instanceof ColumnarDataframe) {
+            fillColumnarSheet(sheet, (ColumnarDataframe) data);
+            return;
+        }
         int rowIndex = 1;
         for (List<Object> dataRow : data.getRows()) {
             Row row = sheet.createRow(rowIndex);
@@ -84,6 +92,29 @@ public class POIUtils {
         }
     }
 
+    private static void fillColumnarSheet(Sheet sheet, ColumnarDataframe data) {
+        for (int i = 0; i < data.rowCount(); i++) {
+            Row row = sheet.createRow(i + 1);
+            for (int j = 0; j < data.columnCount(); j++) {
+                row.createCell(j).setCellValue(cellString(data.vector(j), i));
+            }
+        }
+    }
+
+    /**
+     * 浮点数按普通小数输出，避免大数值导出为科学计数法
+     */
+    static String cellString(ColumnVector vector, int row) {
+        if (vector instanceof DoubleVector && !vector.isNull(row)) {
+            String val = vector.getString(row);
+            if (val.indexOf('E') > 0) {
+                return new BigDecimal(val).stripTrailingZeros().toPlainString();
+            }
+            return val;
+        }
+        return vector.getString(row);
+    }
+
     private static void writeHeader(List<Column> columns, Sheet sheet) {
         Row row = sheet.createRow(0);
         for (int i = 0; i < columns.size(); i++) {
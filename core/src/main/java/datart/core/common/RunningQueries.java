@@ -0,0 +1,173 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datart.core.common;
+
+import datart.core.base.exception.Exceptions;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 正在执行的查询。查询以用户和请求携带的 id 登记，执行中的 Statement 登记在对应的查询下，取消查询时取消所有登记的 Statement。
+ * 线程池中执行的子查询需要通过 {@link #bind(String)} 关联到所属的查询
+ */
+@Slf4j
+public class RunningQueries {
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private static final Map<String, RunningQuery> QUERIES = new ConcurrentHashMap<>();
+
+    /**
+     * 开始一个查询，并关联到当前线程。同一用户的查询 id 不能重复
+     *
+     * @param queryId 查询 id，由客户端生成
+     * @param owner   发起查询的用户，只有该用户可以取消查询
+     */
+    public static void start(String queryId, String owner) {
+        String key = key(queryId, owner);
+        if (QUERIES.putIfAbsent(key, new RunningQuery(owner)) != null) {
+            Exceptions.msg("message.provider.query.duplicate");
+        }
+        CURRENT.set(key);
+    }
+
+    /**
+     * 结束当前线程上的查询，仍未结束的 Statement(如后台的总数查询)一并取消
+     */
+    public static void finish() {
+        String queryId = CURRENT.get();
+        CURRENT.remove();
+        if (queryId == null) {
+            return;
+        }
+        RunningQuery query = QUERIES.remove(queryId);
+        if (query != null) {
+            query.cancelAll();
+        }
+    }
+
+    public static String current() {
+        return CURRENT.get();
+    }
+
+    public static void bind(String queryId) {
+        if (queryId == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(queryId);
+        }
+    }
+
+    public static void unbind() {
+        CURRENT.remove();
+    }
+
+    /**
+     * 登记当前查询中开始执行的 Statement。查询已被取消时直接取消该 Statement
+     */
+    public static void register(Statement statement) {
+        String queryId = CURRENT.get();
+        if (queryId == null) {
+            return;
+        }
+        RunningQuery query = QUERIES.get(queryId);
+        if (query == null) {
+            return;
+        }
+        query.statements.add(statement);
+        if (query.cancelled) {
+            cancel(statement);
+        }
+    }
+
+    public static void unregister(Statement statement) {
+        String queryId = CURRENT.get();
+        if (queryId == null) {
+            return;
+        }
+        RunningQuery query = QUERIES.get(queryId);
+        if (query != null) {
+            query.statements.remove(statement);
+        }
+    }
+
+    /**
+     * 取消查询
+     *
+     * @param queryId 查询 id
+     * @param user    请求取消的用户
+     * @return 查询存在且属于该用户时返回 true
+     */
+    public static boolean cancel(String queryId, String user) {
+        RunningQuery query = QUERIES.get(key(queryId, user));
+        if (query == null || !Objects.equals(query.owner, user)) {
+            return false;
+        }
+        query.cancelled = true;
+        query.cancelAll();
+        return true;
+    }
+
+    public static boolean isCancelled() {
+        String queryId = CURRENT.get();
+        if (queryId == null) {
+            return false;
+        }
+        RunningQuery query = QUERIES.get(queryId);
+        return query != null && query.cancelled;
+    }
+
+    private static String key(String queryId, String owner) {
+        return owner + "/" + queryId;
+    }
+
+    private static void cancel(Statement statement) {
+        try {
+            statement.cancel();
+        } catch (SQLException | RuntimeException e) {
+            log.warn("statement cancel error", e);
+        }
+    }
+
+    private static class RunningQuery {
+
+        private final String owner;
+
+        private final Set<Statement> statements = ConcurrentHashMap.newKeySet();
+
+        private volatile boolean cancelled;
+
+        private RunningQuery(String owner) {
+            this.owner = owner;
+        }
+
+        private void cancelAll() {
+            for (Statement statement : statements) {
+                cancel(statement);
+            }
+            statements.clear();
+        }
+    }
+
+}
@@ -0,0 +1,216 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package datart.core.data.provider;
+
+import datart.core.data.provider.vector.ColumnVector;
+import datart.core.data.provider.vector.ObjectVector;
+import datart.core.data.provider.vector.StringVector;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * 列式存储的 Dataframe。数据按列保存在 {@link ColumnVector} 中，数值列使用原始类型数组，字符串列使用字典编码。
+ * {@link #getRows()} 返回的是基于列数据的只读视图(支持按单元格修改)，不会按行复制数据。
+ */
+public class ColumnarDataframe extends Dataframe {
+
+    private ColumnVector[] vectors;
+
+    public ColumnarDataframe(List<Column> columns, ColumnVector[] vectors) {
+        super();
+        setColumns(columns);
+        this.vectors = vectors;
+    }
+
+    public ColumnarDataframe(String id, List<Column> columns, ColumnVector[] vectors) {
+        super(id);
+        setColumns(columns);
+        this.vectors = vectors;
+    }
+
+    /**
+     * 按列类型将行数据转换为列式存储
+     */
+    public static ColumnarDataframe fromRows(List<Column> columns, List<List<Object>> rows) {
+        ColumnarDataframe dataframe = new ColumnarDataframe(columns, createVectors(columns, rows == null ? 0 : rows.size()));
+        dataframe.appendRows(rows);
+        return dataframe;
+    }
+
+    public int rowCount() {
+        return vectors.length == 0 ? 0 : vectors[0].size();
+    }
+
+    public int columnCount() {
+        return vectors.length;
+    }
+
+    public ColumnVector vector(int column) {
+        return vectors[column];
+    }
+
+    @Override
+    public long estimatedBytes() {
+        long bytes = 0;
+        for (ColumnVector vector : vectors) {
+            bytes += vector.estimatedBytes();
+        }
+        return bytes;
+    }
+
+    public Object getValue(int row, int column) {
+        return vectors[column].get(row);
+    }
+
+    /**
+     * 修改单元格的值。当值的类型无法保存在当前列中时，将该列提升为 {@link ObjectVector}
+     */
+    public void setValue(int row, int column, Object value) {
+        if (value != null && !vectors[column].accepts(value)) {
+            vectors[column] = ObjectVector.copyOf(vectors[column]);
+        }
+        vectors[column].set(row, value);
+    }
+
+    /**
+     * 向指定列追加一个值。调用方需要保证每一行对所有列各追加一次
+     */
+    public void appendValue(int column, Object value) {
+        if (value != null && !vectors[column].accepts(value)) {
+            vectors[column] = ObjectVector.copyOf(vectors[column]);
+        }
+        vectors[column].append(value);
+    }
+
+    public void clearColumn(int column) {
+        vectors[column].setAllNull();
+    }
+
+    public void blankToNull() {
+        for (ColumnVector vector : vectors) {
+            vector.blankToNull();
+        }
+    }
+
+    /**
+     * 空白字符串视为空值后的数据，不修改当前数据。没有空白字符串时返回自身，否则只复制包含空白字符串的列
+     */
+    public ColumnarDataframe withoutBlanks() {
+        ColumnVector[] copy = null;
+        for (int i = 0; i < vectors.length; i++) {
+            ColumnVector vector = vectors[i];
+            if (!vector.hasBlank()) {
+                continue;
+            }
+            if (copy == null) {
+                copy = vectors.clone();
+            }
+            copy[i] = vector instanceof StringVector ? new StringVector(vector.size()) : new ObjectVector(vector.valueType(), vector.size());
+            for (int row = 0; row < vector.size(); row++) {
+                copy[i].append(vector.get(row));
+            }
+            copy[i].blankToNull();
+        }
+        if (copy == null) {
+            return this;
+        }
+        ColumnarDataframe dataframe = new ColumnarDataframe(getId(), getColumns(), copy);
+        dataframe.setName(getName());
+        return dataframe;
+    }
+
+    @Override
+    public List<List<Object>> getRows() {
+        return new RowList();
+    }
+
+    @Override
+    public void setRows(List<List<Object>> rows) {
+        ColumnVector[] current = this.vectors;
+        this.vectors = createVectors(getColumns(), rows == null ? 0 : rows.size());
+        try {
+            appendRows(rows);
+        } catch (RuntimeException e) {
+            this.vectors = current;
+            throw e;
+        }
+    }
+
+    private void appendRows(List<List<Object>> rows) {
+        if (rows == null) {
+            return;
+        }
+        for (List<Object> row : rows) {
+            for (int i = 0; i < vectors.length; i++) {
+                appendValue(i, i < row.size() ? row.get(i) : null);
+            }
+        }
+    }
+
+    private static ColumnVector[] createVectors(List<Column> columns, int capacity) {
+        int size = columns == null ? 0 : columns.size();
+        ColumnVector[] vectors = new ColumnVector[size];
+        for (int i = 0; i < size; i++) {
+            vectors[i] = ColumnVector.create(columns.get(i).getType(), capacity);
+        }
+        return vectors;
+    }
+
+    private class RowList extends AbstractList<List<Object>> implements RandomAccess {
+
+        @Override
+        public List<Object> get(int index) {
+            return new RowView(index);
+        }
+
+        @Override
+        public int size() {
+            return rowCount();
+        }
+    }
+
+    private class RowView extends AbstractList<Object> implements RandomAccess {
+
+        private final int row;
+
+        private RowView(int row) {
+            this.row = row;
+        }
+
+        @Override
+        public Object get(int index) {
+            return vectors[index].get(row);
+        }
+
+        @Override
+        public Object set(int index, Object element) {
+            Object old = get(index);
+            setValue(row, index, element);
+            return old;
+        }
+
+        @Override
+        public int size() {
+            return vectors.length;
+        }
+    }
+
+}
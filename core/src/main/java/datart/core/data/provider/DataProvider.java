@@ -26,6 +26,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.sql.SQLException;
 import java.util.Collections;
+import java.util.Map;
 import java.util.Set;
 
 public abstract class DataProvider extends AutoCloseBean {
@@ -121,5 +122,31 @@ public abstract class DataProvider extends AutoCloseBean {
     public void resetSource(DataProviderSource source) {
     }
 
+    /**
+     * 刷新数据源的库、表、字段信息缓存
+     *
+     * @param source
+     */
+    public void refreshMetadata(DataProviderSource source) {
+    }
+
+    /**
+     * 数据源未单独配置 maxConcurrency 时同时执行的最大查询数
+     *
+     * @return 为空时使用全局配置
+     */
+    public Integer defaultConcurrency(DataProviderSource source) {
+        return null;
+    }
+
+    /**
+     * 已使用的数据源的健康状态
+     *
+     * @return 数据源ID -> 状态
+     */
+    public Map<String, Object> health() {
+        return Collections.emptyMap();
+    }
+
 
 }
\ No newline at end of file
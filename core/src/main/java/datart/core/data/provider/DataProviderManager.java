@@ -21,6 +21,7 @@ package datart.core.data.provider;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public interface DataProviderManager {
@@ -37,6 +38,8 @@ public interface DataProviderManager {
 
     Set<Column> readTableColumns(DataProviderSource source, String schema, String table) throws SQLException;
 
+    void refreshMetadata(DataProviderSource source);
+
     Dataframe execute(DataProviderSource source, QueryScript queryScript, ExecuteParam param) throws Exception;
 
     Set<StdSqlOperator> supportedStdFunctions(DataProviderSource source);
@@ -45,4 +48,10 @@ public interface DataProviderManager {
 
     void updateSource(DataProviderSource source);
 
+    List<LocalCacheInfo> listLocalCaches();
+
+    Map<String, Object> localMemoryMetrics();
+
+    Map<String, Object> sourceHealth();
+
 }
\ No newline at end of file
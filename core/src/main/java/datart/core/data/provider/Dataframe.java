@@ -20,10 +20,12 @@ package datart.core.data.provider;
 
 import datart.core.base.PageInfo;
 import datart.core.common.UUIDGenerator;
+import datart.core.data.provider.vector.ColumnVector;
 import lombok.Data;
 
 import java.io.Serializable;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 
 
@@ -55,6 +57,27 @@ public class Dataframe implements Serializable {
         this.id = id;
     }
 
+    /**
+     * 估算数据占用的堆内存(字节)。行数较多时按前若干行抽样估算
+     */
+    public long estimatedBytes() {
+        if (rows == null || rows.isEmpty()) {
+            return 0;
+        }
+        int sample = 0;
+        long bytes = 0;
+        Iterator<List<Object>> iterator = rows.iterator();
+        while (iterator.hasNext() && sample < 1000) {
+            List<Object> row = iterator.next();
+            bytes += 40 + row.size() * 8L;
+            for (Object value : row) {
+                bytes += ColumnVector.estimateBytes(value);
+            }
+            sample++;
+        }
+        return bytes * rows.size() / sample;
+    }
+
     public static Dataframe empty() {
         Dataframe dataframe = new Dataframe();
         dataframe.setColumns(Collections.emptyList());
@@ -0,0 +1,35 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datart.core.data.provider;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 流式输出查询结果：先写入列信息，再按批写入数据行
+ */
+public interface DataframeWriter {
+
+    void writeColumns(List<Column> columns) throws IOException;
+
+    /**
+     * @param batch 一批数据行，写入完成后不再使用
+     */
+    void writeRows(Dataframe batch) throws IOException;
+
+}
@@ -62,6 +62,18 @@ public class ExecuteParam implements Serializable {
 
     private int cacheExpires;
 
+    /**
+     * 发起查询的组织和用户，同一数据源排队时在它们之间公平调度。不参与查询缓存的键
+     */
+    private transient String tenant;
+
+    private transient QueryPriority priority;
+
+    /**
+     * 不为空时结果按批写入，不在内存中保留完整结果。数据源不支持时仍返回完整结果
+     */
+    private transient DataframeWriter writer;
+
     @Override
     public String toString() {
         return JSON.toJSONString(JSON.toJSONString(this));
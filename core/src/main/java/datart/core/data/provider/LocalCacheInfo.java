@@ -0,0 +1,46 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datart.core.data.provider;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * 本地持久化缓存的使用情况
+ */
+@Data
+public class LocalCacheInfo implements Serializable {
+
+    private String sourceId;
+
+    /**
+     * 缓存文件大小(字节)
+     */
+    private long size;
+
+    private long hits;
+
+    private Date createTime;
+
+    private Date lastAccessTime;
+
+    private Date expireTime;
+
+}
@@ -0,0 +1,40 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datart.core.data.provider;
+
+/**
+ * 查询的优先级。同一数据源排队时，优先级高的查询先执行
+ */
+public enum QueryPriority {
+
+    /**
+     * 页面上的交互查询
+     */
+    INTERACTIVE,
+
+    /**
+     * 用户发起的数据下载
+     */
+    DOWNLOAD,
+
+    /**
+     * 定时任务
+     */
+    SCHEDULE
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package datart.core.data.provider.vector;
+
+import datart.core.base.consts.ValueType;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.Serializable;
+import java.util.BitSet;
+
+/**
+ * 列式存储中的一列数据。空值统一通过位图记录，非空值由子类以原始类型数组保存，避免逐个装箱。
+ */
+public abstract class ColumnVector implements Serializable {
+
+    protected static final int DEFAULT_CAPACITY = 16;
+
+    protected final BitSet nulls = new BitSet();
+
+    protected int size;
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isNull(int index) {
+        return nulls.get(index);
+    }
+
+    public void appendNull() {
+        ensureCapacity(size + 1);
+        nulls.set(size);
+        size++;
+    }
+
+    public void setNull(int index) {
+        nulls.set(index);
+    }
+
+    /**
+     * 将整列置为空值，用于列权限过滤
+     */
+    public void setAllNull() {
+        nulls.set(0, size);
+    }
+
+    /**
+     * 将空白字符串视为空值。只有字符类型的列需要处理
+     */
+    public void blankToNull() {
+    }
+
+    /**
+     * 是否包含空白字符串
+     */
+    public boolean hasBlank() {
+        return false;
+    }
+
+    public double getDouble(int index) {
+        Object val = get(index);
+        return val == null ? 0 : ((Number) val).doubleValue();
+    }
+
+    public long getLong(int index) {
+        Object val = get(index);
+        return val == null ? 0 : ((Number) val).longValue();
+    }
+
+    public String getString(int index) {
+        Object val = get(index);
+        return val == null ? null : val.toString();
+    }
+
+    public abstract ValueType valueType();
+
+    public abstract Object get(int index);
+
+    /**
+     * 该列能否无损保存给定的非空值。不能保存时，调用方需要将列提升为 {@link ObjectVector}
+     */
+    public abstract boolean accepts(Object value);
+
+    public abstract void append(Object value);
+
+    public abstract void set(int index, Object value);
+
+    protected abstract void ensureCapacity(int capacity);
+
+    /**
+     * 估算该列占用的堆内存(字节)，用于本地查询的内存控制
+     */
+    public abstract long estimatedBytes();
+
+    protected long nullsBytes() {
+        return nulls.size() >> 3;
+    }
+
+    /**
+     * 估算单个对象占用的堆内存(字节)
+     */
+    public static long estimateBytes(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof String) {
+            return 40 + 2L * ((String) value).length();
+        }
+        if (value instanceof java.util.Date || value instanceof java.math.BigDecimal) {
+            return 32;
+        }
+        return 16;
+    }
+
+    protected static int newCapacity(int current, int required) {
+        return Math.max(required, current + (current >> 1) + 1);
+    }
+
+    protected static boolean isBlank(Object value) {
+        return value instanceof String && StringUtils.isBlank(value.toString());
+    }
+
+    public static ColumnVector create(ValueType valueType, int capacity) {
+        if (valueType == null) {
+            return new ObjectVector(ValueType.STRING, capacity);
+        }
+        switch (valueType) {
+            case NUMERIC:
+                return new DoubleVector(capacity);
+            case STRING:
+                return new StringVector(capacity);
+            default:
+                return new ObjectVector(valueType, capacity);
+        }
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package datart.core.data.provider.vector;
+
+import datart.core.base.consts.ValueType;
+
+import java.util.Arrays;
+
+public class DoubleVector extends ColumnVector {
+
+    private double[] values;
+
+    public DoubleVector() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public DoubleVector(int capacity) {
+        this.values = new double[Math.max(capacity, 1)];
+    }
+
+    @Override
+    public ValueType valueType() {
+        return ValueType.NUMERIC;
+    }
+
+    @Override
+    public Object get(int index) {
+        return isNull(index) ? null : values[index];
+    }
+
+    @Override
+    public double getDouble(int index) {
+        return values[index];
+    }
+
+    @Override
+    public long getLong(int index) {
+        return (long) values[index];
+    }
+
+    @Override
+    public boolean accepts(Object value) {
+        // Float 转为 double 后会变成 1.100000023841858 这类值，保留在 ObjectVector 中
+        return value instanceof Double;
+    }
+
+    @Override
+    public void append(Object value) {
+        if (value == null) {
+            appendNull();
+        } else {
+            appendDouble(((Number) value).doubleValue());
+        }
+    }
+
+    public void appendDouble(double value) {
+        ensureCapacity(size + 1);
+        values[size++] = value;
+    }
+
+    @Override
+    public void set(int index, Object value) {
+        if (value == null) {
+            nulls.set(index);
+        } else {
+            nulls.clear(index);
+            values[index] = ((Number) value).doubleValue();
+        }
+    }
+
+    @Override
+    public long estimatedBytes() {
+        return 16 + (long) values.length * 8 + nullsBytes();
+    }
+
+    @Override
+    protected void ensureCapacity(int capacity) {
+        if (capacity > values.length) {
+            values = Arrays.copyOf(values, newCapacity(values.length, capacity));
+        }
+    }
+}
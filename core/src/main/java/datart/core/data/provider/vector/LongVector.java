@@ -0,0 +1,117 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package datart.core.data.provider.vector;
+
+import datart.core.base.consts.ValueType;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+public class LongVector extends ColumnVector {
+
+    private long[] values;
+
+    public LongVector() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LongVector(int capacity) {
+        this.values = new long[Math.max(capacity, 1)];
+    }
+
+    @Override
+    public ValueType valueType() {
+        return ValueType.NUMERIC;
+    }
+
+    @Override
+    public Object get(int index) {
+        return isNull(index) ? null : values[index];
+    }
+
+    @Override
+    public double getDouble(int index) {
+        return values[index];
+    }
+
+    @Override
+    public long getLong(int index) {
+        return values[index];
+    }
+
+    @Override
+    public boolean accepts(Object value) {
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return true;
+        }
+        if (value instanceof BigInteger) {
+            return ((BigInteger) value).bitLength() < Long.SIZE;
+        }
+        if (value instanceof BigDecimal) {
+            // 5.00 这类带小数位的值保留原样，转为 long 会丢失精度信息
+            if (((BigDecimal) value).scale() > 0) {
+                return false;
+            }
+            try {
+                ((BigDecimal) value).longValueExact();
+                return true;
+            } catch (ArithmeticException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void append(Object value) {
+        if (value == null) {
+            appendNull();
+        } else {
+            appendLong(((Number) value).longValue());
+        }
+    }
+
+    public void appendLong(long value) {
+        ensureCapacity(size + 1);
+        values[size++] = value;
+    }
+
+    @Override
+    public void set(int index, Object value) {
+        if (value == null) {
+            nulls.set(index);
+        } else {
+            nulls.clear(index);
+            values[index] = ((Number) value).longValue();
+        }
+    }
+
+    @Override
+    public long estimatedBytes() {
+        return 16 + (long) values.length * 8 + nullsBytes();
+    }
+
+    @Override
+    protected void ensureCapacity(int capacity) {
+        if (capacity > values.length) {
+            values = Arrays.copyOf(values, newCapacity(values.length, capacity));
+        }
+    }
+}
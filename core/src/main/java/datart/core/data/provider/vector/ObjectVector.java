@@ -0,0 +1,120 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package datart.core.data.provider.vector;
+
+import datart.core.base.consts.ValueType;
+
+import java.util.Arrays;
+
+/**
+ * 通用列，保存日期、布尔以及无法用原始类型表示的值
+ */
+public class ObjectVector extends ColumnVector {
+
+    private final ValueType valueType;
+
+    private Object[] values;
+
+    public ObjectVector(ValueType valueType) {
+        this(valueType, DEFAULT_CAPACITY);
+    }
+
+    public ObjectVector(ValueType valueType, int capacity) {
+        this.valueType = valueType;
+        this.values = new Object[Math.max(capacity, 1)];
+    }
+
+    public static ObjectVector copyOf(ColumnVector vector) {
+        ObjectVector copy = new ObjectVector(vector.valueType(), vector.size());
+        for (int i = 0; i < vector.size(); i++) {
+            copy.append(vector.get(i));
+        }
+        return copy;
+    }
+
+    @Override
+    public ValueType valueType() {
+        return valueType;
+    }
+
+    @Override
+    public Object get(int index) {
+        return isNull(index) ? null : values[index];
+    }
+
+    @Override
+    public boolean accepts(Object value) {
+        return true;
+    }
+
+    @Override
+    public void append(Object value) {
+        if (value == null) {
+            appendNull();
+        } else {
+            ensureCapacity(size + 1);
+            values[size++] = value;
+        }
+    }
+
+    @Override
+    public void set(int index, Object value) {
+        values[index] = value;
+        if (value == null) {
+            nulls.set(index);
+        } else {
+            nulls.clear(index);
+        }
+    }
+
+    @Override
+    public void blankToNull() {
+        for (int i = 0; i < size; i++) {
+            if (isBlank(values[i])) {
+                set(i, null);
+            }
+        }
+    }
+
+    @Override
+    public boolean hasBlank() {
+        for (int i = 0; i < size; i++) {
+            if (isBlank(values[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public long estimatedBytes() {
+        long bytes = 16 + (long) values.length * 8 + nullsBytes();
+        for (int i = 0; i < size; i++) {
+            bytes += estimateBytes(values[i]);
+        }
+        return bytes;
+    }
+
+    @Override
+    protected void ensureCapacity(int capacity) {
+        if (capacity > values.length) {
+            values = Arrays.copyOf(values, newCapacity(values.length, capacity));
+        }
+    }
+}
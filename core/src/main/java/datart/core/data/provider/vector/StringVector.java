@@ -0,0 +1,210 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package datart.core.data.provider.vector;
+
+import datart.core.base.consts.ValueType;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 字典编码的字符串列。每行只保存字典下标，重复值只保存一份。
+ * 当不同值过多(字典编码不再节省空间)时，退化为普通的字符串数组。
+ */
+public class StringVector extends ColumnVector {
+
+    private static final int DICTIONARY_LIMIT = 1 << 16;
+
+    private int[] codes;
+
+    private ArrayList<String> dictionary = new ArrayList<>();
+
+    private transient Map<String, Integer> lookup;
+
+    private String[] plain;
+
+    public StringVector() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public StringVector(int capacity) {
+        this.codes = new int[Math.max(capacity, 1)];
+    }
+
+    @Override
+    public ValueType valueType() {
+        return ValueType.STRING;
+    }
+
+    public boolean isDictionaryEncoded() {
+        return plain == null;
+    }
+
+    /**
+     * 字典下标，仅在字典编码模式下有效。空值对应的下标没有意义，需要先判断 {@link #isNull(int)}
+     */
+    public int getCode(int index) {
+        return codes[index];
+    }
+
+    public int dictionarySize() {
+        return dictionary == null ? 0 : dictionary.size();
+    }
+
+    public String dictionaryValue(int code) {
+        return dictionary.get(code);
+    }
+
+    @Override
+    public Object get(int index) {
+        return getString(index);
+    }
+
+    @Override
+    public String getString(int index) {
+        if (isNull(index)) {
+            return null;
+        }
+        return plain != null ? plain[index] : dictionary.get(codes[index]);
+    }
+
+    @Override
+    public boolean accepts(Object value) {
+        return value instanceof String;
+    }
+
+    @Override
+    public void append(Object value) {
+        if (value == null) {
+            appendNull();
+        } else {
+            appendString(value.toString());
+        }
+    }
+
+    public void appendString(String value) {
+        if (value == null) {
+            appendNull();
+            return;
+        }
+        ensureCapacity(size + 1);
+        if (plain != null) {
+            plain[size++] = value;
+        } else {
+            codes[size++] = encode(value);
+            if (dictionary.size() > DICTIONARY_LIMIT && dictionary.size() > size / 2) {
+                abandonDictionary();
+            }
+        }
+    }
+
+    @Override
+    public void set(int index, Object value) {
+        if (value == null) {
+            nulls.set(index);
+            return;
+        }
+        nulls.clear(index);
+        if (plain != null) {
+            plain[index] = value.toString();
+        } else {
+            codes[index] = encode(value.toString());
+        }
+    }
+
+    @Override
+    public long estimatedBytes() {
+        long bytes = 16 + nullsBytes();
+        if (plain != null) {
+            bytes += (long) plain.length * 8;
+            for (int i = 0; i < size; i++) {
+                bytes += estimateBytes(plain[i]);
+            }
+        } else {
+            bytes += (long) codes.length * 4;
+            for (String value : dictionary) {
+                // 字典值本身和查找表中的引用
+                bytes += estimateBytes(value) + 48;
+            }
+        }
+        return bytes;
+    }
+
+    @Override
+    public void blankToNull() {
+        for (int i = 0; i < size; i++) {
+            if (!isNull(i) && StringUtils.isBlank(getString(i))) {
+                nulls.set(i);
+            }
+        }
+    }
+
+    @Override
+    public boolean hasBlank() {
+        for (int i = 0; i < size; i++) {
+            if (!isNull(i) && StringUtils.isBlank(getString(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected void ensureCapacity(int capacity) {
+        if (plain != null) {
+            if (capacity > plain.length) {
+                plain = Arrays.copyOf(plain, newCapacity(plain.length, capacity));
+            }
+        } else if (capacity > codes.length) {
+            codes = Arrays.copyOf(codes, newCapacity(codes.length, capacity));
+        }
+    }
+
+    private int encode(String value) {
+        if (lookup == null) {
+            lookup = new HashMap<>();
+            for (int i = 0; i < dictionary.size(); i++) {
+                lookup.put(dictionary.get(i), i);
+            }
+        }
+        Integer code = lookup.get(value);
+        if (code == null) {
+            code = dictionary.size();
+            dictionary.add(value);
+            lookup.put(value, code);
+        }
+        return code;
+    }
+
+    private void abandonDictionary() {
+        String[] values = new String[codes.length];
+        for (int i = 0; i < size; i++) {
+            if (!isNull(i)) {
+                values[i] = dictionary.get(codes[i]);
+            }
+        }
+        plain = values;
+        codes = null;
+        dictionary = null;
+        lookup = null;
+    }
+}
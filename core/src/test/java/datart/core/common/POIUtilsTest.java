@@ -0,0 +1,54 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package datart.core.common;
+
+import datart.core.base.consts.ValueType;
+import datart.core.data.provider.vector.DoubleVector;
+import datart.core.data.provider.vector.ObjectVector;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class POIUtilsTest {
+
+    @Test
+    void testDoubleCellIsPlain() {
+        DoubleVector vector = new DoubleVector();
+        vector.appendDouble(1.0E10);
+        vector.appendDouble(0.00001);
+        vector.appendDouble(3.0);
+        vector.appendDouble(Double.NaN);
+        vector.appendNull();
+        assertEquals("10000000000", POIUtils.cellString(vector, 0));
+        assertEquals("0.00001", POIUtils.cellString(vector, 1));
+        assertEquals("3.0", POIUtils.cellString(vector, 2));
+        assertEquals("NaN", POIUtils.cellString(vector, 3));
+        assertNull(POIUtils.cellString(vector, 4));
+    }
+
+    @Test
+    void testDecimalCellKeepsValue() {
+        ObjectVector vector = new ObjectVector(ValueType.NUMERIC, 1);
+        vector.append(new BigDecimal("12345678901234567.89"));
+        assertEquals("12345678901234567.89", POIUtils.cellString(vector, 0));
+    }
+
+}
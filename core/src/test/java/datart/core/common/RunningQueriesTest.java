@@ -0,0 +1,119 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package datart.core.common;
+
+import datart.core.base.exception.BaseException;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Statement;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RunningQueriesTest {
+
+    @Test
+    void testCancelByOwner() {
+        AtomicInteger cancelled = new AtomicInteger();
+        RunningQueries.start("q1", "u1");
+        try {
+            RunningQueries.register(statement(cancelled));
+            assertFalse(RunningQueries.cancel("q1", "u2"));
+            assertEquals(0, cancelled.get());
+            assertTrue(RunningQueries.cancel("q1", "u1"));
+            assertEquals(1, cancelled.get());
+            assertTrue(RunningQueries.isCancelled());
+            // 取消后开始执行的 Statement 直接取消
+            RunningQueries.register(statement(cancelled));
+            assertEquals(2, cancelled.get());
+        } finally {
+            RunningQueries.finish();
+        }
+        assertFalse(RunningQueries.isCancelled());
+        assertFalse(RunningQueries.cancel("q1", "u1"));
+    }
+
+    @Test
+    void testDuplicateQueryId() throws Exception {
+        RunningQueries.start("q2", "u1");
+        try {
+            assertThrows(BaseException.class, () -> RunningQueries.start("q2", "u1"));
+            // 不同用户可以使用相同的 id
+            CompletableFuture.runAsync(() -> {
+                RunningQueries.start("q2", "u2");
+                RunningQueries.finish();
+            }).get();
+            assertTrue(RunningQueries.cancel("q2", "u1"));
+        } finally {
+            RunningQueries.finish();
+        }
+    }
+
+    @Test
+    void testFinishCancelsRemainingStatements() {
+        AtomicInteger cancelled = new AtomicInteger();
+        RunningQueries.start("q3", "u1");
+        Statement finished = statement(cancelled);
+        RunningQueries.register(finished);
+        RunningQueries.unregister(finished);
+        RunningQueries.register(statement(cancelled));
+        RunningQueries.finish();
+        assertEquals(1, cancelled.get());
+        assertNull(RunningQueries.current());
+    }
+
+    @Test
+    void testBindSubQuery() throws Exception {
+        AtomicInteger cancelled = new AtomicInteger();
+        RunningQueries.start("q4", "u1");
+        try {
+            String queryId = RunningQueries.current();
+            CompletableFuture.runAsync(() -> {
+                RunningQueries.bind(queryId);
+                try {
+                    RunningQueries.register(statement(cancelled));
+                } finally {
+                    RunningQueries.unbind();
+                }
+            }).get();
+            assertTrue(RunningQueries.cancel("q4", "u1"));
+            assertEquals(1, cancelled.get());
+        } finally {
+            RunningQueries.finish();
+        }
+    }
+
+    private static Statement statement(AtomicInteger cancelled) {
+        return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class[]{Statement.class}, (proxy, method, args) -> {
+            if ("cancel".equals(method.getName())) {
+                cancelled.incrementAndGet();
+            }
+            if ("hashCode".equals(method.getName())) {
+                return System.identityHashCode(proxy);
+            }
+            if ("equals".equals(method.getName())) {
+                return proxy == args[0];
+            }
+            return null;
+        });
+    }
+
+}
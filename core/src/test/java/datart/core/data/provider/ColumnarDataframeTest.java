@@ -0,0 +1,92 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package datart.core.data.provider;
+
+import datart.core.base.consts.ValueType;
+import datart.core.data.provider.vector.DoubleVector;
+import datart.core.data.provider.vector.LongVector;
+import datart.core.data.provider.vector.ObjectVector;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ColumnarDataframeTest {
+
+    @Test
+    void testDoubleVectorAcceptsOnlyFloatingPoint() {
+        DoubleVector vector = new DoubleVector();
+        assertTrue(vector.accepts(1.5D));
+        assertFalse(vector.accepts(1.5F));
+        assertFalse(vector.accepts(1L));
+        assertFalse(vector.accepts(1));
+        assertFalse(vector.accepts(new BigDecimal("0.1")));
+    }
+
+    @Test
+    void testDecimalPromotesToObjectVector() {
+        List<Column> columns = Collections.singletonList(new Column("n", ValueType.NUMERIC));
+        BigDecimal decimal = new BigDecimal("12345678901234567.89");
+        ColumnarDataframe dataframe = ColumnarDataframe.fromRows(columns, Arrays.asList(
+                Collections.singletonList(1.5D),
+                Collections.singletonList(decimal),
+                Collections.singletonList(Long.MAX_VALUE)));
+        assertTrue(dataframe.vector(0) instanceof ObjectVector);
+        assertEquals(1.5D, dataframe.getValue(0, 0));
+        assertEquals(decimal, dataframe.getValue(1, 0));
+        assertEquals(Long.MAX_VALUE, dataframe.getValue(2, 0));
+    }
+
+    @Test
+    void testLongVectorRejectsScaledDecimal() {
+        LongVector vector = new LongVector();
+        assertTrue(vector.accepts(new BigDecimal("5")));
+        assertTrue(vector.accepts(new BigDecimal("5E+2")));
+        assertFalse(vector.accepts(new BigDecimal("5.00")));
+        assertFalse(vector.accepts(new BigDecimal("5.5")));
+    }
+
+    @Test
+    void testWithoutBlanksKeepsOriginal() {
+        List<Column> columns = Arrays.asList(new Column("s", ValueType.STRING), new Column("n", ValueType.NUMERIC));
+        ColumnarDataframe clean = ColumnarDataframe.fromRows(columns, Collections.singletonList(Arrays.asList("a", 1D)));
+        assertSame(clean, clean.withoutBlanks());
+
+        ColumnarDataframe dataframe = ColumnarDataframe.fromRows(columns, Arrays.asList(Arrays.asList("a", 1D), Arrays.asList(" ", 2D)));
+        ColumnarDataframe copy = dataframe.withoutBlanks();
+        assertNotSame(dataframe, copy);
+        assertNull(copy.getValue(1, 0));
+        assertEquals("a", copy.getValue(0, 0));
+        assertSame(dataframe.vector(1), copy.vector(1));
+        assertEquals(" ", dataframe.getValue(1, 0));
+    }
+
+    @Test
+    void testFloatKeepsOriginalValue() {
+        List<Column> columns = Collections.singletonList(new Column("n", ValueType.NUMERIC));
+        ColumnarDataframe dataframe = ColumnarDataframe.fromRows(columns, Collections.singletonList(Collections.singletonList(1.1F)));
+        assertEquals(1.1F, dataframe.getValue(0, 0));
+        assertEquals("1.1", String.valueOf(dataframe.getValue(0, 0)));
+    }
+
+}
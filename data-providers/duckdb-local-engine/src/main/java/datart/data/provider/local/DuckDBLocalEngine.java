@@ -0,0 +1,280 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datart.data.provider.local;
+
+import datart.core.base.consts.ValueType;
+import datart.core.data.provider.Column;
+import datart.core.data.provider.ColumnarDataframe;
+import datart.core.data.provider.Dataframe;
+import datart.core.data.provider.ExecuteParam;
+import datart.core.data.provider.QueryScript;
+import datart.core.data.provider.vector.ColumnVector;
+import datart.core.data.provider.vector.DoubleVector;
+import datart.core.data.provider.vector.LongVector;
+import datart.data.provider.calcite.dialect.DuckDBDialect;
+import datart.data.provider.jdbc.SqlScriptRender;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.calcite.sql.SqlDialect;
+import org.apache.commons.collections4.MapUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.duckdb.DuckDBAppender;
+import org.duckdb.DuckDBConnection;
+
+import java.math.BigDecimal;
+import java.sql.*;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 基于嵌入式 DuckDB 的本地引擎：列式存储、向量化并且多线程执行聚合。
+ * 每次查询使用独立的内存数据库，数据通过 Appender 批量写入。
+ * 查询脚本中的反引号会转换为双引号，以兼容按H2(MySQL模式)编写的视图SQL。
+ */
+@Slf4j
+public class DuckDBLocalEngine implements LocalEngine {
+
+    public static final String NAME = "duckdb";
+
+    private static final String URL = "jdbc:duckdb:";
+
+    private static final SqlDialect SQL_DIALECT = new DuckDBDialect();
+
+    static {
+        try {
+            Class.forName("org.duckdb.DuckDBDriver");
+        } catch (ClassNotFoundException e) {
+            log.error("DuckDB driver not found", e);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Dataframe execute(QueryScript queryScript, ExecuteParam executeParam, List<Dataframe> srcData) throws Exception {
+        try (DuckDBConnection connection = (DuckDBConnection) DriverManager.getConnection(URL)) {
+            for (Dataframe dataframe : srcData) {
+                register(connection, dataframe);
+            }
+            QueryScript script = new QueryScript();
+            script.setSourceId(queryScript.getSourceId());
+            script.setViewId(queryScript.getViewId());
+            script.setVariables(queryScript.getVariables() == null ? Collections.emptyList() : queryScript.getVariables());
+            script.setScript(toDoubleQuote(queryScript.getScript()));
+            script.setSchema(queryScript.getSchema());
+            if (MapUtils.isNotEmpty(script.getSchema())) {
+                script = applySchema(connection, script);
+            }
+            return LocalDB.executeQuery(connection, script, executeParam, SQL_DIALECT);
+        }
+    }
+
+    private static void register(DuckDBConnection connection, Dataframe dataframe) throws SQLException {
+        List<Column> columns = dataframe.getColumns();
+        List<String> definitions = new ArrayList<>();
+        for (Column column : columns) {
+            definitions.add(quote(column.getName()) + " " + sqlType(column.getType()));
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE " + quote(dataframe.getName()) + " (" + String.join(",", definitions) + ")");
+        }
+        try (DuckDBAppender appender = connection.createAppender(DuckDBConnection.DEFAULT_SCHEMA, dataframe.getName())) {
+            if (dataframe instanceof ColumnarDataframe) {
+                ColumnarDataframe columnar = (ColumnarDataframe) dataframe;
+                for (int row = 0; row < columnar.rowCount(); row++) {
+                    appender.beginRow();
+                    for (int i = 0; i < columns.size(); i++) {
+                        ColumnVector vector = columnar.vector(i);
+                        if (vector.isNull(row)) {
+                            appender.append((String) null);
+                        } else if (columns.get(i).getType() == ValueType.NUMERIC
+                                && (vector instanceof DoubleVector || vector instanceof LongVector)) {
+                            appender.append(vector.getDouble(row));
+                        } else {
+                            // 非数值列，以及包含字符串等值而被提升为对象存储的数值列，按值逐个转换
+                            append(appender, columns.get(i).getType(), vector.get(row));
+                        }
+                    }
+                    appender.endRow();
+                }
+            } else if (dataframe.getRows() != null) {
+                for (List<Object> row : dataframe.getRows()) {
+                    appender.beginRow();
+                    for (int i = 0; i < columns.size(); i++) {
+                        append(appender, columns.get(i).getType(), row.get(i));
+                    }
+                    appender.endRow();
+                }
+            }
+        }
+    }
+
+    private static void append(DuckDBAppender appender, ValueType type, Object value) throws SQLException {
+        if (value == null || (value instanceof String && StringUtils.isBlank(value.toString()))) {
+            appender.append((String) null);
+            return;
+        }
+        switch (type == null ? ValueType.STRING : type) {
+            case NUMERIC:
+                if (value instanceof Number) {
+                    appender.append(((Number) value).doubleValue());
+                } else {
+                    BigDecimal number = SchemaCoercions.toNumber(value.toString());
+                    if (number == null) {
+                        appender.append((String) null);
+                    } else {
+                        appender.append(number.doubleValue());
+                    }
+                }
+                break;
+            case DATE:
+                if (value instanceof java.util.Date) {
+                    appender.appendLocalDateTime(toLocalDateTime((java.util.Date) value));
+                } else {
+                    appender.append((String) null);
+                }
+                break;
+            case BOOLEAN:
+                appender.append(Boolean.parseBoolean(value.toString()));
+                break;
+            default:
+                appender.append(value.toString());
+        }
+    }
+
+    private static LocalDateTime toLocalDateTime(java.util.Date date) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(date.getTime()), ZoneId.systemDefault());
+    }
+
+    private static String sqlType(ValueType type) {
+        if (type == null) {
+            return "VARCHAR";
+        }
+        switch (type) {
+            case NUMERIC:
+                return "DOUBLE";
+            case DATE:
+                return "TIMESTAMP";
+            case BOOLEAN:
+                return "BOOLEAN";
+            default:
+                return "VARCHAR";
+        }
+    }
+
+    /**
+     * 在视图查询外包一层类型转换，规则与H2引擎中的转换函数一致
+     */
+    private static QueryScript applySchema(Connection connection, QueryScript queryScript) throws Exception {
+        String viewSql = new SqlScriptRender(queryScript, ExecuteParam.empty(), SQL_DIALECT).render(false, false, true);
+        List<String> selects = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(viewSql)) {
+            ResultSetMetaData metaData = statement.getMetaData();
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                String name = metaData.getColumnLabel(i);
+                String quoted = quote(name);
+                Column column = queryScript.getSchema().get(name);
+                if (column == null || column.getType() == null) {
+                    selects.add(quoted);
+                    continue;
+                }
+                switch (column.getType()) {
+                    case STRING:
+                        selects.add("CAST(" + quoted + " AS VARCHAR) AS " + quoted);
+                        break;
+                    case NUMERIC:
+                        selects.add("TRY_CAST(NULLIF(TRIM(CAST(" + quoted + " AS VARCHAR)), '') AS DOUBLE) AS " + quoted);
+                        break;
+                    case DATE:
+                        if (StringUtils.isBlank(column.getFmt())) {
+                            selects.add("TRY_CAST(" + quoted + " AS TIMESTAMP) AS " + quoted);
+                        } else {
+                            selects.add("TRY_STRPTIME(CAST(" + quoted + " AS VARCHAR), '" + toStrftime(column.getFmt()) + "') AS " + quoted);
+                        }
+                        break;
+                    default:
+                        selects.add(quoted);
+                }
+            }
+        }
+        QueryScript coerced = new QueryScript();
+        coerced.setSourceId(queryScript.getSourceId());
+        coerced.setViewId(queryScript.getViewId());
+        coerced.setVariables(Collections.emptyList());
+        coerced.setScript("SELECT " + String.join(",", selects) + " FROM (" + viewSql + ") V_S");
+        return coerced;
+    }
+
+    /**
+     * Java 日期格式转换为 strftime 格式
+     */
+    static String toStrftime(String fmt) {
+        String[][] patterns = {{"yyyy", "%Y"}, {"yy", "%y"}, {"MM", "%m"}, {"dd", "%d"}, {"HH", "%H"}, {"mm", "%M"}, {"ss", "%S"}, {"SSS", "%g"}};
+        StringBuilder builder = new StringBuilder();
+        int i = 0;
+        outer:
+        while (i < fmt.length()) {
+            for (String[] pattern : patterns) {
+                if (fmt.startsWith(pattern[0], i)) {
+                    builder.append(pattern[1]);
+                    i += pattern[0].length();
+                    continue outer;
+                }
+            }
+            char chr = fmt.charAt(i++);
+            if (chr == '%') {
+                builder.append("%%");
+            } else if (chr == '\'') {
+                builder.append("''");
+            } else {
+                builder.append(chr);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 将字符串常量之外的反引号转换为双引号
+     */
+    static String toDoubleQuote(String sql) {
+        if (sql == null || sql.indexOf('`') < 0) {
+            return sql;
+        }
+        StringBuilder builder = new StringBuilder(sql.length());
+        boolean inString = false;
+        for (int i = 0; i < sql.length(); i++) {
+            char chr = sql.charAt(i);
+            if (chr == '\'') {
+                inString = !inString;
+            }
+            builder.append(!inString && chr == '`' ? '"' : chr);
+        }
+        return builder.toString();
+    }
+
+    private static String quote(String name) {
+        return "\"" + name.replace("\"", "\"\"") + "\"";
+    }
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package datart.data.provider.local;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DuckDBLocalEngineTest {
+
+    @Test
+    void testStrftimePatterns() {
+        assertEquals("%Y-%m-%d", DuckDBLocalEngine.toStrftime("yyyy-MM-dd"));
+        assertEquals("%Y-%m-%d %H:%M:%S", DuckDBLocalEngine.toStrftime("yyyy-MM-dd HH:mm:ss"));
+        assertEquals("%Y%m%d%H%M%S.%g", DuckDBLocalEngine.toStrftime("yyyyMMddHHmmss.SSS"));
+        assertEquals("%y/%m/%d", DuckDBLocalEngine.toStrftime("yy/MM/dd"));
+    }
+
+    @Test
+    void testStrftimeEscapes() {
+        assertEquals("%Y%%%m", DuckDBLocalEngine.toStrftime("yyyy%MM"));
+        assertEquals("%Y''T''%H", DuckDBLocalEngine.toStrftime("yyyy'T'HH"));
+        assertEquals("", DuckDBLocalEngine.toStrftime(""));
+    }
+
+    @Test
+    void testDoubleQuoteIdentifiers() {
+        assertEquals("SELECT \"name\", SUM(\"val\") FROM \"t\" GROUP BY \"name\"",
+                DuckDBLocalEngine.toDoubleQuote("SELECT `name`, SUM(`val`) FROM `t` GROUP BY `name`"));
+        assertEquals("SELECT * FROM t", DuckDBLocalEngine.toDoubleQuote("SELECT * FROM t"));
+        assertNull(DuckDBLocalEngine.toDoubleQuote(null));
+    }
+
+    @Test
+    void testDoubleQuoteKeepsStringLiterals() {
+        assertEquals("SELECT \"a\" FROM \"t\" WHERE \"b\" = 'x`y'",
+                DuckDBLocalEngine.toDoubleQuote("SELECT `a` FROM `t` WHERE `b` = 'x`y'"));
+        assertEquals("SELECT \"a\" FROM \"t\" WHERE \"b\" = 'it''s `q`' AND \"c\" = 1",
+                DuckDBLocalEngine.toDoubleQuote("SELECT `a` FROM `t` WHERE `b` = 'it''s `q`' AND `c` = 1"));
+    }
+
+}
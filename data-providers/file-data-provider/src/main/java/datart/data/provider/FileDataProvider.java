@@ -23,6 +23,7 @@ import datart.core.base.exception.BaseException;
 import datart.core.base.exception.Exceptions;
 import datart.core.common.*;
 import datart.core.data.provider.Column;
+import datart.core.data.provider.ColumnarDataframe;
 import datart.core.data.provider.DataProviderSource;
 import datart.core.data.provider.Dataframe;
 import datart.data.provider.jdbc.DataTypeUtils;
@@ -31,10 +32,7 @@ import org.apache.commons.lang3.StringUtils;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Collections;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 @Slf4j
 public class FileDataProvider extends DefaultDataProvider {
@@ -62,15 +60,8 @@ public class FileDataProvider extends DefaultDataProvider {
 
     @Override
     public List<Dataframe> loadFullDataFromSource(DataProviderSource config) throws Exception {
-        Map<String, Object> properties = config.getProperties();
-        List<Map<String, Object>> schemas;
-        if (properties.containsKey(SCHEMAS)) {
-            schemas = (List<Map<String, Object>>) properties.get(SCHEMAS);
-        } else {
-            schemas = Collections.singletonList(properties);
-        }
         LinkedList<Dataframe> dataframes = new LinkedList<>();
-        for (Map<String, Object> schema : schemas) {
+        for (Map<String, Object> schema : getSchemas(config)) {
             String path = schema.get(FILE_PATH).toString();
             FileFormat fileFormat = FileFormat.valueOf(schema.get(FILE_FORMAT).toString().toUpperCase());
             List<Column> columns = parseColumns(schema);
@@ -81,29 +72,116 @@ public class FileDataProvider extends DefaultDataProvider {
         return dataframes;
     }
 
-    private Dataframe loadFromPath(String path, FileFormat format, List<Column> columns) throws IOException {
+    /**
+     * 以文件修改时间作为水位，键为 表名/文件名。目录中只有新增文件时追加新文件的数据，已有文件被修改或删除时全量重建
+     */
+    @Override
+    protected IncrementalData loadIncrementalDataFromSource(DataProviderSource config, Map<String, String> watermarks) throws Exception {
+        Map<String, String> current = currentWatermarks(config);
+        if (current == null || changed(watermarks, current)) {
+            return null;
+        }
+        LinkedList<Dataframe> dataframes = new LinkedList<>();
+        for (Map<String, Object> schema : getSchemas(config)) {
+            String table = schema.get(TABLE).toString();
+            File path = new File(FileUtils.withBasePath(schema.get(FILE_PATH).toString()));
+            if (path.isFile()) {
+                // 文件未修改，没有新增数据
+                continue;
+            }
+            List<File> newFiles = newFiles(table, path, watermarks, current);
+            if (newFiles.isEmpty()) {
+                continue;
+            }
+            FileFormat fileFormat = FileFormat.valueOf(schema.get(FILE_FORMAT).toString().toUpperCase());
+            Dataframe dataframe = loadFromFiles(newFiles, fileFormat, parseColumns(schema));
+            dataframe.setName(table);
+            dataframes.add(dataframe);
+        }
+        return new IncrementalData(dataframes, current);
+    }
 
-        File file = new File(path);
+    /**
+     * 已有文件被修改或删除
+     */
+    static boolean changed(Map<String, String> watermarks, Map<String, String> current) {
+        for (Map.Entry<String, String> entry : watermarks.entrySet()) {
+            if (entry.getKey().contains("/") && !entry.getValue().equals(current.get(entry.getKey()))) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-        if (!file.exists()) {
-            Exceptions.tr(BaseException.class, "message.file.notfound", file.getPath());
+    /**
+     * 目录中的新增文件。只取新水位中记录的文件，水位取得之后才出现的文件留到下一次刷新，避免重复追加
+     */
+    static List<File> newFiles(String table, File dir, Map<String, String> watermarks, Map<String, String> current) {
+        String prefix = table + "/";
+        List<File> files = new LinkedList<>();
+        for (String key : current.keySet()) {
+            if (key.length() > prefix.length() && key.startsWith(prefix) && !watermarks.containsKey(key)) {
+                files.add(new File(dir, key.substring(prefix.length())));
+            }
         }
-        List<List<Object>> values = new LinkedList<>();
-        if (file.isFile()) {
-            values.addAll(loadSingleFile(path, format));
-        } else {
-            File[] files = file.listFiles();
+        files.sort(Comparator.comparing(File::getName));
+        return files;
+    }
+
+    @Override
+    protected Map<String, String> currentWatermarks(DataProviderSource config) {
+        Map<String, String> watermarks = new HashMap<>();
+        for (Map<String, Object> schema : getSchemas(config)) {
+            if (StringUtils.isBlank(schema.getOrDefault(TABLE, "").toString())) {
+                return null;
+            }
+            File file = new File(FileUtils.withBasePath(schema.get(FILE_PATH).toString()));
+            File[] files = file.isDirectory() ? file.listFiles() : new File[]{file};
             if (files == null) {
                 return null;
             }
             for (File f : files) {
-                values.addAll(loadSingleFile(f.getPath(), format));
+                // 单个文件作为表时，文件修改即需要全量重建
+                watermarks.put(schema.get(TABLE) + "/" + (file.isDirectory() ? f.getName() : ""), String.valueOf(f.lastModified()));
             }
         }
+        return watermarks;
+    }
+
+    private List<Map<String, Object>> getSchemas(DataProviderSource config) {
+        Map<String, Object> properties = config.getProperties();
+        if (properties.containsKey(SCHEMAS)) {
+            return (List<Map<String, Object>>) properties.get(SCHEMAS);
+        } else {
+            return Collections.singletonList(properties);
+        }
+    }
+
+    private Dataframe loadFromPath(String path, FileFormat format, List<Column> columns) throws IOException {
+
+        File file = new File(path);
+
+        if (!file.exists()) {
+            Exceptions.tr(BaseException.class, "message.file.notfound", file.getPath());
+        }
+        if (file.isFile()) {
+            return loadFromFiles(Collections.singletonList(file), format, columns);
+        }
+        File[] files = file.listFiles();
+        if (files == null) {
+            return null;
+        }
+        return loadFromFiles(Arrays.asList(files), format, columns);
+    }
+
+    private Dataframe loadFromFiles(List<File> files, FileFormat format, List<Column> columns) throws IOException {
+        List<List<Object>> values = new LinkedList<>();
+        for (File f : files) {
+            values.addAll(loadSingleFile(f.getPath(), format));
+        }
 
-        Dataframe dataframe = new Dataframe();
         if (values.size() == 0) {
-            return dataframe;
+            return new Dataframe();
         }
 
         if (columns == null) {
@@ -112,13 +190,12 @@ public class FileDataProvider extends DefaultDataProvider {
             removeHeader(values);
         }
 
-        dataframe.setColumns(columns);
-
         values = parseValues(values, columns);
 
-        dataframe.setRows(values);
-
-        return dataframe;
+        // 加载时转为列存储，本地查询直接使用，不再逐次复制
+        ColumnarDataframe columnar = ColumnarDataframe.fromRows(columns, values);
+        columnar.blankToNull();
+        return columnar;
     }
 
 
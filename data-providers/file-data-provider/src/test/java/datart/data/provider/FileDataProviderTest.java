@@ -0,0 +1,78 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package datart.data.provider;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileDataProviderTest {
+
+    @Test
+    void testNewFilesOnlyFromCurrentWatermarks() throws Exception {
+        File dir = Files.createTempDirectory("datart-file-source").toFile();
+        try {
+            for (String name : Arrays.asList("a.csv", "b.csv", "c.csv", "d.csv")) {
+                assertTrue(new File(dir, name).createNewFile());
+            }
+            Map<String, String> watermarks = watermarks("t/a.csv", "1");
+            // d.csv 在取得水位之后才出现，留到下一次刷新
+            Map<String, String> current = watermarks("t/a.csv", "1", "t/c.csv", "3", "t/b.csv", "2", "other/e.csv", "5");
+            List<String> names = FileDataProvider.newFiles("t", dir, watermarks, current)
+                    .stream()
+                    .map(File::getName)
+                    .collect(Collectors.toList());
+            assertEquals(Arrays.asList("b.csv", "c.csv"), names);
+            assertEquals(dir, FileDataProvider.newFiles("t", dir, watermarks, current).get(0).getParentFile());
+            assertTrue(FileDataProvider.newFiles("t", dir, current, current).isEmpty());
+        } finally {
+            for (File file : Objects.requireNonNull(dir.listFiles())) {
+                file.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    @Test
+    void testChanged() {
+        Map<String, String> watermarks = watermarks("t/a.csv", "1", "s/", "7", "cached_max", "100");
+        // 只新增文件
+        assertFalse(FileDataProvider.changed(watermarks, watermarks("t/a.csv", "1", "t/b.csv", "2", "s/", "7")));
+        // 已有文件被修改
+        assertTrue(FileDataProvider.changed(watermarks, watermarks("t/a.csv", "2", "s/", "7")));
+        // 已有文件被删除
+        assertTrue(FileDataProvider.changed(watermarks, watermarks("t/b.csv", "2", "s/", "7")));
+        // 单个文件作为表时被修改
+        assertTrue(FileDataProvider.changed(watermarks, watermarks("t/a.csv", "1", "s/", "8")));
+    }
+
+    private static Map<String, String> watermarks(String... entries) {
+        Map<String, String> watermarks = new HashMap<>();
+        for (int i = 0; i < entries.length; i += 2) {
+            watermarks.put(entries[i], entries[i + 1]);
+        }
+        return watermarks;
+    }
+
+}
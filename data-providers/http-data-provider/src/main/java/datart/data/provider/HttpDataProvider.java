@@ -64,6 +64,8 @@ public class HttpDataProvider extends DefaultDataProvider {
 
     private static final String CONTENT_TYPE = "contentType";
 
+    private static final String INCREMENTAL_PARAM = "incrementalParam";
+
     private static final String I18N_PREFIX = "config.template.http.";
 
     private final static ObjectMapper MAPPER;
@@ -99,6 +101,44 @@ public class HttpDataProvider extends DefaultDataProvider {
         return dataframes;
     }
 
+    /**
+     * 将缓存表中水位列的最大值作为查询参数传给接口，由接口只返回新增的数据
+     */
+    @Override
+    protected IncrementalData loadIncrementalDataFromSource(DataProviderSource config, Map<String, String> watermarks) throws Exception {
+        if (StringUtils.isBlank(getIncrementalColumn(config))) {
+            return null;
+        }
+        List<Map<String, Object>> schemas;
+        if (config.getProperties().containsKey(SCHEMAS)) {
+            schemas = (List<Map<String, Object>>) config.getProperties().get(SCHEMAS);
+        } else {
+            schemas = Collections.singletonList(config.getProperties());
+        }
+        LinkedList<Dataframe> dataframes = new LinkedList<>();
+        for (Map<String, Object> schema : schemas) {
+            Object param = schema.getOrDefault(INCREMENTAL_PARAM, config.getProperties().get(INCREMENTAL_PARAM));
+            String table = schema.getOrDefault(TABLE, "").toString();
+            if (param == null || StringUtils.isBlank(param.toString()) || !watermarks.containsKey(table)) {
+                return null;
+            }
+            HttpRequestParam httpRequestParam = convert2RequestParam(schema);
+            Map<String, String> queryParam = new HashMap<>();
+            if (httpRequestParam.getQueryParam() != null) {
+                queryParam.putAll(httpRequestParam.getQueryParam());
+            }
+            queryParam.put(param.toString(), watermarks.get(table));
+            httpRequestParam.setQueryParam(queryParam);
+            Dataframe dataframe = new HttpDataFetcher(httpRequestParam).fetchAndParse();
+            if (CollectionUtils.isEmpty(dataframe.getRows())) {
+                continue;
+            }
+            dataframe.setName(table);
+            dataframes.add(dataframe);
+        }
+        return new IncrementalData(dataframes, null);
+    }
+
     @Override
     public String getConfigFile() {
         return "http-data-provider.json";
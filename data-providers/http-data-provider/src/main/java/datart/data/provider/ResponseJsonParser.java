@@ -24,6 +24,7 @@ import datart.core.base.consts.ValueType;
 import datart.core.base.exception.BaseException;
 import datart.core.base.exception.Exceptions;
 import datart.core.data.provider.Column;
+import datart.core.data.provider.ColumnarDataframe;
 import datart.core.data.provider.Dataframe;
 import datart.data.provider.jdbc.DataTypeUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -62,17 +63,14 @@ public class ResponseJsonParser implements HttpResponseParser {
                 Exceptions.tr(BaseException.class, "message.provider.http.property.miss", targetPropertyName);
             }
         }
-        Dataframe dataframe = new Dataframe();
         if (array == null || array.size() == 0) {
-            return dataframe;
+            return new Dataframe();
         }
 
         if (CollectionUtils.isEmpty(columns)) {
             columns = getSchema(array.getJSONObject(0));
         }
 
-        dataframe.setColumns(columns);
-
         List<List<Object>> rows = array.toJavaList(JSONObject.class).parallelStream()
                 .map(item -> {
                     return item.keySet()
@@ -85,8 +83,10 @@ public class ResponseJsonParser implements HttpResponseParser {
                                 return val;
                             }).collect(Collectors.toList());
                 }).collect(Collectors.toList());
-        dataframe.setRows(rows);
-        return dataframe;
+        // 加载时转为列存储，本地查询直接使用，不再逐次复制
+        ColumnarDataframe columnar = ColumnarDataframe.fromRows(columns, rows);
+        columnar.blankToNull();
+        return columnar;
     }
 
     private ArrayList<Column> getSchema(JSONObject jsonObject) {
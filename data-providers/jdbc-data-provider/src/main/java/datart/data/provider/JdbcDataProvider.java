@@ -1,15 +1,19 @@
 package datart.data.provider;
 
+import com.alibaba.druid.pool.DruidAbstractDataSource;
+import com.alibaba.druid.pool.DruidDataSourceFactory;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.PropertyNamingStrategy;
 import datart.core.base.exception.Exceptions;
+import datart.core.common.Application;
 import datart.core.common.FileUtils;
 import datart.core.common.MessageResolver;
 import datart.core.data.provider.*;
 import datart.data.provider.base.DataProviderException;
 import datart.data.provider.jdbc.JdbcDriverInfo;
 import datart.data.provider.jdbc.JdbcProperties;
+import datart.data.provider.jdbc.RoutingPolicy;
 import datart.data.provider.calcite.SqlParserUtils;
 import datart.data.provider.calcite.dialect.SqlStdOperatorSupport;
 import datart.data.provider.jdbc.DataSourceFactory;
@@ -27,7 +31,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.sql.SQLException;
 import java.util.*;
-import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -51,8 +56,22 @@ public class JdbcDataProvider extends DataProvider {
 
     public static final String ENABLE_SPECIAL_SQL = "enableSpecialSQL";
 
+    public static final String QUERY_TIMEOUT = "queryTimeout";
+
+    public static final String BIND_VARIABLES = "bindVariables";
+
+    public static final String FETCH_SIZE = "fetchSize";
+
+    public static final String REPLICAS = "replicas";
+
+    public static final String ROUTING_POLICY = "routingPolicy";
+
+    private static final String DEFAULT_QUERY_TIMEOUT = "datart.jdbc.query-timeout";
+
     private static final String I18N_PREFIX = "config.template.jdbc.";
 
+    private static final String HEALTH_CHECK_INTERVAL = "datart.jdbc.health.interval";
+
     /**
      * 获取连接时最大等待时间（毫秒）
      */
@@ -60,6 +79,8 @@ public class JdbcDataProvider extends DataProvider {
 
     private final Map<String, JdbcDataProviderAdapter> cachedProviders = new ConcurrentSkipListMap<>();
 
+    private final AtomicBoolean healthCheckerStarted = new AtomicBoolean();
+
     @Override
     public Object test(DataProviderSource source) {
         JdbcProperties jdbcProperties = conv2JdbcProperties(source);
@@ -84,6 +105,14 @@ public class JdbcDataProvider extends DataProvider {
         return adapter.readTableColumn(database, table);
     }
 
+    @Override
+    public void refreshMetadata(DataProviderSource source) {
+        JdbcDataProviderAdapter adapter = cachedProviders.get(source.getSourceId());
+        if (adapter != null) {
+            adapter.refreshMetadata();
+        }
+    }
+
     @Override
     public Dataframe execute(DataProviderSource source, QueryScript script, ExecuteParam executeParam) throws Exception {
         return matchProviderAdapter(source).execute(script, executeParam);
@@ -122,6 +151,38 @@ public class JdbcDataProvider extends DataProvider {
             jdbcProperties.setEnableSpecialSql(true);
         }
 
+        Object queryTimeout = config.getProperties().get(QUERY_TIMEOUT);
+        if (queryTimeout != null && StringUtils.isNotBlank(queryTimeout.toString())) {
+            jdbcProperties.setQueryTimeout(Integer.parseInt(queryTimeout.toString()));
+        } else {
+            jdbcProperties.setQueryTimeout(Integer.parseInt(Application.getProperty(DEFAULT_QUERY_TIMEOUT, "0")));
+        }
+
+        Object fetchSize = config.getProperties().get(FETCH_SIZE);
+        if (fetchSize != null && StringUtils.isNotBlank(fetchSize.toString())) {
+            jdbcProperties.setFetchSize(Integer.parseInt(fetchSize.toString()));
+        }
+
+        Object bindVariables = config.getProperties().get(BIND_VARIABLES);
+        if (bindVariables != null && "true".equals(bindVariables.toString())) {
+            jdbcProperties.setBindVariables(true);
+        }
+
+        Object replicas = config.getProperties().get(REPLICAS);
+        if (replicas instanceof List) {
+            for (Object replica : (List<?>) replicas) {
+                Object url = replica instanceof Map ? ((Map<?, ?>) replica).get(URL) : replica;
+                if (url != null && StringUtils.isNotBlank(url.toString())) {
+                    jdbcProperties.getReplicas().add(url.toString().trim());
+                }
+            }
+        }
+
+        Object routingPolicy = config.getProperties().get(ROUTING_POLICY);
+        if (routingPolicy != null && StringUtils.isNotBlank(routingPolicy.toString())) {
+            jdbcProperties.setRoutingPolicy(RoutingPolicy.valueOf(routingPolicy.toString().toUpperCase()));
+        }
+
         Object properties = config.getProperties().get("properties");
         if (properties != null) {
             if (properties instanceof Map) {
@@ -141,9 +202,58 @@ public class JdbcDataProvider extends DataProvider {
         }
         adapter = ProviderFactory.createDataProvider(conv2JdbcProperties(source), true);
         cachedProviders.put(source.getSourceId(), adapter);
+        startHealthChecker();
         return adapter;
     }
 
+    /**
+     * 后台定时检查已使用的数据源，更新熔断状态并发布健康状态
+     */
+    private void startHealthChecker() {
+        long interval = Long.parseLong(Application.getProperty(HEALTH_CHECK_INTERVAL, "30"));
+        if (interval <= 0 || !healthCheckerStarted.compareAndSet(false, true)) {
+            return;
+        }
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "jdbc-health-checker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::checkHealth, interval, interval, TimeUnit.SECONDS);
+    }
+
+    private void checkHealth() {
+        for (Map.Entry<String, JdbcDataProviderAdapter> entry : cachedProviders.entrySet()) {
+            try {
+                entry.getValue().checkHealth();
+            } catch (Exception e) {
+                log.warn("health check of source " + entry.getKey() + " failed", e);
+            }
+        }
+    }
+
+    /**
+     * 连接池 maxActive 的一半：一个查询可能同时占用分页查询和总数查询两个连接，其余连接留给元数据等请求
+     */
+    @Override
+    public Integer defaultConcurrency(DataProviderSource source) {
+        Object properties = source.getProperties() == null ? null : source.getProperties().get("properties");
+        Object maxActive = properties instanceof Map ? ((Map<?, ?>) properties).get(DruidDataSourceFactory.PROP_MAXACTIVE) : null;
+        int poolSize = maxActive == null || StringUtils.isBlank(maxActive.toString())
+                ? DruidAbstractDataSource.DEFAULT_MAX_ACTIVE_SIZE
+                : Integer.parseInt(maxActive.toString().trim());
+        return Math.max(1, poolSize / 2);
+    }
+
+    @Override
+    public Map<String, Object> health() {
+        Map<String, Object> health = new HashMap<>();
+        for (Map.Entry<String, JdbcDataProviderAdapter> entry : cachedProviders.entrySet()) {
+            health.put(entry.getKey(), entry.getValue().health());
+        }
+        return health;
+    }
+
     @Override
     public Set<StdSqlOperator> supportedStdFunctions(DataProviderSource source) {
 
@@ -0,0 +1,189 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datart.data.provider.jdbc;
+
+import datart.core.base.exception.Exceptions;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * 数据源熔断。连续无法建立到数据源的连接，或校验查询的耗时持续过长时熔断，熔断期间直接失败，不再等待连接池的获取超时。
+ * 连接池已满导致的等待超时是负载问题而不是数据源故障，不计入失败。
+ * 熔断一段时间后进入半开状态，由一个请求执行校验查询探测数据源，成功后恢复，失败则继续熔断。
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+
+    private final long slowThresholdMillis;
+
+    private final long openMillis;
+
+    /**
+     * 最近的校验查询耗时(毫秒)，中位数超过阈值时熔断
+     */
+    private final long[] latencies;
+
+    private int latencyCount;
+
+    private int latencyIndex;
+
+    private State state = State.CLOSED;
+
+    private int consecutiveFailures;
+
+    private long openedAt;
+
+    private String lastError;
+
+    private long lastCheckTime;
+
+    private boolean lastCheckSuccess = true;
+
+    public CircuitBreaker(int failureThreshold, long slowThresholdMillis, long openMillis, int latencyWindow) {
+        this.failureThreshold = failureThreshold;
+        this.slowThresholdMillis = slowThresholdMillis;
+        this.openMillis = openMillis;
+        this.latencies = new long[Math.max(latencyWindow, 1)];
+    }
+
+    /**
+     * 获取连接前调用。熔断期间直接失败；熔断时间结束后，第一个请求执行探测，其它请求在探测完成前直接失败
+     *
+     * @param probe 探测数据源，返回校验查询的耗时(毫秒)，不可用时抛出异常
+     */
+    public void acquire(Callable<Long> probe) {
+        synchronized (this) {
+            if (state == State.CLOSED) {
+                return;
+            }
+            if (state == State.HALF_OPEN || currentTimeMillis() - openedAt < openMillis) {
+                Exceptions.msg("message.provider.source.unavailable");
+            }
+            state = State.HALF_OPEN;
+        }
+        if (!probe(probe)) {
+            Exceptions.msg("message.provider.source.unavailable");
+        }
+    }
+
+    /**
+     * 执行探测并更新状态，健康检查也通过该方法探测。探测成功时记录耗时
+     */
+    public boolean probe(Callable<Long> probe) {
+        String error = null;
+        long latency = 0;
+        try {
+            latency = probe.call();
+        } catch (Exception e) {
+            error = e.getMessage() == null ? e.getClass().getName() : e.getMessage();
+        }
+        synchronized (this) {
+            lastCheckTime = currentTimeMillis();
+            lastCheckSuccess = error == null;
+            if (error == null) {
+                close();
+                recordLatency(latency);
+            } else {
+                lastError = error;
+                if (state != State.CLOSED || ++consecutiveFailures >= failureThreshold) {
+                    open();
+                }
+            }
+        }
+        return error == null;
+    }
+
+    /**
+     * 成功建立或取得连接
+     */
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+    }
+
+    /**
+     * 无法建立到数据源的连接。连接池等待超时等与数据源无关的失败不应调用
+     */
+    public synchronized void onFailure(Exception e) {
+        lastError = e.getMessage();
+        if (state == State.CLOSED && ++consecutiveFailures >= failureThreshold) {
+            open();
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("state", state);
+        status.put("consecutiveFailures", consecutiveFailures);
+        status.put("p50", percentile(0.5));
+        status.put("p95", percentile(0.95));
+        status.put("lastCheckTime", lastCheckTime);
+        status.put("lastCheckSuccess", lastCheckSuccess);
+        status.put("lastError", lastError);
+        return status;
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private void recordLatency(long latencyMillis) {
+        latencies[latencyIndex] = latencyMillis;
+        latencyIndex = (latencyIndex + 1) % latencies.length;
+        latencyCount = Math.min(latencyCount + 1, latencies.length);
+        if (latencyCount == latencies.length && percentile(0.5) >= slowThresholdMillis) {
+            lastError = "slow validation query, p50 " + percentile(0.5) + "ms";
+            open();
+        }
+    }
+
+    synchronized long percentile(double p) {
+        if (latencyCount == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(latencies, latencyCount);
+        Arrays.sort(sorted);
+        return sorted[(int) Math.ceil(p * latencyCount) - 1];
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = currentTimeMillis();
+        latencyCount = 0;
+        latencyIndex = 0;
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+    }
+
+}
@@ -20,6 +20,7 @@ package datart.data.provider.jdbc;
 
 import com.alibaba.druid.pool.DruidDataSource;
 import com.alibaba.druid.pool.DruidDataSourceFactory;
+import datart.core.common.Application;
 import datart.data.provider.JdbcDataProvider;
 import lombok.extern.slf4j.Slf4j;
 
@@ -29,6 +30,8 @@ import java.util.Properties;
 @Slf4j
 public class DataSourceFactoryDruidImpl implements DataSourceFactory<DruidDataSource> {
 
+    private static final String MAX_OPEN_PREPARED_STATEMENTS = "datart.jdbc.bind.max-open-prepared-statements";
+
     @Override
     public DruidDataSource createDataSource(JdbcProperties jdbcProperties) throws Exception {
         Properties properties = configDataSource(jdbcProperties);
@@ -69,6 +72,13 @@ public class DataSourceFactoryDruidImpl implements DataSourceFactory<DruidDataSo
 //        pro.setProperty("druid.wall.multiStatementAllow", "true");
 //        pro.setProperty("druid.failFast", "true");
 
+        // prepared statement cache
+        if (properties.isBindVariables()) {
+            pro.setProperty(DruidDataSourceFactory.PROP_POOLPREPAREDSTATEMENTS, "true");
+            pro.setProperty(DruidDataSourceFactory.PROP_MAXOPENPREPAREDSTATEMENTS,
+                    Application.getProperty(MAX_OPEN_PREPARED_STATEMENTS, "100"));
+        }
+
         //opt config
         pro.putAll(properties.getProperties());
         return pro;
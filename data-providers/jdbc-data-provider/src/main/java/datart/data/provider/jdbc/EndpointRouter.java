@@ -0,0 +1,246 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datart.data.provider.jdbc;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 主库和只读副本之间的查询路由。副本的连接池在第一次使用时创建，获取连接失败的节点在一段时间内不再使用。
+ * 下载和定时任务等后台查询优先使用副本，副本都不可用时使用主库。
+ */
+@Slf4j
+public class EndpointRouter {
+
+    private final JdbcProperties properties;
+
+    private final DataSourceFactory<?> dataSourceFactory;
+
+    private final RoutingPolicy policy;
+
+    private final long ejectMillis;
+
+    /**
+     * 第一个为主库，其余为副本
+     */
+    private final List<Endpoint> endpoints = new ArrayList<>();
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    public EndpointRouter(JdbcProperties properties, DataSource primary, DataSourceFactory<?> dataSourceFactory, long ejectMillis) {
+        this.properties = properties;
+        this.dataSourceFactory = dataSourceFactory;
+        this.policy = properties.getRoutingPolicy() == null ? RoutingPolicy.ROUND_ROBIN : properties.getRoutingPolicy();
+        this.ejectMillis = ejectMillis;
+        endpoints.add(new Endpoint(properties.getUrl(), primary));
+        for (String url : properties.getReplicas()) {
+            endpoints.add(new Endpoint(url, null));
+        }
+    }
+
+    /**
+     * 选择节点并获取连接，获取失败时剔除该节点并尝试其它节点
+     *
+     * @param replicaOnly 是否优先使用副本
+     */
+    public Connection getConnection(boolean replicaOnly) throws SQLException {
+        Set<Endpoint> tried = new HashSet<>();
+        SQLException error = null;
+        Endpoint endpoint;
+        while ((endpoint = select(replicaOnly, tried)) != null) {
+            tried.add(endpoint);
+            try {
+                return endpoint.getConnection();
+            } catch (SQLException e) {
+                log.warn("endpoint {} unavailable, ejected for {}ms", endpoint.url, ejectMillis, e);
+                endpoint.ejectedUntil = System.currentTimeMillis() + ejectMillis;
+                error = e;
+            }
+        }
+        if (error == null) {
+            // 所有节点都已被剔除，仍尝试主库
+            return endpoints.get(0).getConnection();
+        }
+        throw error;
+    }
+
+    private Endpoint select(boolean replicaOnly, Set<Endpoint> tried) {
+        long now = System.currentTimeMillis();
+        List<Endpoint> candidates = new ArrayList<>();
+        for (Endpoint endpoint : endpoints) {
+            if (!tried.contains(endpoint) && endpoint.ejectedUntil <= now) {
+                candidates.add(endpoint);
+            }
+        }
+        if (replicaOnly && candidates.size() > 1) {
+            candidates.remove(endpoints.get(0));
+        }
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        switch (policy) {
+            case LEAST_OUTSTANDING:
+                return Collections.min(candidates, Comparator.comparingInt(e -> e.outstanding.get()));
+            case LATENCY_WEIGHTED:
+                double total = 0;
+                double[] weights = new double[candidates.size()];
+                for (int i = 0; i < candidates.size(); i++) {
+                    weights[i] = 1 / Math.max(candidates.get(i).latency, 1);
+                    total += weights[i];
+                }
+                double random = ThreadLocalRandom.current().nextDouble(total);
+                for (int i = 0; i < candidates.size(); i++) {
+                    random -= weights[i];
+                    if (random < 0) {
+                        return candidates.get(i);
+                    }
+                }
+                return candidates.get(candidates.size() - 1);
+            default:
+                return candidates.get(Math.floorMod(next.getAndIncrement(), candidates.size()));
+        }
+    }
+
+    /**
+     * 对每个节点执行校验查询，可用的节点恢复使用，不可用的节点剔除
+     *
+     * @return 可用节点中最短的校验耗时
+     * @throws SQLException 所有节点都不可用时抛出主库的异常
+     */
+    public long probe(Validator validator) throws SQLException {
+        long latency = Long.MAX_VALUE;
+        SQLException error = null;
+        for (Endpoint endpoint : endpoints) {
+            try {
+                latency = Math.min(latency, validator.validate(endpoint.dataSource()));
+                endpoint.ejectedUntil = 0;
+            } catch (SQLException e) {
+                endpoint.ejectedUntil = System.currentTimeMillis() + ejectMillis;
+                if (error == null) {
+                    error = e;
+                }
+            }
+        }
+        if (latency == Long.MAX_VALUE) {
+            throw error;
+        }
+        return latency;
+    }
+
+    public List<Map<String, Object>> status() {
+        List<Map<String, Object>> status = new ArrayList<>();
+        for (int i = 0; i < endpoints.size(); i++) {
+            Endpoint endpoint = endpoints.get(i);
+            Map<String, Object> item = new LinkedHashMap<>();
+            // 不返回连接地址
+            item.put("name", i == 0 ? "primary" : "replica-" + i);
+            item.put("ejected", endpoint.ejectedUntil > System.currentTimeMillis());
+            item.put("outstanding", endpoint.outstanding.get());
+            item.put("latency", Math.round(endpoint.latency));
+            status.add(item);
+        }
+        return status;
+    }
+
+    /**
+     * 关闭副本的连接池，主库的连接池由数据源自己关闭
+     */
+    public void close() {
+        for (Endpoint endpoint : endpoints.subList(1, endpoints.size())) {
+            if (endpoint.dataSource != null) {
+                dataSourceFactory.destroy(endpoint.dataSource);
+            }
+        }
+    }
+
+    public interface Validator {
+
+        /**
+         * @return 校验耗时(毫秒)
+         */
+        long validate(DataSource dataSource) throws SQLException;
+
+    }
+
+    private class Endpoint {
+
+        private final String url;
+
+        private volatile DataSource dataSource;
+
+        private final AtomicInteger outstanding = new AtomicInteger();
+
+        /**
+         * 连接使用时长的指数加权平均(毫秒)，近似查询耗时
+         */
+        private volatile double latency;
+
+        private volatile long ejectedUntil;
+
+        private Endpoint(String url, DataSource dataSource) {
+            this.url = url;
+            this.dataSource = dataSource;
+        }
+
+        private Connection getConnection() throws SQLException {
+            Connection connection = dataSource().getConnection();
+            outstanding.incrementAndGet();
+            long start = System.currentTimeMillis();
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class[]{Connection.class}, (proxy, method, args) -> {
+                if ("close".equals(method.getName()) && !connection.isClosed()) {
+                    outstanding.decrementAndGet();
+                    long elapsed = System.currentTimeMillis() - start;
+                    latency = latency == 0 ? elapsed : latency * 0.8 + elapsed * 0.2;
+                }
+                try {
+                    return method.invoke(connection, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getTargetException();
+                }
+            });
+        }
+
+        private DataSource dataSource() throws SQLException {
+            if (dataSource == null) {
+                synchronized (this) {
+                    if (dataSource == null) {
+                        JdbcProperties replica = new JdbcProperties();
+                        BeanUtils.copyProperties(properties, replica);
+                        replica.setUrl(url);
+                        try {
+                            dataSource = dataSourceFactory.createDataSource(replica);
+                        } catch (Exception e) {
+                            throw new SQLException("replica data source create failed: " + url, e);
+                        }
+                    }
+                }
+            }
+            return dataSource;
+        }
+    }
+
+}
@@ -0,0 +1,205 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datart.data.provider.jdbc;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+
+/**
+ * 结果集每次往返读取的行数(fetch size)。
+ * 执行前按需要读取的行数和该数据源已观察到的行宽设置，执行后按结果集的实际行宽修正，使每次往返的数据量不超过上限。
+ * 数据源配置了 fetchSize 时固定使用该值。
+ */
+@Slf4j
+public class FetchSizeTuner {
+
+    private static final int MIN_FETCH_SIZE = 10;
+
+    private static final int MAX_FETCH_SIZE = 10_000;
+
+    /**
+     * 无法获取长度的字段按该宽度估算，过长的字段也按该宽度截断
+     */
+    private static final int MAX_COLUMN_WIDTH = 4000;
+
+    /**
+     * MySQL 驱动的逐行读取模式，结果集不在客户端缓存
+     */
+    private static final int MYSQL_STREAMING = Integer.MIN_VALUE;
+
+    private final String dbType;
+
+    private final int fetchSize;
+
+    private final long maxFetchBytes;
+
+    /**
+     * 最近一次查询的估算行宽(字节)，0 为未知
+     */
+    private volatile int rowWidth;
+
+    public FetchSizeTuner(String dbType, int fetchSize, long maxFetchBytes) {
+        this.dbType = dbType == null ? "" : dbType.toUpperCase();
+        this.fetchSize = fetchSize;
+        this.maxFetchBytes = maxFetchBytes;
+    }
+
+    /**
+     * 数据库的默认读取行数，0 为使用驱动的默认值
+     */
+    public static int defaultFetchSize(String dbType) {
+        switch (dbType) {
+            // 驱动默认每次只读取 10 行
+            case "ORACLE":
+            case "DB2":
+                return 500;
+            // 驱动默认一次读取全部结果
+            case "POSTGRESQL":
+                return 1000;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * 执行前设置读取行数
+     *
+     * @param rows   需要读取的行数，未知时为 Long.MAX_VALUE
+     * @param export 是否为大量数据的导出。MySQL 导出时使用逐行读取模式，避免驱动在客户端缓存全部结果
+     */
+    public void beforeExecute(Statement statement, long rows, boolean export) throws SQLException {
+        if (export && fetchSize <= 0 && isMysql()) {
+            statement.setFetchSize(MYSQL_STREAMING);
+            return;
+        }
+        int size = fetchSize(rows, rowWidth);
+        if (size > 0) {
+            statement.setFetchSize(size);
+        }
+    }
+
+    /**
+     * PostgreSQL 驱动只在关闭自动提交时按 fetch size 分批读取，否则执行时就读取全部结果。
+     * 大量数据的读取和保留游标的分页读取在执行前关闭自动提交
+     *
+     * @return 是否关闭了自动提交，归还连接前需要调用 {@link #restoreAutoCommit(Connection)}
+     */
+    public boolean disableAutoCommit(Connection conn) throws SQLException {
+        if (!isPostgresql() || !conn.getAutoCommit()) {
+            return false;
+        }
+        conn.setAutoCommit(false);
+        return true;
+    }
+
+    /**
+     * 结束只读事务并恢复自动提交
+     */
+    public static void restoreAutoCommit(Connection conn) {
+        try {
+            conn.rollback();
+            conn.setAutoCommit(true);
+        } catch (SQLException e) {
+            log.warn("auto commit restore failed", e);
+        }
+    }
+
+    /**
+     * 执行后按结果集的行宽修正读取行数
+     */
+    public void afterExecute(ResultSet rs, long rows) {
+        try {
+            int width = estimateRowWidth(rs.getMetaData());
+            rowWidth = width;
+            if (fetchSize > 0 || rs.getStatement().getFetchSize() == MYSQL_STREAMING) {
+                return;
+            }
+            int size = fetchSize(rows, width);
+            if (size > 0 && size != rs.getFetchSize()) {
+                rs.setFetchSize(size);
+            }
+        } catch (Exception e) {
+            log.debug("fetch size adjust failed", e);
+        }
+    }
+
+    protected int fetchSize(long rows, int width) {
+        if (fetchSize > 0) {
+            return fetchSize;
+        }
+        int defaultSize = defaultFetchSize(dbType);
+        if (rows == Long.MAX_VALUE && defaultSize <= 0) {
+            return 0;
+        }
+        long size;
+        if (width > 0) {
+            size = Math.max(maxFetchBytes / width, MIN_FETCH_SIZE);
+        } else {
+            size = defaultSize > 0 ? defaultSize : MAX_FETCH_SIZE;
+        }
+        size = Math.min(Math.min(size, rows), MAX_FETCH_SIZE);
+        return (int) Math.max(size, 1);
+    }
+
+    protected static int estimateRowWidth(ResultSetMetaData metaData) throws SQLException {
+        int width = 0;
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            switch (metaData.getColumnType(i)) {
+                case Types.BIT:
+                case Types.BOOLEAN:
+                case Types.TINYINT:
+                case Types.SMALLINT:
+                case Types.INTEGER:
+                    width += 4;
+                    break;
+                case Types.BIGINT:
+                case Types.FLOAT:
+                case Types.REAL:
+                case Types.DOUBLE:
+                case Types.DATE:
+                case Types.TIME:
+                case Types.TIMESTAMP:
+                    width += 8;
+                    break;
+                case Types.NUMERIC:
+                case Types.DECIMAL:
+                    width += 16;
+                    break;
+                default:
+                    int size = metaData.getColumnDisplaySize(i);
+                    width += size > 0 ? Math.min(size, MAX_COLUMN_WIDTH) : MAX_COLUMN_WIDTH;
+            }
+        }
+        return width;
+    }
+
+    private boolean isMysql() {
+        return "MYSQL".equals(dbType) || "MARIADB".equals(dbType);
+    }
+
+    private boolean isPostgresql() {
+        return "POSTGRESQL".equals(dbType);
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datart.data.provider.jdbc;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import datart.core.data.provider.Column;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 数据源的库、表、字段信息缓存，避免浏览数据源时每次都读取 DatabaseMetaData。
+ * 缓存在过期时间后重新读取，也可以通过 refresh 立即刷新。数据源修改后随数据源实例一起丢弃。
+ */
+public class SchemaCatalog {
+
+    private static final String DATABASES = "";
+
+    private final Cache<String, Set<String>> databases;
+
+    private final Cache<String, Set<String>> tables;
+
+    /**
+     * 整个库的字段，键为库名，值为 表名 -> 字段
+     */
+    private final Cache<String, Map<String, Set<Column>>> schemaColumns;
+
+    /**
+     * 单表字段（包含外键信息），键为 库名 + 表名
+     */
+    private final Cache<String, Set<Column>> tableColumns;
+
+    public SchemaCatalog(long ttlSeconds) {
+        // ttl 小于等于0时不缓存
+        long maximumSize = ttlSeconds > 0 ? Long.MAX_VALUE : 0;
+        long ttl = Math.max(ttlSeconds, 1);
+        this.databases = CacheBuilder.newBuilder().maximumSize(maximumSize).expireAfterWrite(ttl, TimeUnit.SECONDS).build();
+        this.tables = CacheBuilder.newBuilder().maximumSize(maximumSize).expireAfterWrite(ttl, TimeUnit.SECONDS).build();
+        this.schemaColumns = CacheBuilder.newBuilder().maximumSize(maximumSize).expireAfterWrite(ttl, TimeUnit.SECONDS).build();
+        this.tableColumns = CacheBuilder.newBuilder().maximumSize(maximumSize).expireAfterWrite(ttl, TimeUnit.SECONDS).build();
+    }
+
+    public Set<String> databases(Callable<Set<String>> loader) throws SQLException {
+        return get(databases, DATABASES, loader);
+    }
+
+    public Set<String> tables(String database, Callable<Set<String>> loader) throws SQLException {
+        return get(tables, String.valueOf(database), loader);
+    }
+
+    public Map<String, Set<Column>> schemaColumns(String database, Callable<Map<String, Set<Column>>> loader) throws SQLException {
+        return get(schemaColumns, String.valueOf(database), loader);
+    }
+
+    public Set<Column> tableColumns(String database, String table, Callable<Set<Column>> loader) throws SQLException {
+        return get(tableColumns, database + "." + table, loader);
+    }
+
+    public void refresh() {
+        databases.invalidateAll();
+        tables.invalidateAll();
+        schemaColumns.invalidateAll();
+        tableColumns.invalidateAll();
+    }
+
+    private static <T> T get(Cache<String, T> cache, String key, Callable<T> loader) throws SQLException {
+        try {
+            return cache.get(key, loader);
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SQLException(cause);
+        }
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package datart.data.provider.jdbc;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 后台执行的查询的 Statement 句柄。取消时调用 Statement.cancel() 中止数据库中的查询，
+ * 取消之后才创建的 Statement 在登记时立即取消
+ */
+@Slf4j
+public class StatementHandle {
+
+    private Statement statement;
+
+    private boolean cancelled;
+
+    /**
+     * 登记开始执行的 Statement
+     *
+     * @return 已经取消时返回 false，Statement 已被取消
+     */
+    public boolean attach(Statement statement) {
+        synchronized (this) {
+            if (!cancelled) {
+                this.statement = statement;
+                return true;
+            }
+        }
+        cancel(statement);
+        return false;
+    }
+
+    public synchronized void detach() {
+        statement = null;
+    }
+
+    public void cancel() {
+        Statement running;
+        synchronized (this) {
+            cancelled = true;
+            running = statement;
+            statement = null;
+        }
+        if (running != null) {
+            cancel(running);
+        }
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    private static void cancel(Statement statement) {
+        try {
+            statement.cancel();
+        } catch (SQLException | RuntimeException e) {
+            log.warn("statement cancel error", e);
+        }
+    }
+
+}
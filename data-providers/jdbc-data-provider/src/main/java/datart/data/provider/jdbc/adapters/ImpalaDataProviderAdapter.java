@@ -36,7 +36,7 @@ import java.util.Set;
 public class ImpalaDataProviderAdapter extends JdbcDataProviderAdapter {
 
     @Override
-    public Set<String> readAllTables(String database) throws SQLException {
+    protected Set<String> loadTables(String database) throws SQLException {
         try (Connection conn = getConn()) {
             Set<String> tables = new HashSet<>();
             DatabaseMetaData metadata = conn.getMetaData();
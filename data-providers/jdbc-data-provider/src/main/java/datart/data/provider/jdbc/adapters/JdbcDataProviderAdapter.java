@@ -18,21 +18,37 @@
 
 package datart.data.provider.jdbc.adapters;
 
+import com.alibaba.druid.pool.GetConnectionTimeoutException;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
 import datart.core.base.PageInfo;
 import datart.core.base.consts.Const;
-import datart.core.base.consts.ValueType;
 import datart.core.base.exception.Exceptions;
+import datart.core.common.Application;
 import datart.core.common.BeanUtils;
 import datart.core.common.ReflectUtils;
+import datart.core.common.RunningQueries;
 import datart.core.data.provider.*;
 import datart.data.provider.JdbcDataProvider;
+import datart.data.provider.calcite.SqlBuilder;
 import datart.data.provider.calcite.dialect.CustomSqlDialect;
+import datart.data.provider.jdbc.BindVariables;
+import datart.data.provider.jdbc.CircuitBreaker;
 import datart.data.provider.jdbc.JdbcDriverInfo;
 import datart.data.provider.jdbc.JdbcProperties;
+import datart.data.provider.jdbc.LocalPushdownPlanner;
+import datart.data.provider.jdbc.PagingStrategy;
 import datart.data.provider.calcite.dialect.FetchAndOffsetSupport;
 import datart.data.provider.jdbc.DataTypeUtils;
+import datart.data.provider.jdbc.EndpointRouter;
+import datart.data.provider.jdbc.FetchSizeTuner;
+import datart.data.provider.jdbc.ResultSetMapper;
+import datart.data.provider.jdbc.SchemaCatalog;
 import datart.data.provider.jdbc.SqlScriptRender;
+import datart.data.provider.jdbc.StatementHandle;
 import datart.data.provider.local.LocalDB;
+import datart.data.provider.local.LocalMemoryGovernor;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
@@ -46,6 +62,7 @@ import java.io.Closeable;
 import java.lang.reflect.Constructor;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 @Slf4j
 @Setter
@@ -64,6 +81,120 @@ public class JdbcDataProviderAdapter implements Closeable {
 
     protected static final String FKCOLUMN_NAME = "FKCOLUMN_NAME";
 
+    private static final String COUNT_THREADS = "datart.jdbc.count.threads";
+
+    private static final String COUNT_CACHE_TTL = "datart.jdbc.count.cache-ttl";
+
+    private static final String CURSOR_CACHE_SIZE = "datart.jdbc.paging.cursor-cache-size";
+
+    private static final String CURSOR_IDLE_TIMEOUT = "datart.jdbc.paging.cursor-idle-timeout";
+
+    private static final String CURSOR_PER_SOURCE = "datart.jdbc.paging.cursor-per-source";
+
+    private static final String METADATA_CACHE_TTL = "datart.jdbc.metadata.cache-ttl";
+
+    private static final String LOCAL_PUSHDOWN = "datart.jdbc.server-aggregate.pushdown";
+
+    private static final String FETCH_MAX_BYTES = "datart.jdbc.fetch.max-bytes";
+
+    private static final String BREAKER_FAILURE_THRESHOLD = "datart.jdbc.breaker.failure-threshold";
+
+    private static final String BREAKER_SLOW_THRESHOLD = "datart.jdbc.breaker.slow-threshold";
+
+    private static final String BREAKER_OPEN_DURATION = "datart.jdbc.breaker.open-duration";
+
+    private static final String ROUTING_EJECT_DURATION = "datart.jdbc.routing.eject-duration";
+
+    /**
+     * 当前线程执行的查询的优先级，配置了只读副本时用于选择节点
+     */
+    private static final ThreadLocal<QueryPriority> QUERY_PRIORITY = new ThreadLocal<>();
+
+    /**
+     * 判断校验查询是否过慢的样本数
+     */
+    private static final int BREAKER_LATENCY_WINDOW = 5;
+
+    /**
+     * 探测数据源时校验查询的超时时间(秒)
+     */
+    private static final int PROBE_TIMEOUT = 5;
+
+    /**
+     * 流式输出时每批读取和写出的行数
+     */
+    private static final int STREAM_BATCH_SIZE = 1000;
+
+    /**
+     * 分页总数查询与分页查询并行执行。线程和队列都满时在调用线程中执行，退化为串行查询
+     */
+    private static final ThreadPoolExecutor COUNT_EXECUTOR;
+
+    /**
+     * 总数缓存，键为 数据源 + 不分页的查询SQL，翻页时不必重复计数
+     */
+    private static final Cache<String, Integer> COUNT_CACHE;
+
+    /**
+     * 跳过行的分页方式下，保留读完一页后的游标，顺序翻到下一页时继续读取，不必重新查询并跳过前面的行
+     */
+    private static final Cache<String, PageCursor> CURSOR_CACHE;
+
+    private static final int CURSOR_CACHE_SIZE_VALUE;
+
+    /**
+     * 每个数据源最多保留的游标数。保留的游标占用连接池的连接，需要远小于连接池的最大连接数
+     */
+    private static final int CURSOR_PER_SOURCE_VALUE;
+
+    static {
+        int threads = Integer.parseInt(getConfig(COUNT_THREADS, String.valueOf(Runtime.getRuntime().availableProcessors() * 2)));
+        COUNT_EXECUTOR = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS
+                , new ArrayBlockingQueue<>(threads * 4)
+                , r -> {
+            Thread thread = new Thread(r, "jdbc-count-query");
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        COUNT_EXECUTOR.allowCoreThreadTimeOut(true);
+        COUNT_CACHE = CacheBuilder.newBuilder()
+                .maximumSize(1000)
+                .expireAfterWrite(Long.parseLong(getConfig(COUNT_CACHE_TTL, "30")), TimeUnit.SECONDS)
+                .build();
+        CURSOR_CACHE_SIZE_VALUE = Integer.parseInt(getConfig(CURSOR_CACHE_SIZE, "0"));
+        CURSOR_PER_SOURCE_VALUE = Integer.parseInt(getConfig(CURSOR_PER_SOURCE, "1"));
+        long cursorIdleTimeout = Long.parseLong(getConfig(CURSOR_IDLE_TIMEOUT, "60"));
+        CURSOR_CACHE = CacheBuilder.newBuilder()
+                .maximumSize(CURSOR_CACHE_SIZE_VALUE)
+                .expireAfterAccess(cursorIdleTimeout, TimeUnit.SECONDS)
+                .<String, PageCursor>removalListener(notification -> {
+                    // 取出使用的游标不关闭
+                    if (notification.getCause() != RemovalCause.EXPLICIT) {
+                        notification.getValue().close();
+                    }
+                })
+                .build();
+        if (CURSOR_CACHE_SIZE_VALUE > 0) {
+            // 定时关闭空闲的游标，归还连接，不等到下一次查询时才清理
+            ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "jdbc-cursor-sweeper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long period = Math.max(cursorIdleTimeout / 4, 1);
+            sweeper.scheduleWithFixedDelay(CURSOR_CACHE::cleanUp, period, period, TimeUnit.SECONDS);
+        }
+    }
+
+    protected static String getConfig(String key, String defaultVal) {
+        try {
+            return Application.getProperty(key, defaultVal);
+        } catch (Exception e) {
+            // 未在 Spring 环境中运行时使用默认值
+            return defaultVal;
+        }
+    }
+
     protected DataSource dataSource;
 
     protected JdbcProperties jdbcProperties;
@@ -74,11 +205,31 @@ public class JdbcDataProviderAdapter implements Closeable {
 
     protected SqlDialect sqlDialect;
 
+    protected SchemaCatalog schemaCatalog;
+
+    protected FetchSizeTuner fetchSizeTuner;
+
+    protected CircuitBreaker circuitBreaker;
+
+    protected EndpointRouter endpointRouter;
+
     public final void init(JdbcProperties jdbcProperties, JdbcDriverInfo driverInfo) {
         try {
             this.jdbcProperties = jdbcProperties;
             this.driverInfo = driverInfo;
+            this.schemaCatalog = new SchemaCatalog(Long.parseLong(getConfig(METADATA_CACHE_TTL, "600")));
+            this.fetchSizeTuner = new FetchSizeTuner(jdbcProperties.getDbType()
+                    , jdbcProperties.getFetchSize()
+                    , Long.parseLong(getConfig(FETCH_MAX_BYTES, String.valueOf(4 * 1024 * 1024))));
+            this.circuitBreaker = new CircuitBreaker(Integer.parseInt(getConfig(BREAKER_FAILURE_THRESHOLD, "3"))
+                    , Long.parseLong(getConfig(BREAKER_SLOW_THRESHOLD, "2000"))
+                    , Long.parseLong(getConfig(BREAKER_OPEN_DURATION, "30")) * 1000
+                    , BREAKER_LATENCY_WINDOW);
             this.dataSource = JdbcDataProvider.getDataSourceFactory().createDataSource(jdbcProperties);
+            if (!CollectionUtils.isEmpty(jdbcProperties.getReplicas())) {
+                this.endpointRouter = new EndpointRouter(jdbcProperties, dataSource, JdbcDataProvider.getDataSourceFactory()
+                        , Long.parseLong(getConfig(ROUTING_EJECT_DURATION, "30")) * 1000);
+            }
         } catch (Exception e) {
             log.error("data provider init error", e);
             Exceptions.e(e);
@@ -104,6 +255,25 @@ public class JdbcDataProviderAdapter implements Closeable {
     }
 
     public Set<String> readAllDatabases() throws SQLException {
+        return new HashSet<>(schemaCatalog.databases(this::loadDatabases));
+    }
+
+    public Set<String> readAllTables(String database) throws SQLException {
+        return new HashSet<>(schemaCatalog.tables(database, () -> loadTables(database)));
+    }
+
+    public Set<Column> readTableColumn(String database, String table) throws SQLException {
+        return new HashSet<>(schemaCatalog.tableColumns(database, table, () -> loadTableColumns(database, table)));
+    }
+
+    /**
+     * 刷新库、表、字段信息缓存
+     */
+    public void refreshMetadata() {
+        schemaCatalog.refresh();
+    }
+
+    protected Set<String> loadDatabases() throws SQLException {
 
         Set<String> catalogs = new HashSet<>();
 
@@ -123,7 +293,7 @@ public class JdbcDataProviderAdapter implements Closeable {
         }
     }
 
-    public Set<String> readAllTables(String database) throws SQLException {
+    protected Set<String> loadTables(String database) throws SQLException {
         try (Connection conn = getConn()) {
             Set<String> tables = new HashSet<>();
             DatabaseMetaData metadata = conn.getMetaData();
@@ -137,26 +307,58 @@ public class JdbcDataProviderAdapter implements Closeable {
         }
     }
 
-    public Set<Column> readTableColumn(String database, String table) throws SQLException {
+    /**
+     * 读取表的字段。字段从整个库的字段缓存中获取，库中没有找到该表时再单独读取
+     */
+    protected Set<Column> loadTableColumns(String database, String table) throws SQLException {
+        Map<String, Set<Column>> schemaColumns = schemaCatalog.schemaColumns(database, () -> loadSchemaColumns(database));
         try (Connection conn = getConn()) {
-            Set<Column> columnSet = new HashSet<>();
             DatabaseMetaData metadata = conn.getMetaData();
+            Set<Column> columnSet = new HashSet<>();
+            Set<Column> columns = schemaColumns.get(table);
+            if (columns == null) {
+                try (ResultSet rs = metadata.getColumns(database, null, table, null)) {
+                    while (rs.next()) {
+                        columnSet.add(readTableColumn(rs));
+                    }
+                }
+            } else {
+                for (Column column : columns) {
+                    columnSet.add(new Column(column.getName(), column.getType()));
+                }
+            }
             Map<String, Map<String, String>> importedKeys = getImportedKeys(metadata, database, table);
-            ResultSet columns = metadata.getColumns(database, null, table, null);
-            while (columns.next()) {
-                Column column = readTableColumn(columns);
+            for (Column column : columnSet) {
                 Map<String, String> pKeys = importedKeys.get(column.getName());
                 if (pKeys != null) {
                     column.setPkDatabase(pKeys.get(PKTABLE_CAT));
                     column.setPkTable(pKeys.get(PKTABLE_NAME));
                     column.setPkColumn(pKeys.get(PKCOLUMN_NAME));
                 }
-                columnSet.add(column);
             }
             return columnSet;
         }
     }
 
+    /**
+     * 一次读取整个库的字段，代替逐表读取。不支持时返回空，按表单独读取
+     */
+    protected Map<String, Set<Column>> loadSchemaColumns(String database) {
+        Map<String, Set<Column>> schemaColumns = new HashMap<>();
+        try (Connection conn = getConn()) {
+            DatabaseMetaData metadata = conn.getMetaData();
+            try (ResultSet rs = metadata.getColumns(database, conn.getSchema(), "%", null)) {
+                while (rs.next()) {
+                    schemaColumns.computeIfAbsent(rs.getString(3), t -> new HashSet<>()).add(readTableColumn(rs));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to read columns of database " + database + ", columns will be read by table", e);
+            return Collections.emptyMap();
+        }
+        return schemaColumns;
+    }
+
     protected Column readTableColumn(ResultSet columnMetadata) throws SQLException {
         Column column = new Column();
         column.setName(columnMetadata.getString(4));
@@ -169,13 +371,14 @@ public class JdbcDataProviderAdapter implements Closeable {
      */
     protected Map<String, Map<String, String>> getImportedKeys(DatabaseMetaData metadata, String database, String table) throws SQLException {
         HashMap<String, Map<String, String>> keyMap = new HashMap<>();
-        ResultSet importedKeys = metadata.getImportedKeys(database, null, table);
-        while (importedKeys.next()) {
-            HashMap<String, String> keys = new HashMap<>();
-            keys.put(PKTABLE_CAT, importedKeys.getString(PKTABLE_CAT));
-            keys.put(PKTABLE_NAME, importedKeys.getString(PKTABLE_NAME));
-            keys.put(PKCOLUMN_NAME, importedKeys.getString(PKCOLUMN_NAME));
-            keyMap.put(importedKeys.getString(FKCOLUMN_NAME), keys);
+        try (ResultSet importedKeys = metadata.getImportedKeys(database, null, table)) {
+            while (importedKeys.next()) {
+                HashMap<String, String> keys = new HashMap<>();
+                keys.put(PKTABLE_CAT, importedKeys.getString(PKTABLE_CAT));
+                keys.put(PKTABLE_NAME, importedKeys.getString(PKTABLE_NAME));
+                keys.put(PKCOLUMN_NAME, importedKeys.getString(PKCOLUMN_NAME));
+                keyMap.put(importedKeys.getString(FKCOLUMN_NAME), keys);
+            }
         }
         return keyMap;
     }
@@ -188,15 +391,63 @@ public class JdbcDataProviderAdapter implements Closeable {
      * @throws SQLException SQL执行异常
      */
     protected Dataframe execute(String sql) throws SQLException {
+        return execute(sql, Long.MAX_VALUE, false);
+    }
+
+    /**
+     * @param rows 结果的行数，用于确定每次读取的行数，未知时为 Long.MAX_VALUE
+     * @param bulk 是否为大量数据的读取（下载、本地聚合拉取全量数据）
+     */
+    protected Dataframe execute(String sql, long rows, boolean bulk) throws SQLException {
         try (Connection conn = getConn()) {
-            try (Statement statement = conn.createStatement()) {
-                try (ResultSet rs = statement.executeQuery(sql)) {
+            boolean autoCommitDisabled = bulk && fetchSizeTuner.disableAutoCommit(conn);
+            try (Statement statement = track(createStatement(conn, sql))) {
+                fetchSizeTuner.beforeExecute(statement, rows, bulk);
+                try (ResultSet rs = executeQuery(statement, sql)) {
+                    fetchSizeTuner.afterExecute(rs, rows);
                     return parseResultSet(rs);
+                } finally {
+                    RunningQueries.unregister(statement);
+                }
+            } finally {
+                if (autoCommitDisabled) {
+                    FetchSizeTuner.restoreAutoCommit(conn);
                 }
             }
         }
     }
 
+    /**
+     * SQL中包含绑定变量时创建 PreparedStatement 并绑定变量值，否则创建普通的 Statement
+     */
+    protected Statement createStatement(Connection conn, String sql) throws SQLException {
+        BindVariables bindVariables = BindVariables.parse(sql);
+        if (bindVariables == null) {
+            return conn.createStatement();
+        }
+        PreparedStatement statement = conn.prepareStatement(bindVariables.getSql());
+        bindVariables.bind(statement);
+        return statement;
+    }
+
+    protected ResultSet executeQuery(Statement statement, String sql) throws SQLException {
+        if (statement instanceof PreparedStatement) {
+            return ((PreparedStatement) statement).executeQuery();
+        }
+        return statement.executeQuery(sql);
+    }
+
+    /**
+     * 设置查询超时，并将 Statement 登记到当前查询，使查询可以被取消
+     */
+    protected <T extends Statement> T track(T statement) throws SQLException {
+        if (jdbcProperties.getQueryTimeout() > 0) {
+            statement.setQueryTimeout(jdbcProperties.getQueryTimeout());
+        }
+        RunningQueries.register(statement);
+        return statement;
+    }
+
     /**
      * 用于未支持SQL分页的数据库，使用通用的分页方案进行分页。
      *
@@ -206,32 +457,96 @@ public class JdbcDataProviderAdapter implements Closeable {
      * @throws SQLException SQL执行异常
      */
     protected Dataframe execute(String selectSql, PageInfo pageInfo) throws SQLException {
-        Dataframe dataframe;
-        try (Connection conn = getConn()) {
-            try (Statement statement = conn.createStatement()) {
-                statement.setFetchSize((int) Math.min(pageInfo.getPageSize(), 10_000));
-                try (ResultSet resultSet = statement.executeQuery(selectSql)) {
-                    try {
-                        resultSet.absolute((int) Math.min(pageInfo.getTotal(), (pageInfo.getPageNo() - 1) * pageInfo.getPageSize()));
-                    } catch (Exception e) {
-                        int count = 0;
-                        while (count < (pageInfo.getPageNo() - 1) * pageInfo.getPageSize() && resultSet.next()) {
-                            count++;
-                        }
+        return execute(selectSql, pageInfo, false);
+    }
+
+    protected Dataframe execute(String selectSql, PageInfo pageInfo, boolean bulk) throws SQLException {
+        String sourceKey = jdbcProperties.getUrl() + '|' + jdbcProperties.getUser() + '|';
+        String key = sourceKey + pageInfo.getPageSize() + '|' + selectSql;
+        PageCursor cursor = CURSOR_CACHE.asMap().remove(key);
+        if (cursor != null && cursor.nextPage != pageInfo.getPageNo()) {
+            cursor.close();
+            cursor = null;
+        }
+        boolean keepCursor = false;
+        try {
+            if (cursor == null) {
+                cursor = openCursor(selectSql, pageInfo, bulk);
+            }
+            Dataframe dataframe;
+            RunningQueries.register(cursor.resultSet.getStatement());
+            try {
+                dataframe = parseResultSet(cursor.resultSet, pageInfo.getPageSize());
+            } finally {
+                RunningQueries.unregister(cursor.resultSet.getStatement());
+            }
+            // 读满一页时可能还有下一页
+            keepCursor = CURSOR_CACHE_SIZE_VALUE > 0
+                    && dataframe.getRows().size() >= pageInfo.getPageSize()
+                    && cachedCursors(sourceKey) < CURSOR_PER_SOURCE_VALUE;
+            if (keepCursor) {
+                cursor.nextPage = pageInfo.getPageNo() + 1;
+                CURSOR_CACHE.put(key, cursor);
+            }
+            return dataframe;
+        } finally {
+            if (cursor != null && !keepCursor) {
+                cursor.close();
+            }
+        }
+    }
+
+    private static long cachedCursors(String sourceKey) {
+        return CURSOR_CACHE.asMap().keySet().stream().filter(key -> key.startsWith(sourceKey)).count();
+    }
+
+    private PageCursor openCursor(String selectSql, PageInfo pageInfo, boolean bulk) throws SQLException {
+        Connection conn = getConn();
+        boolean autoCommitDisabled = false;
+        try {
+            autoCommitDisabled = fetchSizeTuner.disableAutoCommit(conn);
+            Statement statement = track(createStatement(conn, selectSql));
+            fetchSizeTuner.beforeExecute(statement, pageInfo.getPageSize(), bulk);
+            if (CURSOR_CACHE_SIZE_VALUE <= 0) {
+                // 不保留游标时，数据库只需要返回到当前页为止的数据
+                statement.setMaxRows((int) Math.min(pageInfo.getPageNo() * pageInfo.getPageSize(), Integer.MAX_VALUE));
+            }
+            try {
+                ResultSet resultSet = executeQuery(statement, selectSql);
+                fetchSizeTuner.afterExecute(resultSet, pageInfo.getPageSize());
+                long skip = (pageInfo.getPageNo() - 1) * pageInfo.getPageSize();
+                try {
+                    resultSet.absolute((int) Math.min(skip, Integer.MAX_VALUE));
+                } catch (Exception e) {
+                    int count = 0;
+                    while (count < skip && resultSet.next()) {
+                        count++;
                     }
-                    dataframe = parseResultSet(resultSet, pageInfo.getPageSize());
-                    return dataframe;
                 }
+                return new PageCursor(conn, resultSet, autoCommitDisabled);
+            } finally {
+                RunningQueries.unregister(statement);
             }
+        } catch (Exception e) {
+            if (autoCommitDisabled) {
+                FetchSizeTuner.restoreAutoCommit(conn);
+            }
+            conn.close();
+            throw e;
         }
     }
 
     public Dataframe execute(QueryScript script, ExecuteParam executeParam) throws Exception {
-        //If server aggregation is enabled, query the full data before performing server aggregation
-        if (executeParam.isServerAggregate()) {
-            return executeInLocal(script, executeParam);
-        } else {
-            return executeOnSource(script, executeParam);
+        QUERY_PRIORITY.set(executeParam.getPriority());
+        try {
+            //If server aggregation is enabled, query the full data before performing server aggregation
+            if (executeParam.isServerAggregate()) {
+                return executeInLocal(script, executeParam);
+            } else {
+                return executeOnSource(script, executeParam);
+            }
+        } finally {
+            QUERY_PRIORITY.remove();
         }
     }
 
@@ -242,16 +557,120 @@ public class JdbcDataProviderAdapter implements Closeable {
      * @return 总记录数
      */
     public int executeCountSql(String sql) throws SQLException {
+        return executeCountSql(sql, new StatementHandle());
+    }
+
+    /**
+     * @param handle 登记执行中的 Statement，取消总数查询时通过它取消数据库中的查询
+     */
+    protected int executeCountSql(String sql, StatementHandle handle) throws SQLException {
         try (Connection connection = getConn()) {
-            PreparedStatement preparedStatement = connection.prepareStatement(String.format(COUNT_SQL, sql));
-            ResultSet resultSet = preparedStatement.executeQuery();
-            resultSet.next();
-            return resultSet.getInt(1);
+            String countSql = String.format(COUNT_SQL, sql);
+            try (Statement statement = track(createStatement(connection, countSql))) {
+                if (!handle.attach(statement)) {
+                    throw new SQLException("count query cancelled");
+                }
+                try (ResultSet resultSet = executeQuery(statement, countSql)) {
+                    resultSet.next();
+                    return resultSet.getInt(1);
+                } finally {
+                    handle.detach();
+                    RunningQueries.unregister(statement);
+                }
+            }
         }
     }
 
+    /**
+     * 获取连接。数据源熔断时直接失败，不等待连接池的获取超时
+     */
     protected Connection getConn() throws SQLException {
-        return dataSource.getConnection();
+        if (circuitBreaker == null) {
+            return openConnection();
+        }
+        circuitBreaker.acquire(this::probe);
+        Connection connection;
+        try {
+            connection = openConnection();
+        } catch (SQLException e) {
+            if (isConnectFailure(e)) {
+                circuitBreaker.onFailure(e);
+            }
+            throw e;
+        }
+        circuitBreaker.onSuccess();
+        return connection;
+    }
+
+    /**
+     * 是否为无法建立到数据源的连接。连接池已满时的等待超时没有建立连接的错误，是负载问题，不计入熔断
+     */
+    protected boolean isConnectFailure(SQLException e) {
+        return !(e instanceof GetConnectionTimeoutException) || e.getCause() != null;
+    }
+
+    /**
+     * 配置了只读副本时按路由策略选择节点，下载和定时任务优先使用副本
+     */
+    private Connection openConnection() throws SQLException {
+        if (endpointRouter == null) {
+            return dataSource.getConnection();
+        }
+        QueryPriority priority = QUERY_PRIORITY.get();
+        return endpointRouter.getConnection(priority == QueryPriority.DOWNLOAD || priority == QueryPriority.SCHEDULE);
+    }
+
+    /**
+     * 健康检查，执行一次校验查询并更新熔断状态
+     */
+    public void checkHealth() {
+        circuitBreaker.probe(this::probe);
+    }
+
+    public Map<String, Object> health() {
+        Map<String, Object> health = circuitBreaker.status();
+        if (endpointRouter != null) {
+            health.put("endpoints", endpointRouter.status());
+        }
+        return health;
+    }
+
+    /**
+     * 探测数据源，返回校验查询的耗时。配置了只读副本时探测所有节点，任一节点可用即可用
+     */
+    protected long probe() throws SQLException {
+        if (endpointRouter != null) {
+            return endpointRouter.probe(this::validate);
+        }
+        return validate(dataSource);
+    }
+
+    protected long validate(DataSource dataSource) throws SQLException {
+        long start = System.currentTimeMillis();
+        try (Connection conn = dataSource.getConnection()) {
+            try (Statement statement = conn.createStatement()) {
+                statement.setQueryTimeout(PROBE_TIMEOUT);
+                statement.execute(validationQuery());
+            }
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    protected String validationQuery() {
+        switch (String.valueOf(jdbcProperties.getDbType()).toUpperCase()) {
+            case "ORACLE":
+                return "SELECT 1 FROM DUAL";
+            case "DB2":
+                return "SELECT 1 FROM SYSIBM.SYSDUMMY1";
+            case "DERBY":
+                return "VALUES 1";
+            case "HSQLDB":
+                return "SELECT 1 FROM INFORMATION_SCHEMA.SYSTEM_USERS";
+            case "INFORMIX":
+                return "SELECT 1 FROM SYSTABLES WHERE TABID = 1";
+            default:
+                return "SELECT 1";
+        }
     }
 
     @Override
@@ -259,6 +678,9 @@ public class JdbcDataProviderAdapter implements Closeable {
         if (dataSource == null) {
             return;
         }
+        if (endpointRouter != null) {
+            endpointRouter.close();
+        }
         JdbcDataProvider.getDataSourceFactory().destroy(dataSource);
     }
 
@@ -308,54 +730,55 @@ public class JdbcDataProviderAdapter implements Closeable {
     }
 
     protected Dataframe parseResultSet(ResultSet rs, long count) throws SQLException {
-        Dataframe dataframe = new Dataframe();
-        List<Column> columns = getColumns(rs);
-        ArrayList<List<Object>> rows = new ArrayList<>();
-        int c = 0;
-        while (rs.next()) {
-            ArrayList<Object> row = new ArrayList<>();
-            rows.add(row);
-            for (int i = 1; i < columns.size() + 1; i++) {
-                row.add(rs.getObject(i));
-            }
-            c++;
-            if (c >= count) {
-                break;
-            }
-        }
-        dataframe.setColumns(columns);
-        dataframe.setRows(rows);
-        return dataframe;
+        int start = 1;
+        if (StringUtils.endsWithIgnoreCase(rs.getMetaData().getColumnLabel(1), SqlBuilder.ROW_NUMBER_COLUMN)) {
+            start = 2;
+        }
+        return ResultSetMapper.mapToTableData(rs, count, start);
     }
 
     protected List<Column> getColumns(ResultSet rs) throws SQLException {
-        ArrayList<Column> columns = new ArrayList<>();
-        for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++) {
-            String columnTypeName = rs.getMetaData().getColumnTypeName(i);
-            String columnName = rs.getMetaData().getColumnLabel(i);
-            ValueType valueType = DataTypeUtils.sqlType2DataType(columnTypeName);
-            columns.add(new Column(columnName, valueType));
-        }
-        return columns;
+        return ResultSetMapper.getColumns(rs);
     }
 
     /**
-     * 本地执行，从数据源拉取全量数据，在本地执行聚合操作
+     * 本地执行，从数据源拉取数据，在本地执行聚合操作。数据源可以执行的过滤、列裁剪和可分解的聚合先在数据源执行，只拉取剩余计算需要的数据
      */
     protected Dataframe executeInLocal(QueryScript script, ExecuteParam executeParam) throws Exception {
-        SqlScriptRender render = new SqlScriptRender(script
-                , executeParam
-                , getSqlDialect());
+        LocalPushdownPlanner plan = isPushdownEnabled()
+                ? LocalPushdownPlanner.plan(script, executeParam)
+                : null;
+        ExecuteParam sourceParam = plan == null ? null : plan.getSourceParam();
 
-        String sql = render.render(false, false, false);
-        Dataframe data = execute(sql);
-        if (!CollectionUtils.isEmpty(script.getSchema())) {
-            for (Column column : data.getColumns()) {
-                column.setType(script.getSchema().getOrDefault(column.getName(), column).getType());
+        SqlScriptRender render = new SqlScriptRender(script
+                , sourceParam == null ? executeParam : sourceParam
+                , getSqlDialect()
+                , false
+                , false
+                , jdbcProperties.isBindVariables());
+
+        String sql = render.render(sourceParam != null, false, false);
+        log.debug(sql);
+        // 拉取数据前申请本地查询的内存额度，排队时不持有数据
+        try (LocalMemoryGovernor.Permit permit = LocalMemoryGovernor.acquire(sql)) {
+            Dataframe data = execute(sql, Long.MAX_VALUE, true);
+            if (!CollectionUtils.isEmpty(script.getSchema())) {
+                for (Column column : data.getColumns()) {
+                    column.setType(script.getSchema().getOrDefault(column.getName(), column).getType());
+                }
             }
+            data.setName(script.toQueryKey());
+            if (sourceParam == null) {
+                return LocalDB.executeLocalQuery(null, executeParam, Collections.singletonList(data), null, permit);
+            }
+            Dataframe dataframe = LocalDB.executeLocalQuery(null, plan.getLocalParam(), Collections.singletonList(data), null, permit);
+            plan.restoreColumnNames(dataframe);
+            return dataframe;
         }
-        data.setName(script.toQueryKey());
-        return LocalDB.executeLocalQuery(null, executeParam, Collections.singletonList(data));
+    }
+
+    private static boolean isPushdownEnabled() {
+        return Boolean.parseBoolean(getConfig(LOCAL_PUSHDOWN, "true"));
     }
 
     /**
@@ -366,28 +789,214 @@ public class JdbcDataProviderAdapter implements Closeable {
         Dataframe dataframe;
         String sql;
 
+        boolean rowNumberPaging = !supportPaging()
+                && driverInfo.getPagingStrategy() == PagingStrategy.ROW_NUMBER
+                && SqlBuilder.canPageByRowNumber(executeParam);
+
         SqlScriptRender render = new SqlScriptRender(script
                 , executeParam
                 , getSqlDialect()
-                , jdbcProperties.isEnableSpecialSql());
+                , jdbcProperties.isEnableSpecialSql()
+                , rowNumberPaging
+                , jdbcProperties.isBindVariables());
 
-        if (supportPaging()) {
+        boolean paged = supportPaging() || rowNumberPaging;
+        if (paged) {
             sql = render.render(true, true, false);
-            log.debug(sql);
-            dataframe = execute(sql);
         } else {
             sql = render.render(true, false, false);
-            log.debug(sql);
-            dataframe = execute(sql, executeParam.getPageInfo());
+        }
+        log.debug(sql);
+        DataframeWriter writer = executeParam.getWriter();
+        if (writer != null) {
+            dataframe = executeWithTotal(render, executeParam.getPageInfo(), () -> stream(sql, executeParam.getPageInfo(), paged, writer));
+        } else {
+            boolean download = executeParam.getPriority() == QueryPriority.DOWNLOAD;
+            dataframe = executeWithTotal(render, executeParam.getPageInfo(), () -> paged
+                    ? execute(sql, executeParam.getPageInfo().getPageSize(), download)
+                    : execute(sql, executeParam.getPageInfo(), download));
+        }
+        dataframe.setScript(BindVariables.preparedSql(sql));
+        return dataframe;
+    }
+
+    /**
+     * 流式执行，结果集按批读取后写入 writer，不在内存中保留完整结果。返回的 Dataframe 只包含列信息
+     *
+     * @param paged SQL中是否已经包含分页，否则跳过前面的行后读取一页
+     */
+    protected Dataframe stream(String sql, PageInfo pageInfo, boolean paged, DataframeWriter writer) throws Exception {
+        PageCursor cursor;
+        if (paged) {
+            Connection conn = getConn();
+            boolean autoCommitDisabled = false;
+            try {
+                autoCommitDisabled = fetchSizeTuner.disableAutoCommit(conn);
+                Statement statement = track(createStatement(conn, sql));
+                fetchSizeTuner.beforeExecute(statement, pageInfo.getPageSize(), true);
+                cursor = new PageCursor(conn, executeQuery(statement, sql), autoCommitDisabled);
+                fetchSizeTuner.afterExecute(cursor.resultSet, pageInfo.getPageSize());
+            } catch (Exception e) {
+                if (autoCommitDisabled) {
+                    FetchSizeTuner.restoreAutoCommit(conn);
+                }
+                conn.close();
+                throw e;
+            }
+        } else {
+            cursor = openCursor(sql, pageInfo, true);
+            RunningQueries.register(cursor.resultSet.getStatement());
+        }
+        try {
+            ResultSet rs = cursor.resultSet;
+            int start = StringUtils.endsWithIgnoreCase(rs.getMetaData().getColumnLabel(1), SqlBuilder.ROW_NUMBER_COLUMN) ? 2 : 1;
+            List<Column> columns = ResultSetMapper.getColumns(rs.getMetaData(), start);
+            writer.writeColumns(columns);
+            long remaining = paged ? Long.MAX_VALUE : pageInfo.getPageSize();
+            while (remaining > 0) {
+                int size = (int) Math.min(STREAM_BATCH_SIZE, remaining);
+                ColumnarDataframe batch = ResultSetMapper.mapToTableData(rs, size, start);
+                if (batch.rowCount() > 0) {
+                    writer.writeRows(batch);
+                }
+                if (batch.rowCount() < size) {
+                    break;
+                }
+                remaining -= size;
+            }
+            Dataframe dataframe = new Dataframe();
+            dataframe.setColumns(columns);
+            dataframe.setRows(new ArrayList<>());
+            return dataframe;
+        } finally {
+            RunningQueries.unregister(cursor.resultSet.getStatement());
+            cursor.close();
+        }
+    }
+
+    /**
+     * 执行分页查询。需要总数时，总数查询与分页查询并行执行
+     *
+     * @param render    用于生成不分页的总数查询SQL
+     * @param pageQuery 分页查询
+     */
+    protected Dataframe executeWithTotal(SqlScriptRender render, PageInfo pageInfo, Callable<Dataframe> pageQuery) throws Exception {
+        Future<Integer> total = null;
+        if (pageInfo.isCountTotal()) {
+            total = countTotal(render.render(true, false, true));
+        }
+        Dataframe dataframe;
+        try {
+            dataframe = pageQuery.call();
+        } catch (Exception e) {
+            if (total != null) {
+                total.cancel(true);
+            }
+            throw e;
         }
         // fix page info
-        if (executeParam.getPageInfo().isCountTotal()) {
-            int total = executeCountSql(render.render(true, false, true));
-            executeParam.getPageInfo().setTotal(total);
-            dataframe.setPageInfo(executeParam.getPageInfo());
+        if (total != null) {
+            pageInfo.setTotal(getTotal(total));
+            dataframe.setPageInfo(pageInfo);
         }
-        dataframe.setScript(sql);
         return dataframe;
     }
 
+    /**
+     * 提交总数查询，缓存中已有结果时直接返回。取消返回的 Future 时同时取消数据库中执行的总数查询
+     *
+     * @param sql 不包含分页的SQL
+     */
+    protected Future<Integer> countTotal(String sql) {
+        String key = jdbcProperties.getUrl() + '|' + jdbcProperties.getUser() + '|' + sql;
+        Integer cached = COUNT_CACHE.getIfPresent(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        String queryId = RunningQueries.current();
+        // 总数查询与数据查询使用相同的节点，下载和定时任务的总数查询也走只读副本
+        QueryPriority priority = QUERY_PRIORITY.get();
+        StatementHandle handle = new StatementHandle();
+        FutureTask<Integer> task = new FutureTask<Integer>(() -> {
+            // 在调用线程中执行时保留原来的关联和优先级
+            String caller = RunningQueries.current();
+            QueryPriority callerPriority = QUERY_PRIORITY.get();
+            RunningQueries.bind(queryId);
+            QUERY_PRIORITY.set(priority);
+            try {
+                int total = executeCountSql(sql, handle);
+                COUNT_CACHE.put(key, total);
+                return total;
+            } finally {
+                RunningQueries.bind(caller);
+                if (callerPriority == null) {
+                    QUERY_PRIORITY.remove();
+                } else {
+                    QUERY_PRIORITY.set(callerPriority);
+                }
+            }
+        }) {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                // 中断线程无法停止阻塞在驱动中的查询，先标记为取消，再通过 Statement 取消数据库中的查询
+                boolean cancelled = super.cancel(false);
+                handle.cancel();
+                return cancelled;
+            }
+        };
+        COUNT_EXECUTOR.execute(task);
+        return task;
+    }
+
+    private int getTotal(Future<Integer> total) throws Exception {
+        try {
+            return total.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static class PageCursor {
+
+        private final Connection connection;
+
+        private final ResultSet resultSet;
+
+        /**
+         * 打开游标时关闭了自动提交，关闭游标时恢复
+         */
+        private final boolean autoCommitDisabled;
+
+        private long nextPage;
+
+        private PageCursor(Connection connection, ResultSet resultSet, boolean autoCommitDisabled) {
+            this.connection = connection;
+            this.resultSet = resultSet;
+            this.autoCommitDisabled = autoCommitDisabled;
+        }
+
+        private void close() {
+            try {
+                Statement statement = resultSet.getStatement();
+                resultSet.close();
+                if (statement != null) {
+                    statement.close();
+                }
+            } catch (SQLException e) {
+                log.warn("page cursor close error", e);
+            }
+            if (autoCommitDisabled) {
+                FetchSizeTuner.restoreAutoCommit(connection);
+            }
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                log.warn("page cursor close error", e);
+            }
+        }
+    }
+
 }
@@ -20,16 +20,19 @@ package datart.data.provider.jdbc.adapters;
 
 
 import datart.core.base.PageInfo;
-import datart.core.data.provider.Column;
 import datart.core.data.provider.Dataframe;
 import datart.core.data.provider.ExecuteParam;
+import datart.core.data.provider.QueryPriority;
 import datart.core.data.provider.QueryScript;
+import datart.data.provider.jdbc.BindVariables;
+import datart.data.provider.jdbc.ResultSetMapper;
 import datart.data.provider.jdbc.SqlScriptRender;
 import lombok.extern.slf4j.Slf4j;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.*;
+import java.util.Collections;
+import java.util.Set;
 
 @Slf4j
 public class OracleDataProviderAdapter extends JdbcDataProviderAdapter {
@@ -42,29 +45,11 @@ public class OracleDataProviderAdapter extends JdbcDataProviderAdapter {
 
     @Override
     protected Dataframe parseResultSet(ResultSet rs, long count) throws SQLException {
-        Dataframe dataframe = new Dataframe();
-        List<Column> columns = getColumns(rs);
         int start = 1;
-        if ("V_R_N".equals(columns.get(0).getName())) {
+        if ("V_R_N".equals(rs.getMetaData().getColumnLabel(1))) {
             start = 2;
-            columns.remove(0);
         }
-        ArrayList<List<Object>> rows = new ArrayList<>();
-        int c = 0;
-        while (rs.next()) {
-            ArrayList<Object> row = new ArrayList<>();
-            rows.add(row);
-            for (int i = start; i < columns.size() + start; i++) {
-                row.add(rs.getObject(i));
-            }
-            c++;
-            if (c >= count) {
-                break;
-            }
-        }
-        dataframe.setColumns(columns);
-        dataframe.setRows(rows);
-        return dataframe;
+        return ResultSetMapper.mapToTableData(rs, count, start);
     }
 
     @Override
@@ -72,7 +57,10 @@ public class OracleDataProviderAdapter extends JdbcDataProviderAdapter {
 
         SqlScriptRender render = new SqlScriptRender(script
                 , executeParam
-                , getSqlDialect());
+                , getSqlDialect()
+                , false
+                , false
+                , jdbcProperties.isBindVariables());
 
         String sql = render.render(true, false, false);
 
@@ -80,14 +68,10 @@ public class OracleDataProviderAdapter extends JdbcDataProviderAdapter {
 
         log.debug(wrappedSql);
 
-        Dataframe dataframe = execute(wrappedSql);
-        // fix page info
-        if (executeParam.getPageInfo().isCountTotal()) {
-            int total = executeCountSql(render.render(true, false, true));
-            executeParam.getPageInfo().setTotal(total);
-            dataframe.setPageInfo(executeParam.getPageInfo());
-        }
-        dataframe.setScript(wrappedSql);
+        Dataframe dataframe = executeWithTotal(render, executeParam.getPageInfo(), () -> execute(wrappedSql
+                , executeParam.getPageInfo().getPageSize()
+                , executeParam.getPriority() == QueryPriority.DOWNLOAD));
+        dataframe.setScript(BindVariables.preparedSql(wrappedSql));
         return dataframe;
     }
 
@@ -0,0 +1,149 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datart.data.provider.jdbc;
+
+import datart.core.base.exception.BaseException;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CircuitBreakerTest {
+
+    @Test
+    void testOpenAfterConsecutiveFailures() {
+        TestBreaker breaker = new TestBreaker();
+        breaker.onFailure(new SQLException("down"));
+        breaker.onFailure(new SQLException("down"));
+        breaker.onSuccess();
+        breaker.onFailure(new SQLException("down"));
+        breaker.onFailure(new SQLException("down"));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.onFailure(new SQLException("down"));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        // 熔断期间直接失败，不执行探测
+        assertThrows(BaseException.class, () -> breaker.acquire(() -> fail("probe during open")));
+    }
+
+    @Test
+    void testHalfOpenProbe() {
+        TestBreaker breaker = openBreaker();
+
+        // 半开探测失败，重新计时
+        breaker.now += 1000;
+        assertThrows(BaseException.class, () -> breaker.acquire(() -> {
+            throw new SQLException("still down");
+        }));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        breaker.now += 500;
+        assertThrows(BaseException.class, () -> breaker.acquire(() -> fail("probe during open")));
+
+        // 半开探测成功，恢复
+        breaker.now += 500;
+        breaker.acquire(() -> 10L);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.acquire(() -> fail("probe when closed"));
+    }
+
+    @Test
+    void testOnlyOneProbeInHalfOpen() {
+        TestBreaker breaker = openBreaker();
+        breaker.now += 1000;
+        breaker.acquire(() -> {
+            assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+            // 探测期间的其它请求直接失败
+            assertThrows(BaseException.class, () -> breaker.acquire(() -> fail("second probe")));
+            return 10L;
+        });
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void testHealthCheckClosesOpenBreaker() {
+        TestBreaker breaker = openBreaker();
+        assertTrue(breaker.probe(() -> 10L));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void testFailedHealthChecksOpen() {
+        TestBreaker breaker = new TestBreaker();
+        for (int i = 0; i < 2; i++) {
+            assertFalse(breaker.probe(() -> {
+                throw new SQLException("down");
+            }));
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertFalse(breaker.probe(() -> {
+            throw new SQLException("down");
+        }));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void testSlowProbesOpen() {
+        TestBreaker breaker = new TestBreaker();
+        // 窗口未满时不判断
+        probe(breaker, 500);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        probe(breaker, 10);
+        probe(breaker, 10);
+        probe(breaker, 10);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(10, breaker.percentile(0.5));
+        assertEquals(500, breaker.percentile(0.95));
+        // 窗口滑动，替换最早的样本
+        probe(breaker, 500);
+        probe(breaker, 500);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        probe(breaker, 500);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        // 熔断后重新采样
+        assertEquals(0, breaker.percentile(0.5));
+    }
+
+    private void probe(TestBreaker breaker, long latency) {
+        breaker.probe(() -> latency);
+    }
+
+    private TestBreaker openBreaker() {
+        TestBreaker breaker = new TestBreaker();
+        for (int i = 0; i < 3; i++) {
+            breaker.onFailure(new SQLException("down"));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        return breaker;
+    }
+
+    private static class TestBreaker extends CircuitBreaker {
+
+        private long now = 1;
+
+        private TestBreaker() {
+            super(3, 100, 1000, 4);
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+    }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datart.data.provider.jdbc;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EndpointRouterTest {
+
+    private static final String PRIMARY = "jdbc:test://primary";
+
+    private static final String REPLICA = "jdbc:test://replica";
+
+    private final Map<String, TestEndpoint> endpoints = new HashMap<>();
+
+    @Test
+    public void testRoundRobin() throws SQLException {
+        EndpointRouter router = router(RoutingPolicy.ROUND_ROBIN);
+        for (int i = 0; i < 4; i++) {
+            router.getConnection(false).close();
+        }
+        assertEquals(2, endpoints.get(PRIMARY).opened);
+        assertEquals(2, endpoints.get(REPLICA).opened);
+    }
+
+    @Test
+    public void testLeastOutstanding() throws SQLException {
+        EndpointRouter router = router(RoutingPolicy.LEAST_OUTSTANDING);
+        Connection first = router.getConnection(false);
+        Connection second = router.getConnection(false);
+        assertEquals(1, endpoints.get(PRIMARY).opened);
+        assertEquals(1, endpoints.get(REPLICA).opened);
+        second.close();
+        router.getConnection(false).close();
+        assertEquals(2, endpoints.get(REPLICA).opened);
+        first.close();
+    }
+
+    @Test
+    public void testReplicaPreferred() throws SQLException {
+        EndpointRouter router = router(RoutingPolicy.ROUND_ROBIN);
+        // 副本连接池在第一次使用时创建
+        assertFalse(endpoints.containsKey(REPLICA));
+        for (int i = 0; i < 3; i++) {
+            router.getConnection(true).close();
+        }
+        assertEquals(0, endpoints.get(PRIMARY).opened);
+        assertEquals(3, endpoints.get(REPLICA).opened);
+    }
+
+    @Test
+    public void testFailedEndpointEjected() throws SQLException {
+        EndpointRouter router = router(RoutingPolicy.ROUND_ROBIN);
+        router.getConnection(true).close();
+        endpoints.get(REPLICA).down = true;
+        router.getConnection(true).close();
+        router.getConnection(true).close();
+        assertEquals(2, endpoints.get(PRIMARY).opened);
+        assertEquals(1, endpoints.get(REPLICA).opened);
+        assertEquals(true, router.status().get(1).get("ejected"));
+    }
+
+    @Test
+    public void testAllEndpointsDown() throws SQLException {
+        EndpointRouter router = router(RoutingPolicy.ROUND_ROBIN);
+        endpoints.get(PRIMARY).down = true;
+        router.getConnection(false).close();
+        assertEquals(1, endpoints.get(REPLICA).opened);
+        endpoints.get(REPLICA).down = true;
+        assertThrows(SQLException.class, () -> router.getConnection(false));
+    }
+
+    @Test
+    public void testProbeUnejectsRecoveredEndpoint() throws SQLException {
+        EndpointRouter router = router(RoutingPolicy.ROUND_ROBIN);
+        endpoints.get(PRIMARY).down = true;
+        assertEquals(1, router.probe(this::validate));
+        assertEquals(true, router.status().get(0).get("ejected"));
+        assertEquals(false, router.status().get(1).get("ejected"));
+
+        endpoints.get(PRIMARY).down = false;
+        assertEquals(1, router.probe(this::validate));
+        assertEquals(false, router.status().get(0).get("ejected"));
+
+        endpoints.get(PRIMARY).down = true;
+        endpoints.get(REPLICA).down = true;
+        assertThrows(SQLException.class, () -> router.probe(this::validate));
+    }
+
+    @Test
+    public void testStatusHidesUrl() {
+        EndpointRouter router = router(RoutingPolicy.ROUND_ROBIN);
+        List<Map<String, Object>> status = router.status();
+        assertEquals("primary", status.get(0).get("name"));
+        assertEquals("replica-1", status.get(1).get("name"));
+        assertFalse(status.toString().contains("jdbc:"));
+    }
+
+    private long validate(DataSource dataSource) throws SQLException {
+        dataSource.getConnection().close();
+        return 1;
+    }
+
+    private EndpointRouter router(RoutingPolicy policy) {
+        JdbcProperties properties = new JdbcProperties();
+        properties.setUrl(PRIMARY);
+        properties.setReplicas(Collections.singletonList(REPLICA));
+        properties.setRoutingPolicy(policy);
+        TestEndpoint primary = new TestEndpoint();
+        endpoints.put(PRIMARY, primary);
+        return new EndpointRouter(properties, primary.dataSource, new DataSourceFactory<DataSource>() {
+            @Override
+            public DataSource createDataSource(JdbcProperties jdbcProperties) {
+                return endpoints.computeIfAbsent(jdbcProperties.getUrl(), url -> new TestEndpoint()).dataSource;
+            }
+
+            @Override
+            public void destroy(DataSource dataSource) {
+            }
+        }, 60_000);
+    }
+
+    private static class TestEndpoint {
+
+        private boolean down;
+
+        private int opened;
+
+        private final DataSource dataSource = (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(), new Class[]{DataSource.class}, (proxy, method, args) -> {
+            if (!"getConnection".equals(method.getName())) {
+                return null;
+            }
+            if (down) {
+                throw new SQLException("connect failed");
+            }
+            opened++;
+            return connection();
+        });
+
+        private static Connection connection() {
+            boolean[] closed = new boolean[1];
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class[]{Connection.class}, (proxy, method, args) -> {
+                if ("close".equals(method.getName())) {
+                    closed[0] = true;
+                } else if ("isClosed".equals(method.getName())) {
+                    return closed[0];
+                }
+                return null;
+            });
+        }
+    }
+
+}
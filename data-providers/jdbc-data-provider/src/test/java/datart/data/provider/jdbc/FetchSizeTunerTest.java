@@ -0,0 +1,133 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package datart.data.provider.jdbc;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FetchSizeTunerTest {
+
+    @Test
+    public void testFixedFetchSize() {
+        FetchSizeTuner tuner = new FetchSizeTuner("ORACLE", 200, 1024);
+        assertEquals(200, tuner.fetchSize(Long.MAX_VALUE, 0));
+        assertEquals(200, tuner.fetchSize(5, 100_000));
+    }
+
+    @Test
+    public void testDialectDefaults() {
+        assertEquals(500, new FetchSizeTuner("ORACLE", 0, 1 << 20).fetchSize(Long.MAX_VALUE, 0));
+        assertEquals(1000, new FetchSizeTuner("POSTGRESQL", 0, 1 << 20).fetchSize(Long.MAX_VALUE, 0));
+        // 驱动默认值，不设置
+        assertEquals(0, new FetchSizeTuner("MYSQL", 0, 1 << 20).fetchSize(Long.MAX_VALUE, 0));
+        assertEquals(100, new FetchSizeTuner("MYSQL", 0, 1 << 20).fetchSize(100, 0));
+    }
+
+    @Test
+    public void testFetchSizeFollowsRowWidth() {
+        FetchSizeTuner tuner = new FetchSizeTuner("POSTGRESQL", 0, 1_000_000);
+        assertEquals(1000, tuner.fetchSize(Long.MAX_VALUE, 1000));
+        assertEquals(50, tuner.fetchSize(50, 1000));
+        assertEquals(10_000, tuner.fetchSize(Long.MAX_VALUE, 8));
+        assertEquals(10, tuner.fetchSize(Long.MAX_VALUE, 1_000_000));
+    }
+
+    @Test
+    public void testEstimateRowWidth() throws SQLException {
+        assertEquals(4 + 8 + 16 + 100 + 4000, FetchSizeTuner.estimateRowWidth(metaData(
+                new int[]{Types.INTEGER, Types.BIGINT, Types.DECIMAL, Types.VARCHAR, Types.CLOB},
+                new int[]{11, 20, 38, 100, 0})));
+        assertEquals(4000, FetchSizeTuner.estimateRowWidth(metaData(new int[]{Types.VARCHAR}, new int[]{Integer.MAX_VALUE})));
+    }
+
+    @Test
+    public void testMysqlExportStreams() throws SQLException {
+        List<Object> fetchSizes = new ArrayList<>();
+        Statement statement = (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class[]{Statement.class}, (proxy, method, args) -> {
+            if ("setFetchSize".equals(method.getName())) {
+                fetchSizes.add(args[0]);
+            }
+            return null;
+        });
+        new FetchSizeTuner("MYSQL", 0, 1 << 20).beforeExecute(statement, Long.MAX_VALUE, true);
+        new FetchSizeTuner("MYSQL", 0, 1 << 20).beforeExecute(statement, 20, false);
+        assertEquals(Integer.MIN_VALUE, fetchSizes.get(0));
+        assertEquals(20, fetchSizes.get(1));
+    }
+
+    @Test
+    public void testPostgresqlCursorReadDisablesAutoCommit() throws SQLException {
+        List<String> calls = new ArrayList<>();
+        Connection connection = connection(calls, true);
+        assertTrue(new FetchSizeTuner("POSTGRESQL", 0, 1 << 20).disableAutoCommit(connection));
+        assertEquals("setAutoCommit(false)", calls.get(0));
+        FetchSizeTuner.restoreAutoCommit(connection);
+        assertEquals("rollback", calls.get(1));
+        assertEquals("setAutoCommit(true)", calls.get(2));
+
+        calls.clear();
+        assertFalse(new FetchSizeTuner("MYSQL", 0, 1 << 20).disableAutoCommit(connection(calls, true)));
+        // 连接本来就关闭了自动提交时不做修改
+        assertFalse(new FetchSizeTuner("POSTGRESQL", 0, 1 << 20).disableAutoCommit(connection(calls, false)));
+        assertTrue(calls.isEmpty());
+    }
+
+    private static Connection connection(List<String> calls, boolean autoCommit) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class[]{Connection.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getAutoCommit":
+                    return autoCommit;
+                case "setAutoCommit":
+                    calls.add("setAutoCommit(" + args[0] + ")");
+                    return null;
+                case "rollback":
+                    calls.add("rollback");
+                    return null;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private static ResultSetMetaData metaData(int[] types, int[] displaySizes) {
+        return (ResultSetMetaData) Proxy.newProxyInstance(ResultSetMetaData.class.getClassLoader(), new Class[]{ResultSetMetaData.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getColumnCount":
+                    return types.length;
+                case "getColumnType":
+                    return types[(int) args[0] - 1];
+                case "getColumnDisplaySize":
+                    return displaySizes[(int) args[0] - 1];
+                default:
+                    return null;
+            }
+        });
+    }
+
+}
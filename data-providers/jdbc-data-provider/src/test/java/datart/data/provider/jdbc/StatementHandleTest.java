@@ -0,0 +1,72 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package datart.data.provider.jdbc;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StatementHandleTest {
+
+    @Test
+    public void testCancelRunningStatement() {
+        AtomicInteger cancels = new AtomicInteger();
+        StatementHandle handle = new StatementHandle();
+        assertTrue(handle.attach(statement(cancels)));
+        handle.cancel();
+        assertTrue(handle.isCancelled());
+        assertEquals(1, cancels.get());
+        // 已取消的 Statement 不再重复取消
+        handle.cancel();
+        assertEquals(1, cancels.get());
+    }
+
+    @Test
+    public void testCancelBeforeAttach() {
+        AtomicInteger cancels = new AtomicInteger();
+        StatementHandle handle = new StatementHandle();
+        handle.cancel();
+        assertFalse(handle.attach(statement(cancels)));
+        assertEquals(1, cancels.get());
+    }
+
+    @Test
+    public void testDetachedStatementNotCancelled() {
+        AtomicInteger cancels = new AtomicInteger();
+        StatementHandle handle = new StatementHandle();
+        assertTrue(handle.attach(statement(cancels)));
+        handle.detach();
+        handle.cancel();
+        assertEquals(0, cancels.get());
+    }
+
+    private static Statement statement(AtomicInteger cancels) {
+        return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class[]{Statement.class}, (proxy, method, args) -> {
+            if ("cancel".equals(method.getName())) {
+                cancels.incrementAndGet();
+            }
+            return null;
+        });
+    }
+
+}
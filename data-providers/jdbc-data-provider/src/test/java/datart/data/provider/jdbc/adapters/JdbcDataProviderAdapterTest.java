@@ -0,0 +1,284 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package datart.data.provider.jdbc.adapters;
+
+import datart.core.base.PageInfo;
+import datart.core.common.Application;
+import datart.core.data.provider.Dataframe;
+import datart.data.provider.jdbc.FetchSizeTuner;
+import datart.data.provider.jdbc.JdbcProperties;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JdbcDataProviderAdapterTest {
+
+    private static final String SQL = "SELECT id FROM t";
+
+    static {
+        // 游标缓存的大小在适配器类初始化时读取，需要在此之前设置
+        StaticApplicationContext context = new StaticApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test"
+                , Collections.singletonMap("datart.jdbc.paging.cursor-cache-size", "4")));
+        new Application().setApplicationContext(context);
+    }
+
+    @AfterAll
+    public static void reset() {
+        new Application().setApplicationContext(new StaticApplicationContext());
+    }
+
+    @Test
+    public void testCountCached() throws Exception {
+        FakeDatabase db = new FakeDatabase(5);
+        JdbcDataProviderAdapter adapter = adapter(db);
+        assertEquals(5, adapter.countTotal(SQL).get().intValue());
+        assertEquals(5, adapter.countTotal(SQL).get().intValue());
+        assertEquals(1, db.countQueries.get());
+        // 不同的SQL单独计数
+        assertEquals(5, adapter.countTotal(SQL + " WHERE 1=1").get().intValue());
+        assertEquals(2, db.countQueries.get());
+    }
+
+    @Test
+    public void testCancelCountCancelsStatement() throws Exception {
+        FakeDatabase db = new FakeDatabase(5);
+        db.blockCount = true;
+        JdbcDataProviderAdapter adapter = adapter(db);
+        Future<Integer> total = adapter.countTotal(SQL);
+        assertTrue(db.countStarted.await(5, TimeUnit.SECONDS));
+        total.cancel(true);
+        assertTrue(db.countCancelled.await(5, TimeUnit.SECONDS));
+        assertTrue(total.isCancelled());
+        // 取消的查询没有写入缓存
+        db.blockCount = false;
+        assertEquals(5, adapter.countTotal(SQL).get().intValue());
+        assertEquals(2, db.countQueries.get());
+    }
+
+    @Test
+    public void testCursorKeptForNextPage() throws Exception {
+        FakeDatabase db = new FakeDatabase(5);
+        JdbcDataProviderAdapter adapter = adapter(db);
+        assertEquals(rows("r1", "r2"), values(adapter.execute(SQL, page(1))));
+        assertEquals(rows("r3", "r4"), values(adapter.execute(SQL, page(2))));
+        assertEquals(1, db.queries.get());
+        assertEquals(0, db.closedConnections.get());
+        // 最后一页读不满，游标关闭并归还连接
+        assertEquals(rows("r5"), values(adapter.execute(SQL, page(3))));
+        assertEquals(1, db.queries.get());
+        assertEquals(1, db.closedConnections.get());
+    }
+
+    @Test
+    public void testCursorReopenedForOtherPage() throws Exception {
+        FakeDatabase db = new FakeDatabase(5);
+        JdbcDataProviderAdapter adapter = adapter(db);
+        assertEquals(rows("r1", "r2"), values(adapter.execute(SQL, page(1))));
+        assertEquals(rows("r5"), values(adapter.execute(SQL, page(3))));
+        assertEquals(2, db.queries.get());
+        assertEquals(2, db.closedConnections.get());
+        // 重新查询第一页时不使用已关闭的游标
+        assertEquals(rows("r1", "r2"), values(adapter.execute(SQL, page(1))));
+        assertEquals(3, db.queries.get());
+    }
+
+    private static JdbcDataProviderAdapter adapter(FakeDatabase db) {
+        JdbcProperties properties = new JdbcProperties();
+        properties.setDbType("MYSQL");
+        // 缓存是静态的，每个用例使用不同的数据源
+        properties.setUrl("jdbc:fake://" + UUID.randomUUID());
+        properties.setUser("test");
+        JdbcDataProviderAdapter adapter = new JdbcDataProviderAdapter();
+        adapter.setJdbcProperties(properties);
+        adapter.setDataSource(db.dataSource());
+        adapter.setFetchSizeTuner(new FetchSizeTuner("MYSQL", 0, 1 << 20));
+        return adapter;
+    }
+
+    private static PageInfo page(long pageNo) {
+        return PageInfo.builder().pageNo(pageNo).pageSize(2).build();
+    }
+
+    private static List<String> rows(String... values) {
+        List<String> rows = new ArrayList<>();
+        Collections.addAll(rows, values);
+        return rows;
+    }
+
+    private static List<String> values(Dataframe dataframe) {
+        return dataframe.getRows().stream().map(row -> (String) row.get(0)).collect(Collectors.toList());
+    }
+
+    private static class FakeDatabase {
+
+        private final List<String> rows = new ArrayList<>();
+
+        private final AtomicInteger queries = new AtomicInteger();
+
+        private final AtomicInteger countQueries = new AtomicInteger();
+
+        private final AtomicInteger closedConnections = new AtomicInteger();
+
+        private final CountDownLatch countStarted = new CountDownLatch(1);
+
+        private final CountDownLatch countCancelled = new CountDownLatch(1);
+
+        private volatile boolean blockCount;
+
+        private FakeDatabase(int size) {
+            for (int i = 1; i <= size; i++) {
+                rows.add("r" + i);
+            }
+        }
+
+        private DataSource dataSource() {
+            return fake(DataSource.class, (proxy, method, args) -> "getConnection".equals(method.getName()) ? connection() : null);
+        }
+
+        private Connection connection() {
+            return fake(Connection.class, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "createStatement":
+                        return statement();
+                    case "close":
+                        closedConnections.incrementAndGet();
+                        return null;
+                    default:
+                        return null;
+                }
+            });
+        }
+
+        private Statement statement() {
+            Statement[] self = new Statement[1];
+            self[0] = fake(Statement.class, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "executeQuery":
+                        if (args[0].toString().startsWith("SELECT COUNT(*)")) {
+                            return count(self[0]);
+                        }
+                        queries.incrementAndGet();
+                        return resultSet(self[0], rows);
+                    case "cancel":
+                        countCancelled.countDown();
+                        return null;
+                    default:
+                        return null;
+                }
+            });
+            return self[0];
+        }
+
+        private ResultSet count(Statement statement) throws Exception {
+            countQueries.incrementAndGet();
+            if (blockCount) {
+                countStarted.countDown();
+                if (countCancelled.await(5, TimeUnit.SECONDS)) {
+                    throw new SQLException("cancelled");
+                }
+            }
+            return resultSet(statement, Collections.singletonList(String.valueOf(rows.size())));
+        }
+    }
+
+    private static ResultSet resultSet(Statement statement, List<String> values) {
+        int[] position = {-1};
+        ResultSetMetaData metaData = fake(ResultSetMetaData.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getColumnCount":
+                    return 1;
+                case "getColumnLabel":
+                    return "id";
+                case "getColumnTypeName":
+                    return "VARCHAR";
+                case "getColumnType":
+                    return Types.VARCHAR;
+                default:
+                    return null;
+            }
+        });
+        return fake(ResultSet.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "next":
+                    return ++position[0] < values.size();
+                case "absolute":
+                    position[0] = (int) args[0] - 1;
+                    return position[0] >= 0 && position[0] < values.size();
+                case "getString":
+                    return values.get(position[0]);
+                case "getInt":
+                    return Integer.parseInt(values.get(position[0]));
+                case "getMetaData":
+                    return metaData;
+                case "getStatement":
+                    return statement;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    /**
+     * 未处理的方法返回 null，基本类型返回默认值，equals 和 hashCode 按对象本身比较
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T fake(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return type.getSimpleName();
+                default:
+            }
+            Object value = handler.invoke(proxy, method, args);
+            if (value != null || !method.getReturnType().isPrimitive() || method.getReturnType() == void.class) {
+                return value;
+            }
+            if (method.getReturnType() == boolean.class) {
+                return false;
+            }
+            if (method.getReturnType() == long.class) {
+                return 0L;
+            }
+            return 0;
+        });
+    }
+
+}
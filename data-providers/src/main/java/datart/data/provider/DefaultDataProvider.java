@@ -24,6 +24,9 @@ import datart.core.common.DateUtils;
 import datart.core.data.provider.*;
 import datart.data.provider.calcite.SqlParserUtils;
 import datart.data.provider.local.LocalDB;
+import datart.data.provider.local.LocalMemoryGovernor;
+import lombok.AllArgsConstructor;
+import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang.math.NumberUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -55,6 +58,10 @@ public abstract class DefaultDataProvider extends DataProvider {
 
     protected static final String COLUMNS = "columns";
 
+    protected static final String CACHE_INCREMENTAL = "cacheIncremental";
+
+    protected static final String INCREMENTAL_COLUMN = "incrementalColumn";
+
     @Override
     public Object test(DataProviderSource source) throws Exception {
         PageInfo pageInfo = PageInfo.builder()
@@ -116,30 +123,38 @@ public abstract class DefaultDataProvider extends DataProvider {
     @Override
     public Dataframe execute(DataProviderSource config, QueryScript queryScript, ExecuteParam executeParam) throws Exception {
 
-        List<Dataframe> fullData = null;
-        if (!cacheExists(config)) {
-            fullData = loadFullDataFromSource(config);
-        }
-
         boolean persistent = isCacheEnabled(config);
-        Date expire = null;
-        if (persistent) {
-            expire = getExpireTime(config);
+        if (!persistent) {
+            // 非持久化查询在加载数据前申请内存额度，排队时不持有数据
+            try (LocalMemoryGovernor.Permit permit = LocalMemoryGovernor.acquire(config.getSourceId())) {
+                return LocalDB.executeLocalQuery(queryScript, executeParam, loadFullDataFromSource(config), getLocalEngine(config), permit);
+            }
         }
 
-        // 如果自定义了schema,执行分两部完成。1、执行view sql，取得中间结果。2、使用中间结果，修改schema，加入执行参数，完成执行。
-        if (queryScript != null && !CollectionUtils.isEmpty(queryScript.getSchema())) {
-            Dataframe temp = LocalDB.executeLocalQuery(queryScript, ExecuteParam.empty(), fullData, persistent, expire);
-            for (Column column : temp.getColumns()) {
-                column.setType(queryScript.getSchema().getOrDefault(column.getName(), column).getType());
-            }
-            temp.setRows(parseValues(temp.getRows(), temp.getColumns()));
-            temp.setName(queryScript.toQueryKey());
-            fullData = Collections.singletonList(temp);
-            queryScript = null;
-            persistent = false;
+        // 自定义的schema在本地查询时随视图查询一起完成类型转换
+        Dataframe dataframe = null;
+        if (cacheExists(config)) {
+            // 缓存可能在检查之后被清除或淘汰，此时返回 null，按未命中重新加载
+            dataframe = LocalDB.executeLocalQuery(queryScript, executeParam, null, true, getExpireTime(config), getLocalEngine(config));
+        }
+        if (dataframe != null) {
+            return dataframe;
+        }
+        Map<String, String> watermarks = null;
+        boolean incremental = isIncremental(config);
+        if (incremental) {
+            // 先取水位再加载数据，加载期间的新数据会在下次增量刷新时补上
+            watermarks = currentWatermarks(config);
+        }
+        List<Dataframe> fullData = loadFullDataFromSource(config);
+        dataframe = LocalDB.executeLocalQuery(queryScript, executeParam, fullData, true, getExpireTime(config), getLocalEngine(config));
+        if (dataframe == null) {
+            Exceptions.msg("No data loaded from source " + config.getSourceId());
+        }
+        if (incremental) {
+            LocalDB.saveWatermarks(config.getSourceId(), watermarks == null ? Collections.emptyMap() : watermarks);
         }
-        return LocalDB.executeLocalQuery(queryScript, executeParam, fullData, persistent, expire);
+        return dataframe;
     }
 
     protected List<Column> parseColumns(Map<String, Object> schema) {
@@ -159,6 +174,22 @@ public abstract class DefaultDataProvider extends DataProvider {
 
     public abstract List<Dataframe> loadFullDataFromSource(DataProviderSource config) throws Exception;
 
+    /**
+     * 加载水位之后的新增数据，用于增量刷新缓存。返回 null 表示无法增量加载，需要全量重建缓存
+     *
+     * @param watermarks 缓存中保存的水位，以及各缓存表中水位列的最大值(以表名为键)
+     */
+    protected IncrementalData loadIncrementalDataFromSource(DataProviderSource config, Map<String, String> watermarks) throws Exception {
+        return null;
+    }
+
+    /**
+     * 数据源当前的水位，全量加载前调用，缓存写入后保存。水位列的最大值可以直接从缓存中取得，不需要在这里返回
+     */
+    protected Map<String, String> currentWatermarks(DataProviderSource config) throws Exception {
+        return null;
+    }
+
     /**
      * 检查该数据源缓存中数据是否存在
      */
@@ -170,7 +201,42 @@ public abstract class DefaultDataProvider extends DataProvider {
         if (!Boolean.parseBoolean(cacheEnable.toString())) {
             return false;
         }
-        return !LocalDB.checkCacheExpired(config.getSourceId());
+        boolean staleWhileRevalidate = Boolean.parseBoolean(String.valueOf(config.getProperties().get("cacheStaleWhileRevalidate")));
+        boolean incremental = isIncremental(config);
+        switch (LocalDB.checkCache(config.getSourceId(), staleWhileRevalidate || incremental)) {
+            case FRESH:
+                return true;
+            case STALE:
+                // 只追加新增数据，表结构变化等无法增量刷新的情况下再全量重建
+                if (incremental && refreshIncrementally(config)) {
+                    return true;
+                }
+                if (staleWhileRevalidate) {
+                    // 过期缓存继续提供查询，同时在后台重建
+                    LocalDB.revalidateCache(config.getSourceId(), () -> loadFullDataFromSource(config), getExpireTime(config),
+                            incremental ? () -> currentWatermarks(config) : null);
+                    return true;
+                }
+                LocalDB.clearCache(config.getSourceId());
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    private boolean refreshIncrementally(DataProviderSource config) {
+        try {
+            String column = getIncrementalColumn(config);
+            Map<String, String> watermarks = LocalDB.getWatermarks(config.getSourceId(), column);
+            IncrementalData incrementalData = loadIncrementalDataFromSource(config, watermarks);
+            if (incrementalData == null) {
+                return false;
+            }
+            return LocalDB.appendCache(config.getSourceId(), incrementalData.getIncrements(), incrementalData.getWatermarks(), column, getExpireTime(config));
+        } catch (Exception e) {
+            log.warn("incremental refresh of source " + config.getSourceId() + " failed, rebuild the cache", e);
+            return false;
+        }
     }
 
     @Override
@@ -268,6 +334,20 @@ public abstract class DefaultDataProvider extends DataProvider {
         }
     }
 
+    protected boolean isIncremental(DataProviderSource config) {
+        return Boolean.parseBoolean(String.valueOf(config.getProperties().get(CACHE_INCREMENTAL)));
+    }
+
+    protected String getIncrementalColumn(DataProviderSource config) {
+        Object column = config.getProperties().get(INCREMENTAL_COLUMN);
+        return column == null || StringUtils.isBlank(column.toString()) ? null : column.toString();
+    }
+
+    protected String getLocalEngine(DataProviderSource config) {
+        Object engine = config.getProperties().get("localEngine");
+        return engine == null ? null : engine.toString();
+    }
+
     protected Date getExpireTime(DataProviderSource config) {
         Object cacheTimeout = config.getProperties().get("cacheTimeout");
         if (cacheTimeout == null) {
@@ -278,4 +358,20 @@ public abstract class DefaultDataProvider extends DataProvider {
         return instance.getTime();
     }
 
+    @Data
+    @AllArgsConstructor
+    protected static class IncrementalData {
+
+        /**
+         * 新增数据，表名与缓存表一致
+         */
+        private List<Dataframe> increments;
+
+        /**
+         * 追加后的新水位，为空时不更新已保存的水位
+         */
+        private Map<String, String> watermarks;
+
+    }
+
 }
@@ -24,8 +24,11 @@ import datart.core.base.processor.ProcessorResponse;
 import datart.core.data.provider.*;
 import datart.core.data.provider.processor.DataProviderPostProcessor;
 import datart.core.data.provider.processor.DataProviderPreProcessor;
+import datart.data.provider.local.LocalCacheManager;
+import datart.data.provider.local.LocalMemoryGovernor;
 import datart.data.provider.optimize.DataProviderExecuteOptimizer;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
@@ -97,6 +100,11 @@ public class ProviderManager extends DataProviderExecuteOptimizer implements Dat
         return getDataProviderService(source.getType()).readTableColumns(source, database, table);
     }
 
+    @Override
+    public void refreshMetadata(DataProviderSource source) {
+        getDataProviderService(source.getType()).refreshMetadata(source);
+    }
+
     @Override
     public Dataframe execute(DataProviderSource source, QueryScript queryScript, ExecuteParam param) throws Exception {
 
@@ -107,6 +115,10 @@ public class ProviderManager extends DataProviderExecuteOptimizer implements Dat
         }
         Dataframe dataframe;
 
+        if (param.getWriter() != null && !streamable(param)) {
+            param.setWriter(null);
+        }
+
         String queryKey = DataProviderUtils.toCacheKey(source, queryScript, param);
 
         if (param.isCacheEnable()) {
@@ -133,6 +145,23 @@ public class ProviderManager extends DataProviderExecuteOptimizer implements Dat
 
     }
 
+    /**
+     * 缓存、合并相同查询和后置处理都需要完整结果，这些情况下不使用流式输出
+     */
+    private boolean streamable(ExecuteParam param) {
+        if (param.isCacheEnable() || param.isConcurrencyOptimize()) {
+            return false;
+        }
+        if (!CollectionUtils.isEmpty(extendProcessors)) {
+            for (ExtendProcessor processor : extendProcessors) {
+                if (processor instanceof DataProviderPostProcessor) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     private ProcessorResponse preProcessorQuery(DataProviderSource source, QueryScript queryScript, ExecuteParam param) {
         if (!CollectionUtils.isEmpty(extendProcessors)) {
             for (ExtendProcessor processor : extendProcessors) {
@@ -178,6 +207,43 @@ public class ProviderManager extends DataProviderExecuteOptimizer implements Dat
         providerService.resetSource(source);
     }
 
+    @Override
+    public List<LocalCacheInfo> listLocalCaches() {
+        return LocalCacheManager.inventory();
+    }
+
+    @Override
+    public Map<String, Object> localMemoryMetrics() {
+        return LocalMemoryGovernor.metrics();
+    }
+
+    @Override
+    public Map<String, Object> sourceHealth() {
+        Map<String, Object> health = new HashMap<>();
+        for (DataProvider dataProvider : cachedDataProviders.values()) {
+            health.putAll(dataProvider.health());
+        }
+        return health;
+    }
+
+    /**
+     * 流式输出时，在每批数据写出前清除无权限的列
+     */
+    private DataframeWriter excludeColumns(DataframeWriter writer, Set<String> include) {
+        return new DataframeWriter() {
+            @Override
+            public void writeColumns(List<Column> columns) throws IOException {
+                writer.writeColumns(columns);
+            }
+
+            @Override
+            public void writeRows(Dataframe batch) throws IOException {
+                excludeColumns(batch, include);
+                writer.writeRows(batch);
+            }
+        };
+    }
+
     private void excludeColumns(Dataframe data, Set<String> include) {
         if (data == null
                 || CollectionUtils.isEmpty(data.getColumns())
@@ -194,7 +260,14 @@ public class ProviderManager extends DataProviderExecuteOptimizer implements Dat
                 excludeIndex.add(i);
             }
         }
-        if (excludeIndex.size() > 0) {
+        if (excludeIndex.size() == 0) {
+            return;
+        }
+        if (data instanceof ColumnarDataframe) {
+            for (Integer index : excludeIndex) {
+                ((ColumnarDataframe) data).clearColumn(index);
+            }
+        } else {
             data.getRows().parallelStream().forEach(row -> {
                 for (Integer index : excludeIndex) {
                     row.set(index, null);
@@ -228,9 +301,19 @@ public class ProviderManager extends DataProviderExecuteOptimizer implements Dat
 
     @Override
     public Dataframe run(DataProviderSource source, QueryScript queryScript, ExecuteParam param) throws Exception {
-        Dataframe dataframe = getDataProviderService(source.getType()).execute(source, queryScript, param);
-        excludeColumns(dataframe, param.getIncludeColumns());
-        return dataframe;
+        DataProvider provider = getDataProviderService(source.getType());
+        Object maxConcurrency = source.getProperties() == null ? null : source.getProperties().get(SourceBulkhead.SOURCE_MAX_CONCURRENCY);
+        if (maxConcurrency == null || StringUtils.isBlank(maxConcurrency.toString())) {
+            maxConcurrency = provider.defaultConcurrency(source);
+        }
+        if (param.getWriter() != null) {
+            param.setWriter(excludeColumns(param.getWriter(), param.getIncludeColumns()));
+        }
+        try (SourceBulkhead.Permit ignored = SourceBulkhead.acquire(source.getSourceId(), maxConcurrency, param.getTenant(), param.getPriority())) {
+            Dataframe dataframe = provider.execute(source, queryScript, param);
+            excludeColumns(dataframe, param.getIncludeColumns());
+            return dataframe;
+        }
     }
 
 }
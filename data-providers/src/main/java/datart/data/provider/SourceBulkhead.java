@@ -0,0 +1,232 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datart.data.provider;
+
+import datart.core.base.exception.Exceptions;
+import datart.core.common.Application;
+import datart.core.data.provider.QueryPriority;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 数据源的并发隔离：每个数据源同时执行的查询数有上限，超出的查询在有界队列中等待。
+ * 有空位时先调度优先级高的查询，同一优先级中选择在该数据源上执行中查询最少的组织/用户，保证一个组织的大量查询不会占满数据源。
+ * 队列已满或等待超时时立即返回数据源繁忙，而不是等到连接池超时。
+ */
+@Slf4j
+public class SourceBulkhead {
+
+    private static final String MAX_CONCURRENCY = "datart.data-provider.bulkhead.max-concurrency";
+
+    private static final String MAX_QUEUE = "datart.data-provider.bulkhead.max-queue";
+
+    private static final String QUEUE_TIMEOUT = "datart.data-provider.bulkhead.queue-timeout";
+
+    /**
+     * 数据源配置中单独指定的最大并发数
+     */
+    public static final String SOURCE_MAX_CONCURRENCY = "maxConcurrency";
+
+    private static final int DEFAULT_MAX_CONCURRENCY = 8;
+
+    private static final int DEFAULT_MAX_QUEUE = 64;
+
+    private static final long DEFAULT_QUEUE_TIMEOUT_SECONDS = 30;
+
+    private static final Map<String, Lane> LANES = new ConcurrentHashMap<>();
+
+    /**
+     * 查询占用的执行位置，查询结束后关闭以归还
+     */
+    public static class Permit implements AutoCloseable {
+
+        private final Lane lane;
+
+        private final String tenant;
+
+        private Permit(Lane lane, String tenant) {
+            this.lane = lane;
+            this.tenant = tenant;
+        }
+
+        @Override
+        public void close() {
+            lane.release(tenant);
+        }
+    }
+
+    /**
+     * 申请在数据源上执行查询
+     *
+     * @param sourceId       数据源
+     * @param maxConcurrency 数据源单独配置的最大并发数，为空时使用全局配置
+     * @param tenant         发起查询的组织/用户
+     * @param priority       查询优先级
+     */
+    public static Permit acquire(String sourceId, Object maxConcurrency, String tenant, QueryPriority priority) throws InterruptedException {
+        int max;
+        if (maxConcurrency != null && maxConcurrency.toString().trim().length() > 0) {
+            max = Integer.parseInt(maxConcurrency.toString().trim());
+        } else {
+            max = Integer.parseInt(Application.getProperty(MAX_CONCURRENCY, String.valueOf(DEFAULT_MAX_CONCURRENCY)));
+        }
+        int maxQueue = Integer.parseInt(Application.getProperty(MAX_QUEUE, String.valueOf(DEFAULT_MAX_QUEUE)));
+        long timeout = TimeUnit.SECONDS.toMillis(Long.parseLong(Application.getProperty(QUEUE_TIMEOUT, String.valueOf(DEFAULT_QUEUE_TIMEOUT_SECONDS))));
+        Lane lane = LANES.computeIfAbsent(sourceId, id -> new Lane());
+        return lane.acquire(sourceId, max, maxQueue, timeout, tenant == null ? "" : tenant, priority == null ? QueryPriority.INTERACTIVE : priority);
+    }
+
+    /**
+     * 各数据源的执行和排队情况
+     */
+    public static Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        for (Map.Entry<String, Lane> entry : LANES.entrySet()) {
+            Lane lane = entry.getValue();
+            synchronized (lane) {
+                Map<String, Object> laneMetrics = new LinkedHashMap<>();
+                laneMetrics.put("running", lane.running);
+                laneMetrics.put("queued", lane.waiting.size());
+                laneMetrics.put("rejected", lane.rejected);
+                metrics.put(entry.getKey(), laneMetrics);
+            }
+        }
+        return metrics;
+    }
+
+    private static class Waiter {
+
+        private final String tenant;
+
+        private final QueryPriority priority;
+
+        private final long seq;
+
+        private boolean granted;
+
+        private Waiter(String tenant, QueryPriority priority, long seq) {
+            this.tenant = tenant;
+            this.priority = priority;
+            this.seq = seq;
+        }
+    }
+
+    static class Lane {
+
+        private int running;
+
+        private long seq;
+
+        private long rejected;
+
+        private int max;
+
+        private final Map<String, Integer> runningByTenant = new HashMap<>();
+
+        private final List<Waiter> waiting = new LinkedList<>();
+
+        /**
+         * @param maxQueue 最多排队的查询数
+         * @param timeout  排队等待的最长时间(毫秒)
+         */
+        synchronized Permit acquire(String sourceId, int max, int maxQueue, long timeout, String tenant, QueryPriority priority) throws InterruptedException {
+            this.max = max;
+            if (running < max && waiting.isEmpty()) {
+                grant(tenant);
+                return new Permit(this, tenant);
+            }
+            if (waiting.size() >= maxQueue) {
+                return busy(sourceId);
+            }
+            Waiter waiter = new Waiter(tenant, priority, seq++);
+            waiting.add(waiter);
+            long deadline = System.currentTimeMillis() + timeout;
+            try {
+                dispatch();
+                while (!waiter.granted) {
+                    long wait = deadline - System.currentTimeMillis();
+                    if (wait <= 0) {
+                        return busy(sourceId);
+                    }
+                    wait(wait);
+                }
+            } catch (InterruptedException e) {
+                if (waiter.granted) {
+                    // 已分配的位置没有返回给调用方，需要归还
+                    release(tenant);
+                }
+                throw e;
+            } finally {
+                if (!waiter.granted) {
+                    waiting.remove(waiter);
+                }
+            }
+            return new Permit(this, tenant);
+        }
+
+        synchronized int running() {
+            return running;
+        }
+
+        synchronized int queued() {
+            return waiting.size();
+        }
+
+        private synchronized void release(String tenant) {
+            running--;
+            runningByTenant.computeIfPresent(tenant, (k, v) -> v > 1 ? v - 1 : null);
+            dispatch();
+        }
+
+        /**
+         * 有空位时，按 优先级、组织/用户执行中的查询数、排队顺序 选择下一个查询
+         */
+        private void dispatch() {
+            boolean granted = false;
+            while (running < max && !waiting.isEmpty()) {
+                Waiter next = Collections.min(waiting, Comparator
+                        .comparingInt((Waiter w) -> w.priority.ordinal())
+                        .thenComparingInt(w -> runningByTenant.getOrDefault(w.tenant, 0))
+                        .thenComparingLong(w -> w.seq));
+                waiting.remove(next);
+                grant(next.tenant);
+                next.granted = true;
+                granted = true;
+            }
+            if (granted) {
+                notifyAll();
+            }
+        }
+
+        private void grant(String tenant) {
+            running++;
+            runningByTenant.merge(tenant, 1, Integer::sum);
+        }
+
+        private Permit busy(String sourceId) {
+            rejected++;
+            log.warn("Source {} is busy, running {}, queued {}", sourceId, running, waiting.size());
+            Exceptions.msg("message.provider.source.busy");
+            return null;
+        }
+    }
+
+}
@@ -42,6 +42,13 @@ public class SqlBuilder {
 
     private static final String T = "DATART_VTABLE";
 
+    /**
+     * 使用 ROW_NUMBER() 分页时添加的行号列，位于结果集的第一列
+     */
+    public static final String ROW_NUMBER_COLUMN = "DATART_ROW_NUM";
+
+    private static final String ROW_NUMBER_PAGE_SQL = "SELECT * FROM (%s) DATART_PAGE WHERE %s > %d AND %s <= %d ORDER BY %s";
+
     private String srcSql;
 
     private final Map<String, SqlNode> functionColumnMap = new HashMap<>();
@@ -52,6 +59,8 @@ public class SqlBuilder {
 
     private boolean withPage;
 
+    private boolean rowNumberPaging;
+
     private SqlBuilder() {
     }
 
@@ -88,6 +97,24 @@ public class SqlBuilder {
         return this;
     }
 
+    /**
+     * 数据库不支持 FETCH/OFFSET 时，使用 ROW_NUMBER() 窗口函数分页
+     */
+    public SqlBuilder withRowNumberPaging(boolean rowNumberPaging) {
+        this.rowNumberPaging = rowNumberPaging;
+        return this;
+    }
+
+    /**
+     * 查询是否可以使用 ROW_NUMBER() 分页。行号依赖排序才能保证各页之间不重复，DISTINCT 查询加上行号后无法去重
+     */
+    public static boolean canPageByRowNumber(ExecuteParam executeParam) {
+        return executeParam != null
+                && executeParam.getPageInfo() != null
+                && !CollectionUtils.isEmpty(executeParam.getOrders())
+                && (CollectionUtils.isEmpty(executeParam.getKeywords()) || !executeParam.getKeywords().contains(SelectKeyword.DISTINCT));
+    }
+
 
     /**
      * 根据页面操作生成的Aggregator,Filter,Group By, Order By等操作符，重新构建SQL。
@@ -208,6 +235,8 @@ public class SqlBuilder {
         if (withPage && (dialect instanceof FetchAndOffsetSupport) && executeParam.getPageInfo() != null) {
             fetch = SqlLiteral.createExactNumeric(Math.min(executeParam.getPageInfo().getPageSize(), Integer.MAX_VALUE) + "", SqlParserPos.ZERO);
             offset = SqlLiteral.createExactNumeric(Math.min((executeParam.getPageInfo().getPageNo() - 1) * executeParam.getPageInfo().getPageSize(), Integer.MAX_VALUE) + "", SqlParserPos.ZERO);
+        } else if (withPage && rowNumberPaging && canPageByRowNumber(executeParam)) {
+            return pageByRowNumber(keywordList, selectList, from, where, groupBy, having, orderBy);
         }
 
         SqlSelect sqlSelect = new SqlSelect(SqlParserPos.ZERO,
@@ -225,6 +254,45 @@ public class SqlBuilder {
         return SqlNodeUtils.toSql(sqlSelect, this.dialect);
     }
 
+    /**
+     * SELECT * FROM (SELECT ROW_NUMBER() OVER(ORDER BY <orders>) ROW_NUM, ... ) WHERE ROW_NUM > offset AND ROW_NUM <= offset + size
+     */
+    private String pageByRowNumber(SqlNodeList keywordList, SqlNodeList selectList, SqlNode from, SqlNode where,
+                                   SqlNodeList groupBy, SqlNode having, SqlNodeList orderBy) {
+        SqlNodeList numberedList = new SqlNodeList(SqlParserPos.ZERO);
+        SqlWindow window = SqlWindow.create(null, null, SqlNodeList.EMPTY, orderBy, SqlLiteral.createBoolean(false, SqlParserPos.ZERO),
+                null, null, null, SqlParserPos.ZERO);
+        SqlNode rowNumber = new SqlBasicCall(SqlStdOperatorTable.OVER,
+                new SqlNode[]{new SqlBasicCall(SqlStdOperatorTable.ROW_NUMBER, new SqlNode[0], SqlParserPos.ZERO), window},
+                SqlParserPos.ZERO);
+        numberedList.add(SqlNodeUtils.createAliasNode(rowNumber, ROW_NUMBER_COLUMN));
+        for (SqlNode node : selectList) {
+            if (node instanceof SqlIdentifier && ((SqlIdentifier) node).isStar()) {
+                // 其它列之后不能使用不带表名的 *
+                numberedList.add(SqlIdentifier.star(Arrays.asList(T, ""), SqlParserPos.ZERO,
+                        Arrays.asList(SqlParserPos.ZERO, SqlParserPos.ZERO)));
+            } else {
+                numberedList.add(node);
+            }
+        }
+        SqlSelect sqlSelect = new SqlSelect(SqlParserPos.ZERO,
+                keywordList,
+                numberedList,
+                from,
+                where,
+                groupBy.size() > 0 ? groupBy : null,
+                having,
+                null,
+                null,
+                null,
+                null,
+                null);
+        long start = (executeParam.getPageInfo().getPageNo() - 1) * executeParam.getPageInfo().getPageSize();
+        String rowNum = dialect.quoteIdentifier(ROW_NUMBER_COLUMN);
+        return String.format(ROW_NUMBER_PAGE_SQL, SqlNodeUtils.toSql(sqlSelect, this.dialect),
+                rowNum, start, rowNum, start + executeParam.getPageInfo().getPageSize(), rowNum);
+    }
+
     private SqlNode createAggNode(AggregateOperator.SqlOperator sqlOperator, String column, String alias) {
         SqlOperator sqlOp = mappingSqlAggFunction(sqlOperator);
         SqlNode sqlNode;
@@ -0,0 +1,140 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datart.data.provider.jdbc;
+
+import datart.core.base.consts.ValueType;
+import datart.core.data.provider.SingleTypedValue;
+import datart.data.provider.calcite.SqlFragment;
+import lombok.Getter;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.commons.codec.binary.Hex;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 变量的绑定执行。渲染SQL时变量值写为包含类型和值的标记，执行前将标记依次替换为 ? 并按顺序绑定变量值，
+ * 使不同变量值的查询使用相同的SQL，可以复用数据库的执行计划和连接池的 PreparedStatement 缓存
+ */
+@Getter
+public class BindVariables {
+
+    private static final String MARKER = "__DATART_BIND_%s_%s__";
+
+    private static final Pattern MARKER_PATTERN = Pattern.compile("__DATART_BIND_([A-Z]+)_([0-9a-f]*)__");
+
+    private final String sql;
+
+    private final List<SingleTypedValue> values;
+
+    private BindVariables(String sql, List<SingleTypedValue> values) {
+        this.sql = sql;
+        this.values = values;
+    }
+
+    /**
+     * 类型是否可以绑定。表达式、关键字等类型的变量是SQL的一部分，只能直接替换
+     */
+    public static boolean bindable(ValueType valueType) {
+        return valueType == ValueType.STRING
+                || valueType == ValueType.NUMERIC
+                || valueType == ValueType.DATE
+                || valueType == ValueType.BOOLEAN;
+    }
+
+    public static String marker(ValueType valueType, String value) {
+        return String.format(MARKER, valueType.name(), Hex.encodeHexString(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public static SqlNode markerNode(ValueType valueType, String value) {
+        return new SqlFragment(marker(valueType, value));
+    }
+
+    /**
+     * 将SQL中的变量标记替换为 ?
+     *
+     * @return SQL中没有变量标记时返回空
+     */
+    public static BindVariables parse(String sql) {
+        if (sql == null || !sql.contains("__DATART_BIND_")) {
+            return null;
+        }
+        Matcher matcher = MARKER_PATTERN.matcher(sql);
+        List<SingleTypedValue> values = new ArrayList<>();
+        StringBuffer buffer = new StringBuffer();
+        while (matcher.find()) {
+            try {
+                String value = new String(Hex.decodeHex(matcher.group(2).toCharArray()), StandardCharsets.UTF_8);
+                values.add(new SingleTypedValue(value, ValueType.valueOf(matcher.group(1))));
+            } catch (Exception e) {
+                // 不是变量标记，保持原样
+                matcher.appendReplacement(buffer, Matcher.quoteReplacement(matcher.group()));
+                continue;
+            }
+            matcher.appendReplacement(buffer, "?");
+        }
+        matcher.appendTail(buffer);
+        if (values.isEmpty()) {
+            return null;
+        }
+        return new BindVariables(buffer.toString(), values);
+    }
+
+    /**
+     * 实际执行的SQL，用于展示
+     */
+    public static String preparedSql(String sql) {
+        BindVariables bindVariables = parse(sql);
+        return bindVariables == null ? sql : bindVariables.getSql();
+    }
+
+    public void bind(PreparedStatement statement) throws SQLException {
+        for (int i = 0; i < values.size(); i++) {
+            SingleTypedValue value = values.get(i);
+            String val = value.getValue().toString();
+            switch (value.getValueType()) {
+                case NUMERIC:
+                    statement.setBigDecimal(i + 1, new BigDecimal(val));
+                    break;
+                case BOOLEAN:
+                    statement.setBoolean(i + 1, Boolean.parseBoolean(val));
+                    break;
+                case DATE:
+                    Timestamp timestamp;
+                    try {
+                        timestamp = Timestamp.valueOf(val);
+                    } catch (IllegalArgumentException e) {
+                        statement.setString(i + 1, val);
+                        break;
+                    }
+                    statement.setTimestamp(i + 1, timestamp);
+                    break;
+                default:
+                    statement.setString(i + 1, val);
+            }
+        }
+    }
+
+}
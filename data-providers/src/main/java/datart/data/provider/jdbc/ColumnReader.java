@@ -0,0 +1,83 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datart.data.provider.jdbc;
+
+import datart.core.data.provider.ColumnarDataframe;
+import datart.core.data.provider.vector.*;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * 从结果集读取一列的值写入列存储。根据列类型选择一次读取方法，避免逐个单元格调用 getObject 产生的装箱和驱动特有类型
+ */
+@FunctionalInterface
+public interface ColumnReader {
+
+    void read(ResultSet rs) throws SQLException;
+
+    /**
+     * @param metaData  结果集元数据
+     * @param column    结果集中的列序号(从1开始)
+     * @param dataframe 写入的列存储
+     * @param index     列存储中的列序号
+     */
+    static ColumnReader create(ResultSetMetaData metaData, int column, ColumnarDataframe dataframe, int index) throws SQLException {
+        ColumnVector vector = dataframe.vector(index);
+        int sqlType = metaData.getColumnType(column);
+        if (vector instanceof LongVector && (sqlType != Types.BIGINT || metaData.isSigned(column))) {
+            LongVector longVector = (LongVector) vector;
+            return rs -> {
+                long value = rs.getLong(column);
+                if (rs.wasNull()) {
+                    longVector.appendNull();
+                } else {
+                    longVector.appendLong(value);
+                }
+            };
+        }
+        if (vector instanceof DoubleVector) {
+            DoubleVector doubleVector = (DoubleVector) vector;
+            return rs -> {
+                double value = rs.getDouble(column);
+                if (rs.wasNull()) {
+                    doubleVector.appendNull();
+                } else {
+                    doubleVector.appendDouble(value);
+                }
+            };
+        }
+        if (vector instanceof StringVector) {
+            StringVector stringVector = (StringVector) vector;
+            return rs -> stringVector.appendString(rs.getString(column));
+        }
+        switch (sqlType) {
+            case Types.TIMESTAMP:
+            case Types.TIMESTAMP_WITH_TIMEZONE:
+                return rs -> vector.append(rs.getTimestamp(column));
+            case Types.DATE:
+                return rs -> vector.append(rs.getDate(column));
+            default:
+                // 类型不确定时读取对象，值超出列存储的表示范围时由 dataframe 转为对象存储
+                return rs -> dataframe.appendValue(index, rs.getObject(column));
+        }
+    }
+
+}
@@ -19,9 +19,12 @@ package datart.data.provider.jdbc;
 
 import datart.core.base.consts.ValueType;
 import datart.core.base.consts.JavaType;
+import datart.core.data.provider.vector.*;
 import org.apache.calcite.sql.type.SqlTypeFamily;
 import org.apache.calcite.sql.type.SqlTypeName;
 
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
 import java.sql.Types;
 import java.util.Date;
 
@@ -123,5 +126,34 @@ public class DataTypeUtils {
         }
     }
 
+    /**
+     * 根据结果集的列类型创建对应的列存储。整数使用 long 数组，浮点数使用 double 数组，字符串使用字典编码，
+     * DECIMAL/NUMERIC 保留驱动返回的 BigDecimal，REAL 保留 Float(转为 double 会改变显示值)，与其它类型一样按对象保存。
+     */
+    public static ColumnVector createColumnVector(ResultSetMetaData metaData, int column, int capacity) throws SQLException {
+        switch (metaData.getColumnType(column)) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+                return new LongVector(capacity);
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return new DoubleVector(capacity);
+            case Types.REAL:
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return new ObjectVector(ValueType.NUMERIC, capacity);
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGNVARCHAR:
+                return new StringVector(capacity);
+            default:
+                return new ObjectVector(sqlType2DataType(metaData.getColumnTypeName(column)), capacity);
+        }
+    }
 
 }
@@ -21,6 +21,8 @@ package datart.data.provider.jdbc;
 import lombok.Data;
 
 import javax.validation.constraints.NotBlank;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 @Data
@@ -41,6 +43,28 @@ public class JdbcProperties {
 
     private boolean enableSpecialSql;
 
+    /**
+     * 查询的最长执行时间(秒)，0 为不限制
+     */
+    private int queryTimeout;
+
+    /**
+     * 每次往返读取的行数，0 为按数据库类型和查询自动确定
+     */
+    private int fetchSize;
+
+    /**
+     * 变量以绑定参数(?)的方式传入，并开启连接池的预编译语句缓存
+     */
+    private boolean bindVariables;
+
+    /**
+     * 只读副本的连接地址，与主库使用相同的用户和配置
+     */
+    private List<String> replicas = new ArrayList<>();
+
+    private RoutingPolicy routingPolicy;
+
     @Override
     public String toString() {
         return "JdbcConnectionProperties{" +
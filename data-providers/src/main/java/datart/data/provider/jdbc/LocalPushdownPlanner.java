@@ -0,0 +1,362 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datart.data.provider.jdbc;
+
+import datart.core.base.consts.ValueType;
+import datart.core.data.provider.*;
+import datart.core.data.provider.sql.*;
+import datart.data.provider.calcite.SqlParserUtils;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.calcite.sql.SqlIdentifier;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.SqlSelect;
+import org.apache.calcite.sql.util.SqlBasicVisitor;
+import org.springframework.util.CollectionUtils;
+
+import java.util.*;
+
+/**
+ * 服务端聚合时，将数据源可以执行的部分下推到数据源，只把剩余部分交给本地执行：
+ * <p>
+ * 1. 不依赖计算字段的明细过滤条件在数据源执行；
+ * 2. 只查询用到的列；
+ * 3. 聚合可以分解时（SUM/MIN/MAX/COUNT，分组和聚合都不依赖计算字段），先在数据源按分组预聚合，本地再合并。
+ * <p>
+ * 依赖计算字段（数据源可能不支持的函数）的部分仍在本地执行。
+ */
+@Slf4j
+@Getter
+public class LocalPushdownPlanner {
+
+    private static final Set<AggregateOperator.SqlOperator> DECOMPOSABLE = EnumSet.of(
+            AggregateOperator.SqlOperator.SUM,
+            AggregateOperator.SqlOperator.MIN,
+            AggregateOperator.SqlOperator.MAX,
+            AggregateOperator.SqlOperator.COUNT);
+
+    /**
+     * 在数据源执行的参数，为空时从数据源查询视图的全部数据
+     */
+    private ExecuteParam sourceParam;
+
+    /**
+     * 本地执行的参数
+     */
+    private ExecuteParam localParam;
+
+    /**
+     * 预聚合后本地结果的列名 -> 原查询的列名
+     */
+    private final Map<String, String> renames = new HashMap<>();
+
+    private LocalPushdownPlanner() {
+    }
+
+    public static LocalPushdownPlanner plan(QueryScript script, ExecuteParam executeParam) {
+        LocalPushdownPlanner planner = new LocalPushdownPlanner();
+        planner.localParam = executeParam;
+        if (executeParam == null) {
+            return planner;
+        }
+        Set<String> functionColumns = new HashSet<>();
+        if (!CollectionUtils.isEmpty(executeParam.getFunctionColumns())) {
+            for (FunctionColumn functionColumn : executeParam.getFunctionColumns()) {
+                functionColumns.add(functionColumn.getAlias());
+            }
+        }
+
+        List<FilterOperator> pushed = new ArrayList<>();
+        List<FilterOperator> remaining = new ArrayList<>();
+        if (!CollectionUtils.isEmpty(executeParam.getFilters())) {
+            for (FilterOperator filter : executeParam.getFilters()) {
+                if (canPush(filter, functionColumns)) {
+                    pushed.add(filter);
+                } else {
+                    remaining.add(filter);
+                }
+            }
+        }
+
+        ExecuteParam sourceParam = new ExecuteParam();
+        sourceParam.setFilters(pushed);
+        ExecuteParam localParam = copy(executeParam);
+        localParam.setFilters(remaining);
+
+        if (canPreAggregate(executeParam, remaining, functionColumns)) {
+            planner.preAggregate(executeParam, sourceParam, localParam);
+        } else {
+            List<String> projection = projection(script, executeParam, remaining, functionColumns);
+            if (projection != null) {
+                sourceParam.setColumns(projection);
+            }
+        }
+        if (pushed.isEmpty() && CollectionUtils.isEmpty(sourceParam.getColumns()) && CollectionUtils.isEmpty(sourceParam.getAggregators())) {
+            return planner;
+        }
+        planner.sourceParam = sourceParam;
+        planner.localParam = localParam;
+        return planner;
+    }
+
+    /**
+     * 预聚合后，将本地结果的列名恢复为原查询的列名
+     */
+    public void restoreColumnNames(Dataframe dataframe) {
+        if (renames.isEmpty() || dataframe == null || dataframe.getColumns() == null) {
+            return;
+        }
+        for (Column column : dataframe.getColumns()) {
+            String name = renames.get(column.getName());
+            if (name != null) {
+                column.setName(name);
+            }
+        }
+    }
+
+    private static boolean canPush(FilterOperator filter, Set<String> functionColumns) {
+        if (filter.getAggOperator() != null
+                || filter.getColumn() == null
+                || functionColumns.contains(filter.getColumn())) {
+            return false;
+        }
+        if (filter.getValues() != null) {
+            for (SingleTypedValue value : filter.getValues()) {
+                if (value.getValueType() == ValueType.SNIPPET) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean canPreAggregate(ExecuteParam executeParam, List<FilterOperator> remaining, Set<String> functionColumns) {
+        if (CollectionUtils.isEmpty(executeParam.getAggregators())
+                || !CollectionUtils.isEmpty(executeParam.getKeywords())
+                || !CollectionUtils.isEmpty(executeParam.getColumns())) {
+            return false;
+        }
+        for (AggregateOperator aggregator : executeParam.getAggregators()) {
+            if (!decomposable(aggregator.getSqlOperator(), aggregator.getColumn(), functionColumns)) {
+                return false;
+            }
+        }
+        Set<String> groups = new HashSet<>();
+        if (!CollectionUtils.isEmpty(executeParam.getGroups())) {
+            for (GroupByOperator group : executeParam.getGroups()) {
+                if (group.getColumn() == null || functionColumns.contains(group.getColumn())) {
+                    return false;
+                }
+                groups.add(group.getColumn());
+            }
+        }
+        // 留在本地的只能是聚合后的过滤条件，明细过滤条件需要原始数据
+        for (FilterOperator filter : remaining) {
+            if (filter.getAggOperator() == null
+                    || !decomposable(filter.getAggOperator(), filter.getColumn(), functionColumns)) {
+                return false;
+            }
+        }
+        if (!CollectionUtils.isEmpty(executeParam.getOrders())) {
+            for (OrderOperator order : executeParam.getOrders()) {
+                if (order.getAggOperator() != null) {
+                    if (!decomposable(order.getAggOperator(), order.getColumn(), functionColumns)) {
+                        return false;
+                    }
+                } else if (order.getColumn() != null && !groups.contains(order.getColumn())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean decomposable(AggregateOperator.SqlOperator operator, String column, Set<String> functionColumns) {
+        return operator != null
+                && DECOMPOSABLE.contains(operator)
+                && column != null
+                && !functionColumns.contains(column);
+    }
+
+    /**
+     * 数据源按分组计算部分聚合结果，列名为 函数(列)；本地对部分结果再次聚合，COUNT 的部分结果求和
+     */
+    private void preAggregate(ExecuteParam executeParam, ExecuteParam sourceParam, ExecuteParam localParam) {
+        Map<String, AggregateOperator> partials = new LinkedHashMap<>();
+
+        List<AggregateOperator> aggregators = new ArrayList<>();
+        for (AggregateOperator aggregator : executeParam.getAggregators()) {
+            String partial = partial(partials, aggregator.getSqlOperator(), aggregator.getColumn());
+            AggregateOperator merge = new AggregateOperator();
+            merge.setSqlOperator(mergeOperator(aggregator.getSqlOperator()));
+            merge.setColumn(partial);
+            aggregators.add(merge);
+            renames.put(merge.getSqlOperator().name() + "(" + partial + ")", partial);
+        }
+        localParam.setAggregators(aggregators);
+
+        List<FilterOperator> filters = new ArrayList<>();
+        for (FilterOperator filter : localParam.getFilters()) {
+            FilterOperator merge = new FilterOperator();
+            merge.setColumn(partial(partials, filter.getAggOperator(), filter.getColumn()));
+            merge.setAggOperator(mergeOperator(filter.getAggOperator()));
+            merge.setSqlOperator(filter.getSqlOperator());
+            merge.setValues(filter.getValues());
+            filters.add(merge);
+        }
+        localParam.setFilters(filters);
+
+        if (!CollectionUtils.isEmpty(executeParam.getOrders())) {
+            List<OrderOperator> orders = new ArrayList<>();
+            for (OrderOperator order : executeParam.getOrders()) {
+                if (order.getAggOperator() == null) {
+                    orders.add(order);
+                    continue;
+                }
+                OrderOperator merge = new OrderOperator();
+                merge.setColumn(partial(partials, order.getAggOperator(), order.getColumn()));
+                merge.setAggOperator(mergeOperator(order.getAggOperator()));
+                merge.setOperator(order.getOperator());
+                orders.add(merge);
+            }
+            localParam.setOrders(orders);
+        }
+
+        sourceParam.setGroups(executeParam.getGroups());
+        sourceParam.setAggregators(new ArrayList<>(partials.values()));
+    }
+
+    private static String partial(Map<String, AggregateOperator> partials, AggregateOperator.SqlOperator operator, String column) {
+        String name = operator.name() + "(" + column + ")";
+        partials.computeIfAbsent(name, n -> {
+            AggregateOperator aggregator = new AggregateOperator();
+            aggregator.setSqlOperator(operator);
+            aggregator.setColumn(column);
+            return aggregator;
+        });
+        return name;
+    }
+
+    private static AggregateOperator.SqlOperator mergeOperator(AggregateOperator.SqlOperator operator) {
+        return operator == AggregateOperator.SqlOperator.COUNT ? AggregateOperator.SqlOperator.SUM : operator;
+    }
+
+    /**
+     * 本地查询用到的视图列。查询全部列、没有视图字段信息或者用到了未知的列时返回空，查询全部列
+     */
+    private static List<String> projection(QueryScript script, ExecuteParam executeParam, List<FilterOperator> remaining, Set<String> functionColumns) {
+        if (script == null || CollectionUtils.isEmpty(script.getSchema())) {
+            return null;
+        }
+        if (CollectionUtils.isEmpty(executeParam.getColumns())
+                && CollectionUtils.isEmpty(executeParam.getAggregators())
+                && CollectionUtils.isEmpty(executeParam.getGroups())) {
+            return null;
+        }
+        Set<String> referenced = new LinkedHashSet<>();
+        if (!CollectionUtils.isEmpty(executeParam.getColumns())) {
+            referenced.addAll(executeParam.getColumns());
+        }
+        if (!CollectionUtils.isEmpty(executeParam.getAggregators())) {
+            for (AggregateOperator aggregator : executeParam.getAggregators()) {
+                referenced.add(aggregator.getColumn());
+            }
+        }
+        if (!CollectionUtils.isEmpty(executeParam.getGroups())) {
+            for (GroupByOperator group : executeParam.getGroups()) {
+                referenced.add(group.getColumn());
+            }
+        }
+        if (!CollectionUtils.isEmpty(executeParam.getOrders())) {
+            for (OrderOperator order : executeParam.getOrders()) {
+                referenced.add(order.getColumn());
+            }
+        }
+        for (FilterOperator filter : remaining) {
+            referenced.add(filter.getColumn());
+        }
+        referenced.remove(null);
+        referenced.removeAll(functionColumns);
+        for (String column : referenced) {
+            if (!script.getSchema().containsKey(column)) {
+                return null;
+            }
+        }
+        // 计算字段中引用的视图列
+        if (!CollectionUtils.isEmpty(executeParam.getFunctionColumns())) {
+            for (FunctionColumn functionColumn : executeParam.getFunctionColumns()) {
+                Set<String> identifiers = identifiers(functionColumn.getSnippet());
+                if (identifiers == null) {
+                    return null;
+                }
+                for (String identifier : identifiers) {
+                    if (script.getSchema().containsKey(identifier)) {
+                        referenced.add(identifier);
+                    }
+                }
+            }
+        }
+        if (referenced.isEmpty()) {
+            return null;
+        }
+        return new ArrayList<>(referenced);
+    }
+
+    private static Set<String> identifiers(String snippet) {
+        Set<String> identifiers = new HashSet<>();
+        try {
+            SqlSelect sqlSelect = (SqlSelect) SqlParserUtils.parseSnippet(snippet);
+            for (SqlNode node : sqlSelect.getSelectList()) {
+                node.accept(new SqlBasicVisitor<Object>() {
+                    @Override
+                    public Object visit(SqlIdentifier id) {
+                        if (!id.isStar()) {
+                            identifiers.add(id.names.get(id.names.size() - 1));
+                        }
+                        return null;
+                    }
+                });
+            }
+        } catch (Exception e) {
+            log.debug("Function column parse failed, query all columns. " + snippet, e);
+            return null;
+        }
+        return identifiers;
+    }
+
+    private static ExecuteParam copy(ExecuteParam executeParam) {
+        return ExecuteParam.builder()
+                .keywords(executeParam.getKeywords())
+                .columns(executeParam.getColumns())
+                .aggregators(executeParam.getAggregators())
+                .filters(executeParam.getFilters())
+                .groups(executeParam.getGroups())
+                .orders(executeParam.getOrders())
+                .functionColumns(executeParam.getFunctionColumns())
+                .includeColumns(executeParam.getIncludeColumns())
+                .pageInfo(executeParam.getPageInfo())
+                .serverAggregate(executeParam.isServerAggregate())
+                .concurrencyOptimize(executeParam.isConcurrencyOptimize())
+                .cacheEnable(executeParam.isCacheEnable())
+                .cacheExpires(executeParam.getCacheExpires())
+                .tenant(executeParam.getTenant())
+                .priority(executeParam.getPriority())
+                .build();
+    }
+
+}
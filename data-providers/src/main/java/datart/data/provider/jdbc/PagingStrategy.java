@@ -0,0 +1,35 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datart.data.provider.jdbc;
+
+/**
+ * 不支持 FETCH/OFFSET 语法的数据库的分页方式，在 jdbc-driver.yml 中通过 paging-strategy 配置
+ */
+public enum PagingStrategy {
+
+    /**
+     * 执行不分页的查询，在结果集中跳过前面的行。顺序翻页时复用上一页的游标
+     */
+    SKIP,
+
+    /**
+     * 使用 ROW_NUMBER() 窗口函数按排序列编号，在数据源中完成分页。查询没有排序时使用 SKIP
+     */
+    ROW_NUMBER
+
+}
@@ -20,20 +20,33 @@ package datart.data.provider.jdbc;
 
 import datart.core.base.consts.ValueType;
 import datart.core.data.provider.Column;
+import datart.core.data.provider.ColumnarDataframe;
 import datart.core.data.provider.Dataframe;
+import datart.core.data.provider.vector.ColumnVector;
 
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 
 public class ResultSetMapper {
 
+    /**
+     * 结果集为列式存储预分配的初始行数，实际行数超出时按需扩容
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+
     public static List<Column> getColumns(ResultSet rs) throws SQLException {
-        ArrayList<Column> columns = new ArrayList<>();
-        for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++) {
-            String columnTypeName = rs.getMetaData().getColumnTypeName(i);
-            String columnName = rs.getMetaData().getColumnLabel(i);
+        return getColumns(rs.getMetaData(), 1);
+    }
+
+    public static List<Column> getColumns(ResultSetMetaData metaData, int startColumn) throws SQLException {
+        int columnCount = metaData.getColumnCount();
+        ArrayList<Column> columns = new ArrayList<>(Math.max(columnCount - startColumn + 1, 0));
+        for (int i = startColumn; i <= columnCount; i++) {
+            String columnTypeName = metaData.getColumnTypeName(i);
+            String columnName = metaData.getColumnLabel(i);
             ValueType valueType = DataTypeUtils.sqlType2DataType(columnTypeName);
             columns.add(new Column(columnName, valueType));
         }
@@ -45,23 +58,38 @@ public class ResultSetMapper {
     }
 
     public static Dataframe mapToTableData(ResultSet rs, long count) throws SQLException {
-        Dataframe dataframe = new Dataframe();
-        List<Column> columns = getColumns(rs);
-        ArrayList<List<Object>> rows = new ArrayList<>();
-        int c = 0;
-        while (rs.next()) {
-            ArrayList<Object> row = new ArrayList<>();
-            rows.add(row);
-            for (int i = 1; i < columns.size() + 1; i++) {
-                row.add(rs.getObject(i));
+        return mapToTableData(rs, count, 1);
+    }
+
+    /**
+     * 将结果集读取为列式存储的 Dataframe
+     *
+     * @param rs          结果集
+     * @param count       最多读取的行数
+     * @param startColumn 从第几列开始读取(从1开始)，用于跳过分页时添加的行号列
+     */
+    public static ColumnarDataframe mapToTableData(ResultSet rs, long count, int startColumn) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        List<Column> columns = getColumns(metaData, startColumn);
+        // 按 fetch size 预分配，一次网络往返取回的行可以直接写入
+        int fetchSize = rs.getFetchSize();
+        int capacity = (int) Math.min(count, fetchSize > 0 ? Math.max(fetchSize, INITIAL_CAPACITY) : INITIAL_CAPACITY);
+        ColumnVector[] vectors = new ColumnVector[columns.size()];
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = DataTypeUtils.createColumnVector(metaData, i + startColumn, capacity);
+        }
+        ColumnarDataframe dataframe = new ColumnarDataframe(columns, vectors);
+        ColumnReader[] readers = new ColumnReader[vectors.length];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = ColumnReader.create(metaData, i + startColumn, dataframe, i);
+        }
+        long c = 0;
+        while (c < count && rs.next()) {
+            for (ColumnReader reader : readers) {
+                reader.read(rs);
             }
             c++;
-            if (c >= count) {
-                break;
-            }
         }
-        dataframe.setColumns(columns);
-        dataframe.setRows(rows);
         return dataframe;
     }
 
@@ -0,0 +1,40 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datart.data.provider.jdbc;
+
+/**
+ * 数据源配置了只读副本时，查询在主库和副本之间的分配方式
+ */
+public enum RoutingPolicy {
+
+    /**
+     * 依次使用各个节点
+     */
+    ROUND_ROBIN,
+
+    /**
+     * 使用未完成查询最少的节点
+     */
+    LEAST_OUTSTANDING,
+
+    /**
+     * 按最近的查询耗时加权随机选择，耗时越短被选中的概率越大
+     */
+    LATENCY_WEIGHTED
+
+}
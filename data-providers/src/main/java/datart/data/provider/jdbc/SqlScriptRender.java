@@ -72,6 +72,12 @@ public class SqlScriptRender extends ScriptRender {
     // special sql execute permission config from datasource
     private boolean enableSpecialSQL;
 
+    // page by ROW_NUMBER() when FETCH/OFFSET is not supported
+    private boolean rowNumberPaging;
+
+    // render variable values as bind markers, see BindVariables
+    private boolean bindVariables;
+
     public SqlScriptRender(QueryScript queryScript, ExecuteParam executeParam) {
         super(queryScript, executeParam);
         this.sqlDialect = LocalDB.SQL_DIALECT;
@@ -87,6 +93,16 @@ public class SqlScriptRender extends ScriptRender {
         this.enableSpecialSQL = enableSpecialSQL;
     }
 
+    public SqlScriptRender(QueryScript queryScript, ExecuteParam executeParam, SqlDialect sqlDialect, boolean enableSpecialSQL, boolean rowNumberPaging) {
+        this(queryScript, executeParam, sqlDialect, enableSpecialSQL);
+        this.rowNumberPaging = rowNumberPaging;
+    }
+
+    public SqlScriptRender(QueryScript queryScript, ExecuteParam executeParam, SqlDialect sqlDialect, boolean enableSpecialSQL, boolean rowNumberPaging, boolean bindVariables) {
+        this(queryScript, executeParam, sqlDialect, enableSpecialSQL, rowNumberPaging);
+        this.bindVariables = bindVariables;
+    }
+
 
     public String render(boolean withExecuteParam, boolean withPage, boolean onlySelectStatement) throws SqlParseException {
 
@@ -122,6 +138,7 @@ public class SqlScriptRender extends ScriptRender {
                     .withDialect(sqlDialect)
                     .withBaseSql(selectSql)
                     .withPage(withPage)
+                    .withRowNumberPaging(rowNumberPaging)
                     .build();
         }
 
@@ -168,6 +185,7 @@ public class SqlScriptRender extends ScriptRender {
 
         if (CollectionUtils.isNotEmpty(placeholders)) {
             for (VariablePlaceholder placeholder : placeholders) {
+                placeholder.setBindVariables(bindVariables);
                 ReplacementPair replacementPair = placeholder.replacementPair();
                 selectSql = StringUtils.replaceIgnoreCase(selectSql,replacementPair.getPattern(),replacementPair.getReplacement());
             }
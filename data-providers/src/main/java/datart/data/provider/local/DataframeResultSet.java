@@ -0,0 +1,303 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package datart.data.provider.local;
+
+import datart.core.data.provider.Column;
+import datart.core.data.provider.ColumnarDataframe;
+import datart.core.data.provider.Dataframe;
+import datart.core.data.provider.vector.ColumnVector;
+import datart.core.data.provider.vector.DoubleVector;
+import datart.core.data.provider.vector.LongVector;
+import datart.core.data.provider.vector.StringVector;
+import datart.data.provider.jdbc.DataTypeUtils;
+import org.apache.commons.collections4.CollectionUtils;
+import org.h2.tools.SimpleResultSet;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 直接在 Dataframe 上迭代的 ResultSet，供 H2 函数表读取数据。
+ * 与 {@link SimpleResultSet#addRow(Object...)} 不同，这里不会复制行数据；列式存储的数据通过类型化的 getter 直接读取列。
+ */
+public class DataframeResultSet extends SimpleResultSet {
+
+    private final ColumnarDataframe columnar;
+
+    private final Iterator<List<Object>> rowIterator;
+
+    private final int rowCount;
+
+    private int rowIndex = -1;
+
+    private List<Object> currentRow;
+
+    private boolean wasNull;
+
+    /**
+     * @param dataframe 数据
+     * @param withRows  为 false 时只返回列信息，用于 H2 解析函数表结构
+     */
+    public DataframeResultSet(Dataframe dataframe, boolean withRows) {
+        if (!CollectionUtils.isEmpty(dataframe.getColumns())) {
+            for (Column column : dataframe.getColumns()) {
+                addColumn(column.getName(), DataTypeUtils.valueType2SqlTypes(column.getType()), -1, -1);
+            }
+        }
+        if (!withRows) {
+            columnar = null;
+            rowIterator = Collections.emptyIterator();
+            rowCount = 0;
+        } else if (dataframe instanceof ColumnarDataframe) {
+            columnar = (ColumnarDataframe) dataframe;
+            rowIterator = null;
+            rowCount = columnar.rowCount();
+        } else {
+            columnar = null;
+            rowIterator = dataframe.getRows() == null ? Collections.emptyIterator() : dataframe.getRows().iterator();
+            rowCount = -1;
+        }
+    }
+
+    @Override
+    public boolean next() throws SQLException {
+        if (columnar != null) {
+            if (rowIndex + 1 < rowCount) {
+                rowIndex++;
+                return true;
+            }
+            rowIndex = rowCount;
+            return false;
+        }
+        if (rowIterator.hasNext()) {
+            currentRow = rowIterator.next();
+            rowIndex++;
+            return true;
+        }
+        currentRow = null;
+        return false;
+    }
+
+    @Override
+    public int getRow() throws SQLException {
+        return hasCurrentRow() ? rowIndex + 1 : 0;
+    }
+
+    @Override
+    public boolean wasNull() throws SQLException {
+        return wasNull;
+    }
+
+    @Override
+    public Object getObject(int columnIndex) throws SQLException {
+        return value(columnIndex);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T getObject(int columnIndex, Class<T> type) throws SQLException {
+        Object val = value(columnIndex);
+        if (val == null || type.isInstance(val)) {
+            return (T) val;
+        }
+        if (val instanceof java.util.Date) {
+            Timestamp timestamp = new Timestamp(((java.util.Date) val).getTime());
+            if (type == LocalDateTime.class) {
+                return (T) timestamp.toLocalDateTime();
+            } else if (type == LocalDate.class) {
+                return (T) timestamp.toLocalDateTime().toLocalDate();
+            } else if (type == LocalTime.class) {
+                return (T) timestamp.toLocalDateTime().toLocalTime();
+            }
+        }
+        throw new SQLException("Can not convert " + val.getClass().getName() + " to " + type.getName());
+    }
+
+    @Override
+    public String getString(int columnIndex) throws SQLException {
+        ColumnVector vector = vector(columnIndex);
+        if (vector instanceof StringVector) {
+            checkRow();
+            String val = vector.getString(rowIndex);
+            wasNull = val == null;
+            return val;
+        }
+        Object val = value(columnIndex);
+        return val == null ? null : val.toString();
+    }
+
+    @Override
+    public double getDouble(int columnIndex) throws SQLException {
+        ColumnVector vector = vector(columnIndex);
+        if (vector instanceof DoubleVector || vector instanceof LongVector) {
+            checkRow();
+            wasNull = vector.isNull(rowIndex);
+            return wasNull ? 0 : vector.getDouble(rowIndex);
+        }
+        Number number = toNumber(value(columnIndex));
+        return number == null ? 0 : number.doubleValue();
+    }
+
+    @Override
+    public float getFloat(int columnIndex) throws SQLException {
+        return (float) getDouble(columnIndex);
+    }
+
+    @Override
+    public long getLong(int columnIndex) throws SQLException {
+        ColumnVector vector = vector(columnIndex);
+        if (vector instanceof DoubleVector || vector instanceof LongVector) {
+            checkRow();
+            wasNull = vector.isNull(rowIndex);
+            return wasNull ? 0 : vector.getLong(rowIndex);
+        }
+        Number number = toNumber(value(columnIndex));
+        return number == null ? 0 : number.longValue();
+    }
+
+    @Override
+    public int getInt(int columnIndex) throws SQLException {
+        return (int) getLong(columnIndex);
+    }
+
+    @Override
+    public short getShort(int columnIndex) throws SQLException {
+        return (short) getLong(columnIndex);
+    }
+
+    @Override
+    public byte getByte(int columnIndex) throws SQLException {
+        return (byte) getLong(columnIndex);
+    }
+
+    @Override
+    public BigDecimal getBigDecimal(int columnIndex) throws SQLException {
+        Object val = value(columnIndex);
+        if (val == null || val instanceof BigDecimal) {
+            return (BigDecimal) val;
+        }
+        Number number = toNumber(val);
+        if (number instanceof Double || number instanceof Float) {
+            return BigDecimal.valueOf(number.doubleValue());
+        }
+        return new BigDecimal(number.toString());
+    }
+
+    @Override
+    public boolean getBoolean(int columnIndex) throws SQLException {
+        Object val = value(columnIndex);
+        if (val == null) {
+            return false;
+        }
+        if (val instanceof Boolean) {
+            return (Boolean) val;
+        }
+        if (val instanceof Number) {
+            return ((Number) val).intValue() != 0;
+        }
+        return Boolean.parseBoolean(val.toString());
+    }
+
+    @Override
+    public Date getDate(int columnIndex) throws SQLException {
+        java.util.Date val = toDate(value(columnIndex));
+        if (val == null || val instanceof Date) {
+            return (Date) val;
+        }
+        return new Date(val.getTime());
+    }
+
+    @Override
+    public Time getTime(int columnIndex) throws SQLException {
+        java.util.Date val = toDate(value(columnIndex));
+        if (val == null || val instanceof Time) {
+            return (Time) val;
+        }
+        return new Time(val.getTime());
+    }
+
+    @Override
+    public Timestamp getTimestamp(int columnIndex) throws SQLException {
+        java.util.Date val = toDate(value(columnIndex));
+        if (val == null || val instanceof Timestamp) {
+            return (Timestamp) val;
+        }
+        return new Timestamp(val.getTime());
+    }
+
+    private Object value(int columnIndex) throws SQLException {
+        checkRow();
+        Object val;
+        if (columnar != null) {
+            val = columnar.getValue(rowIndex, columnIndex - 1);
+        } else {
+            val = currentRow.get(columnIndex - 1);
+        }
+        wasNull = val == null;
+        return val;
+    }
+
+    private ColumnVector vector(int columnIndex) {
+        return columnar == null ? null : columnar.vector(columnIndex - 1);
+    }
+
+    private boolean hasCurrentRow() {
+        if (columnar != null) {
+            return rowIndex >= 0 && rowIndex < rowCount;
+        }
+        return currentRow != null;
+    }
+
+    private void checkRow() throws SQLException {
+        if (!hasCurrentRow()) {
+            throw new SQLException("No data is available");
+        }
+    }
+
+    private Number toNumber(Object val) throws SQLException {
+        if (val == null || val instanceof Number) {
+            return (Number) val;
+        }
+        if (val instanceof Boolean) {
+            return (Boolean) val ? 1 : 0;
+        }
+        try {
+            return Double.valueOf(val.toString());
+        } catch (NumberFormatException e) {
+            throw new SQLException("Can not convert " + val + " to number", e);
+        }
+    }
+
+    private java.util.Date toDate(Object val) throws SQLException {
+        if (val == null || val instanceof java.util.Date) {
+            return (java.util.Date) val;
+        }
+        throw new SQLException("Can not convert " + val + " to date");
+    }
+
+}
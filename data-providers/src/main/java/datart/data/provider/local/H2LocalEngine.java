@@ -0,0 +1,43 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datart.data.provider.local;
+
+import datart.core.data.provider.Dataframe;
+import datart.core.data.provider.ExecuteParam;
+import datart.core.data.provider.QueryScript;
+
+import java.util.List;
+
+/**
+ * 默认的本地引擎：每次查询使用独立的H2内存数据库，数据通过函数表注册为视图
+ */
+public class H2LocalEngine implements LocalEngine {
+
+    public static final String NAME = "h2";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Dataframe execute(QueryScript queryScript, ExecuteParam executeParam, List<Dataframe> srcData) throws Exception {
+        return LocalDB.executeInMemDB(queryScript, executeParam, srcData);
+    }
+
+}
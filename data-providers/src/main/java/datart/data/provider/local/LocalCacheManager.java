@@ -0,0 +1,202 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datart.data.provider.local;
+
+import datart.core.common.Application;
+import datart.core.data.provider.LocalCacheInfo;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地持久化缓存管理：记录每个数据源缓存的大小、访问时间和命中次数，
+ * 缓存文件总大小超过限制时按 LRU 或 LFU 淘汰缓存。
+ * 缓存被清除后仍保留访问记录，重建后继续累计；新建的缓存在保护期内最后淘汰。
+ */
+@Slf4j
+public class LocalCacheManager {
+
+    private static final String MAX_DISK_SIZE = "datart.local-db.cache.max-disk-size";
+
+    private static final String EVICTION_POLICY = "datart.local-db.cache.eviction-policy";
+
+    private static final String EVICTION_GRACE = "datart.local-db.cache.eviction-grace";
+
+    /**
+     * 已清除的缓存的访问记录保留时间
+     */
+    private static final long HISTORY_TTL = TimeUnit.DAYS.toMillis(1);
+
+    private static final Map<String, CacheStats> CACHES = new ConcurrentHashMap<>();
+
+    private static final AtomicBoolean EVICTING = new AtomicBoolean();
+
+    public enum EvictionPolicy {
+        LRU,
+        LFU
+    }
+
+    private static class CacheStats {
+
+        private volatile long createTime;
+
+        private volatile long lastAccessTime;
+
+        private final AtomicLong hits = new AtomicLong();
+
+        /**
+         * 缓存文件是否存在。缓存清除后保留访问记录，重建时继续使用
+         */
+        private volatile boolean cached;
+
+        private CacheStats(long createTime) {
+            this.createTime = createTime;
+            this.lastAccessTime = createTime;
+        }
+    }
+
+    /**
+     * 缓存写入（或启动时加载已有缓存）后登记。重建的缓存保留之前的命中次数和访问时间
+     */
+    static void register(String sourceId, long createTime) {
+        CACHES.compute(sourceId, (id, stats) -> {
+            if (stats == null) {
+                stats = new CacheStats(createTime);
+            } else {
+                stats.createTime = createTime;
+                stats.lastAccessTime = Math.max(stats.lastAccessTime, createTime);
+            }
+            stats.cached = true;
+            return stats;
+        });
+    }
+
+    static void recordHit(String sourceId) {
+        CacheStats stats = CACHES.get(sourceId);
+        if (stats != null && stats.cached) {
+            stats.hits.incrementAndGet();
+            stats.lastAccessTime = System.currentTimeMillis();
+        }
+    }
+
+    static void remove(String sourceId) {
+        CacheStats stats = CACHES.get(sourceId);
+        if (stats != null) {
+            stats.cached = false;
+        }
+    }
+
+    /**
+     * 缓存的访问记录，缓存不存在时返回 null。不包含文件大小和过期时间
+     */
+    static LocalCacheInfo stats(String sourceId) {
+        CacheStats stats = CACHES.get(sourceId);
+        if (stats == null || !stats.cached) {
+            return null;
+        }
+        LocalCacheInfo info = new LocalCacheInfo();
+        info.setSourceId(sourceId);
+        info.setHits(stats.hits.get());
+        info.setCreateTime(new Date(stats.createTime));
+        info.setLastAccessTime(new Date(stats.lastAccessTime));
+        return info;
+    }
+
+    /**
+     * 当前节点上的全部本地缓存
+     */
+    public static List<LocalCacheInfo> inventory() {
+        List<LocalCacheInfo> caches = new ArrayList<>();
+        for (String sourceId : CACHES.keySet()) {
+            LocalCacheInfo info = stats(sourceId);
+            if (info == null) {
+                continue;
+            }
+            info.setSize(LocalDB.getDbSize(sourceId));
+            Long expireTime = LocalDB.getCacheExpireTime(sourceId);
+            if (expireTime != null) {
+                info.setExpireTime(new Date(expireTime));
+            }
+            caches.add(info);
+        }
+        return caches;
+    }
+
+    /**
+     * 缓存文件总大小超过限制时淘汰缓存。同时只有一个淘汰任务，每次只持有一个数据源的锁，正在被查询的缓存跳过
+     */
+    static void enforceDiskBudget() {
+        pruneHistory(System.currentTimeMillis());
+        long maxSize = Long.parseLong(Application.getProperty(MAX_DISK_SIZE, "0")) * 1024 * 1024;
+        if (maxSize <= 0 || !EVICTING.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<LocalCacheInfo> caches = inventory();
+            long total = caches.stream().mapToLong(LocalCacheInfo::getSize).sum();
+            if (total <= maxSize) {
+                return;
+            }
+            EvictionPolicy policy = EvictionPolicy.valueOf(Application.getProperty(EVICTION_POLICY, EvictionPolicy.LRU.name()).toUpperCase());
+            long grace = TimeUnit.MINUTES.toMillis(Long.parseLong(Application.getProperty(EVICTION_GRACE, "10")));
+            for (LocalCacheInfo cache : evictionOrder(caches, policy, grace, System.currentTimeMillis())) {
+                if (total <= maxSize) {
+                    break;
+                }
+                try {
+                    if (!LocalDB.evictCache(cache.getSourceId())) {
+                        log.debug("Local cache of source {} is in use, skip eviction", cache.getSourceId());
+                        continue;
+                    }
+                    total -= cache.getSize();
+                    log.info("Local cache of source {} evicted ({} bytes)", cache.getSourceId(), cache.getSize());
+                } catch (Exception e) {
+                    log.error("local cache evict error ", e);
+                }
+            }
+        } finally {
+            EVICTING.set(false);
+        }
+    }
+
+    /**
+     * 淘汰顺序：保护期内新建的缓存排在最后，其余按策略排序
+     *
+     * @param grace 保护期(毫秒)，新建的缓存还没有机会积累命中次数
+     */
+    static List<LocalCacheInfo> evictionOrder(List<LocalCacheInfo> caches, EvictionPolicy policy, long grace, long now) {
+        Comparator<LocalCacheInfo> order = policy == EvictionPolicy.LFU
+                ? Comparator.comparingLong(LocalCacheInfo::getHits).thenComparing(LocalCacheInfo::getLastAccessTime)
+                : Comparator.comparing(LocalCacheInfo::getLastAccessTime);
+        List<LocalCacheInfo> sorted = new ArrayList<>(caches);
+        sorted.sort(Comparator.<LocalCacheInfo, Boolean>comparing(cache -> now - cache.getCreateTime().getTime() < grace).thenComparing(order));
+        return sorted;
+    }
+
+    /**
+     * 清除长时间没有重建的缓存的访问记录
+     */
+    static void pruneHistory(long now) {
+        CACHES.entrySet().removeIf(entry -> !entry.getValue().cached && now - entry.getValue().lastAccessTime > HISTORY_TTL);
+    }
+
+}
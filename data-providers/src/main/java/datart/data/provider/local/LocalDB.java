@@ -17,11 +17,15 @@
  */
 package datart.data.provider.local;
 
+import com.google.common.util.concurrent.Striped;
 import datart.core.base.PageInfo;
 import datart.core.base.consts.Const;
 import datart.core.base.exception.Exceptions;
 import datart.core.common.Application;
+import datart.core.common.RunningQueries;
+import datart.core.common.TaskExecutor;
 import datart.core.data.provider.Column;
+import datart.core.data.provider.ColumnarDataframe;
 import datart.core.data.provider.Dataframe;
 import datart.core.data.provider.ExecuteParam;
 import datart.core.data.provider.QueryScript;
@@ -29,18 +33,25 @@ import datart.data.provider.calcite.dialect.H2Dialect;
 import datart.data.provider.jdbc.DataTypeUtils;
 import datart.data.provider.jdbc.ResultSetMapper;
 import datart.data.provider.jdbc.SqlScriptRender;
+import datart.data.provider.local.vectorized.VectorizedExecutor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.calcite.sql.SqlDialect;
 import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.collections4.MapUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.DateFormatUtils;
 import org.h2.jdbc.JdbcSQLNonTransientException;
+import org.h2.jdbcx.JdbcConnectionPool;
 import org.h2.tools.DeleteDbFiles;
-import org.h2.tools.SimpleResultSet;
 
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.sql.*;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
 
 @Slf4j
 public class
@@ -50,6 +61,8 @@ LocalDB {
 
     private static final String H2_PARAM = ";LOG=0;DATABASE_TO_UPPER=false;MODE=MySQL;CASE_INSENSITIVE_IDENTIFIERS=TRUE;CACHE_SIZE=65536;LOCK_MODE=0;UNDO_LOG=0";
 
+    private static final String IF_EXISTS = ";IFEXISTS=TRUE";
+
     private static String fileUrl;
 
     private static final String TABLE_CREATE_SQL_TEMPLATE = "CREATE TABLE `%s` ( %s )";
@@ -58,16 +71,116 @@ LocalDB {
 
     private static final String SELECT_START_SQL = "SELECT * FROM `%s` ";
 
+    private static final String COUNT_SQL = "SELECT COUNT(*) FROM (%s) V_T";
+
     private static final String CREATE_TEMP_TABLE = "CREATE TABLE IF NOT EXISTS `%s` AS (SELECT * FROM FUNCTION_TABLE('%s'))";
 
+    private static final String CREATE_TEMP_VIEW = "CREATE VIEW IF NOT EXISTS `%s` AS SELECT * FROM FUNCTION_TABLE('%s')";
+
     private static final String CACHE_EXPIRE_TABLE_SQL = "CREATE TABLE IF NOT EXISTS `cache_expire` ( `source_id` VARCHAR(128),`expire_time` DATETIME )";
 
     private static final String SET_EXPIRE_SQL = "INSERT INTO `cache_expire` VALUES( '%s', PARSEDATETIME('%s','%s')) ";
 
     private static final String DELETE_EXPIRE_SQL = "DELETE FROM `cache_expire` WHERE `source_id`='%s' ";
 
+    private static final String SELECT_EXPIRE_SQL = "SELECT `source_id`,`expire_time` FROM `cache_expire`";
+
+    private static final String CACHE_WATERMARK_TABLE_SQL = "CREATE TABLE IF NOT EXISTS `cache_watermark` ( `source_id` VARCHAR(128),`name` VARCHAR(1024),`watermark` VARCHAR(1024) )";
+
+    private static final String SELECT_WATERMARK_SQL = "SELECT `name`,`watermark` FROM `cache_watermark` WHERE `source_id`='%s'";
+
+    private static final String SELECT_WATERMARK_SOURCE_SQL = "SELECT DISTINCT `source_id` FROM `cache_watermark`";
+
+    private static final String INSERT_WATERMARK_SQL = "INSERT INTO `cache_watermark` VALUES( '%s', '%s', '%s')";
+
+    private static final String DELETE_WATERMARK_SQL = "DELETE FROM `cache_watermark` WHERE `source_id`='%s' ";
+
+    private static final String TABLE_COLUMNS_SQL = "SELECT COLUMN_NAME, DATA_TYPE FROM INFORMATION_SCHEMA.COLUMNS WHERE UPPER(TABLE_NAME)=UPPER('%s') ORDER BY ORDINAL_POSITION";
+
+    private static final String APPEND_SQL = "INSERT INTO `%s` SELECT * FROM FUNCTION_TABLE('%s')";
+
+    private static final String APPEND_AFTER_WATERMARK_SQL = APPEND_SQL + " WHERE (SELECT MAX(`%s`) FROM `%s`) IS NULL OR `%s` > (SELECT MAX(`%s`) FROM `%s`)";
+
+    private static final String MAX_VALUE_SQL = "SELECT MAX(`%s`) FROM `%s`";
+
+    /**
+     * 重建缓存时使用的临时数据库后缀
+     */
+    private static final String STAGING_SUFFIX = "_staging";
+
     private static final Map<String, Dataframe> TEMP_RS_CACHE = new ConcurrentHashMap<>();
 
+    /**
+     * 持久化缓存的过期信息。启动时从 cache_expire 表加载，查询时不再访问元数据库
+     */
+    private static final Map<String, CacheExpire> CACHE_EXPIRES = new ConcurrentHashMap<>();
+
+    /**
+     * 正在后台重建缓存的数据源
+     */
+    private static final Set<String> REVALIDATING = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 增量刷新的数据源，过期后由下一次查询追加新数据，stale-ttl 内不被定时清除
+     */
+    private static final Set<String> INCREMENTAL = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 每个本地数据库一个连接池
+     */
+    private static final Map<String, JdbcConnectionPool> CONNECTION_POOLS = new ConcurrentHashMap<>();
+
+    /**
+     * 持久化缓存读写锁：写入（或清除）缓存时独占，查询已写入的缓存时共享
+     */
+    private static final Striped<ReadWriteLock> CACHE_LOCKS = Striped.lazyWeakReadWriteLock(256);
+
+    private static volatile ForkJoinPool parallelPool;
+
+    private static final String POOL_MAX_CONNECTIONS = "datart.local-db.pool.max-connections";
+
+    private static final int DEFAULT_POOL_MAX_CONNECTIONS = 32;
+
+    private static final String ENGINE = "datart.local-db.engine";
+
+    private static final String VECTORIZED_ENABLED = "datart.local-db.vectorized.enabled";
+
+    private static final String PARALLEL_THREADS = "datart.local-db.parallel.threads";
+
+    private static final String PARALLEL_PARTITION_ROWS = "datart.local-db.parallel.partition-rows";
+
+    private static final int DEFAULT_PARTITION_ROWS = 100_000;
+
+    private static final String CACHE_SWEEP_INTERVAL = "datart.local-db.cache.sweep-interval";
+
+    private static final String CACHE_STALE_TTL = "datart.local-db.cache.stale-ttl";
+
+    private static final String QUERY_TIMEOUT = "datart.local-db.query-timeout";
+
+    private static final long DEFAULT_SWEEP_INTERVAL_SECONDS = 60;
+
+    private static final long DEFAULT_STALE_TTL_MINUTES = 60;
+
+    public enum CacheStatus {
+        MISSING,
+        FRESH,
+        STALE
+    }
+
+    private static class CacheExpire {
+
+        private final long expireTime;
+
+        /**
+         * 过期后仍继续提供旧数据，直到后台重建完成
+         */
+        private volatile boolean serveStale;
+
+        private CacheExpire(long expireTime) {
+            this.expireTime = expireTime;
+        }
+    }
+
     static {
         init();
     }
@@ -78,12 +191,60 @@ LocalDB {
             try (Connection connection = getConnection(true, null)) {
                 Statement statement = connection.createStatement();
                 statement.execute(CACHE_EXPIRE_TABLE_SQL);
+                statement.execute(CACHE_WATERMARK_TABLE_SQL);
+                try (ResultSet resultSet = statement.executeQuery(SELECT_EXPIRE_SQL)) {
+                    while (resultSet.next()) {
+                        String sourceId = resultSet.getString(1);
+                        CACHE_EXPIRES.put(sourceId, new CacheExpire(resultSet.getTimestamp(2).getTime()));
+                        LocalCacheManager.register(sourceId, getDbFile(sourceId).lastModified());
+                    }
+                }
+                try (ResultSet resultSet = statement.executeQuery(SELECT_WATERMARK_SOURCE_SQL)) {
+                    while (resultSet.next()) {
+                        INCREMENTAL.add(resultSet.getString(1));
+                    }
+                }
+                LocalIndexAdvisor.init(connection);
             }
+            startExpireSweeper();
         } catch (Exception e) {
             log.error("H2 init error", e);
         }
     }
 
+    /**
+     * 定时清除已过期的缓存，过期缓存不必等到下一次查询时才删除
+     */
+    private static void startExpireSweeper() {
+        long interval = Long.parseLong(Application.getProperty(CACHE_SWEEP_INTERVAL, String.valueOf(DEFAULT_SWEEP_INTERVAL_SECONDS)));
+        ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "local-db-cache-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(LocalDB::sweepExpiredCache, interval, interval, TimeUnit.SECONDS);
+    }
+
+    private static void sweepExpiredCache() {
+        long now = System.currentTimeMillis();
+        long staleTtl = TimeUnit.MINUTES.toMillis(Long.parseLong(Application.getProperty(CACHE_STALE_TTL, String.valueOf(DEFAULT_STALE_TTL_MINUTES))));
+        for (Map.Entry<String, CacheExpire> entry : CACHE_EXPIRES.entrySet()) {
+            CacheExpire expire = entry.getValue();
+            // 过期后提供旧数据或等待增量刷新的缓存，在 stale-ttl 内没有被查询时清除
+            if (expire.expireTime > now
+                    || ((expire.serveStale || INCREMENTAL.contains(entry.getKey())) && expire.expireTime + staleTtl > now)
+                    || REVALIDATING.contains(entry.getKey())) {
+                continue;
+            }
+            try {
+                clearCache(entry.getKey());
+            } catch (Exception e) {
+                log.error("local cache sweep error ", e);
+            }
+        }
+        LocalCacheManager.enforceDiskBudget();
+    }
+
     /**
      * 函数表对应函数，直接从Dataframe 返回一个 ResultSet.
      *
@@ -95,50 +256,25 @@ LocalDB {
         if (dataframe == null) {
             Exceptions.msg("The dataframe " + dataId + " does not exist");
         }
-        SimpleResultSet rs = new SimpleResultSet();
-        if (!CollectionUtils.isEmpty(dataframe.getColumns())) {
-            // add columns
-            for (Column column : dataframe.getColumns()) {
-                rs.addColumn(column.getName(), DataTypeUtils.valueType2SqlTypes(column.getType()), -1, -1);
-            }
-        }
-        if (conn.getMetaData().getURL().equals("jdbc:columnlist:connection")) {
-            return rs;
-        }
-        // add rows
-        if (!CollectionUtils.isEmpty(dataframe.getRows())) {
-            for (List<Object> row : dataframe.getRows()) {
-                rs.addRow(row.toArray());
-            }
-        }
-        return rs;
+        // 列信息查询时不返回数据
+        boolean withRows = !conn.getMetaData().getURL().equals("jdbc:columnlist:connection");
+        return new DataframeResultSet(dataframe, withRows);
     }
 
     /**
      * 把数据注册注册为临时表，用于SQL查询
      *
      * @param dataframe 二维表数据
+     * @param asView    注册为函数表上的视图，查询时直接读取 Dataframe，不复制数据到H2表中
      */
-    private static void registerDataAsTable(Dataframe dataframe, Connection connection) throws SQLException {
+    private static void registerDataAsTable(Dataframe dataframe, Connection connection, boolean asView) throws SQLException {
         if (Objects.isNull(dataframe)) {
             Exceptions.msg("Empty data cannot be registered as a temporary table");
         }
 
-        // 处理脏数据
-        dataframe.getRows().parallelStream().forEach(row -> {
-            for (int i = 0; i < row.size(); i++) {
-                Object val = row.get(i);
-                if (val instanceof String && StringUtils.isBlank(val.toString())) {
-                    row.set(i, null);
-                }
-            }
-        });
-
-        createFunctionTableIfNotExists(connection);
-
-        TEMP_RS_CACHE.put(dataframe.getId(), dataframe);
+        registerData(dataframe, connection);
         // register temporary table
-        String sql = String.format(CREATE_TEMP_TABLE, dataframe.getName(), dataframe.getId());
+        String sql = String.format(asView ? CREATE_TEMP_VIEW : CREATE_TEMP_TABLE, dataframe.getName(), dataframe.getId());
         try {
             connection.prepareStatement(sql).execute();
         } catch (JdbcSQLNonTransientException e) {
@@ -146,6 +282,29 @@ LocalDB {
         }
     }
 
+    /**
+     * 处理脏数据后注册到函数表，可以通过 FUNCTION_TABLE('id') 读取
+     */
+    private static void registerData(Dataframe dataframe, Connection connection) {
+        // 处理脏数据
+        if (dataframe instanceof ColumnarDataframe) {
+            ((ColumnarDataframe) dataframe).blankToNull();
+        } else {
+            dataframe.getRows().parallelStream().forEach(row -> {
+                for (int i = 0; i < row.size(); i++) {
+                    Object val = row.get(i);
+                    if (val instanceof String && StringUtils.isBlank(val.toString())) {
+                        row.set(i, null);
+                    }
+                }
+            });
+        }
+
+        createFunctionTableIfNotExists(connection);
+
+        TEMP_RS_CACHE.put(dataframe.getId(), dataframe);
+    }
+
     /**
      * 清除临时数据
      *
@@ -163,6 +322,55 @@ LocalDB {
         }
     }
 
+    private static void createCoerceFunctionsIfNotExists(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE ALIAS IF NOT EXISTS COERCE_STRING FOR \"datart.data.provider.local.SchemaCoercions.toStr\"");
+            statement.execute("CREATE ALIAS IF NOT EXISTS COERCE_NUMERIC FOR \"datart.data.provider.local.SchemaCoercions.toNumber\"");
+            statement.execute("CREATE ALIAS IF NOT EXISTS COERCE_DATE FOR \"datart.data.provider.local.SchemaCoercions.toDate\"");
+        }
+    }
+
+    /**
+     * 视图定义了 schema 时，在视图查询外包一层类型转换，执行参数直接作用在转换后的结果上，不再单独物化视图查询结果
+     */
+    private static QueryScript applySchema(Connection connection, QueryScript queryScript) throws Exception {
+        String viewSql = new SqlScriptRender(queryScript, ExecuteParam.empty(), SQL_DIALECT).render(false, false, true);
+        createCoerceFunctionsIfNotExists(connection);
+        List<String> selects = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(viewSql)) {
+            ResultSetMetaData metaData = statement.getMetaData();
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                String name = metaData.getColumnLabel(i);
+                String quoted = "`" + name + "`";
+                Column column = queryScript.getSchema().get(name);
+                if (column == null || column.getType() == null) {
+                    selects.add(quoted);
+                    continue;
+                }
+                switch (column.getType()) {
+                    case STRING:
+                        selects.add("COERCE_STRING(" + quoted + ") AS " + quoted);
+                        break;
+                    case NUMERIC:
+                        selects.add("COERCE_NUMERIC(" + quoted + ") AS " + quoted);
+                        break;
+                    case DATE:
+                        String fmt = StringUtils.defaultString(column.getFmt()).replace("'", "''");
+                        selects.add("COERCE_DATE(" + quoted + ", '" + fmt + "') AS " + quoted);
+                        break;
+                    default:
+                        selects.add(quoted);
+                }
+            }
+        }
+        QueryScript coerced = new QueryScript();
+        coerced.setSourceId(queryScript.getSourceId());
+        coerced.setViewId(queryScript.getViewId());
+        coerced.setVariables(Collections.emptyList());
+        coerced.setScript("SELECT " + String.join(",", selects) + " FROM (" + viewSql + ") V_S");
+        return coerced;
+    }
+
     public static Dataframe executeLocalQuery(QueryScript queryScript, ExecuteParam executeParam, List<Dataframe> srcData) throws Exception {
         return executeLocalQuery(queryScript, executeParam, srcData, false, null);
     }
@@ -177,6 +385,78 @@ LocalDB {
      * @return 查询脚本+执行参数 执行后结果
      */
     public static Dataframe executeLocalQuery(QueryScript queryScript, ExecuteParam executeParam, List<Dataframe> srcData, boolean persistent, java.util.Date expire) throws Exception {
+        return executeLocalQuery(queryScript, executeParam, srcData, persistent, expire, null);
+    }
+
+    /**
+     * @param engine 非持久化查询使用的本地引擎，为空时使用全局配置。
+     *               持久化缓存的过期、索引、淘汰和加锁都依赖H2文件库，因此始终在H2中执行，不使用该引擎
+     * @return 持久化查询且未传入数据时，如果缓存已不存在则返回 null，调用方需重新加载数据
+     */
+    public static Dataframe executeLocalQuery(QueryScript queryScript, ExecuteParam executeParam, List<Dataframe> srcData, boolean persistent, java.util.Date expire, String engine) throws Exception {
+        if (persistent) {
+            if (StringUtils.isNotBlank(engine) && !H2LocalEngine.NAME.equalsIgnoreCase(engine)) {
+                log.debug("Local engine {} is ignored for persistent cache of source {}, H2 is used", engine, queryScript == null ? null : queryScript.getSourceId());
+            }
+            return executeInLocalDB(defaultQueryScript(queryScript, srcData), executeParam, srcData, expire);
+        }
+        try (LocalMemoryGovernor.Permit permit = LocalMemoryGovernor.acquire(null)) {
+            return executeLocalQuery(queryScript, executeParam, srcData, engine, permit);
+        }
+    }
+
+    /**
+     * 非持久化查询
+     *
+     * @param permit 加载数据前申请的内存额度，由调用方关闭
+     */
+    public static Dataframe executeLocalQuery(QueryScript queryScript, ExecuteParam executeParam, List<Dataframe> srcData, String engine, LocalMemoryGovernor.Permit permit) throws Exception {
+        permit.resize(srcData);
+        if (permit.isSpill()) {
+            return executeInSpillDB(defaultQueryScript(queryScript, srcData), executeParam, srcData);
+        }
+        Dataframe dataframe = null;
+        if (isVectorizedEnabled()) {
+            // 对单表的简单查询直接在列数据上计算，不支持时再交给H2执行
+            Dataframe table = VectorizedExecutor.resolveTable(queryScript, srcData);
+            if (table != null) {
+                int partitions = partitions(table);
+                dataframe = VectorizedExecutor.tryExecute(executeParam, table, partitions, partitions > 1 ? parallelPool() : null);
+            }
+        }
+        if (dataframe == null) {
+            dataframe = getEngine(engine).execute(defaultQueryScript(queryScript, srcData), executeParam, srcData);
+        }
+        permit.add(dataframe);
+        return dataframe;
+    }
+
+    private static LocalEngine getEngine(String name) {
+        if (StringUtils.isBlank(name)) {
+            name = Application.getProperty(ENGINE, H2LocalEngine.NAME);
+        }
+        LocalEngine engine = LocalEngineHolder.ENGINES.get(name.toLowerCase());
+        if (engine == null) {
+            Exceptions.msg("No local engine " + name);
+        }
+        return engine;
+    }
+
+    /**
+     * 首次使用时通过 ServiceLoader 加载全部本地引擎
+     */
+    private static class LocalEngineHolder {
+
+        private static final Map<String, LocalEngine> ENGINES = new HashMap<>();
+
+        static {
+            for (LocalEngine engine : ServiceLoader.load(LocalEngine.class)) {
+                ENGINES.put(engine.getName().toLowerCase(), engine);
+            }
+        }
+    }
+
+    private static QueryScript defaultQueryScript(QueryScript queryScript, List<Dataframe> srcData) {
         if (queryScript == null) {
             // 直接以指定数据源为表进行查询，生成一个默认的SQL查询全部数据
             queryScript = new QueryScript();
@@ -184,21 +464,18 @@ LocalDB {
             queryScript.setVariables(Collections.emptyList());
             queryScript.setSourceId(srcData.get(0).getName());
         }
-
-        String url = getConnectionUrl(persistent, queryScript.getSourceId());
-        synchronized (url.intern()) {
-            return persistent ? executeInLocalDB(queryScript, executeParam, srcData, expire) : executeInMemDB(queryScript, executeParam, srcData);
-        }
+        return queryScript;
     }
 
     /**
-     * 非持久化查询，通过函数表注册数据为临时表，执行一次后丢弃表数据。
+     * 非持久化查询，通过函数表注册数据为临时视图，执行一次后丢弃数据。
+     * 每次执行使用独立的内存数据库，不同查询之间无需加锁。
      */
-    private static Dataframe executeInMemDB(QueryScript queryScript, ExecuteParam executeParam, List<Dataframe> srcData) throws Exception {
-        Connection connection = getConnection(false, queryScript.getSourceId());
+    static Dataframe executeInMemDB(QueryScript queryScript, ExecuteParam executeParam, List<Dataframe> srcData) throws Exception {
+        Connection connection = getConnection(false, queryScript.getSourceId() + "_" + UUID.randomUUID().toString().replace("-", ""));
         try {
             for (Dataframe dataframe : srcData) {
-                registerDataAsTable(dataframe, connection);
+                registerDataAsTable(dataframe, connection, true);
             }
             return execute(connection, queryScript, executeParam);
         } finally {
@@ -214,62 +491,445 @@ LocalDB {
 
     }
 
+    /**
+     * 内存不足时的非持久化查询：将数据复制到临时文件数据库中查询，数据注册完成后即可释放，查询结束后删除数据库文件
+     */
+    private static Dataframe executeInSpillDB(QueryScript queryScript, ExecuteParam executeParam, List<Dataframe> srcData) throws Exception {
+        String database = "T" + UUID.randomUUID().toString().replace("-", "");
+        try (Connection connection = DriverManager.getConnection(String.format("jdbc:h2:file:%s/%s" + H2_PARAM, getSpillFileBasePath(), database))) {
+            try {
+                for (Dataframe dataframe : srcData) {
+                    registerDataAsTable(dataframe, connection, false);
+                }
+            } finally {
+                for (Dataframe df : srcData) {
+                    unregisterData(df.getId());
+                }
+            }
+            return execute(connection, queryScript, executeParam);
+        } finally {
+            DeleteDbFiles.execute(getSpillFileBasePath(), database, true);
+        }
+    }
+
     /**
      * 持久化查询，将数据插入到H2表中，再进行查询
      */
     private static Dataframe executeInLocalDB(QueryScript queryScript, ExecuteParam executeParam, List<Dataframe> srcData, java.util.Date expire) throws Exception {
-        try (Connection connection = getConnection(true, queryScript.getSourceId())) {
-            if (CollectionUtils.isNotEmpty(srcData)) {
+        ReadWriteLock lock = CACHE_LOCKS.get(queryScript.getSourceId());
+        Lock readLock = lock.readLock();
+        if (CollectionUtils.isNotEmpty(srcData)) {
+            Lock writeLock = lock.writeLock();
+            writeLock.lock();
+            try {
+                writeCache(queryScript.getSourceId(), srcData, expire);
+                // 写入完成后降级为读锁，保证查询前缓存不会被清除
+                readLock.lock();
+            } finally {
+                writeLock.unlock();
+            }
+        } else {
+            readLock.lock();
+            // 检查缓存到加锁之间缓存可能已被清除或淘汰，此时由调用方重新加载
+            if (!CACHE_EXPIRES.containsKey(queryScript.getSourceId()) || !getDbFile(queryScript.getSourceId()).exists()) {
+                readLock.unlock();
+                return null;
+            }
+            LocalCacheManager.recordHit(queryScript.getSourceId());
+        }
+        Dataframe dataframe;
+        try (Connection connection = getCacheConnection(queryScript.getSourceId())) {
+            dataframe = execute(connection, queryScript, executeParam);
+        } finally {
+            readLock.unlock();
+        }
+        List<String> columns = LocalIndexAdvisor.record(queryScript.getSourceId(), executeParam, getDbFile(queryScript.getSourceId()));
+        if (!columns.isEmpty()) {
+            createIndexesAsync(queryScript.getSourceId(), columns);
+        }
+        return dataframe;
+    }
 
-                for (Dataframe dataframe : srcData) {
-                    registerDataAsTable(dataframe, connection);
+    /**
+     * 在后台为过滤和分组频繁使用的列建立索引。建立索引时只持有读锁，不阻塞其它查询，只阻止缓存被清除或替换
+     */
+    private static void createIndexesAsync(String sourceId, List<String> columns) {
+        TaskExecutor.submit(() -> {
+            List<String> created = Collections.emptyList();
+            Lock readLock = CACHE_LOCKS.get(sourceId).readLock();
+            readLock.lock();
+            try {
+                if (CACHE_EXPIRES.containsKey(sourceId)) {
+                    try (Connection connection = getCacheConnection(sourceId)) {
+                        created = LocalIndexAdvisor.createIndexes(connection, columns);
+                    }
                 }
+            } catch (Exception e) {
+                log.error("local cache index create error ", e);
+            } finally {
+                readLock.unlock();
+            }
+            List<String> discarded = new ArrayList<>(columns);
+            discarded.removeAll(created);
+            LocalIndexAdvisor.discard(sourceId, discarded);
+            if (created.isEmpty()) {
+                return;
+            }
+            try (Connection connection = getConnection(true, null)) {
+                LocalIndexAdvisor.persist(connection, sourceId, created);
+                log.info("Local cache indexes created for source {}: {}", sourceId, created);
+            } catch (Exception e) {
+                log.error("local cache index persist error ", e);
+            }
+        });
+    }
 
-                if (expire != null) {
-                    setCacheExpire(queryScript.getSourceId(), expire);
-                }
+    private static void writeCache(String sourceId, List<Dataframe> srcData, java.util.Date expire) throws SQLException {
+        try {
+            writeTables(sourceId, sourceId, srcData);
+        } catch (SQLException e) {
+            // 不保留只写入了一部分的缓存
+            dropDatabase(sourceId);
+            throw e;
+        }
+        cacheWritten(sourceId, expire);
+    }
 
+    /**
+     * 将数据写入本地数据库并恢复已选择的索引
+     *
+     * @param database 写入的本地数据库，重建缓存时为临时数据库
+     */
+    private static void writeTables(String database, String sourceId, List<Dataframe> srcData) throws SQLException {
+        try (Connection connection = getConnection(true, database)) {
+            for (Dataframe dataframe : srcData) {
+                registerDataAsTable(dataframe, connection, false);
+            }
+            LocalIndexAdvisor.createIndexes(connection, LocalIndexAdvisor.getIndexedColumns(sourceId));
+        } finally {
+            // 数据已复制到缓存表中，不再需要保留
+            for (Dataframe df : srcData) {
+                unregisterData(df.getId());
             }
-            return execute(connection, queryScript, executeParam);
         }
     }
 
+    private static void cacheWritten(String sourceId, java.util.Date expire) throws SQLException {
+        if (expire != null) {
+            setCacheExpire(sourceId, expire);
+        }
+        LocalCacheManager.register(sourceId, System.currentTimeMillis());
+        // 淘汰其它缓存需要获取它们的写锁，在后台执行，避免与当前持有的锁形成死锁
+        TaskExecutor.submit(LocalCacheManager::enforceDiskBudget);
+    }
+
     /**
      * 检查数据源缓存是否过期。如果过期,会删除缓存
      *
      * @param sourceId source 唯一标识
      */
     public static boolean checkCacheExpired(String sourceId) throws SQLException {
+        return checkCache(sourceId, false) != CacheStatus.FRESH;
+    }
+
+    /**
+     * 检查数据源缓存状态
+     *
+     * @param sourceId   source 唯一标识
+     * @param allowStale 缓存过期后继续使用旧数据(由调用方负责重建缓存)，否则删除过期的缓存
+     */
+    public static CacheStatus checkCache(String sourceId, boolean allowStale) throws SQLException {
+        CacheExpire expire = CACHE_EXPIRES.get(sourceId);
+        if (expire == null) {
+            return CacheStatus.MISSING;
+        }
+        if (expire.expireTime > System.currentTimeMillis()) {
+            return CacheStatus.FRESH;
+        }
+        if (allowStale) {
+            expire.serveStale = true;
+            return CacheStatus.STALE;
+        }
+        clearCache(sourceId);
+        return CacheStatus.MISSING;
+    }
+
+    /**
+     * 在后台重建数据源缓存，重建期间继续使用旧数据查询。同一数据源同时只有一个重建任务。
+     * 数据加载和写入都在锁外的临时数据库中进行，写锁内只用临时数据库替换旧缓存，重建失败时旧缓存不受影响
+     *
+     * @param sourceId source 唯一标识
+     * @param loader   从数据源加载全量数据
+     * @param expire   新缓存的过期时间
+     */
+    public static void revalidateCache(String sourceId, Callable<List<Dataframe>> loader, java.util.Date expire) {
+        revalidateCache(sourceId, loader, expire, null);
+    }
+
+    /**
+     * @param watermarkLoader 增量刷新时使用，在加载数据前取得数据源当前的水位，缓存重建后保存
+     */
+    public static void revalidateCache(String sourceId, Callable<List<Dataframe>> loader, java.util.Date expire, Callable<Map<String, String>> watermarkLoader) {
+        if (!REVALIDATING.add(sourceId)) {
+            return;
+        }
+        String staging = sourceId + STAGING_SUFFIX;
+        try {
+            TaskExecutor.submit(() -> {
+                try {
+                    Map<String, String> watermarks = watermarkLoader == null ? null : watermarkLoader.call();
+                    List<Dataframe> srcData = loader.call();
+                    dropDatabase(staging);
+                    try {
+                        writeTables(staging, sourceId, srcData);
+                    } finally {
+                        closePool(staging);
+                    }
+                    Lock writeLock = CACHE_LOCKS.get(sourceId).writeLock();
+                    writeLock.lock();
+                    try {
+                        closePool(sourceId);
+                        Files.move(getDbFile(staging).toPath(), getDbFile(sourceId).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                        cacheWritten(sourceId, expire);
+                        if (watermarks != null) {
+                            saveWatermarks(sourceId, watermarks);
+                        }
+                    } finally {
+                        writeLock.unlock();
+                    }
+                } catch (Exception e) {
+                    log.error("local cache revalidate error ", e);
+                    dropDatabase(staging);
+                } finally {
+                    REVALIDATING.remove(sourceId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            REVALIDATING.remove(sourceId);
+            log.error("local cache revalidate rejected ", e);
+        }
+    }
+
+    /**
+     * 取得缓存的水位：保存的水位，以及各缓存表中水位列的最大值(以表名为键)
+     *
+     * @param sourceId        source 唯一标识
+     * @param watermarkColumn 水位列，为空时只返回保存的水位
+     */
+    public static Map<String, String> getWatermarks(String sourceId, String watermarkColumn) throws SQLException {
+        Map<String, String> watermarks = new HashMap<>();
         try (Connection connection = getConnection(true, null)) {
+            try (ResultSet resultSet = connection.createStatement().executeQuery(String.format(SELECT_WATERMARK_SQL, sourceId))) {
+                while (resultSet.next()) {
+                    watermarks.put(resultSet.getString(1), resultSet.getString(2));
+                }
+            }
+        }
+        if (StringUtils.isBlank(watermarkColumn) || !CACHE_EXPIRES.containsKey(sourceId)) {
+            return watermarks;
+        }
+        Lock readLock = CACHE_LOCKS.get(sourceId).readLock();
+        readLock.lock();
+        try (Connection connection = getConnection(true, sourceId)) {
             Statement statement = connection.createStatement();
-            ResultSet resultSet = statement.executeQuery("SELECT * FROM `cache_expire` WHERE `source_id`='" + sourceId + "'");
-            if (resultSet.next()) {
-                Timestamp cacheExpire = resultSet.getTimestamp("expire_time");
-                if (cacheExpire.after(new java.util.Date())) {
+            for (String table : LocalIndexAdvisor.tablesWithColumn(connection, watermarkColumn)) {
+                try (ResultSet resultSet = statement.executeQuery(String.format(MAX_VALUE_SQL, watermarkColumn, table))) {
+                    if (resultSet.next() && resultSet.getObject(1) != null) {
+                        Object value = resultSet.getObject(1);
+                        watermarks.put(table, value instanceof java.util.Date
+                                ? DateFormatUtils.format((java.util.Date) value, Const.DEFAULT_DATE_FORMAT)
+                                : value.toString());
+                    }
+                }
+            }
+        } finally {
+            readLock.unlock();
+        }
+        return watermarks;
+    }
+
+    /**
+     * 保存水位，同时将数据源标记为增量刷新
+     */
+    public static void saveWatermarks(String sourceId, Map<String, String> watermarks) throws SQLException {
+        INCREMENTAL.add(sourceId);
+        try (Connection connection = getConnection(true, null)) {
+            Statement statement = connection.createStatement();
+            statement.execute(String.format(DELETE_WATERMARK_SQL, sourceId));
+            for (Map.Entry<String, String> entry : watermarks.entrySet()) {
+                statement.execute(String.format(INSERT_WATERMARK_SQL, sourceId, entry.getKey().replace("'", "''"), entry.getValue().replace("'", "''")));
+            }
+        }
+    }
+
+    /**
+     * 将新增数据追加到已有的缓存表中。表结构(列名和类型)发生变化时不追加，返回 false，由调用方全量重建缓存。
+     * 部分表追加后失败时清除缓存，同样返回 false
+     *
+     * @param sourceId        source 唯一标识
+     * @param increments      新增数据，表名与缓存表一致
+     * @param watermarks      追加后的新水位，为空时不更新
+     * @param watermarkColumn 水位列，只追加大于缓存中最大值的行，防止数据源返回重复数据
+     * @param expire          缓存新的过期时间
+     */
+    public static boolean appendCache(String sourceId, List<Dataframe> increments, Map<String, String> watermarks, String watermarkColumn, java.util.Date expire) throws SQLException {
+        Lock writeLock = CACHE_LOCKS.get(sourceId).writeLock();
+        writeLock.lock();
+        try {
+            CacheExpire cacheExpire = CACHE_EXPIRES.get(sourceId);
+            if (cacheExpire == null) {
+                return false;
+            }
+            if (cacheExpire.expireTime > System.currentTimeMillis()) {
+                // 其它请求已经完成了刷新
+                return true;
+            }
+            boolean appended = false;
+            try (Connection connection = getConnection(true, sourceId)) {
+                for (Dataframe dataframe : increments) {
+                    if (!sameStructure(connection, dataframe)) {
+                        log.info("Structure of table {} in source {} changed, rebuild the cache", dataframe.getName(), sourceId);
+                        return false;
+                    }
+                }
+                for (Dataframe dataframe : increments) {
+                    registerData(dataframe, connection);
+                    try {
+                        String table = dataframe.getName();
+                        String sql = StringUtils.isBlank(watermarkColumn)
+                                ? String.format(APPEND_SQL, table, dataframe.getId())
+                                : String.format(APPEND_AFTER_WATERMARK_SQL, table, dataframe.getId(), watermarkColumn, table, watermarkColumn, watermarkColumn, table);
+                        appended = true;
+                        connection.createStatement().execute(sql);
+                    } finally {
+                        unregisterData(dataframe.getId());
+                    }
+                }
+                if (watermarks != null) {
+                    saveWatermarks(sourceId, watermarks);
+                }
+            } catch (SQLException e) {
+                if (appended) {
+                    // 部分表已追加而水位未更新，再次追加会产生重复数据，清除缓存由调用方全量重建
+                    log.warn("incremental append of source " + sourceId + " failed, clear the cache", e);
+                    clearCache(sourceId);
                     return false;
                 }
-                clearCache(sourceId);
+                throw e;
             }
+            setCacheExpire(sourceId, expire);
+        } finally {
+            writeLock.unlock();
         }
+        TaskExecutor.submit(LocalCacheManager::enforceDiskBudget);
         return true;
     }
 
+    private static boolean sameStructure(Connection connection, Dataframe dataframe) throws SQLException {
+        List<Column> columns = dataframe.getColumns();
+        if (columns == null) {
+            return false;
+        }
+        int i = 0;
+        try (ResultSet resultSet = connection.createStatement().executeQuery(String.format(TABLE_COLUMNS_SQL, dataframe.getName().replace("'", "''")))) {
+            while (resultSet.next()) {
+                if (i >= columns.size()
+                        || !resultSet.getString(1).equalsIgnoreCase(columns.get(i).getName())
+                        || resultSet.getInt(2) != DataTypeUtils.valueType2SqlTypes(columns.get(i).getType())) {
+                    return false;
+                }
+                i++;
+            }
+        }
+        return i > 0 && i == columns.size();
+    }
+
     private static void setCacheExpire(String sourceId, java.util.Date date) throws SQLException {
         try (Connection connection = getConnection(true, null)) {
             Statement statement = connection.createStatement();
             // delete first
-            statement.execute(String.format(DELETE_EXPIRE_SQL, statement));
+            statement.execute(String.format(DELETE_EXPIRE_SQL, sourceId));
             // insert expire
             String sql = String.format(SET_EXPIRE_SQL, sourceId, DateFormatUtils.format(date, Const.DEFAULT_DATE_FORMAT), Const.DEFAULT_DATE_FORMAT);
             statement.execute(sql);
         }
+        CACHE_EXPIRES.put(sourceId, new CacheExpire(date.getTime()));
     }
 
     public static void clearCache(String sourceId) throws SQLException {
+        Lock writeLock = CACHE_LOCKS.get(sourceId).writeLock();
+        writeLock.lock();
         try (Connection connection = getConnection(true, null)) {
+            CACHE_EXPIRES.remove(sourceId);
+            INCREMENTAL.remove(sourceId);
+            LocalCacheManager.remove(sourceId);
             connection.createStatement().execute(String.format(DELETE_EXPIRE_SQL, sourceId));
-            DeleteDbFiles.execute(getDbFileBasePath(), toDatabase(sourceId), false);
+            connection.createStatement().execute(String.format(DELETE_WATERMARK_SQL, sourceId));
+            dropDatabase(sourceId);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 淘汰缓存。先取得写锁再删除文件，缓存正在被查询(读锁被持有)时跳过，不在查询过程中删除文件
+     *
+     * @return 缓存是否已被淘汰
+     */
+    static boolean evictCache(String sourceId) throws SQLException {
+        Lock writeLock = CACHE_LOCKS.get(sourceId).writeLock();
+        if (!writeLock.tryLock()) {
+            return false;
+        }
+        try {
+            clearCache(sourceId);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private static void dropDatabase(String sourceId) {
+        closePool(sourceId);
+        DeleteDbFiles.execute(getDbFileBasePath(), toDatabase(sourceId), false);
+    }
+
+    /**
+     * 关闭连接池后数据库才会关闭，之后才能删除或替换数据库文件
+     */
+    private static void closePool(String sourceId) {
+        for (String url : new String[]{getConnectionUrl(true, sourceId), getDatabaseUrl(sourceId) + IF_EXISTS}) {
+            JdbcConnectionPool pool = CONNECTION_POOLS.remove(url);
+            if (pool != null) {
+                pool.dispose();
+            }
+        }
+    }
+
+    static Long getCacheExpireTime(String sourceId) {
+        CacheExpire expire = CACHE_EXPIRES.get(sourceId);
+        return expire == null ? null : expire.expireTime;
+    }
+
+    static File getDbFile(String sourceId) {
+        return new File(getDbFileBasePath(), toDatabase(sourceId) + ".mv.db");
+    }
+
+    /**
+     * 缓存数据库的全部文件(数据文件、临时文件、锁文件等)的总大小，包括重建中的临时库
+     */
+    static long getDbSize(String sourceId) {
+        String prefix = toDatabase(sourceId) + ".";
+        String stagingPrefix = toDatabase(sourceId + STAGING_SUFFIX) + ".";
+        File[] files = new File(getDbFileBasePath()).listFiles((dir, name) -> name.startsWith(prefix) || name.startsWith(stagingPrefix));
+        if (files == null) {
+            return 0;
+        }
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
         }
+        return size;
     }
 
     private static String toDatabase(String sourceId) {
@@ -277,28 +937,73 @@ LocalDB {
     }
 
     private static Dataframe execute(Connection connection, QueryScript queryScript, ExecuteParam executeParam) throws Exception {
+        if (MapUtils.isNotEmpty(queryScript.getSchema())) {
+            queryScript = applySchema(connection, queryScript);
+        }
+        return executeQuery(connection, queryScript, executeParam, SQL_DIALECT);
+    }
+
+    /**
+     * 在本地引擎的连接上执行查询：分页下推到SQL，需要时再查询总数。自定义 schema 需由调用方预先处理
+     */
+    public static Dataframe executeQuery(Connection connection, QueryScript queryScript, ExecuteParam executeParam, SqlDialect sqlDialect) throws Exception {
         SqlScriptRender render = new SqlScriptRender(queryScript
                 , executeParam
-                , SQL_DIALECT);
+                , sqlDialect);
 
-        String sql = render.render(true, false, false);
+        // 分页下推到SQL(LIMIT/OFFSET)，结果集只包含当前页数据
+        String sql = render.render(true, true, false);
 
-        ResultSet resultSet = connection.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY).executeQuery(sql);
         PageInfo pageInfo = executeParam.getPageInfo();
-        resultSet.last();
-        pageInfo.setTotal(resultSet.getRow());
-        resultSet.first();
-
-        resultSet.absolute((int) Math.min(pageInfo.getTotal(), (pageInfo.getPageNo() - 1) * pageInfo.getPageSize()));
-        Dataframe dataframe = ResultSetMapper.mapToTableData(resultSet, pageInfo.getPageSize());
+        Dataframe dataframe;
+        try (Statement statement = connection.createStatement()) {
+            int timeout = Integer.parseInt(Application.getProperty(QUERY_TIMEOUT, "0"));
+            if (timeout > 0) {
+                statement.setQueryTimeout(timeout);
+            }
+            // 客户端取消查询时一并取消本地查询
+            RunningQueries.register(statement);
+            try {
+                try (ResultSet resultSet = statement.executeQuery(sql)) {
+                    dataframe = ResultSetMapper.mapToTableData(resultSet);
+                }
+                if (pageInfo.isCountTotal()) {
+                    try (ResultSet resultSet = statement.executeQuery(String.format(COUNT_SQL, render.render(true, false, true)))) {
+                        resultSet.next();
+                        pageInfo.setTotal(resultSet.getLong(1));
+                    }
+                }
+            } finally {
+                RunningQueries.unregister(statement);
+            }
+        }
         dataframe.setPageInfo(pageInfo);
         dataframe.setScript(sql);
         return dataframe;
-
     }
 
     private static Connection getConnection(boolean persistent, String database) throws SQLException {
-        return DriverManager.getConnection(getConnectionUrl(persistent, database));
+        String url = getConnectionUrl(persistent, database);
+        if (!persistent) {
+            // 内存数据库在最后一个连接关闭后销毁，不做池化
+            return DriverManager.getConnection(url);
+        }
+        return getPooledConnection(url);
+    }
+
+    /**
+     * 查询已有缓存的连接，数据库文件不存在时报错，不会创建空库
+     */
+    private static Connection getCacheConnection(String sourceId) throws SQLException {
+        return getPooledConnection(getDatabaseUrl(sourceId) + IF_EXISTS);
+    }
+
+    private static Connection getPooledConnection(String url) throws SQLException {
+        return CONNECTION_POOLS.computeIfAbsent(url, key -> {
+            JdbcConnectionPool pool = JdbcConnectionPool.create(key, "", "");
+            pool.setMaxConnections(Integer.parseInt(Application.getProperty(POOL_MAX_CONNECTIONS, String.valueOf(DEFAULT_POOL_MAX_CONNECTIONS))));
+            return pool;
+        }).getConnection();
     }
 
 
@@ -315,6 +1020,46 @@ LocalDB {
         return fileUrl = String.format("jdbc:h2:file:%s/%s" + H2_PARAM, getDbFileBasePath(), database);
     }
 
+    private static boolean isVectorizedEnabled() {
+        return Boolean.parseBoolean(Application.getProperty(VECTORIZED_ENABLED, "true"));
+    }
+
+    /**
+     * 聚合查询的并行分区数：每个分区不少于 partition-rows 行，且不超过并行线程数
+     */
+    private static int partitions(Dataframe dataframe) {
+        int rows;
+        if (dataframe instanceof ColumnarDataframe) {
+            rows = ((ColumnarDataframe) dataframe).rowCount();
+        } else {
+            rows = dataframe.getRows() == null ? 0 : dataframe.getRows().size();
+        }
+        int partitionRows = Integer.parseInt(Application.getProperty(PARALLEL_PARTITION_ROWS, String.valueOf(DEFAULT_PARTITION_ROWS)));
+        return Math.max(1, Math.min(parallelThreads(), rows / Math.max(partitionRows, 1)));
+    }
+
+    private static int parallelThreads() {
+        return Math.max(1, Integer.parseInt(Application.getProperty(PARALLEL_THREADS, String.valueOf(Runtime.getRuntime().availableProcessors()))));
+    }
+
+    /**
+     * 并行聚合的线程池，线程数与并行分区数的上限一致，所有查询共用
+     */
+    private static ForkJoinPool parallelPool() {
+        if (parallelPool == null) {
+            synchronized (LocalDB.class) {
+                if (parallelPool == null) {
+                    parallelPool = new ForkJoinPool(parallelThreads());
+                }
+            }
+        }
+        return parallelPool;
+    }
+
+    private static String getSpillFileBasePath() {
+        return Application.getFileBasePath() + "h2/tmp";
+    }
+
     private static String getDbFileBasePath() {
         return Application.getFileBasePath() + "h2/dbs";
     }
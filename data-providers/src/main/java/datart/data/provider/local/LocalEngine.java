@@ -0,0 +1,46 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datart.data.provider.local;
+
+import datart.core.data.provider.Dataframe;
+import datart.core.data.provider.ExecuteParam;
+import datart.core.data.provider.QueryScript;
+
+import java.util.List;
+
+/**
+ * 本地查询引擎，用于在服务端对数据源的全量数据执行查询(非持久化)。
+ * 实现类通过 ServiceLoader 加载，在 META-INF/services 中注册。
+ */
+public interface LocalEngine {
+
+    /**
+     * 引擎名称，对应配置 datart.local-db.engine 或数据源的 localEngine 属性
+     */
+    String getName();
+
+    /**
+     * 将原始数据注册为表，执行查询脚本和执行参数，执行结束后释放数据
+     *
+     * @param queryScript  查询脚本，包含自定义 schema 时需要同时完成类型转换
+     * @param executeParam 执行参数
+     * @param srcData      原始数据
+     */
+    Dataframe execute(QueryScript queryScript, ExecuteParam executeParam, List<Dataframe> srcData) throws Exception;
+
+}
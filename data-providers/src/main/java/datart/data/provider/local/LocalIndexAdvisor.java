@@ -0,0 +1,288 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datart.data.provider.local;
+
+import datart.core.common.Application;
+import datart.core.data.provider.ExecuteParam;
+import datart.core.data.provider.sql.FilterOperator;
+import datart.core.data.provider.sql.GroupByOperator;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 持久化缓存的自适应索引：统计每个数据源上过滤和分组使用的列，使用次数达到阈值后为该列建立索引。
+ * 使用次数按时间窗口衰减，只有持续被使用的列才会建立索引。已选择的索引记录在元数据库中，缓存重建后重新创建。
+ */
+@Slf4j
+class LocalIndexAdvisor {
+
+    private static final String CACHE_INDEX_TABLE_SQL = "CREATE TABLE IF NOT EXISTS `cache_index` ( `source_id` VARCHAR(128),`column_name` VARCHAR(1024) )";
+
+    private static final String SELECT_INDEX_SQL = "SELECT `source_id`,`column_name` FROM `cache_index`";
+
+    private static final String INSERT_INDEX_SQL = "INSERT INTO `cache_index` VALUES( '%s', '%s')";
+
+    private static final String TABLES_WITH_COLUMN_SQL = "SELECT C.TABLE_NAME,C.ORDINAL_POSITION FROM INFORMATION_SCHEMA.COLUMNS C JOIN INFORMATION_SCHEMA.TABLES T " +
+            "ON C.TABLE_SCHEMA=T.TABLE_SCHEMA AND C.TABLE_NAME=T.TABLE_NAME " +
+            "WHERE T.TABLE_TYPE='TABLE' AND C.TABLE_SCHEMA<>'INFORMATION_SCHEMA' AND C.COLUMN_NAME='%s'";
+
+    private static final String CREATE_INDEX_SQL = "CREATE INDEX IF NOT EXISTS `%s` ON `%s` (`%s`)";
+
+    private static final String INDEX_THRESHOLD = "datart.local-db.index.threshold";
+
+    private static final String INDEX_MAX_PER_SOURCE = "datart.local-db.index.max-per-source";
+
+    private static final String INDEX_MAX_DB_SIZE = "datart.local-db.index.max-db-size";
+
+    private static final String INDEX_DECAY_INTERVAL = "datart.local-db.index.decay-interval";
+
+    private static final int DEFAULT_THRESHOLD = 20;
+
+    private static final int DEFAULT_MAX_PER_SOURCE = 4;
+
+    private static final long DEFAULT_MAX_DB_SIZE_MB = 2048;
+
+    private static final long DEFAULT_DECAY_INTERVAL_MINUTES = 60;
+
+    /**
+     * 过滤条件中可以利用索引的运算符
+     */
+    private static final Set<FilterOperator.SqlOperator> INDEXABLE_OPERATORS = EnumSet.of(
+            FilterOperator.SqlOperator.EQ,
+            FilterOperator.SqlOperator.IN,
+            FilterOperator.SqlOperator.GT,
+            FilterOperator.SqlOperator.LT,
+            FilterOperator.SqlOperator.GTE,
+            FilterOperator.SqlOperator.LTE,
+            FilterOperator.SqlOperator.BETWEEN,
+            FilterOperator.SqlOperator.PREFIX_LIKE,
+            FilterOperator.SqlOperator.IS_NULL);
+
+    /**
+     * 数据源 -> 列的使用次数
+     */
+    private static final Map<String, ColumnUsage> COLUMN_USAGES = new ConcurrentHashMap<>();
+
+    /**
+     * 数据源 -> 已建立索引的列
+     */
+    private static final Map<String, Set<String>> INDEXED_COLUMNS = new ConcurrentHashMap<>();
+
+    /**
+     * 创建索引记录表，并加载已选择的索引
+     *
+     * @param metaConnection 元数据库连接
+     */
+    static void init(Connection metaConnection) throws SQLException {
+        try (Statement statement = metaConnection.createStatement()) {
+            statement.execute(CACHE_INDEX_TABLE_SQL);
+            try (ResultSet resultSet = statement.executeQuery(SELECT_INDEX_SQL)) {
+                while (resultSet.next()) {
+                    indexedColumns(resultSet.getString(1)).add(resultSet.getString(2));
+                }
+            }
+        }
+    }
+
+    /**
+     * 记录一次查询中过滤和分组使用的列
+     *
+     * @param sourceId  source 唯一标识
+     * @param dbFile    缓存数据库文件，超过磁盘限制后不再建立索引
+     * @return 本次达到阈值、需要建立索引的列
+     */
+    static List<String> record(String sourceId, ExecuteParam executeParam, File dbFile) {
+        Set<String> columns = new LinkedHashSet<>();
+        if (CollectionUtils.isNotEmpty(executeParam.getFilters())) {
+            for (FilterOperator filter : executeParam.getFilters()) {
+                if (filter.getAggOperator() == null && INDEXABLE_OPERATORS.contains(filter.getSqlOperator())) {
+                    columns.add(filter.getColumn());
+                }
+            }
+        }
+        if (CollectionUtils.isNotEmpty(executeParam.getGroups())) {
+            for (GroupByOperator group : executeParam.getGroups()) {
+                columns.add(group.getColumn());
+            }
+        }
+        columns.remove(null);
+        if (columns.isEmpty()) {
+            return Collections.emptyList();
+        }
+        int threshold = Integer.parseInt(Application.getProperty(INDEX_THRESHOLD, String.valueOf(DEFAULT_THRESHOLD)));
+        long decayInterval = Long.parseLong(Application.getProperty(INDEX_DECAY_INTERVAL, String.valueOf(DEFAULT_DECAY_INTERVAL_MINUTES))) * 60 * 1000;
+        List<String> hot = COLUMN_USAGES.computeIfAbsent(sourceId, key -> new ColumnUsage())
+                .hit(columns, threshold, decayInterval, System.currentTimeMillis());
+        if (hot.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Set<String> indexed = indexedColumns(sourceId);
+        int maxIndexes = Integer.parseInt(Application.getProperty(INDEX_MAX_PER_SOURCE, String.valueOf(DEFAULT_MAX_PER_SOURCE)));
+        long maxDbSize = Long.parseLong(Application.getProperty(INDEX_MAX_DB_SIZE, String.valueOf(DEFAULT_MAX_DB_SIZE_MB))) * 1024 * 1024;
+        List<String> selected = new ArrayList<>();
+        synchronized (indexed) {
+            for (String column : hot) {
+                if (indexed.size() >= maxIndexes || dbFile.length() > maxDbSize) {
+                    break;
+                }
+                if (indexed.add(column)) {
+                    selected.add(column);
+                }
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * 在缓存数据库中为指定列建立索引，所有包含该列的表都会建立
+     *
+     * @return 缓存中存在的列，不存在的列没有建立索引
+     */
+    static List<String> createIndexes(Connection connection, Collection<String> columns) throws SQLException {
+        List<String> created = new ArrayList<>();
+        try (Statement statement = connection.createStatement()) {
+            for (String column : columns) {
+                if (StringUtils.contains(column, '`')) {
+                    continue;
+                }
+                Map<String, Integer> positions = columnPositions(connection, column);
+                for (Map.Entry<String, Integer> entry : positions.entrySet()) {
+                    if (StringUtils.contains(entry.getKey(), '`')) {
+                        continue;
+                    }
+                    statement.execute(String.format(CREATE_INDEX_SQL, indexName(entry.getKey(), entry.getValue()), entry.getKey(), column));
+                }
+                if (!positions.isEmpty()) {
+                    created.add(column);
+                }
+            }
+        }
+        return created;
+    }
+
+    /**
+     * 索引名由表名和列序号组成。序号不含下划线，不同的表和列不会得到相同的名称
+     */
+    static String indexName(String table, int position) {
+        return "IDX_" + table + "_" + position;
+    }
+
+    /**
+     * 缓存数据库中包含指定列的表
+     */
+    static List<String> tablesWithColumn(Connection connection, String column) throws SQLException {
+        return new ArrayList<>(columnPositions(connection, column).keySet());
+    }
+
+    /**
+     * 缓存数据库中包含指定列的表，及该列在表中的序号
+     */
+    private static Map<String, Integer> columnPositions(Connection connection, String column) throws SQLException {
+        Map<String, Integer> positions = new LinkedHashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(String.format(TABLES_WITH_COLUMN_SQL, escape(column)))) {
+            while (resultSet.next()) {
+                positions.put(resultSet.getString(1), resultSet.getInt(2));
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * 记录已选择的索引，缓存重建后重新创建
+     */
+    static void persist(Connection metaConnection, String sourceId, Collection<String> columns) throws SQLException {
+        try (Statement statement = metaConnection.createStatement()) {
+            for (String column : columns) {
+                statement.execute(String.format(INSERT_INDEX_SQL, escape(sourceId), escape(column)));
+            }
+        }
+    }
+
+    /**
+     * 放弃未能建立索引的列，释放其占用的索引数量
+     */
+    static void discard(String sourceId, Collection<String> columns) {
+        indexedColumns(sourceId).removeAll(columns);
+    }
+
+    static List<String> getIndexedColumns(String sourceId) {
+        Set<String> indexed = indexedColumns(sourceId);
+        synchronized (indexed) {
+            return new ArrayList<>(indexed);
+        }
+    }
+
+    private static Set<String> indexedColumns(String sourceId) {
+        return INDEXED_COLUMNS.computeIfAbsent(sourceId, key -> Collections.synchronizedSet(new LinkedHashSet<>()));
+    }
+
+    private static String escape(String value) {
+        return StringUtils.replace(value, "'", "''");
+    }
+
+    /**
+     * 一个数据源上各列的使用次数。每经过一个衰减周期，所有次数减半，减为0的列不再记录
+     */
+    static class ColumnUsage {
+
+        private final Map<String, Integer> counts = new HashMap<>();
+
+        private long lastDecay;
+
+        /**
+         * @return 使用次数达到阈值的列
+         */
+        synchronized List<String> hit(Collection<String> columns, int threshold, long decayInterval, long now) {
+            if (lastDecay == 0) {
+                lastDecay = now;
+            }
+            if (decayInterval > 0) {
+                for (; now - lastDecay >= decayInterval; lastDecay += decayInterval) {
+                    counts.replaceAll((column, count) -> count >> 1);
+                    counts.values().removeIf(count -> count == 0);
+                    if (counts.isEmpty()) {
+                        lastDecay = now;
+                        break;
+                    }
+                }
+            }
+            List<String> hot = new ArrayList<>();
+            for (String column : columns) {
+                if (counts.merge(column, 1, Integer::sum) >= threshold) {
+                    hot.add(column);
+                }
+            }
+            return hot;
+        }
+
+        synchronized int count(String column) {
+            return counts.getOrDefault(column, 0);
+        }
+    }
+
+}
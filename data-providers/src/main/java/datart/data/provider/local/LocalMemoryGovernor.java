@@ -0,0 +1,317 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datart.data.provider.local;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import datart.core.base.exception.Exceptions;
+import datart.core.common.Application;
+import datart.core.data.provider.Dataframe;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地查询的内存控制：所有非持久化的本地查询共享一个内存预算。查询在从数据源加载数据之前申请额度，
+ * 按同一查询上一次的实际占用(原始数据、本地引擎中的副本和查询结果)预留，加载后再按实际大小调整。
+ * 超出预算时按配置排队等待、直接拒绝，或者转到基于临时文件的H2数据库中执行。
+ */
+@Slf4j
+public class LocalMemoryGovernor {
+
+    private static final String MAX_MEMORY = "datart.local-db.memory.max-size";
+
+    private static final String OVERFLOW_POLICY = "datart.local-db.memory.overflow";
+
+    private static final String QUEUE_TIMEOUT = "datart.local-db.memory.queue-timeout";
+
+    private static final String DEFAULT_RESERVE = "datart.local-db.memory.default-reserve";
+
+    private static final long DEFAULT_QUEUE_TIMEOUT_SECONDS = 30;
+
+    private static final long DEFAULT_RESERVE_MB = 16;
+
+    /**
+     * 本地引擎(H2 读取函数表时)会复制一份原始数据
+     */
+    private static final int ENGINE_COPIES = 2;
+
+    private static volatile LocalMemoryGovernor instance;
+
+    private final long budget;
+
+    private final OverflowPolicy policy;
+
+    private final long queueTimeout;
+
+    private final long defaultReserve;
+
+    /**
+     * 各查询上一次的实际内存占用，用于加载数据前预留额度
+     */
+    private final Cache<String, Long> lastSizes = CacheBuilder.newBuilder()
+            .maximumSize(1000)
+            .build();
+
+    private long used;
+
+    private long peak;
+
+    private int running;
+
+    private int queued;
+
+    private final AtomicLong admitted = new AtomicLong();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    private final AtomicLong spilled = new AtomicLong();
+
+    public enum OverflowPolicy {
+        QUEUE,
+        REJECT,
+        SPILL
+    }
+
+    /**
+     * @param budget         内存预算(字节)
+     * @param queueTimeout   QUEUE 策略下的最长等待时间(毫秒)
+     * @param defaultReserve 没有历史大小的查询预留的额度(字节)
+     */
+    LocalMemoryGovernor(long budget, OverflowPolicy policy, long queueTimeout, long defaultReserve) {
+        this.budget = budget;
+        this.policy = policy;
+        this.queueTimeout = queueTimeout;
+        this.defaultReserve = defaultReserve;
+    }
+
+    private static LocalMemoryGovernor get() {
+        if (instance == null) {
+            synchronized (LocalMemoryGovernor.class) {
+                if (instance == null) {
+                    String maxSize = Application.getProperty(MAX_MEMORY);
+                    // 默认为最大堆内存的四分之一
+                    long budget = maxSize == null ? Runtime.getRuntime().maxMemory() / 4 : Long.parseLong(maxSize) * 1024 * 1024;
+                    OverflowPolicy policy = OverflowPolicy.valueOf(Application.getProperty(OVERFLOW_POLICY, OverflowPolicy.QUEUE.name()).toUpperCase());
+                    long queueTimeout = TimeUnit.SECONDS.toMillis(Long.parseLong(Application.getProperty(QUEUE_TIMEOUT, String.valueOf(DEFAULT_QUEUE_TIMEOUT_SECONDS))));
+                    long defaultReserve = Long.parseLong(Application.getProperty(DEFAULT_RESERVE, String.valueOf(DEFAULT_RESERVE_MB))) * 1024 * 1024;
+                    instance = new LocalMemoryGovernor(budget, policy, queueTimeout, defaultReserve);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 查询占用的内存额度，查询结束后关闭以归还额度
+     */
+    public class Permit implements AutoCloseable {
+
+        private final String key;
+
+        private long bytes;
+
+        private boolean spill;
+
+        private boolean closed;
+
+        /**
+         * 查询实际的内存占用，关闭时记录，作为下一次的预留额度
+         */
+        private long actual;
+
+        private Permit(String key, long bytes, boolean spill) {
+            this.key = key;
+            this.bytes = bytes;
+            this.spill = spill;
+        }
+
+        /**
+         * 内存不足，查询需要在临时文件数据库中执行
+         */
+        public boolean isSpill() {
+            return spill;
+        }
+
+        /**
+         * 数据加载后按原始数据及本地引擎中副本的大小调整额度。数据已经在内存中，不再排队等待：
+         * 超出预算时 REJECT 策略拒绝查询，其它策略转到临时文件数据库执行
+         */
+        void resize(List<Dataframe> srcData) {
+            long size = estimatedBytes(srcData) * ENGINE_COPIES;
+            synchronized (LocalMemoryGovernor.this) {
+                actual = size;
+                if (spill || closed) {
+                    return;
+                }
+                long extra = size - bytes;
+                if (extra <= 0 || used + extra <= budget) {
+                    used += extra;
+                    bytes = size;
+                    peak = Math.max(peak, used);
+                    return;
+                }
+                if (policy == OverflowPolicy.REJECT) {
+                    close();
+                    reject(size);
+                }
+                used -= bytes;
+                running--;
+                bytes = 0;
+                spill = true;
+                spilled.incrementAndGet();
+                LocalMemoryGovernor.this.notifyAll();
+                log.info("Local query of {} bytes spilled to disk, memory used {}/{}", size, used, budget);
+            }
+        }
+
+        /**
+         * 计入查询结果占用的内存，直到查询结束
+         */
+        void add(Dataframe result) {
+            long size = result == null ? 0 : result.estimatedBytes();
+            synchronized (LocalMemoryGovernor.this) {
+                actual += size;
+                if (spill || closed) {
+                    return;
+                }
+                used += size;
+                bytes += size;
+                peak = Math.max(peak, used);
+            }
+        }
+
+        long getBytes() {
+            synchronized (LocalMemoryGovernor.this) {
+                return bytes;
+            }
+        }
+
+        @Override
+        public void close() {
+            synchronized (LocalMemoryGovernor.this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                if (key != null && actual > 0) {
+                    lastSizes.put(key, actual);
+                }
+                if (!spill) {
+                    used -= bytes;
+                    running--;
+                    LocalMemoryGovernor.this.notifyAll();
+                }
+            }
+        }
+    }
+
+    static long estimatedBytes(List<Dataframe> dataframes) {
+        long bytes = 0;
+        if (dataframes != null) {
+            for (Dataframe dataframe : dataframes) {
+                bytes += dataframe.estimatedBytes();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * 在加载数据前申请内存额度，排队的查询不占用内存
+     *
+     * @param key 查询的唯一标识，用于取得上一次的内存占用，为空时按默认额度预留
+     */
+    public static Permit acquire(String key) throws InterruptedException {
+        return get().reserve(key);
+    }
+
+    /**
+     * 当前内存使用情况
+     */
+    public static Map<String, Object> metrics() {
+        return get().status();
+    }
+
+    /**
+     * 超过预算的单个查询无法通过排队获得额度，除 REJECT 外都转到临时文件数据库执行
+     */
+    Permit reserve(String key) throws InterruptedException {
+        Long lastSize = key == null ? null : lastSizes.getIfPresent(key);
+        long bytes = lastSize == null ? defaultReserve : lastSize;
+        synchronized (this) {
+            if (used + bytes <= budget) {
+                return admit(key, bytes);
+            }
+            if (policy == OverflowPolicy.REJECT) {
+                return reject(bytes);
+            }
+            if (policy == OverflowPolicy.SPILL || bytes > budget) {
+                spilled.incrementAndGet();
+                log.info("Local query of {} bytes spilled to disk, memory used {}/{}", bytes, used, budget);
+                return new Permit(key, 0, true);
+            }
+            long deadline = System.currentTimeMillis() + queueTimeout;
+            queued++;
+            try {
+                while (used + bytes > budget) {
+                    long wait = deadline - System.currentTimeMillis();
+                    if (wait <= 0) {
+                        return reject(bytes);
+                    }
+                    wait(wait);
+                }
+            } finally {
+                queued--;
+            }
+            return admit(key, bytes);
+        }
+    }
+
+    synchronized Map<String, Object> status() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("budget", budget);
+        metrics.put("used", used);
+        metrics.put("peak", peak);
+        metrics.put("running", running);
+        metrics.put("queued", queued);
+        metrics.put("admitted", admitted.get());
+        metrics.put("rejected", rejected.get());
+        metrics.put("spilled", spilled.get());
+        return metrics;
+    }
+
+    private Permit admit(String key, long bytes) {
+        used += bytes;
+        running++;
+        peak = Math.max(peak, used);
+        admitted.incrementAndGet();
+        return new Permit(key, bytes, false);
+    }
+
+    private Permit reject(long bytes) {
+        rejected.incrementAndGet();
+        log.warn("Local query of {} bytes rejected, memory used {}/{}", bytes, used, budget);
+        Exceptions.msg("message.provider.local.memory.exceeded");
+        return null;
+    }
+
+}
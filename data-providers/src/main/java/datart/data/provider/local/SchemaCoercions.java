@@ -0,0 +1,76 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datart.data.provider.local;
+
+import datart.core.common.DateUtils;
+import org.apache.commons.lang.math.NumberUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.time.FastDateFormat;
+
+import java.math.BigDecimal;
+import java.text.ParseException;
+
+/**
+ * 自定义 schema 的类型转换函数，注册为H2函数，在执行视图查询时逐行转换。
+ * 参数统一由H2转换为字符串后传入，转换规则与按行解析字符串时一致。
+ * H2函数只能有一种返回类型，数值统一返回 BigDecimal：整数保持精确值(scale 0)，小数按 double 解析后转换。
+ */
+public class SchemaCoercions {
+
+    public static String toStr(String value) {
+        return value;
+    }
+
+    public static BigDecimal toNumber(String str) {
+        if (StringUtils.isBlank(str)) {
+            return null;
+        }
+        try {
+            if (NumberUtils.isDigits(str)) {
+                return new BigDecimal(str);
+            }
+            if (NumberUtils.isNumber(str)) {
+                return BigDecimal.valueOf(Double.parseDouble(str));
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return null;
+    }
+
+    /**
+     * @param fmt 日期格式，为空时根据值推断
+     */
+    public static java.sql.Timestamp toDate(String str, String fmt) {
+        if (StringUtils.isBlank(str)) {
+            return null;
+        }
+        if (StringUtils.isBlank(fmt)) {
+            fmt = DateUtils.inferDateFormat(str);
+        }
+        if (StringUtils.isBlank(fmt)) {
+            return null;
+        }
+        try {
+            return new java.sql.Timestamp(FastDateFormat.getInstance(fmt).parse(str).getTime());
+        } catch (ParseException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+}
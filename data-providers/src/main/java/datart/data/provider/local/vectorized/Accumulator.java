@@ -0,0 +1,280 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package datart.data.provider.local.vectorized;
+
+import datart.core.base.consts.ValueType;
+import datart.core.data.provider.sql.AggregateOperator;
+import datart.core.data.provider.vector.ColumnVector;
+import datart.core.data.provider.vector.DoubleVector;
+import datart.core.data.provider.vector.LongVector;
+
+import java.util.Arrays;
+
+/**
+ * 按分组编号累加聚合值。结果类型与 H2 一致：COUNT 为整数，SUM/AVG 为浮点数，MIN/MAX 与原列类型相同。
+ */
+abstract class Accumulator {
+
+    protected final ColumnAccessor column;
+
+    protected final int groupCount;
+
+    protected Accumulator(ColumnAccessor column, int groupCount) {
+        this.column = column;
+        this.groupCount = groupCount;
+    }
+
+    static Accumulator create(AggregateOperator.SqlOperator operator, ColumnAccessor column, int groupCount) {
+        if (operator == null) {
+            throw new UnsupportedQueryException("Aggregator without operator");
+        }
+        switch (operator) {
+            case COUNT:
+                return new Count(column, groupCount);
+            case COUNT_DISTINCT:
+                return new CountDistinct(column, groupCount);
+            case SUM:
+                return new Sum(column, groupCount, false);
+            case AVG:
+                return new Sum(column, groupCount, true);
+            case MIN:
+                return new Extreme(column, groupCount, false);
+            case MAX:
+                return new Extreme(column, groupCount, true);
+            default:
+                throw new UnsupportedQueryException("Unsupported aggregator " + operator);
+        }
+    }
+
+    /**
+     * @param rows     参与聚合的行
+     * @param groupIds 每一行对应的分组编号
+     */
+    abstract void accumulate(int[] rows, int[] groupIds);
+
+    /**
+     * 合并同类型的部分聚合结果(并行聚合时每个分区的结果)
+     *
+     * @param partial  部分聚合结果
+     * @param groupIds 部分结果的分组编号到当前分组编号的映射
+     */
+    abstract void merge(Accumulator partial, int[] groupIds);
+
+    /**
+     * 聚合结果，第 n 行为第 n 个分组的值
+     */
+    abstract ColumnAccessor result(String name);
+
+    static class Count extends Accumulator {
+
+        private final long[] counts;
+
+        Count(ColumnAccessor column, int groupCount) {
+            super(column, groupCount);
+            this.counts = new long[groupCount];
+        }
+
+        @Override
+        void accumulate(int[] rows, int[] groupIds) {
+            for (int i = 0; i < rows.length; i++) {
+                if (!column.isNull(rows[i])) {
+                    counts[groupIds[i]]++;
+                }
+            }
+        }
+
+        @Override
+        void merge(Accumulator partial, int[] groupIds) {
+            long[] partialCounts = ((Count) partial).counts;
+            for (int i = 0; i < partialCounts.length; i++) {
+                counts[groupIds[i]] += partialCounts[i];
+            }
+        }
+
+        @Override
+        ColumnAccessor result(String name) {
+            return countResult(name, counts);
+        }
+    }
+
+    static class CountDistinct extends Accumulator {
+
+        private final int[] codes;
+
+        private final long cardinality;
+
+        /**
+         * 已出现的 (分组编号, 值编码) 组合
+         */
+        private final LongIntHashMap seen = new LongIntHashMap();
+
+        private final long[] counts;
+
+        CountDistinct(ColumnAccessor column, int groupCount) {
+            super(column, groupCount);
+            this.codes = column.codes();
+            this.cardinality = column.cardinality();
+            this.counts = new long[groupCount];
+        }
+
+        @Override
+        void accumulate(int[] rows, int[] groupIds) {
+            for (int i = 0; i < rows.length; i++) {
+                int code = codes[rows[i]];
+                if (code != 0) {
+                    add(groupIds[i], code);
+                }
+            }
+        }
+
+        @Override
+        void merge(Accumulator partial, int[] groupIds) {
+            ((CountDistinct) partial).seen.forEachKey(key -> add(groupIds[(int) (key / cardinality)], (int) (key % cardinality)));
+        }
+
+        private void add(int group, int code) {
+            if (seen.putIfAbsent(group * cardinality + code, 0) == LongIntHashMap.MISSING) {
+                counts[group]++;
+            }
+        }
+
+        @Override
+        ColumnAccessor result(String name) {
+            return countResult(name, counts);
+        }
+    }
+
+    static class Sum extends Accumulator {
+
+        private final boolean average;
+
+        private final double[] sums;
+
+        private final long[] counts;
+
+        Sum(ColumnAccessor column, int groupCount, boolean average) {
+            super(column, groupCount);
+            if (column.getType() != ValueType.NUMERIC) {
+                throw new UnsupportedQueryException("Sum of non numeric column " + column.getName());
+            }
+            this.average = average;
+            this.sums = new double[groupCount];
+            this.counts = new long[groupCount];
+        }
+
+        @Override
+        void accumulate(int[] rows, int[] groupIds) {
+            for (int i = 0; i < rows.length; i++) {
+                if (!column.isNull(rows[i])) {
+                    sums[groupIds[i]] += column.number(rows[i]);
+                    counts[groupIds[i]]++;
+                }
+            }
+        }
+
+        @Override
+        void merge(Accumulator partial, int[] groupIds) {
+            Sum sum = (Sum) partial;
+            for (int i = 0; i < sum.sums.length; i++) {
+                sums[groupIds[i]] += sum.sums[i];
+                counts[groupIds[i]] += sum.counts[i];
+            }
+        }
+
+        @Override
+        ColumnAccessor result(String name) {
+            DoubleVector vector = new DoubleVector(groupCount);
+            for (int i = 0; i < groupCount; i++) {
+                if (counts[i] == 0) {
+                    vector.appendNull();
+                } else {
+                    vector.appendDouble(average ? sums[i] / counts[i] : sums[i]);
+                }
+            }
+            return new ColumnAccessor(name, ValueType.NUMERIC, vector);
+        }
+    }
+
+    static class Extreme extends Accumulator {
+
+        private final boolean max;
+
+        private final int[] rows;
+
+        Extreme(ColumnAccessor column, int groupCount, boolean max) {
+            super(column, groupCount);
+            this.max = max;
+            this.rows = new int[groupCount];
+            Arrays.fill(this.rows, -1);
+        }
+
+        @Override
+        void accumulate(int[] rows, int[] groupIds) {
+            for (int i = 0; i < rows.length; i++) {
+                if (!column.isNull(rows[i])) {
+                    offer(groupIds[i], rows[i]);
+                }
+            }
+        }
+
+        @Override
+        void merge(Accumulator partial, int[] groupIds) {
+            int[] partialRows = ((Extreme) partial).rows;
+            for (int i = 0; i < partialRows.length; i++) {
+                if (partialRows[i] >= 0) {
+                    offer(groupIds[i], partialRows[i]);
+                }
+            }
+        }
+
+        private void offer(int group, int row) {
+            int current = rows[group];
+            if (current < 0) {
+                rows[group] = row;
+            } else {
+                int c = column.compare(row, current);
+                if (max ? c > 0 : c < 0) {
+                    rows[group] = row;
+                }
+            }
+        }
+
+        @Override
+        ColumnAccessor result(String name) {
+            ColumnVector vector = column.newOutputVector(groupCount);
+            for (int row : rows) {
+                if (row < 0) {
+                    vector.appendNull();
+                } else {
+                    column.appendTo(vector, row);
+                }
+            }
+            return new ColumnAccessor(name, column.getType(), vector);
+        }
+    }
+
+    private static ColumnAccessor countResult(String name, long[] counts) {
+        LongVector vector = new LongVector(counts.length);
+        for (long count : counts) {
+            vector.appendLong(count);
+        }
+        return new ColumnAccessor(name, ValueType.NUMERIC, vector, true);
+    }
+
+}
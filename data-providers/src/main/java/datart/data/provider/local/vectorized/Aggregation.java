@@ -0,0 +1,200 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package datart.data.provider.local.vectorized;
+
+import datart.core.data.provider.sql.AggregateOperator;
+import datart.core.data.provider.sql.FilterOperator;
+import datart.core.data.provider.vector.ColumnVector;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntPredicate;
+
+/**
+ * 分组聚合的结果。聚合结果按 "函数(列名)" 保存，供输出、HAVING 和 ORDER BY 共用。
+ * <p>
+ * 数据量较大时按行拆分为多个分区，在 ForkJoin 线程池中并行完成过滤、分组和部分聚合，再按分组键合并各分区的结果。
+ */
+class Aggregation {
+
+    private final int groupCount;
+
+    private final List<ColumnAccessor> groupColumns = new ArrayList<>();
+
+    private final Map<String, ColumnAccessor> groupLookup = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    private final Map<String, ColumnAccessor> results = new HashMap<>();
+
+    private Aggregation(List<ColumnAccessor> groupBy, int groupCount, int[] firstRows, Map<String, Spec> specs, Accumulator[] accumulators) {
+        this.groupCount = groupCount;
+        for (ColumnAccessor column : groupBy) {
+            ColumnVector vector = column.newOutputVector(groupCount);
+            for (int group = 0; group < groupCount; group++) {
+                column.appendTo(vector, firstRows[group]);
+            }
+            ColumnAccessor groupColumn = new ColumnAccessor(column.getName(), column.getType(), vector);
+            groupColumns.add(groupColumn);
+            groupLookup.putIfAbsent(column.getName(), groupColumn);
+        }
+        int i = 0;
+        for (String name : specs.keySet()) {
+            results.put(name, accumulators[i++].result(name));
+        }
+    }
+
+    /**
+     * 单线程聚合
+     *
+     * @param rows 过滤后的行
+     */
+    static Aggregation aggregate(List<ColumnAccessor> groupBy, Map<String, Spec> specs, int[] rows) {
+        Partial partial = new Partial(groupBy, specs, rows);
+        int[] firstRows = new int[partial.index.getGroupCount()];
+        for (int group = 0; group < firstRows.length; group++) {
+            firstRows[group] = partial.index.firstRow(group);
+        }
+        return new Aggregation(groupBy, firstRows.length, firstRows, specs, partial.accumulators);
+    }
+
+    /**
+     * 分区并行聚合
+     *
+     * @param where      过滤条件
+     * @param rowCount   总行数
+     * @param partitions 分区数
+     * @param pool       执行各分区的线程池
+     */
+    static Aggregation aggregate(List<ColumnAccessor> groupBy, Map<String, Spec> specs, IntPredicate[] where, int rowCount, int partitions, ForkJoinPool pool) {
+        List<ForkJoinTask<Partial>> tasks = new ArrayList<>(partitions);
+        for (int p = 0; p < partitions; p++) {
+            int from = (int) ((long) rowCount * p / partitions);
+            int to = (int) ((long) rowCount * (p + 1) / partitions);
+            tasks.add(pool.submit(() -> new Partial(groupBy, specs, FilterEvaluator.select(where, from, to))));
+        }
+        List<Partial> partials = new ArrayList<>(partitions);
+        for (ForkJoinTask<Partial> task : tasks) {
+            partials.add(task.join());
+        }
+
+        // 按分组键把各分区的分组编号映射为全局分组编号，分区按行顺序合并，保证每个分组的首行与单线程执行一致
+        Map<List<Object>, Integer> groups = new HashMap<>();
+        int[] firstRows = new int[16];
+        int groupCount = groupBy.isEmpty() ? 1 : 0;
+        List<int[]> mappings = new ArrayList<>(partitions);
+        for (Partial partial : partials) {
+            int[] mapping = new int[partial.index.getGroupCount()];
+            if (!groupBy.isEmpty()) {
+                for (int group = 0; group < mapping.length; group++) {
+                    int row = partial.index.firstRow(group);
+                    List<Object> key = new ArrayList<>(groupBy.size());
+                    for (ColumnAccessor column : groupBy) {
+                        key.add(column.key(row));
+                    }
+                    Integer id = groups.putIfAbsent(key, groupCount);
+                    if (id == null) {
+                        id = groupCount++;
+                        if (id == firstRows.length) {
+                            firstRows = Arrays.copyOf(firstRows, firstRows.length << 1);
+                        }
+                        firstRows[id] = row;
+                    }
+                    mapping[group] = id;
+                }
+            }
+            mappings.add(mapping);
+        }
+
+        Accumulator[] accumulators = new Accumulator[specs.size()];
+        int i = 0;
+        for (Spec spec : specs.values()) {
+            accumulators[i] = Accumulator.create(spec.operator, spec.column, groupCount);
+            for (int p = 0; p < partitions; p++) {
+                accumulators[i].merge(partials.get(p).accumulators[i], mappings.get(p));
+            }
+            i++;
+        }
+        return new Aggregation(groupBy, groupCount, firstRows, specs, accumulators);
+    }
+
+    static String name(AggregateOperator.SqlOperator operator, String column) {
+        return operator.name() + "(" + column + ")";
+    }
+
+    List<ColumnAccessor> getGroupColumns() {
+        return groupColumns;
+    }
+
+    ColumnAccessor groupColumn(String name) {
+        return groupLookup.get(name);
+    }
+
+    ColumnAccessor result(AggregateOperator.SqlOperator operator, String column) {
+        return results.get(name(operator, column));
+    }
+
+    /**
+     * 满足 HAVING 条件的分组
+     */
+    int[] having(List<FilterOperator> filters) {
+        IntPredicate[] predicates = new IntPredicate[filters.size()];
+        for (int i = 0; i < predicates.length; i++) {
+            FilterOperator filter = filters.get(i);
+            predicates[i] = FilterEvaluator.compile(filter, result(filter.getAggOperator(), filter.getColumn()));
+        }
+        return FilterEvaluator.select(predicates, 0, groupCount);
+    }
+
+    /**
+     * 聚合函数及其作用的列
+     */
+    static class Spec {
+
+        private final AggregateOperator.SqlOperator operator;
+
+        private final ColumnAccessor column;
+
+        Spec(AggregateOperator.SqlOperator operator, ColumnAccessor column) {
+            this.operator = operator;
+            this.column = column;
+        }
+    }
+
+    /**
+     * 一组行上的分组和聚合结果
+     */
+    private static class Partial {
+
+        private final GroupIndex index;
+
+        private final Accumulator[] accumulators;
+
+        private Partial(List<ColumnAccessor> groupBy, Map<String, Spec> specs, int[] rows) {
+            this.index = GroupIndex.build(groupBy, rows);
+            this.accumulators = new Accumulator[specs.size()];
+            int i = 0;
+            for (Spec spec : specs.values()) {
+                accumulators[i] = Accumulator.create(spec.operator, spec.column, index.getGroupCount());
+                accumulators[i].accumulate(rows, index.getGroupIds());
+                i++;
+            }
+        }
+    }
+
+}
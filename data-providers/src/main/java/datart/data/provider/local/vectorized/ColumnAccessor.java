@@ -0,0 +1,246 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package datart.data.provider.local.vectorized;
+
+import datart.core.base.consts.ValueType;
+import datart.core.data.provider.Column;
+import datart.core.data.provider.vector.*;
+
+import java.util.Date;
+
+/**
+ * 按 H2 中的列类型读取一列数据。数值列按 DOUBLE，日期列按 DATE(去掉时间部分)，布尔列按 BOOLEAN，
+ * 其它列按 VARCHAR 处理，与数据注册到 H2 后的查询结果保持一致。
+ */
+class ColumnAccessor {
+
+    private final String name;
+
+    private final ValueType type;
+
+    private final ColumnVector vector;
+
+    /**
+     * 整数结果(COUNT)，输出为 long
+     */
+    private final boolean integral;
+
+    private int[] codes;
+
+    private int cardinality;
+
+    ColumnAccessor(String name, ValueType type, ColumnVector vector) {
+        this(name, type, vector, false);
+    }
+
+    ColumnAccessor(String name, ValueType type, ColumnVector vector, boolean integral) {
+        this.name = name;
+        this.type = sqlType(type);
+        this.vector = vector;
+        this.integral = integral;
+    }
+
+    static ColumnAccessor of(Column column, ColumnVector vector) {
+        return new ColumnAccessor(column.getName(), column.getType(), vector);
+    }
+
+    static ValueType sqlType(ValueType valueType) {
+        if (valueType == null) {
+            return ValueType.STRING;
+        }
+        switch (valueType) {
+            case NUMERIC:
+            case DATE:
+            case BOOLEAN:
+                return valueType;
+            default:
+                return ValueType.STRING;
+        }
+    }
+
+    String getName() {
+        return name;
+    }
+
+    ValueType getType() {
+        return type;
+    }
+
+    ColumnVector getVector() {
+        return vector;
+    }
+
+    /**
+     * 结果列信息。H2 的 BOOLEAN 类型在结果集中映射为 STRING
+     */
+    Column outputColumn() {
+        return new Column(name, type == ValueType.BOOLEAN ? ValueType.STRING : type);
+    }
+
+    boolean isNull(int row) {
+        return vector.isNull(row);
+    }
+
+    double number(int row) {
+        if (vector instanceof DoubleVector || vector instanceof LongVector) {
+            return vector.getDouble(row);
+        }
+        Object val = vector.get(row);
+        if (val instanceof Number) {
+            return ((Number) val).doubleValue();
+        }
+        if (val instanceof Boolean) {
+            return (Boolean) val ? 1 : 0;
+        }
+        try {
+            return Double.parseDouble(val.toString());
+        } catch (NumberFormatException e) {
+            throw new UnsupportedQueryException("Not a number: " + val);
+        }
+    }
+
+    long dateMillis(int row) {
+        Object val = vector.get(row);
+        if (!(val instanceof Date)) {
+            throw new UnsupportedQueryException("Not a date: " + val);
+        }
+        return truncateDate(((Date) val).getTime());
+    }
+
+    String string(int row) {
+        return vector.getString(row);
+    }
+
+    boolean bool(int row) {
+        Object val = vector.get(row);
+        if (val instanceof Boolean) {
+            return (Boolean) val;
+        }
+        if (val instanceof Number) {
+            return ((Number) val).intValue() != 0;
+        }
+        return Boolean.parseBoolean(val.toString());
+    }
+
+    /**
+     * 用于比较和去重的键，空值返回 null
+     */
+    Object key(int row) {
+        if (isNull(row)) {
+            return null;
+        }
+        switch (type) {
+            case NUMERIC:
+                return normalize(number(row));
+            case DATE:
+                return dateMillis(row);
+            case BOOLEAN:
+                return bool(row);
+            default:
+                return string(row);
+        }
+    }
+
+    /**
+     * 按 H2 的默认规则比较两行，空值最小
+     */
+    int compare(int row1, int row2) {
+        boolean null1 = isNull(row1);
+        boolean null2 = isNull(row2);
+        if (null1 || null2) {
+            return null1 == null2 ? 0 : (null1 ? -1 : 1);
+        }
+        switch (type) {
+            case NUMERIC:
+                return Double.compare(normalize(number(row1)), normalize(number(row2)));
+            case DATE:
+                return Long.compare(dateMillis(row1), dateMillis(row2));
+            case BOOLEAN:
+                return Boolean.compare(bool(row1), bool(row2));
+            default:
+                return string(row1).compareTo(string(row2));
+        }
+    }
+
+    /**
+     * 整列的值编码(空值为0)，用于 COUNT_DISTINCT。并行聚合时各分区共用同一套编码，部分结果可以直接合并
+     */
+    synchronized int[] codes() {
+        if (codes == null) {
+            int[] rows = new int[vector.size()];
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = i;
+            }
+            int[] cardinality = new int[1];
+            codes = GroupIndex.encode(this, rows, cardinality);
+            this.cardinality = cardinality[0];
+        }
+        return codes;
+    }
+
+    synchronized int cardinality() {
+        codes();
+        return cardinality;
+    }
+
+    ColumnVector newOutputVector(int capacity) {
+        switch (type) {
+            case NUMERIC:
+                return integral ? new LongVector(capacity) : new DoubleVector(capacity);
+            case STRING:
+                return new StringVector(capacity);
+            default:
+                return new ObjectVector(outputColumn().getType(), capacity);
+        }
+    }
+
+    void appendTo(ColumnVector out, int row) {
+        if (isNull(row)) {
+            out.appendNull();
+            return;
+        }
+        switch (type) {
+            case NUMERIC:
+                if (integral) {
+                    ((LongVector) out).appendLong(vector.getLong(row));
+                } else {
+                    ((DoubleVector) out).appendDouble(number(row));
+                }
+                break;
+            case DATE:
+                out.append(new java.sql.Date(dateMillis(row)));
+                break;
+            case BOOLEAN:
+                out.append(bool(row));
+                break;
+            default:
+                ((StringVector) out).appendString(string(row));
+        }
+    }
+
+    static double normalize(double value) {
+        // -0.0 与 0.0 在 SQL 中相等
+        return value == 0 ? 0 : value;
+    }
+
+    static long truncateDate(long millis) {
+        return java.sql.Date.valueOf(new java.sql.Date(millis).toLocalDate()).getTime();
+    }
+
+}
@@ -0,0 +1,222 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package datart.data.provider.local.vectorized;
+
+import datart.core.base.consts.ValueType;
+import datart.core.data.provider.SingleTypedValue;
+import datart.core.data.provider.sql.FilterOperator;
+import datart.core.data.provider.vector.StringVector;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * 把 {@link FilterOperator} 编译为按行号判断的条件，语义与 SqlBuilder 生成的 SQL 条件一致(空值不满足任何比较条件)
+ */
+class FilterEvaluator {
+
+    private static final char LIKE_ESCAPE = '\\';
+
+    private FilterEvaluator() {
+    }
+
+    static IntPredicate compile(FilterOperator filter, ColumnAccessor column) {
+        if (filter.getSqlOperator() == null) {
+            throw new UnsupportedQueryException("Empty filter operator");
+        }
+        switch (filter.getSqlOperator()) {
+            case IS_NULL:
+                return column::isNull;
+            case NOT_NULL:
+                return row -> !column.isNull(row);
+            default:
+        }
+        Predicate<Object> predicate = keyPredicate(filter, column.getType());
+        if (column.getVector() instanceof StringVector && ((StringVector) column.getVector()).isDictionaryEncoded()) {
+            return dictionaryPredicate((StringVector) column.getVector(), predicate);
+        }
+        return row -> {
+            Object key = column.key(row);
+            return key != null && predicate.test(key);
+        };
+    }
+
+    /**
+     * 选出 [from, to) 范围内满足全部条件的行
+     */
+    static int[] select(IntPredicate[] predicates, int from, int to) {
+        int[] rows = new int[to - from];
+        int count = 0;
+        for (int row = from; row < to; row++) {
+            if (test(predicates, row)) {
+                rows[count++] = row;
+            }
+        }
+        return count == rows.length ? rows : Arrays.copyOf(rows, count);
+    }
+
+    private static boolean test(IntPredicate[] predicates, int row) {
+        for (IntPredicate predicate : predicates) {
+            if (!predicate.test(row)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 字典编码的列，编译时对每个不同的值计算一次条件。结果只读，可以在多个分区中并行使用
+     */
+    private static IntPredicate dictionaryPredicate(StringVector vector, Predicate<Object> predicate) {
+        BitSet matches = new BitSet(vector.dictionarySize());
+        for (int code = 0; code < vector.dictionarySize(); code++) {
+            if (predicate.test(vector.dictionaryValue(code))) {
+                matches.set(code);
+            }
+        }
+        return row -> !vector.isNull(row) && matches.get(vector.getCode(row));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Predicate<Object> keyPredicate(FilterOperator filter, ValueType type) {
+        SingleTypedValue[] values = filter.getValues();
+        if (values == null || values.length == 0) {
+            throw new UnsupportedQueryException("Empty filter values");
+        }
+        switch (filter.getSqlOperator()) {
+            case EQ:
+                return compare(literal(values[0], type), c -> c == 0);
+            case NE:
+                return compare(literal(values[0], type), c -> c != 0);
+            case GT:
+                return compare(literal(values[0], type), c -> c > 0);
+            case LT:
+                return compare(literal(values[0], type), c -> c < 0);
+            case GTE:
+                return compare(literal(values[0], type), c -> c >= 0);
+            case LTE:
+                return compare(literal(values[0], type), c -> c <= 0);
+            case IN:
+            case NOT_IN:
+                Set<Object> set = new HashSet<>();
+                for (SingleTypedValue value : values) {
+                    set.add(literal(value, type));
+                }
+                boolean in = filter.getSqlOperator() == FilterOperator.SqlOperator.IN;
+                return key -> set.contains(key) == in;
+            case BETWEEN:
+            case NOT_BETWEEN:
+                if (values.length < 2) {
+                    throw new UnsupportedQueryException("Between requires two values");
+                }
+                Comparable<Object> from = (Comparable<Object>) literal(values[0], type);
+                Comparable<Object> to = (Comparable<Object>) literal(values[1], type);
+                boolean between = filter.getSqlOperator() == FilterOperator.SqlOperator.BETWEEN;
+                return key -> (from.compareTo(key) <= 0 && to.compareTo(key) >= 0) == between;
+            case LIKE:
+            case NOT_LIKE:
+                return like(type, values[0], "%", "%", filter.getSqlOperator() == FilterOperator.SqlOperator.LIKE);
+            case PREFIX_LIKE:
+            case PREFIX_NOT_LIKE:
+                return like(type, values[0], "", "%", filter.getSqlOperator() == FilterOperator.SqlOperator.PREFIX_LIKE);
+            case SUFFIX_LIKE:
+            case SUFFIX_NOT_LIKE:
+                return like(type, values[0], "%", "", filter.getSqlOperator() == FilterOperator.SqlOperator.SUFFIX_LIKE);
+            default:
+                throw new UnsupportedQueryException("Unsupported filter " + filter.getSqlOperator());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Predicate<Object> compare(Object literal, IntPredicate test) {
+        Comparable<Object> value = (Comparable<Object>) literal;
+        return key -> test.test(-value.compareTo(key));
+    }
+
+    private static Predicate<Object> like(ValueType type, SingleTypedValue value, String prefix, String suffix, boolean match) {
+        if (type != ValueType.STRING || value.getValueType() != ValueType.STRING || value.getValue() == null) {
+            throw new UnsupportedQueryException("Unsupported like filter");
+        }
+        Pattern pattern = likePattern(prefix + value.getValue() + suffix);
+        return key -> pattern.matcher(key.toString()).matches() == match;
+    }
+
+    /**
+     * 把 SQL LIKE 表达式转换为正则表达式。'%' 匹配任意字符串，'_' 匹配单个字符，'\' 为转义字符
+     */
+    static Pattern likePattern(String like) {
+        StringBuilder regex = new StringBuilder(like.length() + 8);
+        for (int i = 0; i < like.length(); i++) {
+            char c = like.charAt(i);
+            if (c == LIKE_ESCAPE && i + 1 < like.length()) {
+                regex.append(Pattern.quote(String.valueOf(like.charAt(++i))));
+            } else if (c == '%') {
+                regex.append(".*");
+            } else if (c == '_') {
+                regex.append('.');
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    /**
+     * 把条件中的值转换为与列相同类型的比较键
+     */
+    private static Object literal(SingleTypedValue value, ValueType type) {
+        if (value == null || value.getValue() == null || value.getValueType() == null) {
+            throw new UnsupportedQueryException("Empty filter value");
+        }
+        String val = value.getValue().toString();
+        try {
+            switch (type) {
+                case NUMERIC:
+                    if (value.getValueType() == ValueType.NUMERIC || value.getValueType() == ValueType.STRING) {
+                        return ColumnAccessor.normalize(Double.parseDouble(val.trim()));
+                    }
+                    break;
+                case DATE:
+                    if (value.getValueType() == ValueType.DATE) {
+                        return Timestamp.valueOf(val.trim()).getTime();
+                    }
+                    break;
+                case BOOLEAN:
+                    if (value.getValueType() == ValueType.BOOLEAN) {
+                        return Boolean.parseBoolean(val);
+                    }
+                    break;
+                default:
+                    if (value.getValueType() == ValueType.STRING) {
+                        return val;
+                    }
+            }
+        } catch (IllegalArgumentException e) {
+            // 无法转换的值交给 H2 处理
+        }
+        throw new UnsupportedQueryException("Unsupported filter value " + value);
+    }
+
+}
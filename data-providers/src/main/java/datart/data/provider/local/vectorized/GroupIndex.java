@@ -0,0 +1,153 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package datart.data.provider.local.vectorized;
+
+import datart.core.base.consts.ValueType;
+import datart.core.data.provider.vector.StringVector;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 分组编号。把参与分组的每一行映射为从0开始的连续分组编号，并记录每个分组第一次出现的行，用于输出分组列的值。
+ */
+class GroupIndex {
+
+    private final int[] groupIds;
+
+    private final int[] firstRows;
+
+    private final int groupCount;
+
+    private GroupIndex(int[] groupIds, int[] firstRows, int groupCount) {
+        this.groupIds = groupIds;
+        this.firstRows = firstRows;
+        this.groupCount = groupCount;
+    }
+
+    /**
+     * @param columns 分组列，为空时所有行属于同一个分组
+     * @param rows    参与分组的行
+     */
+    static GroupIndex build(List<ColumnAccessor> columns, int[] rows) {
+        int[] groupIds = new int[rows.length];
+        if (columns.isEmpty()) {
+            return new GroupIndex(groupIds, new int[]{rows.length > 0 ? rows[0] : -1}, 1);
+        }
+        int groupCount = 1;
+        int[] firstRows = null;
+        for (ColumnAccessor column : columns) {
+            int[] cardinality = new int[1];
+            int[] codes = encode(column, rows, cardinality);
+            // 逐列合并：上一步的分组编号 * 当前列基数 + 当前列编码，再重新压缩为连续编号，保证组合键不会溢出
+            LongIntHashMap map = new LongIntHashMap((int) Math.min(rows.length, (long) groupCount * cardinality[0]));
+            int[] first = new int[16];
+            int count = 0;
+            for (int i = 0; i < rows.length; i++) {
+                long key = (long) groupIds[i] * cardinality[0] + codes[i];
+                int id = map.putIfAbsent(key, count);
+                if (id == LongIntHashMap.MISSING) {
+                    id = count++;
+                    if (id == first.length) {
+                        first = Arrays.copyOf(first, first.length << 1);
+                    }
+                    first[id] = rows[i];
+                }
+                groupIds[i] = id;
+            }
+            groupCount = count;
+            firstRows = first;
+        }
+        return new GroupIndex(groupIds, firstRows, groupCount);
+    }
+
+    /**
+     * 把一列的值编码为连续整数。空值编码为0，非空值从1开始
+     *
+     * @param cardinality 输出参数，编码的取值个数(包含空值)
+     */
+    static int[] encode(ColumnAccessor column, int[] rows, int[] cardinality) {
+        int[] codes = new int[rows.length];
+        if (column.getVector() instanceof StringVector && ((StringVector) column.getVector()).isDictionaryEncoded()) {
+            StringVector vector = (StringVector) column.getVector();
+            for (int i = 0; i < rows.length; i++) {
+                codes[i] = vector.isNull(rows[i]) ? 0 : vector.getCode(rows[i]) + 1;
+            }
+            cardinality[0] = vector.dictionarySize() + 1;
+            return codes;
+        }
+        int next = 1;
+        if (column.getType() == ValueType.STRING) {
+            Map<String, Integer> dictionary = new HashMap<>();
+            for (int i = 0; i < rows.length; i++) {
+                if (column.isNull(rows[i])) {
+                    continue;
+                }
+                Integer code = dictionary.putIfAbsent(column.string(rows[i]), next);
+                if (code == null) {
+                    code = next++;
+                }
+                codes[i] = code;
+            }
+        } else {
+            LongIntHashMap dictionary = new LongIntHashMap();
+            for (int i = 0; i < rows.length; i++) {
+                if (column.isNull(rows[i])) {
+                    continue;
+                }
+                int code = dictionary.putIfAbsent(primitiveKey(column, rows[i]), next);
+                if (code == LongIntHashMap.MISSING) {
+                    code = next++;
+                }
+                codes[i] = code;
+            }
+        }
+        cardinality[0] = next;
+        return codes;
+    }
+
+    private static long primitiveKey(ColumnAccessor column, int row) {
+        switch (column.getType()) {
+            case NUMERIC:
+                return Double.doubleToLongBits(ColumnAccessor.normalize(column.number(row)));
+            case DATE:
+                return column.dateMillis(row);
+            default:
+                return column.bool(row) ? 1 : 0;
+        }
+    }
+
+    int[] getGroupIds() {
+        return groupIds;
+    }
+
+    int getGroupCount() {
+        return groupCount;
+    }
+
+    /**
+     * 分组第一次出现的行。没有输入行的全局聚合返回 -1
+     */
+    int firstRow(int group) {
+        return firstRows[group];
+    }
+
+}
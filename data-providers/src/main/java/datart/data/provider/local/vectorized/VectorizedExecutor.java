@@ -0,0 +1,310 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package datart.data.provider.local.vectorized;
+
+import datart.core.base.PageInfo;
+import datart.core.data.provider.Column;
+import datart.core.data.provider.ColumnarDataframe;
+import datart.core.data.provider.Dataframe;
+import datart.core.data.provider.ExecuteParam;
+import datart.core.data.provider.QueryScript;
+import datart.core.data.provider.sql.*;
+import datart.core.data.provider.vector.ColumnVector;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.collections4.MapUtils;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntPredicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 向量化执行引擎。对单个 Dataframe 上的简单查询(投影、过滤、分组、聚合、排序、分页)直接在列数据上计算，不需要把数据写入 H2。
+ * 结果的列名、列类型和值与 H2 执行 SqlBuilder 生成的 SQL 保持一致。无法处理的查询返回 null，由调用方回退到 H2 执行。
+ */
+@Slf4j
+public class VectorizedExecutor {
+
+    private static final Pattern SELECT_ALL = Pattern.compile("^\\s*SELECT\\s+\\*\\s+FROM\\s+[`\"]?([^`\"\\s;]+)[`\"]?\\s*;?\\s*$", Pattern.CASE_INSENSITIVE);
+
+    private VectorizedExecutor() {
+    }
+
+    /**
+     * 查询脚本为空，或者只是对某个数据表的 SELECT * 时，返回被查询的数据，否则返回 null
+     */
+    public static Dataframe resolveTable(QueryScript queryScript, List<Dataframe> srcData) {
+        if (CollectionUtils.isEmpty(srcData)) {
+            return null;
+        }
+        if (queryScript == null) {
+            return srcData.size() == 1 ? srcData.get(0) : null;
+        }
+        if (queryScript.getScript() == null
+                || CollectionUtils.isNotEmpty(queryScript.getVariables())
+                || MapUtils.isNotEmpty(queryScript.getSchema())) {
+            return null;
+        }
+        Matcher matcher = SELECT_ALL.matcher(queryScript.getScript());
+        if (!matcher.matches()) {
+            return null;
+        }
+        for (Dataframe dataframe : srcData) {
+            if (matcher.group(1).equalsIgnoreCase(dataframe.getName())) {
+                return dataframe;
+            }
+        }
+        return null;
+    }
+
+    public static Dataframe tryExecute(ExecuteParam executeParam, Dataframe dataframe) {
+        return tryExecute(executeParam, dataframe, 1, null);
+    }
+
+    /**
+     * 执行查询，查询中包含不支持的操作时返回 null
+     *
+     * @param partitions 聚合查询拆分的分区数，大于1时并行聚合
+     * @param pool       并行聚合使用的线程池
+     */
+    public static Dataframe tryExecute(ExecuteParam executeParam, Dataframe dataframe, int partitions, ForkJoinPool pool) {
+        try {
+            return execute(executeParam, dataframe, partitions, pool);
+        } catch (UnsupportedQueryException e) {
+            log.debug("Vectorized execution is not supported, fallback to H2: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static Dataframe execute(ExecuteParam executeParam, Dataframe dataframe, int partitions, ForkJoinPool pool) {
+        PageInfo pageInfo = executeParam.getPageInfo();
+        if (pageInfo == null || pageInfo.getPageNo() < 1 || pageInfo.getPageSize() < 0) {
+            throw new UnsupportedQueryException("Invalid page info");
+        }
+        if (CollectionUtils.isNotEmpty(executeParam.getKeywords()) || CollectionUtils.isNotEmpty(executeParam.getFunctionColumns())) {
+            throw new UnsupportedQueryException("Keywords or function columns");
+        }
+        ColumnarDataframe data = toColumnar(dataframe);
+
+        Map<String, ColumnAccessor> sourceColumns = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        List<ColumnAccessor> allColumns = new ArrayList<>();
+        for (int i = 0; i < data.columnCount(); i++) {
+            ColumnAccessor column = ColumnAccessor.of(data.getColumns().get(i), data.vector(i));
+            allColumns.add(column);
+            sourceColumns.putIfAbsent(column.getName(), column);
+        }
+
+        List<FilterOperator> where = new ArrayList<>();
+        List<FilterOperator> having = new ArrayList<>();
+        if (executeParam.getFilters() != null) {
+            for (FilterOperator filter : executeParam.getFilters()) {
+                (filter.getAggOperator() == null ? where : having).add(filter);
+            }
+        }
+        IntPredicate[] predicates = new IntPredicate[where.size()];
+        for (int i = 0; i < predicates.length; i++) {
+            predicates[i] = FilterEvaluator.compile(where.get(i), resolve(sourceColumns, where.get(i).getColumn()));
+        }
+
+        boolean aggregate = CollectionUtils.isNotEmpty(executeParam.getGroups())
+                || CollectionUtils.isNotEmpty(executeParam.getAggregators())
+                || !having.isEmpty();
+
+        List<ColumnAccessor> outputs = new ArrayList<>();
+        List<ColumnAccessor> orderColumns = new ArrayList<>();
+        List<Boolean> descending = new ArrayList<>();
+        int[] positions;
+        if (aggregate) {
+            if (CollectionUtils.isNotEmpty(executeParam.getColumns())) {
+                throw new UnsupportedQueryException("Columns without aggregation");
+            }
+            List<ColumnAccessor> groupBy = new ArrayList<>();
+            if (executeParam.getGroups() != null) {
+                for (GroupByOperator group : executeParam.getGroups()) {
+                    groupBy.add(resolve(sourceColumns, group.getColumn()));
+                }
+            }
+            // 输出、HAVING、ORDER BY 中用到的聚合一次计算完成
+            Map<String, Aggregation.Spec> specs = new LinkedHashMap<>();
+            if (executeParam.getAggregators() != null) {
+                for (AggregateOperator aggregator : executeParam.getAggregators()) {
+                    addSpec(specs, sourceColumns, aggregator.getSqlOperator(), aggregator.getColumn());
+                }
+            }
+            for (FilterOperator filter : having) {
+                addSpec(specs, sourceColumns, filter.getAggOperator(), filter.getColumn());
+            }
+            if (executeParam.getOrders() != null) {
+                for (OrderOperator order : executeParam.getOrders()) {
+                    if (order.getColumn() != null && order.getAggOperator() != null) {
+                        addSpec(specs, sourceColumns, order.getAggOperator(), order.getColumn());
+                    }
+                }
+            }
+            Aggregation aggregation = partitions > 1 && pool != null
+                    ? Aggregation.aggregate(groupBy, specs, predicates, data.rowCount(), partitions, pool)
+                    : Aggregation.aggregate(groupBy, specs, FilterEvaluator.select(predicates, 0, data.rowCount()));
+
+            if (executeParam.getAggregators() != null) {
+                for (AggregateOperator aggregator : executeParam.getAggregators()) {
+                    outputs.add(aggregation.result(aggregator.getSqlOperator(), aggregator.getColumn()));
+                }
+            }
+            outputs.addAll(aggregation.getGroupColumns());
+            positions = aggregation.having(having);
+            if (executeParam.getOrders() != null) {
+                for (OrderOperator order : executeParam.getOrders()) {
+                    if (order.getColumn() == null) {
+                        continue;
+                    }
+                    ColumnAccessor column = order.getAggOperator() != null
+                            ? aggregation.result(order.getAggOperator(), order.getColumn())
+                            : aggregation.groupColumn(order.getColumn());
+                    if (column == null) {
+                        throw new UnsupportedQueryException("Order by non-grouped column " + order.getColumn());
+                    }
+                    orderColumns.add(column);
+                    descending.add(order.getOperator() == OrderOperator.SqlOperator.DESC);
+                }
+            }
+        } else {
+            if (CollectionUtils.isEmpty(executeParam.getColumns())) {
+                outputs.addAll(allColumns);
+            } else {
+                for (String name : executeParam.getColumns()) {
+                    ColumnAccessor column = resolve(sourceColumns, name);
+                    outputs.add(new ColumnAccessor(name, column.getType(), column.getVector()));
+                }
+            }
+            positions = FilterEvaluator.select(predicates, 0, data.rowCount());
+            if (executeParam.getOrders() != null) {
+                for (OrderOperator order : executeParam.getOrders()) {
+                    if (order.getColumn() == null) {
+                        continue;
+                    }
+                    if (order.getAggOperator() != null) {
+                        throw new UnsupportedQueryException("Aggregate order without aggregation");
+                    }
+                    orderColumns.add(resolve(sourceColumns, order.getColumn()));
+                    descending.add(order.getOperator() == OrderOperator.SqlOperator.DESC);
+                }
+            }
+        }
+
+        int total = positions.length;
+        int offset = (int) Math.min(total, (pageInfo.getPageNo() - 1) * pageInfo.getPageSize());
+        int end = (int) Math.min(total, offset + pageInfo.getPageSize());
+        int[] page = sortAndLimit(positions, orderColumns, descending, offset, end);
+
+        List<Column> columns = new ArrayList<>(outputs.size());
+        ColumnVector[] vectors = new ColumnVector[outputs.size()];
+        for (int i = 0; i < outputs.size(); i++) {
+            ColumnAccessor output = outputs.get(i);
+            columns.add(output.outputColumn());
+            vectors[i] = output.newOutputVector(page.length);
+            for (int row : page) {
+                output.appendTo(vectors[i], row);
+            }
+        }
+        pageInfo.setTotal(total);
+        ColumnarDataframe result = new ColumnarDataframe(columns, vectors);
+        result.setPageInfo(pageInfo);
+        return result;
+    }
+
+    private static ColumnarDataframe toColumnar(Dataframe dataframe) {
+        if (dataframe.getColumns() == null) {
+            throw new UnsupportedQueryException("Dataframe without columns");
+        }
+        // 与注册到 H2 时一样，空白字符串视为空值。不修改调用方的数据
+        if (dataframe instanceof ColumnarDataframe) {
+            return ((ColumnarDataframe) dataframe).withoutBlanks();
+        }
+        // 文件和 HTTP 数据在加载时已转为列存储，其它来源的行数据在这里转换
+        ColumnarDataframe data = ColumnarDataframe.fromRows(dataframe.getColumns(), dataframe.getRows());
+        data.blankToNull();
+        return data;
+    }
+
+    private static void addSpec(Map<String, Aggregation.Spec> specs, Map<String, ColumnAccessor> columns, AggregateOperator.SqlOperator operator, String column) {
+        if (operator == null) {
+            throw new UnsupportedQueryException("Aggregator without operator");
+        }
+        String name = Aggregation.name(operator, column);
+        if (!specs.containsKey(name)) {
+            specs.put(name, new Aggregation.Spec(operator, resolve(columns, column)));
+        }
+    }
+
+    private static ColumnAccessor resolve(Map<String, ColumnAccessor> columns, String name) {
+        ColumnAccessor column = name == null ? null : columns.get(name);
+        if (column == null) {
+            throw new UnsupportedQueryException("Column not found " + name);
+        }
+        return column;
+    }
+
+    /**
+     * 排序并截取 [offset, end) 范围内的行。只需要前 end 行时使用大小为 end 的堆，不对全部结果排序。
+     */
+    private static int[] sortAndLimit(int[] positions, List<ColumnAccessor> orderColumns, List<Boolean> descending, int offset, int end) {
+        if (orderColumns.isEmpty()) {
+            return Arrays.copyOfRange(positions, offset, end);
+        }
+        Comparator<Integer> comparator = (row1, row2) -> {
+            for (int i = 0; i < orderColumns.size(); i++) {
+                int c = orderColumns.get(i).compare(row1, row2);
+                if (c != 0) {
+                    return descending.get(i) ? -c : c;
+                }
+            }
+            return 0;
+        };
+        Integer[] sorted;
+        if (end < positions.length) {
+            PriorityQueue<Integer> heap = new PriorityQueue<>(Math.max(end, 1), comparator.reversed());
+            for (int position : positions) {
+                if (heap.size() < end) {
+                    heap.add(position);
+                } else if (end > 0 && comparator.compare(position, heap.peek()) < 0) {
+                    heap.poll();
+                    heap.add(position);
+                }
+            }
+            sorted = new Integer[heap.size()];
+            for (int i = sorted.length - 1; i >= 0; i--) {
+                sorted[i] = heap.poll();
+            }
+        } else {
+            sorted = new Integer[positions.length];
+            for (int i = 0; i < positions.length; i++) {
+                sorted[i] = positions[i];
+            }
+            Arrays.sort(sorted, comparator);
+        }
+        int[] page = new int[end - offset];
+        for (int i = offset; i < end; i++) {
+            page[i - offset] = sorted[i];
+        }
+        return page;
+    }
+
+}
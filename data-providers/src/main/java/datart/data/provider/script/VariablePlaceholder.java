@@ -1,6 +1,7 @@
 package datart.data.provider.script;
 
 import datart.core.base.consts.Const;
+import datart.core.base.consts.ValueType;
 import datart.core.base.consts.VariableTypeEnum;
 import datart.core.data.provider.ScriptVariable;
 import datart.data.provider.base.ParamReplaceException;
@@ -9,11 +10,14 @@ import datart.data.provider.calcite.SqlNodeUtils;
 import datart.data.provider.calcite.SqlValidateUtils;
 import datart.data.provider.calcite.custom.SqlSimpleStringLiteral;
 import datart.data.provider.jdbc.SqlScriptRender;
+import datart.data.provider.jdbc.BindVariables;
 import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.calcite.sql.*;
 import org.apache.calcite.sql.fun.SqlLikeOperator;
 import org.apache.calcite.sql.fun.SqlStdOperatorTable;
+import org.apache.calcite.sql.parser.SqlParserPos;
 import org.apache.commons.collections4.CollectionUtils;
 
 import java.util.*;
@@ -33,6 +37,12 @@ public class VariablePlaceholder {
     @Getter
     protected final String originalSqlFragment;
 
+    /**
+     * 变量值输出为绑定变量标记，执行时绑定
+     */
+    @Setter
+    protected boolean bindVariables;
+
     public ReplacementPair replacementPair() {
 
         if (CollectionUtils.isEmpty(variables)) {
@@ -89,7 +99,7 @@ public class VariablePlaceholder {
                     operandList = variable.getValues().stream().map(val -> {
                         ArrayList<SqlNode> operands = new ArrayList<>();
                         operands.add(sqlCall.getOperandList().get(0));
-                        operands.add(new SqlSimpleStringLiteral(val));
+                        operands.add(stringLiteral(val));
                         return SqlNodeUtils
                                 .createSqlBasicCall(SqlStdOperatorTable.NOT_LIKE, operands);
                     }).collect(Collectors.toList());
@@ -98,7 +108,7 @@ public class VariablePlaceholder {
                     operandList = variable.getValues().stream().map(val -> {
                         ArrayList<SqlNode> operands = new ArrayList<>();
                         operands.add(sqlCall.getOperandList().get(0));
-                        operands.add(new SqlSimpleStringLiteral(val));
+                        operands.add(stringLiteral(val));
                         return SqlNodeUtils
                                 .createSqlBasicCall(SqlStdOperatorTable.LIKE, operands);
                     }).collect(Collectors.toList());
@@ -164,7 +174,7 @@ public class VariablePlaceholder {
                 replaceVariable((SqlCall) sqlNode, variable);
             } else if (sqlNode instanceof SqlIdentifier) {
                 if (sqlNode.toString().equalsIgnoreCase(variable.getNameWithQuote())) {
-                    sqlCall.setOperand(i, SqlNodeUtils.toSingleSqlLiteral(variable, sqlNode.getParserPosition()));
+                    sqlCall.setOperand(i, toSingleSqlLiteral(variable, sqlNode.getParserPosition()));
                 }
             } else if (sqlNode instanceof SqlNodeList) {
                 SqlNodeList nodeList = (SqlNodeList) sqlNode;
@@ -177,7 +187,7 @@ public class VariablePlaceholder {
                         replaceVariable((SqlCall) node, variable);
                     } else {
                         if (node.toString().equalsIgnoreCase(variable.getNameWithQuote())) {
-                            List<SqlNode> variableNodes = SqlNodeUtils.createSqlNodes(variable, sqlCall.getParserPosition());
+                            List<SqlNode> variableNodes = createSqlNodes(variable, sqlCall.getParserPosition());
                             if (CollectionUtils.isNotEmpty(variableNodes)) {
                                 toAdd.addAll(variableNodes);
                             }
@@ -198,6 +208,28 @@ public class VariablePlaceholder {
         }
     }
 
+    protected SqlNode toSingleSqlLiteral(ScriptVariable variable, SqlParserPos sqlParserPos) {
+        List<SqlNode> sqlLiterals = createSqlNodes(variable, sqlParserPos);
+        if (sqlLiterals.size() == 1) {
+            return sqlLiterals.get(0);
+        } else {
+            return new SqlNodeList(sqlLiterals, sqlParserPos);
+        }
+    }
+
+    protected List<SqlNode> createSqlNodes(ScriptVariable variable, SqlParserPos sqlParserPos) {
+        if (!bindVariables || CollectionUtils.isEmpty(variable.getValues()) || !BindVariables.bindable(variable.getValueType())) {
+            return SqlNodeUtils.createSqlNodes(variable, sqlParserPos);
+        }
+        return variable.getValues().stream()
+                .map(v -> BindVariables.markerNode(variable.getValueType(), v))
+                .collect(Collectors.toList());
+    }
+
+    protected SqlNode stringLiteral(String value) {
+        return bindVariables ? BindVariables.markerNode(ValueType.STRING, value) : new SqlSimpleStringLiteral(value);
+    }
+
     /**
      * 权限变量替换规则：
      * 1、权限变量不存在，替换整个表达式为1=1
@@ -296,6 +328,22 @@ public class VariablePlaceholder {
     }
 
     protected String formatValue(ScriptVariable variable) {
+        if (bindVariables && !org.springframework.util.CollectionUtils.isEmpty(variable.getValues())) {
+            switch (variable.getValueType()) {
+                case NUMERIC:
+                    return variable.getValues().stream()
+                            .map(v -> BindVariables.marker(ValueType.NUMERIC, v))
+                            .collect(Collectors.joining(","));
+                case STRING:
+                case DATE:
+                    // 直接替换时按字符串输出
+                    return variable.getValues().stream()
+                            .map(v -> BindVariables.marker(ValueType.STRING, v))
+                            .collect(Collectors.joining(","));
+                default:
+                    break;
+            }
+        }
         switch (variable.getValueType()) {
             case NUMERIC:
             case KEYWORD:
@@ -0,0 +1,147 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package datart.data.provider;
+
+import datart.core.base.exception.BaseException;
+import datart.core.data.provider.QueryPriority;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SourceBulkheadTest {
+
+    private static final long TIMEOUT = 10_000;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @Test
+    void testQueueUntilReleased() throws Exception {
+        SourceBulkhead.Lane lane = new SourceBulkhead.Lane();
+        SourceBulkhead.Permit first = acquire(lane, 1, "a", QueryPriority.INTERACTIVE);
+        CompletableFuture<SourceBulkhead.Permit> second = CompletableFuture.supplyAsync(() -> acquire(lane, 1, "a", QueryPriority.INTERACTIVE), executor);
+        awaitQueued(lane, 1);
+        assertFalse(second.isDone());
+        first.close();
+        second.get(5, TimeUnit.SECONDS).close();
+        assertEquals(0, lane.running());
+        assertEquals(0, lane.queued());
+    }
+
+    @Test
+    void testBusy() throws Exception {
+        SourceBulkhead.Lane lane = new SourceBulkhead.Lane();
+        try (SourceBulkhead.Permit ignored = acquire(lane, 1, "a", QueryPriority.INTERACTIVE)) {
+            // 队列已满
+            assertThrows(BaseException.class, () -> lane.acquire("s", 1, 0, TIMEOUT, "a", QueryPriority.INTERACTIVE));
+            // 等待超时
+            assertThrows(BaseException.class, () -> lane.acquire("s", 1, 8, 50, "a", QueryPriority.INTERACTIVE));
+        }
+        assertEquals(0, lane.running());
+        assertEquals(0, lane.queued());
+    }
+
+    @Test
+    void testPriorityThenFairness() throws Exception {
+        SourceBulkhead.Lane lane = new SourceBulkhead.Lane();
+        SourceBulkhead.Permit holder = acquire(lane, 2, "a", QueryPriority.INTERACTIVE);
+        SourceBulkhead.Permit busy = acquire(lane, 2, "a", QueryPriority.INTERACTIVE);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Void>> waiters = new ArrayList<>();
+        waiters.add(queue(lane, "a", QueryPriority.SCHEDULE, "a-schedule", order));
+        awaitQueued(lane, 1);
+        waiters.add(queue(lane, "a", QueryPriority.INTERACTIVE, "a-interactive", order));
+        awaitQueued(lane, 2);
+        waiters.add(queue(lane, "b", QueryPriority.INTERACTIVE, "b-interactive", order));
+        awaitQueued(lane, 3);
+        // 仍有 a 的查询在执行，同一优先级中 b 先执行；定时任务最后执行
+        busy.close();
+        for (CompletableFuture<Void> waiter : waiters) {
+            waiter.get(5, TimeUnit.SECONDS);
+        }
+        holder.close();
+        assertEquals(asList("b-interactive", "a-interactive", "a-schedule"), order);
+        assertEquals(0, lane.running());
+    }
+
+    @Test
+    void testInterruptAfterGrantReleases() throws Exception {
+        SourceBulkhead.Lane lane = new SourceBulkhead.Lane();
+        SourceBulkhead.Permit first = acquire(lane, 1, "a", QueryPriority.INTERACTIVE);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread waiter = new Thread(() -> {
+            try {
+                lane.acquire("s", 1, 8, TIMEOUT, "b", QueryPriority.INTERACTIVE).close();
+            } catch (Throwable e) {
+                error.set(e);
+            }
+        });
+        waiter.start();
+        awaitQueued(lane, 1);
+        synchronized (lane) {
+            // 等待线程先被中断，再在同一时刻分配到位置
+            waiter.interrupt();
+            Thread.sleep(100);
+            first.close();
+        }
+        waiter.join(5000);
+        assertTrue(error.get() == null || error.get() instanceof InterruptedException);
+        assertEquals(0, lane.running());
+        assertEquals(0, lane.queued());
+    }
+
+    private static List<String> asList(String... values) {
+        List<String> list = new ArrayList<>();
+        Collections.addAll(list, values);
+        return list;
+    }
+
+    private CompletableFuture<Void> queue(SourceBulkhead.Lane lane, String tenant, QueryPriority priority, String name, List<String> order) {
+        return CompletableFuture.runAsync(() -> {
+            try (SourceBulkhead.Permit ignored = acquire(lane, 2, tenant, priority)) {
+                order.add(name);
+            }
+        }, executor);
+    }
+
+    private static SourceBulkhead.Permit acquire(SourceBulkhead.Lane lane, int max, String tenant, QueryPriority priority) {
+        try {
+            return lane.acquire("s", max, 8, TIMEOUT, tenant, priority);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void awaitQueued(SourceBulkhead.Lane lane, int queued) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (lane.queued() < queued && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(queued, lane.queued());
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datart.data.provider.jdbc;
+
+import datart.core.base.consts.ValueType;
+import datart.core.data.provider.Column;
+import datart.core.data.provider.Dataframe;
+import datart.core.data.provider.ExecuteParam;
+import datart.core.data.provider.QueryScript;
+import datart.core.data.provider.SingleTypedValue;
+import datart.core.data.provider.sql.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LocalPushdownPlannerTest {
+
+    @Test
+    void testPreAggregate() {
+        ExecuteParam executeParam = ExecuteParam.builder()
+                .groups(Collections.singletonList(group("city")))
+                .aggregators(Arrays.asList(aggregator(AggregateOperator.SqlOperator.SUM, "amount"),
+                        aggregator(AggregateOperator.SqlOperator.COUNT, "day")))
+                .filters(Collections.singletonList(filter("day", null, FilterOperator.SqlOperator.GT, new SingleTypedValue(1, ValueType.NUMERIC))))
+                .orders(Collections.singletonList(order("day", AggregateOperator.SqlOperator.COUNT)))
+                .build();
+
+        LocalPushdownPlanner plan = LocalPushdownPlanner.plan(script(), executeParam);
+        ExecuteParam sourceParam = plan.getSourceParam();
+        assertNotNull(sourceParam);
+        assertEquals(1, sourceParam.getFilters().size());
+        assertEquals(executeParam.getGroups(), sourceParam.getGroups());
+        assertEquals(2, sourceParam.getAggregators().size());
+
+        ExecuteParam localParam = plan.getLocalParam();
+        assertTrue(localParam.getFilters().isEmpty());
+        assertEquals(AggregateOperator.SqlOperator.SUM, localParam.getAggregators().get(1).getSqlOperator());
+        assertEquals("COUNT(day)", localParam.getAggregators().get(1).getColumn());
+        assertEquals("COUNT(day)", localParam.getOrders().get(0).getColumn());
+        assertEquals(AggregateOperator.SqlOperator.SUM, localParam.getOrders().get(0).getAggOperator());
+
+        Dataframe dataframe = new Dataframe();
+        dataframe.setColumns(Arrays.asList(new Column("SUM(SUM(amount))", ValueType.NUMERIC),
+                new Column("SUM(COUNT(day))", ValueType.NUMERIC), new Column("city", ValueType.STRING)));
+        plan.restoreColumnNames(dataframe);
+        assertEquals("SUM(amount)", dataframe.getColumns().get(0).getName());
+        assertEquals("COUNT(day)", dataframe.getColumns().get(1).getName());
+    }
+
+    @Test
+    void testFunctionColumnKeptLocal() {
+        FunctionColumn functionColumn = new FunctionColumn();
+        functionColumn.setAlias("month");
+        functionColumn.setSnippet("MONTH([day])");
+        ExecuteParam executeParam = ExecuteParam.builder()
+                .functionColumns(Collections.singletonList(functionColumn))
+                .groups(Collections.singletonList(group("month")))
+                .aggregators(Collections.singletonList(aggregator(AggregateOperator.SqlOperator.AVG, "amount")))
+                .filters(Arrays.asList(filter("city", null, FilterOperator.SqlOperator.EQ, new SingleTypedValue("a", ValueType.STRING)),
+                        filter("month", null, FilterOperator.SqlOperator.EQ, new SingleTypedValue(1, ValueType.NUMERIC))))
+                .build();
+
+        LocalPushdownPlanner plan = LocalPushdownPlanner.plan(script(), executeParam);
+        assertNull(plan.getSourceParam().getAggregators());
+        assertEquals("city", plan.getSourceParam().getFilters().get(0).getColumn());
+        assertEquals(new HashSet<>(Arrays.asList("amount", "day")), new HashSet<>(plan.getSourceParam().getColumns()));
+        assertEquals("month", plan.getLocalParam().getFilters().get(0).getColumn());
+        assertEquals(executeParam.getAggregators(), plan.getLocalParam().getAggregators());
+    }
+
+    private QueryScript script() {
+        Map<String, Column> schema = new HashMap<>();
+        schema.put("city", new Column("city", ValueType.STRING));
+        schema.put("amount", new Column("amount", ValueType.NUMERIC));
+        schema.put("day", new Column("day", ValueType.DATE));
+        QueryScript script = new QueryScript();
+        script.setSchema(schema);
+        return script;
+    }
+
+    private GroupByOperator group(String column) {
+        GroupByOperator group = new GroupByOperator();
+        group.setColumn(column);
+        return group;
+    }
+
+    private AggregateOperator aggregator(AggregateOperator.SqlOperator sqlOperator, String column) {
+        AggregateOperator aggregator = new AggregateOperator();
+        aggregator.setSqlOperator(sqlOperator);
+        aggregator.setColumn(column);
+        return aggregator;
+    }
+
+    private OrderOperator order(String column, AggregateOperator.SqlOperator aggOperator) {
+        OrderOperator order = new OrderOperator();
+        order.setColumn(column);
+        order.setAggOperator(aggOperator);
+        order.setOperator(OrderOperator.SqlOperator.DESC);
+        return order;
+    }
+
+    private FilterOperator filter(String column, AggregateOperator.SqlOperator aggOperator, FilterOperator.SqlOperator sqlOperator, SingleTypedValue... values) {
+        FilterOperator filter = new FilterOperator();
+        filter.setColumn(column);
+        filter.setAggOperator(aggOperator);
+        filter.setSqlOperator(sqlOperator);
+        filter.setValues(values);
+        return filter;
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package datart.data.provider.local;
+
+import datart.core.data.provider.LocalCacheInfo;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LocalCacheManagerTest {
+
+    private static final long GRACE = TimeUnit.MINUTES.toMillis(10);
+
+    @Test
+    void testRebuildKeepsHistory() {
+        String sourceId = UUID.randomUUID().toString();
+        LocalCacheManager.register(sourceId, 1000);
+        LocalCacheManager.recordHit(sourceId);
+        LocalCacheManager.recordHit(sourceId);
+        LocalCacheInfo before = LocalCacheManager.stats(sourceId);
+        assertEquals(2, before.getHits());
+
+        LocalCacheManager.remove(sourceId);
+        assertNull(LocalCacheManager.stats(sourceId));
+        // 清除期间的访问不计入
+        LocalCacheManager.recordHit(sourceId);
+
+        LocalCacheManager.register(sourceId, before.getLastAccessTime().getTime() + 1000);
+        LocalCacheInfo after = LocalCacheManager.stats(sourceId);
+        assertEquals(2, after.getHits());
+        assertEquals(before.getLastAccessTime().getTime() + 1000, after.getCreateTime().getTime());
+        assertTrue(after.getLastAccessTime().getTime() >= before.getLastAccessTime().getTime());
+    }
+
+    @Test
+    void testHistoryPruned() {
+        String sourceId = UUID.randomUUID().toString();
+        LocalCacheManager.register(sourceId, 1000);
+        LocalCacheManager.recordHit(sourceId);
+        LocalCacheManager.remove(sourceId);
+        LocalCacheManager.pruneHistory(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(2));
+        LocalCacheManager.register(sourceId, 1000);
+        assertEquals(0, LocalCacheManager.stats(sourceId).getHits());
+    }
+
+    @Test
+    void testCachedStatsNotPruned() {
+        String sourceId = UUID.randomUUID().toString();
+        LocalCacheManager.register(sourceId, 1000);
+        LocalCacheManager.pruneHistory(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(2));
+        assertNotNull(LocalCacheManager.stats(sourceId));
+    }
+
+    @Test
+    void testLfuEvictsNewCachesLast() {
+        long now = TimeUnit.DAYS.toMillis(10);
+        List<LocalCacheInfo> caches = Arrays.asList(
+                cache("hot", 50, now - TimeUnit.HOURS.toMillis(5), now - 1000),
+                cache("new", 0, now - 1000, now - 1000),
+                cache("cold", 2, now - TimeUnit.HOURS.toMillis(3), now - TimeUnit.HOURS.toMillis(1)),
+                cache("unused", 0, now - TimeUnit.HOURS.toMillis(2), now - TimeUnit.HOURS.toMillis(2)));
+        assertEquals(Arrays.asList("unused", "cold", "hot", "new"), ids(LocalCacheManager.evictionOrder(caches, LocalCacheManager.EvictionPolicy.LFU, GRACE, now)));
+        // 没有保护期时按命中次数
+        assertEquals(Arrays.asList("unused", "new", "cold", "hot"), ids(LocalCacheManager.evictionOrder(caches, LocalCacheManager.EvictionPolicy.LFU, 0, now)));
+    }
+
+    @Test
+    void testLruOrder() {
+        long now = TimeUnit.DAYS.toMillis(10);
+        List<LocalCacheInfo> caches = Arrays.asList(
+                cache("recent", 0, now - TimeUnit.HOURS.toMillis(5), now - 1000),
+                cache("new", 0, now - 1000, now - 2000),
+                cache("old", 9, now - TimeUnit.HOURS.toMillis(3), now - TimeUnit.HOURS.toMillis(1)));
+        assertEquals(Arrays.asList("old", "recent", "new"), ids(LocalCacheManager.evictionOrder(caches, LocalCacheManager.EvictionPolicy.LRU, GRACE, now)));
+    }
+
+    private static LocalCacheInfo cache(String sourceId, long hits, long createTime, long lastAccessTime) {
+        LocalCacheInfo info = new LocalCacheInfo();
+        info.setSourceId(sourceId);
+        info.setHits(hits);
+        info.setCreateTime(new Date(createTime));
+        info.setLastAccessTime(new Date(lastAccessTime));
+        return info;
+    }
+
+    private static List<String> ids(List<LocalCacheInfo> caches) {
+        return caches.stream().map(LocalCacheInfo::getSourceId).collect(Collectors.toList());
+    }
+
+}
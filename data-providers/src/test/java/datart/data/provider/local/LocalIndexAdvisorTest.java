@@ -0,0 +1,90 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package datart.data.provider.local;
+
+import datart.data.provider.local.LocalIndexAdvisor.ColumnUsage;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LocalIndexAdvisorTest {
+
+    @Test
+    void testUsageReachesThreshold() {
+        ColumnUsage usage = new ColumnUsage();
+        assertTrue(usage.hit(Arrays.asList("a", "b"), 3, 0, 1000).isEmpty());
+        assertTrue(usage.hit(Collections.singletonList("a"), 3, 0, 1000).isEmpty());
+        assertEquals(Collections.singletonList("a"), usage.hit(Arrays.asList("a", "b"), 3, 0, 1000));
+    }
+
+    @Test
+    void testUsageDecays() {
+        ColumnUsage usage = new ColumnUsage();
+        for (int i = 0; i < 8; i++) {
+            usage.hit(Arrays.asList("a", "b"), 100, 1000, 1000);
+        }
+        usage.hit(Collections.singletonList("b"), 100, 1000, 1000);
+        assertEquals(8, usage.count("a"));
+        usage.hit(Collections.emptyList(), 100, 1000, 2000);
+        assertEquals(4, usage.count("a"));
+        assertEquals(4, usage.count("b"));
+        // 两个周期后再次减半
+        usage.hit(Collections.emptyList(), 100, 1000, 4000);
+        assertEquals(1, usage.count("a"));
+        usage.hit(Collections.emptyList(), 100, 1000, 5000);
+        assertEquals(0, usage.count("a"));
+    }
+
+    @Test
+    void testIndexNamesDoNotCollide() {
+        assertNotEquals(LocalIndexAdvisor.indexName("a_1", 2), LocalIndexAdvisor.indexName("a", 12));
+        assertNotEquals(LocalIndexAdvisor.indexName("a_1", 2), LocalIndexAdvisor.indexName("a", 1));
+        assertEquals(LocalIndexAdvisor.indexName("t", 3), LocalIndexAdvisor.indexName("t", 3));
+    }
+
+    @Test
+    void testCreateIndexesOnlyForExistingColumns() throws Exception {
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:index_advisor;MODE=MySQL;DATABASE_TO_UPPER=false");
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE `t1` (`x` INT, `y` INT)");
+            statement.execute("CREATE TABLE `t2` (`y` INT)");
+            List<String> created = LocalIndexAdvisor.createIndexes(connection, Arrays.asList("y", "missing", "bad`col"));
+            assertEquals(Collections.singletonList("y"), created);
+            assertEquals(Collections.singletonMap(LocalIndexAdvisor.indexName("t1", 2), "y"), indexes(connection, "t1"));
+            assertEquals(Collections.singletonMap(LocalIndexAdvisor.indexName("t2", 1), "y"), indexes(connection, "t2"));
+        }
+    }
+
+    private static Map<String, String> indexes(Connection connection, String table) throws Exception {
+        Map<String, String> indexes = new HashMap<>();
+        try (ResultSet resultSet = connection.getMetaData().getIndexInfo(null, null, table, false, false)) {
+            while (resultSet.next()) {
+                indexes.put(resultSet.getString("INDEX_NAME"), resultSet.getString("COLUMN_NAME"));
+            }
+        }
+        return indexes;
+    }
+
+}
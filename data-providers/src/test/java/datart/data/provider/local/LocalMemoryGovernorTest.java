@@ -0,0 +1,163 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package datart.data.provider.local;
+
+import datart.core.base.exception.BaseException;
+import datart.core.data.provider.Dataframe;
+import datart.data.provider.local.LocalMemoryGovernor.OverflowPolicy;
+import datart.data.provider.local.LocalMemoryGovernor.Permit;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LocalMemoryGovernorTest {
+
+    @Test
+    void testReserveResizeAndRelease() throws Exception {
+        LocalMemoryGovernor governor = new LocalMemoryGovernor(1000, OverflowPolicy.QUEUE, 1000, 100);
+        Permit permit = governor.reserve(null);
+        assertEquals(100L, governor.status().get("used"));
+        // 原始数据和本地引擎中的副本
+        permit.resize(frames(200));
+        assertEquals(400L, governor.status().get("used"));
+        // 查询结果
+        permit.add(frame(50));
+        assertEquals(450L, governor.status().get("used"));
+        permit.close();
+        permit.close();
+        assertEquals(0L, governor.status().get("used"));
+        assertEquals(0, governor.status().get("running"));
+        assertEquals(450L, governor.status().get("peak"));
+    }
+
+    @Test
+    void testReserveLastSize() throws Exception {
+        LocalMemoryGovernor governor = new LocalMemoryGovernor(1000, OverflowPolicy.QUEUE, 1000, 100);
+        try (Permit permit = governor.reserve("source")) {
+            permit.resize(frames(200));
+            permit.add(frame(50));
+        }
+        try (Permit permit = governor.reserve("source")) {
+            assertEquals(450, permit.getBytes());
+        }
+        try (Permit permit = governor.reserve("other")) {
+            assertEquals(100, permit.getBytes());
+        }
+    }
+
+    @Test
+    void testRejectBeforeLoad() throws Exception {
+        LocalMemoryGovernor governor = new LocalMemoryGovernor(1000, OverflowPolicy.REJECT, 1000, 600);
+        try (Permit ignored = governor.reserve(null)) {
+            assertThrows(BaseException.class, () -> governor.reserve(null));
+        }
+        assertEquals(1L, governor.status().get("rejected"));
+        assertEquals(0L, governor.status().get("used"));
+    }
+
+    @Test
+    void testRejectAfterLoad() throws Exception {
+        LocalMemoryGovernor governor = new LocalMemoryGovernor(1000, OverflowPolicy.REJECT, 1000, 100);
+        Permit permit = governor.reserve(null);
+        assertThrows(BaseException.class, () -> permit.resize(frames(600)));
+        permit.close();
+        assertEquals(0L, governor.status().get("used"));
+        assertEquals(0, governor.status().get("running"));
+    }
+
+    @Test
+    void testSpill() throws Exception {
+        LocalMemoryGovernor governor = new LocalMemoryGovernor(1000, OverflowPolicy.SPILL, 1000, 600);
+        try (Permit permit = governor.reserve(null)) {
+            assertFalse(permit.isSpill());
+            try (Permit spilled = governor.reserve(null)) {
+                assertTrue(spilled.isSpill());
+            }
+            assertEquals(600L, governor.status().get("used"));
+        }
+        assertEquals(1L, governor.status().get("spilled"));
+    }
+
+    @Test
+    void testSpillAfterLoad() throws Exception {
+        LocalMemoryGovernor governor = new LocalMemoryGovernor(1000, OverflowPolicy.QUEUE, 1000, 100);
+        try (Permit permit = governor.reserve("source")) {
+            permit.resize(frames(600));
+            assertTrue(permit.isSpill());
+            assertEquals(0L, governor.status().get("used"));
+        }
+        // 超过预算的查询不再排队，直接转到临时文件数据库
+        try (Permit permit = governor.reserve("source")) {
+            assertTrue(permit.isSpill());
+        }
+    }
+
+    @Test
+    void testQueueUntilReleased() throws Exception {
+        LocalMemoryGovernor governor = new LocalMemoryGovernor(1000, OverflowPolicy.QUEUE, 10_000, 600);
+        Permit first = governor.reserve(null);
+        CompletableFuture<Permit> second = CompletableFuture.supplyAsync(() -> {
+            try {
+                return governor.reserve(null);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!Integer.valueOf(1).equals(governor.status().get("queued")) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, governor.status().get("queued"));
+        assertFalse(second.isDone());
+        first.close();
+        try (Permit permit = second.get(5, TimeUnit.SECONDS)) {
+            assertFalse(permit.isSpill());
+            assertEquals(600L, governor.status().get("used"));
+        }
+        assertEquals(0, governor.status().get("queued"));
+    }
+
+    @Test
+    void testQueueTimeout() throws Exception {
+        LocalMemoryGovernor governor = new LocalMemoryGovernor(1000, OverflowPolicy.QUEUE, 50, 600);
+        try (Permit ignored = governor.reserve(null)) {
+            assertThrows(BaseException.class, () -> governor.reserve(null));
+        }
+        assertEquals(1L, governor.status().get("rejected"));
+    }
+
+    private static List<Dataframe> frames(long bytes) {
+        return Collections.singletonList(frame(bytes));
+    }
+
+    private static Dataframe frame(long bytes) {
+        return new Dataframe() {
+            @Override
+            public long estimatedBytes() {
+                return bytes;
+            }
+        };
+    }
+
+}
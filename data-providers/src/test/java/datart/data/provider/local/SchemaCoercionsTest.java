@@ -0,0 +1,117 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package datart.data.provider.local;
+
+import datart.core.base.consts.ValueType;
+import datart.core.data.provider.Column;
+import datart.core.data.provider.DataProviderSource;
+import datart.core.data.provider.Dataframe;
+import datart.data.provider.DefaultDataProvider;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SchemaCoercionsTest {
+
+    private static final String[] NUMBERS = {"0", "42", "-7", "007", "9007199254740993", "3.14", "-0.5", "1e3", "", " ", "abc", "12abc"};
+
+    private static final String[] DATES = {"2021-03-04", "2021-03-04 05:06:07", "2021/03/04", "20210304"};
+
+    private final BaselineParser baseline = new BaselineParser();
+
+    @Test
+    void testNumberMatchesBaseline() {
+        for (String str : NUMBERS) {
+            Object expected = baseline.parse(str, new Column("c", ValueType.NUMERIC));
+            BigDecimal actual = SchemaCoercions.toNumber(str);
+            if (expected == null) {
+                assertNull(actual, str);
+            } else if (expected instanceof Long) {
+                assertEquals(0, actual.scale(), str);
+                assertEquals(expected, actual.longValueExact(), str);
+            } else {
+                assertEquals(expected, actual.doubleValue(), str);
+            }
+        }
+    }
+
+    @Test
+    void testIntegerKeepsPrecision() {
+        assertEquals(new BigDecimal("9007199254740993"), SchemaCoercions.toNumber("9007199254740993"));
+        assertEquals(new BigDecimal("123456789012345678901234567890"), SchemaCoercions.toNumber("123456789012345678901234567890"));
+    }
+
+    @Test
+    void testDateMatchesBaseline() {
+        for (String str : DATES) {
+            Object expected = baseline.parse(str, new Column("c", ValueType.DATE));
+            java.sql.Timestamp actual = SchemaCoercions.toDate(str, null);
+            if (expected == null) {
+                assertNull(actual, str);
+            } else {
+                assertEquals(((java.util.Date) expected).getTime(), actual.getTime(), str);
+            }
+        }
+    }
+
+    @Test
+    void testDateKeepsTime() {
+        java.sql.Timestamp timestamp = SchemaCoercions.toDate("2021-03-04 05:06:07", "yyyy-MM-dd HH:mm:ss");
+        assertEquals(java.sql.Timestamp.valueOf("2021-03-04 05:06:07"), timestamp);
+        assertNull(SchemaCoercions.toDate("2021-03-04", "yyyy-MM-dd HH:mm:ss"));
+    }
+
+    /**
+     * 按行解析字符串的原有实现
+     */
+    private static class BaselineParser extends DefaultDataProvider {
+
+        Object parse(String str, Column column) {
+            List<List<Object>> values = new ArrayList<>();
+            values.add(new ArrayList<>(Collections.singletonList(str)));
+            return parseValues(values, Collections.singletonList(column)).get(0).get(0);
+        }
+
+        @Override
+        public List<Dataframe> loadFullDataFromSource(DataProviderSource config) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public String getConfigDisplayName(String name) {
+            return name;
+        }
+
+        @Override
+        public String getConfigDescription(String name) {
+            return name;
+        }
+
+        @Override
+        public String getConfigFile() {
+            return null;
+        }
+    }
+
+}
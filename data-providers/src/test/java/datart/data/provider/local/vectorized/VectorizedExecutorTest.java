@@ -0,0 +1,237 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package datart.data.provider.local.vectorized;
+
+import datart.core.base.PageInfo;
+import datart.core.base.consts.ValueType;
+import datart.core.data.provider.Column;
+import datart.core.data.provider.ColumnarDataframe;
+import datart.core.data.provider.Dataframe;
+import datart.core.data.provider.ExecuteParam;
+import datart.core.data.provider.SingleTypedValue;
+import datart.core.data.provider.sql.AggregateOperator;
+import datart.core.data.provider.sql.FilterOperator;
+import datart.core.data.provider.sql.GroupByOperator;
+import datart.core.data.provider.sql.OrderOperator;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VectorizedExecutorTest {
+
+    @Test
+    void testGroupAggregateAndTopK() {
+        ExecuteParam executeParam = ExecuteParam.builder()
+                .groups(Collections.singletonList(group("city")))
+                .aggregators(Arrays.asList(aggregator(AggregateOperator.SqlOperator.SUM, "amount"),
+                        aggregator(AggregateOperator.SqlOperator.COUNT_DISTINCT, "day")))
+                .orders(Collections.singletonList(order("amount", AggregateOperator.SqlOperator.SUM, OrderOperator.SqlOperator.DESC)))
+                .pageInfo(page(1, 2))
+                .build();
+
+        Dataframe dataframe = VectorizedExecutor.tryExecute(executeParam, data());
+        assertNotNull(dataframe);
+        assertEquals(Arrays.asList("SUM(amount)", "COUNT_DISTINCT(day)", "city"), columnNames(dataframe));
+        assertEquals(4, dataframe.getPageInfo().getTotal());
+        assertEquals(Arrays.asList(10.0, 1L, "c"), dataframe.getRows().get(0));
+        assertEquals(Arrays.asList(4.0, 2L, "a"), dataframe.getRows().get(1));
+    }
+
+    @Test
+    void testFilterAndProjection() {
+        FilterOperator notIn = filter("city", FilterOperator.SqlOperator.NOT_IN, new SingleTypedValue("b", ValueType.STRING));
+        FilterOperator between = filter("day", FilterOperator.SqlOperator.BETWEEN,
+                new SingleTypedValue("2021-01-01 00:00:00", ValueType.DATE),
+                new SingleTypedValue("2021-01-02 00:00:00", ValueType.DATE));
+        ExecuteParam executeParam = ExecuteParam.builder()
+                .columns(Arrays.asList("city", "amount"))
+                .filters(Arrays.asList(notIn, between))
+                .orders(Collections.singletonList(order("amount", null, OrderOperator.SqlOperator.DESC)))
+                .pageInfo(page(1, 10))
+                .build();
+
+        Dataframe dataframe = VectorizedExecutor.tryExecute(executeParam, data());
+        assertNotNull(dataframe);
+        assertEquals(2, dataframe.getPageInfo().getTotal());
+        assertEquals(Arrays.asList("a", 3.0), dataframe.getRows().get(0));
+        assertEquals(Arrays.asList("a", 1.0), dataframe.getRows().get(1));
+    }
+
+    @Test
+    void testFallback() {
+        ExecuteParam executeParam = ExecuteParam.builder()
+                .columns(Collections.singletonList("not_exists"))
+                .pageInfo(page(1, 10))
+                .build();
+        assertNull(VectorizedExecutor.tryExecute(executeParam, data()));
+    }
+
+    @Test
+    void testParallelAggregateMatchesSingleThread() {
+        FilterOperator in = filter("city", FilterOperator.SqlOperator.IN,
+                new SingleTypedValue("a", ValueType.STRING), new SingleTypedValue("c", ValueType.STRING), new SingleTypedValue("e", ValueType.STRING));
+        FilterOperator gt = filter("amount", FilterOperator.SqlOperator.GT, new SingleTypedValue("10", ValueType.NUMERIC));
+        ExecuteParam executeParam = ExecuteParam.builder()
+                .groups(Collections.singletonList(group("city")))
+                .aggregators(Arrays.asList(aggregator(AggregateOperator.SqlOperator.SUM, "amount"),
+                        aggregator(AggregateOperator.SqlOperator.COUNT, "amount")))
+                .filters(Arrays.asList(in, gt))
+                .orders(Collections.singletonList(order("city", null, OrderOperator.SqlOperator.ASC)))
+                .pageInfo(page(1, 10))
+                .build();
+
+        Dataframe expected = VectorizedExecutor.tryExecute(executeParam, largeData());
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int i = 0; i < 20; i++) {
+                Dataframe actual = VectorizedExecutor.tryExecute(executeParam, largeData(), 4, pool);
+                assertNotNull(actual);
+                assertEquals(expected.getPageInfo().getTotal(), actual.getPageInfo().getTotal());
+                assertEquals(expected.getRows(), actual.getRows());
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(3, expected.getRows().size());
+    }
+
+    @Test
+    void testParallelAggregateOnLoadedColumnarData() {
+        List<List<Object>> rows = new ArrayList<>();
+        String[] cities = {"a", " ", "c"};
+        for (int i = 0; i < 20000; i++) {
+            rows.add(Arrays.asList(cities[i % cities.length], (double) (i % 97)));
+        }
+        ColumnarDataframe input = ColumnarDataframe.fromRows(Arrays.asList(new Column("city", ValueType.STRING), new Column("amount", ValueType.NUMERIC)), rows);
+        ExecuteParam executeParam = ExecuteParam.builder()
+                .groups(Collections.singletonList(group("city")))
+                .aggregators(Collections.singletonList(aggregator(AggregateOperator.SqlOperator.SUM, "amount")))
+                .pageInfo(page(1, 10))
+                .build();
+
+        Dataframe expected = VectorizedExecutor.tryExecute(executeParam, input);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Dataframe actual = VectorizedExecutor.tryExecute(executeParam, input, 4, pool);
+            assertNotNull(actual);
+            assertEquals(new HashSet<>(expected.getRows()), new HashSet<>(actual.getRows()));
+        } finally {
+            pool.shutdown();
+        }
+        // 分区聚合直接使用加载好的列数据，空白字符串按空值分组，原数据不变
+        assertTrue(expected.getRows().contains(Arrays.asList(319769.0, null)));
+        assertEquals(" ", input.getValue(1, 0));
+    }
+
+    @Test
+    void testColumnarInputNotModified() {
+        Dataframe rows = data();
+        ColumnarDataframe input = ColumnarDataframe.fromRows(rows.getColumns(), rows.getRows());
+        input.setName("t");
+        ExecuteParam executeParam = ExecuteParam.builder()
+                .columns(Collections.singletonList("city"))
+                .filters(Collections.singletonList(filter("city", FilterOperator.SqlOperator.IS_NULL)))
+                .pageInfo(page(1, 10))
+                .build();
+
+        Dataframe dataframe = VectorizedExecutor.tryExecute(executeParam, input);
+        assertNotNull(dataframe);
+        // 空白字符串按空值查询，但调用方的数据保持不变
+        assertEquals(1, dataframe.getPageInfo().getTotal());
+        assertEquals(" ", input.getValue(3, 0));
+    }
+
+    private Dataframe largeData() {
+        Dataframe dataframe = new Dataframe();
+        dataframe.setName("t");
+        dataframe.setColumns(Arrays.asList(new Column("city", ValueType.STRING), new Column("amount", ValueType.NUMERIC)));
+        String[] cities = {"a", "b", "c", "d", "e", "f"};
+        List<List<Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            rows.add(new ArrayList<>(Arrays.asList(cities[i % cities.length], (double) (i % 97))));
+        }
+        dataframe.setRows(rows);
+        return dataframe;
+    }
+
+    private Dataframe data() {
+        Dataframe dataframe = new Dataframe();
+        dataframe.setName("t");
+        dataframe.setColumns(Arrays.asList(new Column("city", ValueType.STRING),
+                new Column("amount", ValueType.NUMERIC),
+                new Column("day", ValueType.DATE)));
+        List<List<Object>> rows = new LinkedList<>();
+        rows.add(new ArrayList<>(Arrays.asList("a", 1L, date("2021-01-01 10:00:00"))));
+        rows.add(new ArrayList<>(Arrays.asList("b", 2.5, date("2021-01-01 12:00:00"))));
+        rows.add(new ArrayList<>(Arrays.asList("a", 3, date("2021-01-02 00:00:00"))));
+        rows.add(new ArrayList<>(Arrays.asList(" ", null, null)));
+        rows.add(new ArrayList<>(Arrays.asList("c", 10, date("2021-01-03 00:00:00"))));
+        dataframe.setRows(rows);
+        return dataframe;
+    }
+
+    private List<String> columnNames(Dataframe dataframe) {
+        List<String> names = new ArrayList<>();
+        for (Column column : dataframe.getColumns()) {
+            names.add(column.getName());
+        }
+        return names;
+    }
+
+    private Date date(String value) {
+        return java.sql.Timestamp.valueOf(value);
+    }
+
+    private PageInfo page(int pageNo, int pageSize) {
+        return PageInfo.builder().pageNo(pageNo).pageSize(pageSize).build();
+    }
+
+    private GroupByOperator group(String column) {
+        GroupByOperator group = new GroupByOperator();
+        group.setColumn(column);
+        return group;
+    }
+
+    private AggregateOperator aggregator(AggregateOperator.SqlOperator sqlOperator, String column) {
+        AggregateOperator aggregator = new AggregateOperator();
+        aggregator.setSqlOperator(sqlOperator);
+        aggregator.setColumn(column);
+        return aggregator;
+    }
+
+    private OrderOperator order(String column, AggregateOperator.SqlOperator aggOperator, OrderOperator.SqlOperator operator) {
+        OrderOperator order = new OrderOperator();
+        order.setColumn(column);
+        order.setAggOperator(aggOperator);
+        order.setOperator(operator);
+        return order;
+    }
+
+    private FilterOperator filter(String column, FilterOperator.SqlOperator sqlOperator, SingleTypedValue... values) {
+        FilterOperator filter = new FilterOperator();
+        filter.setColumn(column);
+        filter.setSqlOperator(sqlOperator);
+        filter.setValues(values);
+        return filter;
+    }
+
+}
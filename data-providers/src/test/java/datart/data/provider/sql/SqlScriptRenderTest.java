@@ -18,12 +18,31 @@
 
 package datart.data.provider.sql;
 
+import datart.core.base.PageInfo;
+import datart.core.base.consts.ValueType;
+import datart.core.base.consts.VariableTypeEnum;
+import datart.core.common.MessageResolver;
+import datart.core.data.provider.ExecuteParam;
 import datart.core.data.provider.QueryScript;
+import datart.core.data.provider.ScriptVariable;
+import datart.core.data.provider.sql.OrderOperator;
 import datart.data.provider.ParamFactory;
+import datart.data.provider.calcite.SqlBuilder;
+import datart.data.provider.jdbc.BindVariables;
 import datart.data.provider.jdbc.SqlScriptRender;
 import org.apache.calcite.sql.dialect.MysqlSqlDialect;
 import org.apache.calcite.sql.parser.SqlParseException;
 import org.junit.jupiter.api.Test;
+import org.springframework.context.support.StaticMessageSource;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 public class SqlScriptRenderTest {
 
@@ -39,4 +58,146 @@ public class SqlScriptRenderTest {
 
     }
 
+    @Test
+    void testRowNumberPaging() throws SqlParseException {
+        OrderOperator order = new OrderOperator();
+        order.setColumn("age");
+        order.setOperator(OrderOperator.SqlOperator.DESC);
+        ExecuteParam executeParam = ExecuteParam.builder()
+                .columns(Arrays.asList("name", "age"))
+                .orders(Collections.singletonList(order))
+                .pageInfo(PageInfo.builder().pageNo(3).pageSize(10).build())
+                .build();
+        QueryScript script = QueryScript.builder()
+                .script("SELECT * FROM test_table")
+                .variables(Collections.emptyList())
+                .build();
+
+        String sql = new SqlScriptRender(script, executeParam, new MysqlSqlDialect(MysqlSqlDialect.DEFAULT_CONTEXT), false, true)
+                .render(true, true, true);
+        String rowNum = "`" + SqlBuilder.ROW_NUMBER_COLUMN + "`";
+        assertTrue(sql.startsWith("SELECT * FROM ("), sql);
+        assertTrue(sql.contains("ROW_NUMBER() OVER (ORDER BY "), sql);
+        assertTrue(sql.contains("`age` DESC) AS " + rowNum), sql);
+        assertTrue(sql.endsWith("WHERE " + rowNum + " > 20 AND " + rowNum + " <= 30 ORDER BY " + rowNum), sql);
+
+        // 没有排序时不使用行号分页
+        executeParam.setOrders(null);
+        sql = new SqlScriptRender(script, executeParam, new MysqlSqlDialect(MysqlSqlDialect.DEFAULT_CONTEXT), false, true)
+                .render(true, true, true);
+        assertFalse(sql.contains(SqlBuilder.ROW_NUMBER_COLUMN), sql);
+    }
+
+    @Test
+    void testBindQueryVariables() throws SqlParseException {
+        BindVariables bind = renderBind("SELECT * FROM test_table WHERE age > $age$ AND name = $name$",
+                variable("age", ValueType.NUMERIC, VariableTypeEnum.QUERY, "20"),
+                variable("name", ValueType.STRING, VariableTypeEnum.QUERY, "O'Brien"));
+        assertEquals(Arrays.asList("NUMERIC:20", "STRING:O'Brien"), values(bind));
+        assertTrue(bind.getSql().matches("(?s).*>\\s*\\?.*=\\s*\\?.*"), bind.getSql());
+        assertFalse(bind.getSql().contains("20"), bind.getSql());
+        assertFalse(bind.getSql().contains("Brien"), bind.getSql());
+    }
+
+    @Test
+    void testBindPermissionVariable() throws SqlParseException {
+        BindVariables bind = renderBind("SELECT * FROM test_table WHERE dept = $dept$",
+                variable("dept", ValueType.STRING, VariableTypeEnum.PERMISSION, "销售部"));
+        assertEquals(Collections.singletonList("STRING:销售部"), values(bind));
+        assertFalse(bind.getSql().contains("销售部"), bind.getSql());
+    }
+
+    @Test
+    void testBindInList() throws SqlParseException {
+        BindVariables bind = renderBind("SELECT * FROM test_table WHERE city IN ($city$)",
+                variable("city", ValueType.STRING, VariableTypeEnum.QUERY, "a", "b", "c"));
+        assertEquals(new HashSet<>(Arrays.asList("STRING:a", "STRING:b", "STRING:c")), new HashSet<>(values(bind)));
+        assertTrue(bind.getSql().matches("(?s).*IN\\s*\\(\\?,\\s*\\?,\\s*\\?\\).*"), bind.getSql());
+    }
+
+    @Test
+    void testBindLike() throws SqlParseException {
+        BindVariables bind = renderBind("SELECT * FROM test_table WHERE name LIKE $name$",
+                variable("name", ValueType.STRING, VariableTypeEnum.QUERY, "%to_m%"));
+        assertEquals(Collections.singletonList("STRING:%to_m%"), values(bind));
+        assertTrue(bind.getSql().matches("(?s).*LIKE\\s*\\?.*"), bind.getSql());
+    }
+
+    @Test
+    void testBindDate() throws SqlParseException {
+        BindVariables bind = renderBind("SELECT * FROM test_table WHERE create_time >= $start$",
+                variable("start", ValueType.DATE, VariableTypeEnum.QUERY, "2021-01-01 00:00:00"));
+        assertEquals(Collections.singletonList("DATE:2021-01-01 00:00:00"), values(bind));
+        assertFalse(bind.getSql().contains("2021"), bind.getSql());
+    }
+
+    @Test
+    void testBindRegexFallback() throws SqlParseException {
+        // calcite 无法解析时使用正则替换变量
+        new MessageResolver().setMessageSource(new StaticMessageSource());
+        BindVariables bind = renderBind("SELECT * FROM test_table WHERE age > $age$ AND name = $name$ FOR UPDATE",
+                variable("age", ValueType.NUMERIC, VariableTypeEnum.QUERY, "20"),
+                variable("name", ValueType.STRING, VariableTypeEnum.QUERY, "tom"));
+        assertEquals(new HashSet<>(Arrays.asList("NUMERIC:20", "STRING:tom")), new HashSet<>(values(bind)));
+        assertFalse(bind.getSql().contains("$"), bind.getSql());
+        assertFalse(bind.getSql().contains("tom"), bind.getSql());
+        assertTrue(bind.getSql().endsWith("FOR UPDATE"), bind.getSql());
+    }
+
+    @Test
+    void testBindRoundTrip() throws Exception {
+        String sql = "SELECT * FROM t WHERE a = " + BindVariables.marker(ValueType.NUMERIC, "1.50")
+                + " AND b = " + BindVariables.marker(ValueType.STRING, "x'y")
+                + " AND c >= " + BindVariables.marker(ValueType.DATE, "2021-01-01 08:00:00")
+                + " AND d = " + BindVariables.marker(ValueType.DATE, "2021-01")
+                + " AND e = " + BindVariables.marker(ValueType.BOOLEAN, "true");
+        BindVariables bind = BindVariables.parse(sql);
+        assertNotNull(bind);
+        assertEquals("SELECT * FROM t WHERE a = ? AND b = ? AND c >= ? AND d = ? AND e = ?", bind.getSql());
+        assertEquals(bind.getSql(), BindVariables.preparedSql(sql));
+
+        List<String> calls = new ArrayList<>();
+        PreparedStatement statement = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class[]{PreparedStatement.class},
+                (proxy, method, args) -> {
+                    calls.add(method.getName() + "(" + args[0] + "," + args[1] + ")");
+                    return null;
+                });
+        bind.bind(statement);
+        assertEquals(Arrays.asList("setBigDecimal(1," + new BigDecimal("1.50") + ")",
+                "setString(2,x'y)",
+                "setTimestamp(3," + Timestamp.valueOf("2021-01-01 08:00:00") + ")",
+                "setString(4,2021-01)",
+                "setBoolean(5,true)"), calls);
+
+        assertNull(BindVariables.parse("SELECT * FROM t"));
+        assertNull(BindVariables.parse("SELECT '__DATART_BIND_STRING_zz__' FROM t"));
+    }
+
+    private BindVariables renderBind(String script, ScriptVariable... variables) throws SqlParseException {
+        QueryScript queryScript = QueryScript.builder()
+                .script(script)
+                .variables(new LinkedList<>(Arrays.asList(variables)))
+                .build();
+        String sql = new SqlScriptRender(queryScript, null, new MysqlSqlDialect(MysqlSqlDialect.DEFAULT_CONTEXT), false, false, true)
+                .render(false, false, true);
+        BindVariables bind = BindVariables.parse(sql);
+        assertNotNull(bind, sql);
+        return bind;
+    }
+
+    private List<String> values(BindVariables bind) {
+        return bind.getValues().stream()
+                .map(value -> value.getValueType() + ":" + value.getValue())
+                .collect(Collectors.toList());
+    }
+
+    private ScriptVariable variable(String name, ValueType type, VariableTypeEnum variableType, String... values) {
+        ScriptVariable variable = new ScriptVariable();
+        variable.setName(name);
+        variable.setValueType(type);
+        variable.setType(variableType);
+        variable.setValues(new LinkedHashSet<>(Arrays.asList(values)));
+        return variable;
+    }
+
 }
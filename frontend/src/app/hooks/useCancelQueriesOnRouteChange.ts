@@ -0,0 +1,40 @@
+/**
+ * Datart
+ *
+ * Copyright 2021
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import { useEffect } from 'react';
+import { useHistory } from 'react-router-dom';
+import { cancelQueries } from 'utils/request';
+
+/**
+ * Cancels running queries when the user navigates to another page,
+ * their results would no longer be shown
+ */
+const useCancelQueriesOnRouteChange = () => {
+  const history = useHistory();
+  useEffect(() => {
+    let pathname = history.location.pathname;
+    return history.listen(location => {
+      if (location.pathname !== pathname) {
+        pathname = location.pathname;
+        cancelQueries();
+      }
+    });
+  }, [history]);
+};
+
+export default useCancelQueriesOnRouteChange;
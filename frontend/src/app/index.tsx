@@ -28,6 +28,7 @@ import { useDispatch } from 'react-redux';
 import { BrowserRouter, Route, Switch } from 'react-router-dom';
 import { GlobalStyle, OverriddenStyle } from 'styles/globalStyles';
 import { getToken } from 'utils/auth';
+import useCancelQueriesOnRouteChange from './hooks/useCancelQueriesOnRouteChange';
 import useI18NPrefix from './hooks/useI18NPrefix';
 import { LoginAuthRoute } from './LoginAuthRoute';
 import { LazyActivePage } from './pages/ActivePage/Loadable';
@@ -40,6 +41,11 @@ import { getSystemInfo, logout, setLoggedInUser } from './slice/thunks';
 
 registerTheme('default', echartsDefaultTheme);
 
+function RouteQueryCanceller() {
+  useCancelQueriesOnRouteChange();
+  return null;
+}
+
 export function App() {
   const dispatch = useDispatch();
   const { i18n } = useTranslation();
@@ -65,6 +71,7 @@ export function App() {
   return (
     <ConfigProvider locale={antdLocales[i18n.language]}>
       <BrowserRouter>
+        <RouteQueryCanceller />
         <Helmet
           titleTemplate="%s - Datart"
           defaultTitle="Datart"
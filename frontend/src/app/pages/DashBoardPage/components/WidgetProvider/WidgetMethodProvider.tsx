@@ -22,9 +22,10 @@ import usePrefixI18N from 'app/hooks/useI18NPrefix';
 import { urlSearchTransfer } from 'app/pages/MainPage/pages/VizPage/utils';
 import { ChartMouseEventParams, ChartsEventData } from 'app/types/Chart';
 import { ControllerFacadeTypes } from 'app/types/FilterControlPanel';
-import React, { FC, useCallback, useContext } from 'react';
+import React, { FC, useCallback, useContext, useEffect } from 'react';
 import { useDispatch } from 'react-redux';
 import { useHistory } from 'react-router';
+import { cancelQueries } from 'utils/request';
 import { BoardContext } from '../../contexts/BoardContext';
 import {
   WidgetMethodContext,
@@ -57,6 +58,7 @@ import {
   getEditChartWidgetDataAsync,
   getEditWidgetData,
 } from '../../pages/BoardEditor/slice/thunk';
+import { getWidgetQueryKey } from '../../utils/widget';
 import { widgetActionType } from '../WidgetToolBar/config';
 
 const { confirm } = Modal;
@@ -70,6 +72,11 @@ export const WidgetMethodProvider: FC<{ widgetId: string }> = ({
   const dispatch = useDispatch();
   const history = useHistory();
 
+  // the widget is gone, its running query would only load the warehouse
+  useEffect(() => {
+    return () => cancelQueries(getWidgetQueryKey(widgetId, editing));
+  }, [widgetId, editing]);
+
   // deleteWidget
   const onWidgetDelete = useCallback(
     (type: WidgetType, wid: string) => {
@@ -16,6 +16,7 @@
  * limitations under the License.
  */
 import { createAsyncThunk } from '@reduxjs/toolkit';
+import { getWidgetQueryKey } from 'app/pages/DashBoardPage/utils/widget';
 import { getControlOptionQueryParams } from 'app/pages/DashBoardPage/utils/widgetToolKit/chart';
 import { FilterSearchParams } from 'app/pages/MainPage/pages/VizPage/slice/types';
 import { shareActions } from 'app/pages/SharePage/slice';
@@ -23,7 +24,7 @@ import { ExecuteToken, ShareVizInfo } from 'app/pages/SharePage/slice/types';
 import ChartDataSetDTO from 'app/types/ChartDataSet';
 import { filterSqlOperatorName } from 'app/utils/internalChartHelper';
 import { RootState } from 'types';
-import { request2 } from 'utils/request';
+import { cancellableQuery, isQueryCancelled, request2 } from 'utils/request';
 import { getErrorMessage } from 'utils/utils';
 import { boardActions } from '.';
 import { getChartWidgetRequestParams } from '../../../utils';
@@ -247,6 +248,7 @@ export const getChartWidgetDataAsync = createAsyncThunk<
           method: 'POST',
           url: `data-provider/execute`,
           data: requestParams,
+          ...cancellableQuery(getWidgetQueryKey(widgetId)),
         });
         widgetData = { ...data, id: widgetId };
       } else {
@@ -263,6 +265,7 @@ export const getChartWidgetDataAsync = createAsyncThunk<
             password: executeToken?.password,
           },
           data: requestParams,
+          ...cancellableQuery(getWidgetQueryKey(widgetId)),
         });
         widgetData = { ...data, id: widgetId };
       }
@@ -286,6 +289,10 @@ export const getChartWidgetDataAsync = createAsyncThunk<
         }),
       );
     } catch (error) {
+      if (isQueryCancelled(error)) {
+        // replaced by a newer query of the widget, or the widget is gone
+        return null;
+      }
       dispatch(
         boardActions.setWidgetErrInfo({
           boardId,
@@ -366,6 +373,7 @@ export const getControllerOptions = createAsyncThunk<
             password: executeToken?.password,
           },
           data: requestParams,
+          ...cancellableQuery(getWidgetQueryKey(widgetId)),
         });
         widgetData = { ...data, id: widget.id };
       } else {
@@ -373,6 +381,7 @@ export const getControllerOptions = createAsyncThunk<
           method: 'POST',
           url: `data-provider/execute`,
           data: requestParams,
+          ...cancellableQuery(getWidgetQueryKey(widgetId)),
         });
         widgetData = { ...data, id: widget.id };
       }
@@ -389,6 +398,9 @@ export const getControllerOptions = createAsyncThunk<
         }),
       );
     } catch (error) {
+      if (isQueryCancelled(error)) {
+        return null;
+      }
       dispatch(
         boardActions.setWidgetErrInfo({
           boardId,
@@ -29,6 +29,7 @@ import {
   createWidgetInfoMap,
   getWidgetInfoMapByServer,
   getWidgetMap,
+  getWidgetQueryKey,
 } from 'app/pages/DashBoardPage/utils/widget';
 import { getControlOptionQueryParams } from 'app/pages/DashBoardPage/utils/widgetToolKit/chart';
 import { widgetToolKit } from 'app/pages/DashBoardPage/utils/widgetToolKit/widgetToolKit';
@@ -39,7 +40,7 @@ import { filterSqlOperatorName } from 'app/utils/internalChartHelper';
 import { ActionCreators } from 'redux-undo';
 import { RootState } from 'types';
 import { CloneValueDeep } from 'utils/object';
-import { request2 } from 'utils/request';
+import { cancellableQuery, isQueryCancelled, request2 } from 'utils/request';
 import { uuidv4 } from 'utils/utils';
 import {
   editBoardStackActions,
@@ -543,6 +544,7 @@ export const getEditChartWidgetDataAsync = createAsyncThunk<
         method: 'POST',
         url: `data-provider/execute`,
         data: requestParams,
+        ...cancellableQuery(getWidgetQueryKey(widgetId, true)),
       });
       widgetData = { ...data, id: widgetId };
       dispatch(
@@ -563,6 +565,10 @@ export const getEditChartWidgetDataAsync = createAsyncThunk<
         }),
       );
     } catch (error) {
+      if (isQueryCancelled(error)) {
+        // replaced by a newer query of the widget, or the widget is gone
+        return null;
+      }
       dispatch(
         editWidgetInfoActions.setWidgetErrInfo({
           widgetId,
@@ -620,6 +626,7 @@ export const getEditControllerOptions = createAsyncThunk<
       method: 'POST',
       url: `data-provider/execute`,
       data: requestParams,
+      ...cancellableQuery(getWidgetQueryKey(widgetId, true)),
     });
     widgetData = { ...data, id: widget.id };
     dispatch(
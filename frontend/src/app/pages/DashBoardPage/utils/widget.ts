@@ -68,6 +68,12 @@ import { BtnActionParams } from '../pages/BoardEditor/slice/actions/controlActio
 
 export const VALUE_SPLITTER = '###';
 
+/**
+ * Key of a widget's data query, a newer query of the widget cancels the running one
+ */
+export const getWidgetQueryKey = (widgetId: string, editing?: boolean) =>
+  `${editing ? 'editBoard' : 'board'}/${widgetId}`;
+
 export const createControllerWidget = (opt: {
   boardId: string;
   boardType: BoardType;
@@ -17,9 +17,11 @@
  */
 
 import { message } from 'antd';
+import { QUERY_CANCELLED } from './request';
 
 export function rejectedActionMessageHandler(_, action) {
-  if (action?.error) {
+  // cancelled queries were replaced or abandoned, not failed
+  if (action?.error && action.error.message !== QUERY_CANCELLED) {
     message.error(action?.error.message);
   }
 }
@@ -16,10 +16,38 @@
  * limitations under the License.
  */
 
-import axios, { AxiosRequestConfig, AxiosResponse } from 'axios';
+import axios, {
+  AxiosRequestConfig,
+  AxiosResponse,
+  Canceler,
+  CancelToken,
+} from 'axios';
 import { BASE_API_URL } from 'globalConstants';
 import { APIResponse } from 'types';
 import { getToken, removeToken, setToken } from './auth';
+import { uuidv4 } from './utils';
+
+const QUERY_ID_HEADER = 'Query-Id';
+const EXECUTE_URL_PATTERN = /(^|\/)data-provider\/execute(\/stream)?$/;
+export const QUERY_CANCELLED = 'Query cancelled';
+
+interface RunningQuery {
+  key?: string;
+  queryId?: string;
+  cancel: Canceler;
+}
+
+/**
+ * Cancel tokens created for query requests, used to find the running query
+ * from a request or response config
+ */
+const queryTokens = new WeakMap<CancelToken, RunningQuery>();
+
+/**
+ * Query requests still waiting for a response. data-provider/execute
+ * requests carry a Query-Id and are also cancelled on the server
+ */
+const runningQueries = new Set<RunningQuery>();
 
 export const instance = axios.create({
   baseURL: BASE_API_URL,
@@ -33,16 +61,93 @@ instance.interceptors.request.use(config => {
   if (token) {
     config.headers.Authorization = token;
   }
+  const isExecute = !!config.url && EXECUTE_URL_PATTERN.test(config.url);
+  let query = config.cancelToken && queryTokens.get(config.cancelToken);
+  if (!query && isExecute) {
+    // every execute request can be cancelled when the route changes
+    const source = axios.CancelToken.source();
+    query = { cancel: source.cancel };
+    queryTokens.set(source.token, query);
+    config.cancelToken = source.token;
+  }
+  if (query) {
+    if (isExecute) {
+      query.queryId = uuidv4();
+      config.headers[QUERY_ID_HEADER] = query.queryId;
+    }
+    runningQueries.add(query);
+  }
   return config;
 });
 
-instance.interceptors.response.use(response => {
-  // refresh access token
-  const token = response.headers.authorization;
-  if (token) {
-    setToken(token);
+function finishQuery(config?: AxiosRequestConfig) {
+  const query = config?.cancelToken && queryTokens.get(config.cancelToken);
+  if (query) {
+    runningQueries.delete(query);
   }
-  return response;
+}
+
+instance.interceptors.response.use(
+  response => {
+    finishQuery(response.config);
+    // refresh access token
+    const token = response.headers.authorization;
+    if (token) {
+      setToken(token);
+    }
+    return response;
+  },
+  error => {
+    finishQuery(error?.config);
+    return Promise.reject(error);
+  },
+);
+
+function postQueryCancel(queryId: string) {
+  const token = getToken();
+  // keepalive lets the cancel request outlive the page on pagehide
+  fetch(`${BASE_API_URL}/data-provider/execute/${queryId}/cancel`, {
+    method: 'POST',
+    keepalive: true,
+    headers: token ? { Authorization: token } : {},
+  }).catch(() => {});
+}
+
+/**
+ * Abort running query requests and cancel their statements on the server
+ * @param key only cancel the queries started with this key, all queries when omitted
+ */
+export function cancelQueries(key?: string) {
+  runningQueries.forEach(query => {
+    if (key === undefined || query.key === key) {
+      runningQueries.delete(query);
+      query.cancel(QUERY_CANCELLED);
+      if (query.queryId) {
+        postQueryCancel(query.queryId);
+      }
+    }
+  });
+}
+
+/**
+ * Request config for a query that replaces the earlier query with the same key,
+ * e.g. a widget refresh. The earlier query is cancelled if it is still running
+ * @param key query key, see {@link cancelQueries}
+ */
+export function cancellableQuery(key: string): { cancelToken: CancelToken } {
+  cancelQueries(key);
+  const source = axios.CancelToken.source();
+  queryTokens.set(source.token, { key, cancel: source.cancel });
+  return { cancelToken: source.token };
+}
+
+export function isQueryCancelled(error): boolean {
+  return axios.isCancel(error);
+}
+
+// last resort for closing or reloading the page, in-app navigation cancels on route change
+window.addEventListener('pagehide', () => {
+  cancelQueries();
 });
 
 /**
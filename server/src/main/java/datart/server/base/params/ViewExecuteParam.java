@@ -19,6 +19,7 @@
 package datart.server.base.params;
 
 import datart.core.base.PageInfo;
+import datart.core.data.provider.QueryPriority;
 import datart.core.data.provider.sql.*;
 import lombok.Data;
 import org.springframework.util.CollectionUtils;
@@ -64,6 +65,8 @@ public class ViewExecuteParam {
 
     private boolean script;
 
+    private QueryPriority priority;
+
     public boolean isEmpty() {
         return CollectionUtils.isEmpty(columns)
                 && CollectionUtils.isEmpty(keywords)
@@ -19,20 +19,31 @@
 package datart.server.controller;
 
 
+import datart.core.base.consts.Const;
+import datart.core.common.RunningQueries;
+import datart.core.common.UUIDGenerator;
 import datart.core.data.provider.*;
 import datart.server.base.dto.ResponseData;
 import datart.server.base.params.ViewExecuteParam;
 import datart.server.base.params.TestExecuteParam;
 import datart.server.service.DataProviderService;
+import datart.server.service.JsonDataframeWriter;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+@Slf4j
 @Api
 @RestController
 @RequestMapping(value = "/data-provider")
@@ -89,16 +100,67 @@ public class DataProviderController extends BaseController {
         return ResponseData.success(dataProviderService.readTableColumns(sourceId, database, table));
     }
 
+    @ApiOperation(value = "Refresh cached databases, tables and columns")
+    @PostMapping(value = "/{sourceId}/metadata/refresh")
+    public ResponseData<Boolean> refreshMetadata(@PathVariable String sourceId) {
+        checkBlank(sourceId, "sourceId");
+        dataProviderService.refreshMetadata(sourceId);
+        return ResponseData.success(true);
+    }
+
     @ApiOperation(value = "Execute Script")
     @PostMapping(value = "/execute/test")
     public ResponseData<Dataframe> testExecute(@RequestBody TestExecuteParam executeParam) throws Exception {
         return ResponseData.success(dataProviderService.testExecute(executeParam));
     }
 
+    /**
+     * 同步执行，执行期间无法感知客户端断开。客户端放弃请求时需要调用取消接口，只有流式输出在写出失败时会取消查询
+     */
     @ApiOperation(value = "Execute Script")
     @PostMapping(value = "/execute")
-    public ResponseData<Dataframe> execute(@RequestBody ViewExecuteParam viewExecuteParam) throws Exception {
-        return ResponseData.success(dataProviderService.execute(viewExecuteParam));
+    public ResponseData<Dataframe> execute(@RequestBody ViewExecuteParam viewExecuteParam,
+                                           @RequestHeader(value = Const.QUERY_ID, required = false) String queryId) throws Exception {
+        startQuery(queryId);
+        try {
+            return ResponseData.success(dataProviderService.execute(viewExecuteParam));
+        } finally {
+            RunningQueries.finish();
+        }
+    }
+
+    @ApiOperation(value = "Execute Script and stream the result")
+    @PostMapping(value = "/execute/stream")
+    public void executeStream(@RequestBody ViewExecuteParam viewExecuteParam,
+                              @RequestHeader(value = Const.QUERY_ID, required = false) String queryId,
+                              HttpServletResponse response) throws Exception {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        JsonDataframeWriter writer = new JsonDataframeWriter(response.getOutputStream());
+        startQuery(queryId);
+        try {
+            writer.finish(dataProviderService.execute(viewExecuteParam, writer));
+        } catch (Exception e) {
+            if (!writer.fail(e)) {
+                throw e;
+            }
+            log.error("stream execute error", e);
+        } finally {
+            RunningQueries.finish();
+        }
+    }
+
+    /**
+     * 登记查询。未携带查询 id 时由服务端生成，客户端无法取消，但请求结束时仍未结束的 Statement 会被取消
+     */
+    private void startQuery(String queryId) {
+        RunningQueries.start(StringUtils.isBlank(queryId) ? UUIDGenerator.generate() : queryId, getCurrentUser().getId());
+    }
+
+    @ApiOperation(value = "Cancel a running query")
+    @PostMapping(value = "/execute/{queryId}/cancel")
+    public ResponseData<Boolean> cancelQuery(@PathVariable String queryId) {
+        return ResponseData.success(RunningQueries.cancel(queryId, getCurrentUser().getId()));
     }
 
     @ApiOperation(value = "get all supported functions for this data source type")
@@ -107,6 +169,27 @@ public class DataProviderController extends BaseController {
         return ResponseData.success(dataProviderService.supportedStdFunctions(sourceId));
     }
 
+    @ApiOperation(value = "List local caches of the organization's sources")
+    @GetMapping(value = "/cache")
+    public ResponseData<List<LocalCacheInfo>> listLocalCaches(@RequestParam String orgId) {
+        checkBlank(orgId, "orgId");
+        return ResponseData.success(dataProviderService.listLocalCaches(orgId));
+    }
+
+    @ApiOperation(value = "Memory usage of local queries on this node")
+    @GetMapping(value = "/cache/memory")
+    public ResponseData<Map<String, Object>> localMemoryMetrics(@RequestParam String orgId) {
+        checkBlank(orgId, "orgId");
+        return ResponseData.success(dataProviderService.localMemoryMetrics(orgId));
+    }
+
+    @ApiOperation(value = "Health and circuit breaker state of the organization's sources used on this node")
+    @GetMapping(value = "/health")
+    public ResponseData<Map<String, Object>> sourceHealth(@RequestParam String orgId) {
+        checkBlank(orgId, "orgId");
+        return ResponseData.success(dataProviderService.sourceHealth(orgId));
+    }
+
     @ApiOperation(value = "validate sql function")
     @PostMapping(value = "/function/validate")
     public ResponseData<Boolean> validateFunction(@RequestParam String sourceId,
@@ -8,6 +8,7 @@ import datart.server.base.params.TestExecuteParam;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public interface DataProviderService {
@@ -25,10 +26,17 @@ public interface DataProviderService {
 
     Set<Column> readTableColumns(String sourceId, String schema, String table) throws SQLException;
 
+    void refreshMetadata(String sourceId);
+
     Dataframe testExecute(TestExecuteParam testExecuteParam) throws Exception;
 
     Dataframe execute(ViewExecuteParam viewExecuteParam) throws Exception;
 
+    /**
+     * 执行查询，支持时结果按批写入 writer，返回的 Dataframe 不再包含数据行
+     */
+    Dataframe execute(ViewExecuteParam viewExecuteParam, DataframeWriter writer) throws Exception;
+
     Set<StdSqlOperator> supportedStdFunctions(String sourceId);
 
     boolean validateFunction(String sourceId, String snippet);
@@ -37,4 +45,10 @@ public interface DataProviderService {
 
     void updateSource(DataProviderSource source);
 
+    List<LocalCacheInfo> listLocalCaches(String orgId);
+
+    Map<String, Object> localMemoryMetrics(String orgId);
+
+    Map<String, Object> sourceHealth(String orgId);
+
 }
@@ -0,0 +1,126 @@
+/*
+ * Datart
+ * <p>
+ * Copyright 2021
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datart.server.service;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+import datart.core.common.RequestContext;
+import datart.core.data.provider.Column;
+import datart.core.data.provider.Dataframe;
+import datart.core.data.provider.DataframeWriter;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 将查询结果按批写为JSON，格式与 ResponseData&lt;Dataframe&gt; 相同：先写列信息，再逐批写数据行，最后写分页信息和执行状态
+ */
+public class JsonDataframeWriter implements DataframeWriter {
+
+    private static final SerializerFeature[] FEATURES = {SerializerFeature.QuoteFieldNames,
+            SerializerFeature.WriteEnumUsingToString,
+            SerializerFeature.WriteMapNullValue,
+            SerializerFeature.WriteDateUseDateFormat,
+            SerializerFeature.DisableCircularReferenceDetect};
+
+    private final Writer out;
+
+    private boolean started;
+
+    private boolean empty = true;
+
+    public JsonDataframeWriter(OutputStream outputStream) {
+        this.out = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void writeColumns(List<Column> columns) throws IOException {
+        started = true;
+        out.write("{\"data\":{\"columns\":");
+        out.write(JSON.toJSONString(columns, FEATURES));
+        out.write(",\"rows\":[");
+        // 列信息立即发出，客户端不必等待数据
+        out.flush();
+    }
+
+    @Override
+    public void writeRows(Dataframe batch) throws IOException {
+        List<List<Object>> rows = batch.getRows();
+        if (rows == null || rows.isEmpty()) {
+            return;
+        }
+        String json = JSON.toJSONString(rows, FEATURES);
+        if (!empty) {
+            out.write(',');
+        }
+        // 去掉数组的首尾括号，与前后批次拼接为同一个数组
+        out.write(json, 1, json.length() - 2);
+        out.flush();
+        empty = false;
+    }
+
+    /**
+     * 写入分页信息和执行状态。数据没有按批写出时（数据源不支持流式读取），写入完整结果
+     */
+    public void finish(Dataframe dataframe) throws IOException {
+        if (!started) {
+            writeColumns(dataframe.getColumns());
+            writeRows(dataframe);
+        }
+        out.write("],\"pageInfo\":");
+        out.write(JSON.toJSONString(dataframe.getPageInfo(), FEATURES));
+        out.write(",\"script\":");
+        out.write(JSON.toJSONString(dataframe.getScript(), FEATURES));
+        out.write("},\"success\":true,\"errCode\":0");
+        Map<String, Exception> warnings = RequestContext.getWarnings();
+        if (warnings != null && warnings.size() > 0) {
+            List<String> msg = new LinkedList<>();
+            for (Exception value : warnings.values()) {
+                msg.add(value.toString());
+            }
+            out.write(",\"warnings\":");
+            out.write(JSON.toJSONString(msg, FEATURES));
+        }
+        out.write('}');
+        out.flush();
+    }
+
+    /**
+     * 已经开始输出后出错，无法再返回错误响应，在结果末尾写入失败状态
+     *
+     * @return 是否已经开始输出。未开始时由调用方按普通请求处理异常
+     */
+    public boolean fail(Exception e) {
+        if (!started) {
+            return false;
+        }
+        try {
+            out.write("]},\"success\":false,\"message\":");
+            out.write(JSON.toJSONString(e.getMessage(), FEATURES));
+            out.write('}');
+            out.flush();
+        } catch (IOException ignored) {
+            // 客户端已断开
+        }
+        return true;
+    }
+
+}
@@ -9,6 +9,7 @@ import datart.core.base.consts.FileOwner;
 import datart.core.base.exception.Exceptions;
 import datart.core.common.*;
 import datart.core.data.provider.Dataframe;
+import datart.core.data.provider.QueryPriority;
 import datart.core.entity.Folder;
 import datart.core.entity.Schedule;
 import datart.core.entity.ScheduleLog;
@@ -174,6 +175,7 @@ public abstract class ScheduleJob implements Job, Closeable {
             ViewExecuteParam viewExecuteParam = downloadParams.getDownloadParams().get(i);
             viewExecuteParam.setPageInfo(PageInfo.builder().pageNo(1)
                     .pageSize(Integer.MAX_VALUE).build());
+            viewExecuteParam.setPriority(QueryPriority.SCHEDULE);
             String vizName = viewExecuteParam.getVizName();
             Dataframe dataframe = dataProviderService.execute(downloadParams.getDownloadParams().get(i));
             POIUtils.withSheet(workbook, StringUtils.isEmpty(vizName) ? "Sheet" + i : vizName, dataframe);
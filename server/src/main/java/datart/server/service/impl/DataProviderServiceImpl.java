@@ -34,6 +34,7 @@ import datart.core.entity.RelSubjectColumns;
 import datart.core.entity.Source;
 import datart.core.entity.View;
 import datart.core.mappers.ext.RelSubjectColumnsMapperExt;
+import datart.core.mappers.ext.SourceMapperExt;
 import datart.security.util.AESUtil;
 import datart.server.base.dto.VariableValue;
 import datart.server.base.params.TestExecuteParam;
@@ -74,16 +75,20 @@ public class DataProviderServiceImpl extends BaseService implements DataProvider
 
     private final RelSubjectColumnsMapperExt rscMapper;
 
+    private final SourceMapperExt sourceMapper;
+
     private final VariableService variableService;
 
     private final ViewService viewService;
 
     public DataProviderServiceImpl(DataProviderManager dataProviderManager,
                                    RelSubjectColumnsMapperExt rscMapper,
+                                   SourceMapperExt sourceMapper,
                                    VariableService variableService,
                                    ViewService viewService) {
         this.dataProviderManager = dataProviderManager;
         this.rscMapper = rscMapper;
+        this.sourceMapper = sourceMapper;
         this.variableService = variableService;
         this.viewService = viewService;
     }
@@ -136,6 +141,12 @@ public class DataProviderServiceImpl extends BaseService implements DataProvider
         return dataProviderManager.readTableColumns(toDataProviderConfig(source), database, table);
     }
 
+    @Override
+    public void refreshMetadata(String sourceId) {
+        Source source = retrieve(sourceId, Source.class, false);
+        dataProviderManager.refreshMetadata(toDataProviderConfig(source));
+    }
+
 
     private DataProviderSource toDataProviderConfig(Source source) {
         DataProviderSource providerSource = new DataProviderSource();
@@ -204,6 +215,11 @@ public class DataProviderServiceImpl extends BaseService implements DataProvider
 
     @Override
     public Dataframe execute(ViewExecuteParam viewExecuteParam) throws Exception {
+        return execute(viewExecuteParam, null);
+    }
+
+    @Override
+    public Dataframe execute(ViewExecuteParam viewExecuteParam, DataframeWriter writer) throws Exception {
         if (viewExecuteParam.isEmpty()) {
             return Dataframe.empty();
         }
@@ -253,6 +269,9 @@ public class DataProviderServiceImpl extends BaseService implements DataProvider
                 .serverAggregate((boolean) providerSource.getProperties().getOrDefault(SERVER_AGGREGATE, false))
                 .cacheEnable(viewExecuteParam.isCache())
                 .cacheExpires(viewExecuteParam.getCacheExpires())
+                .tenant(source.getOrgId() + ":" + (getCurrentUser() == null ? "" : getCurrentUser().getId()))
+                .priority(viewExecuteParam.getPriority() == null ? QueryPriority.INTERACTIVE : viewExecuteParam.getPriority())
+                .writer(writer)
                 .build();
 
         Dataframe dataframe = dataProviderManager.execute(providerSource, queryScript, queryParam);
@@ -303,6 +322,42 @@ public class DataProviderServiceImpl extends BaseService implements DataProvider
         dataProviderManager.updateSource(source);
     }
 
+    @Override
+    public List<LocalCacheInfo> listLocalCaches(String orgId) {
+        securityManager.requireOrgOwner(orgId);
+        Set<String> sourceIds = listSourceIds(orgId);
+        return dataProviderManager.listLocalCaches()
+                .stream()
+                .filter(cache -> sourceIds.contains(cache.getSourceId()))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Map<String, Object> localMemoryMetrics(String orgId) {
+        securityManager.requireOrgOwner(orgId);
+        return dataProviderManager.localMemoryMetrics();
+    }
+
+    @Override
+    public Map<String, Object> sourceHealth(String orgId) {
+        securityManager.requireOrgOwner(orgId);
+        Set<String> sourceIds = listSourceIds(orgId);
+        Map<String, Object> health = new HashMap<>(dataProviderManager.sourceHealth());
+        health.keySet().retainAll(sourceIds);
+        return health;
+    }
+
+    private Set<String> listSourceIds(String orgId) {
+        Set<String> sourceIds = new HashSet<>();
+        for (Source source : sourceMapper.listByOrg(orgId, true)) {
+            sourceIds.add(source.getId());
+        }
+        for (Source source : sourceMapper.listByOrg(orgId, false)) {
+            sourceIds.add(source.getId());
+        }
+        return sourceIds;
+    }
+
     private void disablePermissionVariables(List<ScriptVariable> variables) {
         for (ScriptVariable variable : variables) {
             if (VariableTypeEnum.PERMISSION.equals(variable.getType())) {
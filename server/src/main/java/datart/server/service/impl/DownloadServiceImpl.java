@@ -26,6 +26,7 @@ import datart.core.common.POIUtils;
 import datart.core.common.TaskExecutor;
 import datart.core.common.UUIDGenerator;
 import datart.core.data.provider.Dataframe;
+import datart.core.data.provider.QueryPriority;
 import datart.core.entity.Download;
 import datart.core.entity.View;
 import datart.core.mappers.ext.DownloadMapperExt;
@@ -109,6 +110,7 @@ public class DownloadServiceImpl extends BaseService implements DownloadService
                         ViewExecuteParam viewExecuteParam = downloadParams.getDownloadParams().get(i);
                         View view = retrieve(viewExecuteParam.getViewId(), View.class, false);
                         viewExecuteParam.setPageInfo(PageInfo.builder().pageNo(1).pageSize(orgSettingService.getDownloadRecordLimit(view.getOrgId())).build());
+                        viewExecuteParam.setPriority(QueryPriority.DOWNLOAD);
                         String vizName = viewExecuteParam.getVizName();
                         Dataframe dataframe = dataProviderService.execute(downloadParams.getDownloadParams().get(i));
                         POIUtils.withSheet(workbook, StringUtils.isEmpty(vizName) ? "Sheet" + i : vizName, dataframe);